@@ -0,0 +1,93 @@
+package ekene.dian.librarydemofx.bench;
+
+import ekene.dian.librarydemofx.ColumnarBookList;
+import ekene.dian.librarydemofx.model.Book;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Callback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The model side of scrolling the table one screen: fetching 40 rows and asking each of the
+ * four columns for its cell value. {@code reflective} uses {@code PropertyValueFactory} and a
+ * new wrapper per date cell, as the table originally did, {@code property} the typed lambdas over
+ * Book's properties;
+ * {@code columnar} reads the rows from a {@link ColumnarBookList} instead of a list of books.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CellRenderBenchmark {
+    private static final int ROWS = 100_000;
+    private static final int SCREEN = 40;
+
+    @Param({"reflective", "property", "columnar"})
+    public String model;
+
+    private List<Book> rows;
+    private final List<TableColumn<Book, String>> columns = new ArrayList<>();
+    private TableColumn<Book, LocalDate> dateColumn;
+    private int top;
+
+    @Setup
+    public void setUp() {
+        List<Book> books = BookData.books(ROWS);
+        if (model.equals("columnar")) {
+            ColumnarBookList columnar = new ColumnarBookList();
+            columnar.addAll(books);
+            rows = columnar;
+        } else {
+            rows = books;
+        }
+        boolean reflective = model.equals("reflective");
+        columns.add(column(reflective ? new PropertyValueFactory<>("title") : cell -> cell.getValue().titleProperty()));
+        columns.add(column(reflective ? new PropertyValueFactory<>("author") : cell -> cell.getValue().authorProperty()));
+        columns.add(column(reflective ? new PropertyValueFactory<>("isbn") : cell -> cell.getValue().isbnProperty()));
+        dateColumn = column(reflective
+            ? cell -> new SimpleObjectProperty<>(cell.getValue().getPublishedDate())
+            : cell -> cell.getValue().publishedDateProperty());
+    }
+
+    @Benchmark
+    public void scrollOneScreen(Blackhole blackhole) {
+        top = (top + SCREEN) % (ROWS - SCREEN);
+        for (int row = top; row < top + SCREEN; row++) {
+            Book book = rows.get(row);
+            for (TableColumn<Book, String> column : columns) {
+                ObservableValue<String> value = column.getCellValueFactory()
+                    .call(new TableColumn.CellDataFeatures<>(null, column, book));
+                blackhole.consume(value.getValue());
+            }
+            blackhole.consume(dateColumn.getCellValueFactory()
+                .call(new TableColumn.CellDataFeatures<>(null, dateColumn, book)).getValue());
+        }
+    }
+
+    private static <T> TableColumn<Book, T> column(
+            Callback<TableColumn.CellDataFeatures<Book, T>, ObservableValue<T>> factory) {
+        TableColumn<Book, T> column = new TableColumn<>();
+        column.setCellValueFactory(factory);
+        return column;
+    }
+}
@@ -0,0 +1,74 @@
+package ekene.dian.librarydemofx.bench;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+import ekene.dian.librarydemofx.service.BookService;
+import ekene.dian.librarydemofx.service.ClientConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The client's whole path, from HTTP request to decoded books, against {@link BookServerStub}
+ * on the loopback interface, with the query cache off so every call goes to the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+    @Param({"httpclient", "resttemplate"})
+    public String transport;
+
+    @Param({"prefetch", "stream"})
+    public String pageMode;
+
+    private BookServerStub stub;
+    private BookService bookService;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = new BookServerStub(0, BookData.books(10_000)).start();
+        Properties properties = new Properties();
+        properties.setProperty("library.server.url", stub.getUrl());
+        properties.setProperty("library.http.transport", transport);
+        properties.setProperty("library.page.mode", pageMode);
+        properties.setProperty("library.cache.enabled", "false");
+        bookService = new BookService(new ClientConfig(properties));
+    }
+
+    @TearDown
+    public void tearDown() {
+        bookService.close();
+        stub.close();
+    }
+
+    /**
+     * All 10k books, 200 per page.
+     */
+    @Benchmark
+    public List<Book> allBooks() {
+        return bookService.getAllBooks().orElseThrow();
+    }
+
+    @Benchmark
+    public PageResponse<Book> onePage() {
+        return bookService.getBooksPage(0, 200);
+    }
+}
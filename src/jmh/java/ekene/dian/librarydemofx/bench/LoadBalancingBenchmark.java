@@ -0,0 +1,103 @@
+package ekene.dian.librarydemofx.bench;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.service.BookService;
+import ekene.dian.librarydemofx.service.ClientConfig;
+import ekene.dian.librarydemofx.service.ClientMetrics;
+import ekene.dian.librarydemofx.service.ServiceResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single book reads from eight threads against three {@link BookServerStub}s on different ports,
+ * serving the same catalog, of which the first is in trouble: with {@code slow-node} it answers
+ * in 20 ms instead of 2 ms, with {@code dead-node} it isn't running, so connections are refused.
+ *
+ * {@code pinned} sends everything to the first node, as a client configured with a single URL
+ * would be, so with {@code dead-node} every read fails, quickly once the circuit breaker opens;
+ * {@code p2c} and {@code least-outstanding} balance over all three. The requests each
+ * node served and the client's per-node failures and ejections are printed at the end of each
+ * trial.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LoadBalancingBenchmark {
+    private static final int BOOKS = 1_000;
+
+    @Param({"slow-node", "dead-node"})
+    public String scenario;
+
+    @Param({"pinned", "p2c", "least-outstanding"})
+    public String strategy;
+
+    private final List<BookServerStub> stubs = new ArrayList<>();
+    private BookService bookService;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Book> catalog = BookData.books(BOOKS);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            BookServerStub stub = new BookServerStub(0, catalog).start();
+            stub.withLatency(i == 0 && scenario.equals("slow-node") ? 20 : 2);
+            urls.add(stub.getUrl());
+            if (i == 0 && scenario.equals("dead-node")) {
+                stub.close();
+            } else {
+                stubs.add(stub);
+            }
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("library.server.url",
+            strategy.equals("pinned") ? urls.get(0) : String.join(",", urls));
+        properties.setProperty("library.balancer.strategy", strategy);
+        properties.setProperty("library.metrics.exporters", "");
+        properties.setProperty("library.retry.initial-delay-ms", "10");
+        bookService = new BookService(new ClientConfig(properties));
+    }
+
+    @TearDown
+    public void tearDown() {
+        StringBuilder text = new StringBuilder(String.format("%nRequests served:"));
+        for (BookServerStub stub : stubs) {
+            text.append(String.format(" %s %d,", stub.getUrl(), stub.getRequestCount()));
+        }
+        for (ClientMetrics.Backend backend : bookService.getMetrics().getBackends()) {
+            text.append(String.format("%n%s: %d failed, %d ejections, p50 %.2f ms",
+                backend.getUrl(), backend.getFailures(), backend.getEjections(),
+                backend.getLatency().snapshot().getP50Millis()));
+        }
+        System.out.println(text);
+        bookService.close();
+        stubs.forEach(BookServerStub::close);
+    }
+
+    @Benchmark
+    public ServiceResult<Book> getBookById() {
+        return bookService.getBookById(ThreadLocalRandom.current().nextLong(1, BOOKS + 1));
+    }
+}
@@ -0,0 +1,899 @@
+package ekene.dian.librarydemofx.bench;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import ekene.dian.librarydemofx.BookTableModel;
+import ekene.dian.librarydemofx.ColumnarBookList;
+import ekene.dian.librarydemofx.ColumnarBookList.Column;
+import ekene.dian.librarydemofx.ColumnarBookList.SortKey;
+import ekene.dian.librarydemofx.FrameBatcher;
+import ekene.dian.librarydemofx.SortedBookList;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.service.AsyncBookService;
+import ekene.dian.librarydemofx.service.BookIndex;
+import ekene.dian.librarydemofx.service.BookService;
+import ekene.dian.librarydemofx.service.ClientConfig;
+import ekene.dian.librarydemofx.service.ClientMetrics;
+import ekene.dian.librarydemofx.service.LatencyHistogram;
+import ekene.dian.librarydemofx.service.LocalCatalog;
+import ekene.dian.librarydemofx.service.QueryCache;
+import ekene.dian.librarydemofx.service.ServiceExecutors;
+import ekene.dian.librarydemofx.service.ServiceResult;
+import javafx.collections.ObservableList;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A headless load and soak test of the client: concurrent sessions read, page through, search and
+ * edit the catalog through one {@link BookService} against a {@link BookServerStub}, while the
+ * table's {@link BookTableModel}, set up as {@code HelloController} sets it up, follows every
+ * change: the sessions' own writes go through it, live updates reach it once per frame through
+ * its {@code FrameBatcher}, and it is refreshed by delta sync and reloaded from the server now and
+ * then, keeping the local catalog in step. What the controller does on the FX thread runs on a
+ * single "fx" thread here, which also paces the frames, so no display is needed.
+ *
+ * Every {@code interval} seconds it prints throughput, latency percentiles, errors, the allocation
+ * rate, time in GC, heap in use and the live heap left after a full GC, with the sizes of the
+ * table model and the caches; a live heap that keeps growing while those sizes stay put is a leak.
+ * At the end it prints the percentiles and allocation per operation, the live heap's growth per
+ * hour after the warmup, and the cache hit rates, and writes the samples to a CSV file.
+ *
+ * Arguments are {@code name=value} pairs:
+ * <ul>
+ *   <li>{@code sessions} (8): concurrent sessions, each issuing its next request once the last
+ *       one is done, after {@code think-ms} (0)</li>
+ *   <li>{@code books} (10000): books in the stub's catalog</li>
+ *   <li>{@code mix} (read=45,page=10,search=15,local=15,write=15): relative weights of single book
+ *       reads, 50-book pages, server searches, searches of the local index and writes, which are
+ *       half updates, a quarter creates and a quarter deletes of books the session created</li>
+ *   <li>{@code duration} (60) and {@code warmup} (10): seconds, the warmup being left out of the
+ *       totals</li>
+ *   <li>{@code interval} (10): seconds between samples</li>
+ *   <li>{@code reload} (30): seconds between reloads of the whole catalog into the table model,
+ *       0 for none</li>
+ *   <li>{@code sync} (10): seconds between delta refreshes of the table model, 0 for none; only
+ *       with {@code library.sync.mode=delta}, the default</li>
+ *   <li>{@code live-heap} (true): whether to run a full GC at each sample to measure the live
+ *       heap</li>
+ *   <li>{@code latency-ms} (0): the stub's latency per response</li>
+ *   <li>{@code url}: a running server to use instead of starting a stub in this JVM, which keeps
+ *       the stub's allocations out of the figures; its catalog should have {@code books} books</li>
+ *   <li>{@code report} (target/loadtest-samples.csv): where to write the samples</li>
+ *   <li>{@code max-heap-growth-mb} and {@code max-error-rate}: limits on the live heap's growth
+ *       per hour and the share of failed operations, beyond which the run exits with status 1</li>
+ *   <li>{@code library.*}: client settings, e.g. {@code library.http.transport=resttemplate},
+ *       {@code library.table.storage=columnar} or {@code library.live.enabled=false}; the local
+ *       catalog is kept in target/loadtest-store, emptied first, unless {@code library.store.dir}
+ *       says otherwise</li>
+ * </ul>
+ */
+public final class LoadTest {
+    private static final String DEFAULT_MIX = "read=45,page=10,search=15,local=15,write=15";
+    private static final int QUERIES = 256;
+    private static final int PAGE_SIZE = 50;
+    private static final double MB = 1024 * 1024;
+
+    enum Op {
+        READ("read"), PAGE("page"), SEARCH("search"), LOCAL("local"), WRITE("write"), RELOAD("reload"),
+        SYNC("sync");
+
+        final String name;
+
+        Op(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Map<String, String> options;
+    private final int sessions;
+    private final int bookCount;
+    private final long thinkMillis;
+    private final Map<Op, Integer> mix = new EnumMap<>(Op.class);
+    private final int mixTotal;
+
+    private final List<Book> catalog;
+    private final List<String> queries;
+    private final Map<Op, Recorder> recorders = new EnumMap<>(Op.class);
+    // Every operation but reloads, which take far longer than the rest
+    private final Recorder sessionOps = new Recorder(null);
+    private final List<Sample> samples = new ArrayList<>();
+    private final HeapMeter heap = new HeapMeter();
+
+    private BookService bookService;
+    private Table table;
+    private volatile boolean running = true;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        sessions = Integer.parseInt(option("sessions", "8"));
+        bookCount = Integer.parseInt(option("books", "10000"));
+        thinkMillis = Long.parseLong(option("think-ms", "0"));
+        for (String entry : option("mix", DEFAULT_MIX).split(",")) {
+            String[] parts = entry.trim().split("=");
+            mix.put(op(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        mixTotal = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (mixTotal <= 0) {
+            throw new IllegalArgumentException("The mix has no operations: " + option("mix", ""));
+        }
+        catalog = BookData.books(bookCount);
+        queries = queries(catalog);
+        for (Op op : Op.values()) {
+            recorders.put(op, new Recorder(isRefresh(op) ? null : sessionOps));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        System.exit(new LoadTest(options).run());
+    }
+
+    private int run() throws Exception {
+        BookServerStub stub = null;
+        String url = options.get("url");
+        if (url == null) {
+            stub = new BookServerStub(0, catalog).start();
+            stub.withLatency(Long.parseLong(option("latency-ms", "0")));
+            url = stub.getUrl();
+        }
+        Properties properties = new Properties();
+        options.forEach((name, value) -> {
+            if (name.startsWith("library.")) {
+                properties.setProperty(name, value);
+            }
+        });
+        properties.setProperty("library.server.url", url);
+        properties.putIfAbsent("library.metrics.exporters", "");
+        if (!properties.containsKey("library.store.dir")) {
+            Path store = Paths.get("target", "loadtest-store").toAbsolutePath();
+            deleteRecursively(store);
+            properties.setProperty("library.store.dir", store.toString());
+        }
+        ClientConfig config = new ClientConfig(properties);
+
+        try {
+            bookService = new BookService(config);
+            table = new Table(bookService, config);
+            long start = System.nanoTime();
+            int loaded = table.load();
+            System.out.printf("%d sessions against %s, %d books loaded into the %s table model in %d ms, mix %s%n",
+                sessions, url, loaded, config.getTableStorage(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), option("mix", DEFAULT_MIX));
+            if (config.isLiveUpdatesEnabled()) {
+                table.startLiveUpdates();
+            }
+            return drive();
+        } finally {
+            running = false;
+            // Closes the service too
+            if (table != null) {
+                table.close();
+            } else if (bookService != null) {
+                bookService.close();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    private int drive() throws Exception {
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("warmup", "10")));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("duration", "60")));
+        long intervalNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("interval", "10")));
+        long reloadNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("reload", "30")));
+        long syncNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("sync", "10")));
+        boolean liveHeap = Boolean.parseBoolean(option("live-heap", "true"));
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            workers.add(new Thread(new Session(i), "session-" + i));
+        }
+        if (reloadNanos > 0) {
+            workers.add(new Thread(() -> refresh(Op.RELOAD, reloadNanos), "reload"));
+        }
+        if (syncNanos > 0) {
+            workers.add(new Thread(() -> refresh(Op.SYNC, syncNanos), "sync"));
+        }
+        workers.forEach(thread -> {
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        System.out.println(Sample.HEADER);
+        long start = System.nanoTime();
+        Sample previous = Sample.first(heap);
+        boolean warm = warmupNanos == 0;
+        while (true) {
+            long elapsed = System.nanoTime() - start;
+            long next = Math.min(durationNanos, (elapsed / intervalNanos + 1) * intervalNanos);
+            if (!warm && next > warmupNanos) {
+                next = warmupNanos;
+            }
+            TimeUnit.NANOSECONDS.sleep(next - elapsed);
+            Sample sample = Sample.take(previous, System.nanoTime() - start, !warm, recorders, sessionOps, heap,
+                liveHeap, table.sizes(bookService));
+            samples.add(sample);
+            System.out.println(sample.format());
+            previous = sample;
+            if (!warm && sample.elapsedNanos >= warmupNanos) {
+                warm = true;
+                recorders.values().forEach(Recorder::resetTotal);
+                sessionOps.resetTotal();
+                System.out.println("Warmup done");
+            }
+            if (sample.elapsedNanos >= durationNanos) {
+                break;
+            }
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        return report();
+    }
+
+    private int report() throws IOException {
+        List<Sample> measured = new ArrayList<>();
+        for (Sample sample : samples) {
+            if (!sample.warmup) {
+                measured.add(sample);
+            }
+        }
+        double seconds = measured.stream().mapToLong(sample -> sample.intervalNanos).sum() / 1e9;
+        long allocated = measured.stream().mapToLong(sample -> sample.allocatedBytes).sum();
+
+        StringBuilder text = new StringBuilder(String.format("%nAfter the warmup, %.0f s:%n", seconds));
+        text.append(String.format("%-8s %10s %9s %9s %9s %9s %9s %9s %8s%n",
+            "", "ops", "ops/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors"));
+        long operations = 0;
+        long errors = 0;
+        for (Op op : Op.values()) {
+            Recorder recorder = recorders.get(op);
+            LatencyHistogram.Snapshot total = recorder.total.get().snapshot();
+            long opErrors = recorder.totalErrors.sum();
+            if (total.getCount() == 0 && opErrors == 0) {
+                continue;
+            }
+            operations += total.getCount();
+            errors += opErrors;
+            text.append(String.format("%-8s %10d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d%n", op.name,
+                total.getCount(), total.getCount() / seconds, total.getMeanMillis(), total.getP50Millis(),
+                total.getP90Millis(), total.getP99Millis(), total.getMaxMillis(), opErrors));
+        }
+        text.append(String.format("Allocated %.1f MB/s, %.1f KB per operation%n",
+            allocated / MB / seconds, operations == 0 ? 0 : allocated / 1024.0 / operations));
+
+        double growth = heapGrowthPerHour(measured);
+        if (!Double.isNaN(growth)) {
+            text.append(String.format("Live heap %.1f MB at the end of the warmup, %.1f MB at the end, growing %.1f MB/h%n",
+                measured.get(0).liveHeapBytes / MB, measured.get(measured.size() - 1).liveHeapBytes / MB, growth));
+        }
+        ClientMetrics metrics = bookService.getMetrics();
+        for (ClientMetrics.CacheCounters cache : metrics.getCaches()) {
+            text.append(String.format("Cache %s: %.1f%% hits%n", cache.getName(), cache.getHitRate() * 100));
+        }
+        text.append(String.format("%d retries, %d hedged reads, %d rejected by the circuit breaker%n",
+            metrics.getRetries(), metrics.getHedges(), metrics.getCircuitRejections()));
+        System.out.print(text);
+
+        Path file = Paths.get(option("report", "target/loadtest-samples.csv")).toAbsolutePath();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        StringBuilder csv = new StringBuilder(Sample.CSV_HEADER).append(System.lineSeparator());
+        samples.forEach(sample -> csv.append(sample.csv()).append(System.lineSeparator()));
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        System.out.println("Samples written to " + file);
+
+        int status = 0;
+        String maxGrowth = options.get("max-heap-growth-mb");
+        if (maxGrowth != null && !Double.isNaN(growth) && growth > Double.parseDouble(maxGrowth)) {
+            System.out.printf("FAILED: the live heap grew %.1f MB/h, more than %s%n", growth, maxGrowth);
+            status = 1;
+        }
+        String maxErrorRate = options.get("max-error-rate");
+        double errorRate = operations + errors == 0 ? 0 : (double) errors / (operations + errors);
+        if (maxErrorRate != null && errorRate > Double.parseDouble(maxErrorRate)) {
+            System.out.printf("FAILED: %.2f%% of the operations failed, more than %s%n", errorRate * 100, maxErrorRate);
+            status = 1;
+        }
+        return status;
+    }
+
+    /**
+     * The slope of a least squares line through the live heap samples, in MB per hour, or NaN
+     * without two of them.
+     */
+    private static double heapGrowthPerHour(List<Sample> measured) {
+        List<Sample> points = new ArrayList<>();
+        for (Sample sample : measured) {
+            if (sample.liveHeapBytes >= 0) {
+                points.add(sample);
+            }
+        }
+        if (points.size() < 2) {
+            return Double.NaN;
+        }
+        double meanX = points.stream().mapToDouble(sample -> sample.elapsedNanos / 3.6e12).average().orElse(0);
+        double meanY = points.stream().mapToDouble(sample -> sample.liveHeapBytes / MB).average().orElse(0);
+        double covariance = 0;
+        double variance = 0;
+        for (Sample sample : points) {
+            double x = sample.elapsedNanos / 3.6e12 - meanX;
+            covariance += x * (sample.liveHeapBytes / MB - meanY);
+            variance += x * x;
+        }
+        return covariance / variance;
+    }
+
+    /**
+     * Reloads or delta syncs the table model every {@code intervalNanos}. A sync is skipped while
+     * the model can't sync in place, e.g. without delta sync.
+     */
+    private void refresh(Op op, long intervalNanos) {
+        while (running) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(intervalNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!running) {
+                return;
+            }
+            if (op == Op.RELOAD) {
+                recorders.get(op).time(() -> table.load() > 0);
+            } else if (table.canSync()) {
+                recorders.get(op).time(table::sync);
+            }
+        }
+    }
+
+    private static boolean isRefresh(Op op) {
+        return op == Op.RELOAD || op == Op.SYNC;
+    }
+
+    /**
+     * One user, issuing requests one after the other.
+     */
+    private final class Session implements Runnable {
+        private final Random random;
+        // Books this session created and hasn't deleted yet, oldest first
+        private final ArrayDeque<Long> created = new ArrayDeque<>();
+        private int revision;
+
+        Session(int number) {
+            random = new Random(number);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Op op = next();
+                recorders.get(op).time(() -> perform(op));
+                if (thinkMillis > 0) {
+                    try {
+                        Thread.sleep(thinkMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private Op next() {
+            int choice = random.nextInt(mixTotal);
+            for (Map.Entry<Op, Integer> entry : mix.entrySet()) {
+                choice -= entry.getValue();
+                if (choice < 0) {
+                    return entry.getKey();
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        private boolean perform(Op op) {
+            switch (op) {
+                case READ:
+                    return bookService.getBookById((long) random.nextInt(bookCount) + 1).isSuccess();
+                case PAGE:
+                    bookService.getBooksPage(random.nextInt(Math.max(1, bookCount / PAGE_SIZE)), PAGE_SIZE);
+                    return true;
+                case SEARCH:
+                    return bookService.searchBooks(query()).isSuccess();
+                case LOCAL:
+                    table.search(query());
+                    return true;
+                case WRITE:
+                    return write();
+                default:
+                    throw new IllegalArgumentException(op.name);
+            }
+        }
+
+        private boolean write() {
+            int choice = random.nextInt(4);
+            if (choice == 0 && !created.isEmpty()) {
+                Long id = created.peekFirst();
+                ServiceResult<Long> result = table.delete(id);
+                if (result.isSuccess()) {
+                    created.removeFirst();
+                }
+                return result.isSuccess();
+            }
+            if (choice <= 1) {
+                Book base = catalog.get(random.nextInt(catalog.size()));
+                ServiceResult<Book> result = table.create(
+                    new Book(base.getTitle(), base.getAuthor(), base.getIsbn(), base.getPublishedDate()));
+                if (result.isSuccess()) {
+                    created.addLast(result.getValue().getId());
+                }
+                return result.isSuccess();
+            }
+            Book base = catalog.get(random.nextInt(catalog.size()));
+            Book book = new Book(base.getTitle() + " (" + (revision++ % 10) + ")", base.getAuthor(), base.getIsbn(),
+                base.getPublishedDate());
+            book.setId(base.getId());
+            return table.update(book).isSuccess();
+        }
+
+        private String query() {
+            return queries.get(random.nextInt(queries.size()));
+        }
+    }
+
+    /**
+     * The table's {@link BookTableModel} with the sorted view the table shows: a
+     * {@link SortedBookList} for object storage, while the columnar list sorts itself. A single
+     * "fx" thread stands in for the JavaFX Application Thread: it runs the model, gets the
+     * service's results and pulses once per frame while live updates are waiting.
+     */
+    private static final class Table {
+        private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+        private final ScheduledExecutorService owner =
+            Executors.newSingleThreadScheduledExecutor(ServiceExecutors.daemonThreadFactory("fx"));
+        private final AsyncBookService service;
+        private final LocalCatalog localCatalog;
+        private final BookTableModel model;
+        private final SortedBookList sortedBooks;
+
+        Table(BookService bookService, ClientConfig config) throws IOException {
+            service = new AsyncBookService(bookService, ServiceExecutors.create(config), owner);
+            localCatalog = config.isLocalStoreEnabled() ? LocalCatalog.open(bookService, config) : null;
+            model = new BookTableModel(config, owner, this::pulse);
+            ObservableList<Book> books = model.getBooks();
+            sortedBooks = books instanceof ColumnarBookList ? null : call(() -> new SortedBookList(books, owner));
+            List<SortKey> byTitle = List.of(new SortKey(Column.TITLE, true));
+            call(() -> {
+                model.setView(new BookTableModel.View() {
+                    @Override
+                    public void resyncNeeded() {
+                        if (model.canSyncInPlace()) {
+                            model.sync();
+                        } else {
+                            model.load("", () -> true);
+                        }
+                    }
+                });
+                model.start(service, localCatalog);
+                if (sortedBooks != null) {
+                    sortedBooks.sortBy(byTitle);
+                } else {
+                    ((ColumnarBookList) books).sortBy(byTitle);
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Runs {@code frame} on the owner thread once per frame while started, as the
+         * {@code AnimationTimer} behind a {@code FrameBatcher} does.
+         */
+        private FrameBatcher.Pulse pulse(Runnable frame) {
+            return new FrameBatcher.Pulse() {
+                private ScheduledFuture<?> timer;
+
+                @Override
+                public void start() {
+                    if (timer == null) {
+                        timer = owner.scheduleAtFixedRate(frame, FRAME_NANOS, FRAME_NANOS, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public void stop() {
+                    if (timer != null) {
+                        timer.cancel(false);
+                        timer = null;
+                    }
+                }
+            };
+        }
+
+        /**
+         * Streams the whole catalog into the model, as a refresh without delta sync does.
+         *
+         * @return the number of books loaded
+         */
+        int load() {
+            long count = call(() -> model.load("", () -> true)).join();
+            // Waits for what the load's completion queued
+            call(() -> null);
+            return (int) count;
+        }
+
+        void startLiveUpdates() {
+            call(() -> {
+                model.startLiveUpdates();
+                return null;
+            });
+        }
+
+        boolean canSync() {
+            return call(model::canSyncInPlace);
+        }
+
+        boolean sync() {
+            call(model::sync).join();
+            return true;
+        }
+
+        ServiceResult<Book> create(Book book) {
+            return call(() -> model.create(book)).join();
+        }
+
+        ServiceResult<Book> update(Book book) {
+            return call(() -> model.update(book)).join();
+        }
+
+        ServiceResult<Long> delete(Long id) {
+            return call(() -> model.delete(id)).join();
+        }
+
+        /**
+         * Counts the rows matching {@code text}, found with the local index, or by testing every
+         * row without it.
+         */
+        int search(String text) {
+            String normalized = QueryCache.normalize(text);
+            return call(() -> {
+                BookIndex index = model.getIndex();
+                Predicate<Book> query = index != null
+                    ? index.search(text)::test
+                    : book -> QueryCache.matches(book, normalized);
+                int shown = 0;
+                for (Book book : model.getBooks()) {
+                    if (query.test(book)) {
+                        shown++;
+                    }
+                }
+                return shown;
+            });
+        }
+
+        /**
+         * Rows, indexed books, rows shown and entries in the query cache.
+         */
+        int[] sizes(BookService bookService) {
+            QueryCache queryCache = bookService.getQueryCache();
+            return call(() -> new int[] {
+                model.getBooks().size(),
+                model.getIndex() == null ? 0 : model.getIndex().size(),
+                sortedBooks == null ? model.getBooks().size() : sortedBooks.size(),
+                queryCache == null ? 0 : queryCache.size()
+            });
+        }
+
+        /**
+         * Stops the model and closes the local catalog and the service.
+         */
+        void close() {
+            try {
+                call(() -> {
+                    model.close();
+                    if (sortedBooks != null) {
+                        sortedBooks.close();
+                    }
+                    return null;
+                });
+            } finally {
+                if (localCatalog != null) {
+                    localCatalog.close();
+                }
+                service.close();
+                owner.shutdownNow();
+            }
+        }
+
+        private <T> T call(Supplier<T> task) {
+            return CompletableFuture.supplyAsync(task, owner).join();
+        }
+    }
+
+    /**
+     * Latencies and failures of one kind of operation, for the current sample and since the
+     * warmup.
+     */
+    private static final class Recorder {
+        final Recorder parent;
+        final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+        final AtomicReference<LatencyHistogram> total = new AtomicReference<>(new LatencyHistogram());
+        final LongAdder intervalErrors = new LongAdder();
+        final LongAdder totalErrors = new LongAdder();
+
+        Recorder(Recorder parent) {
+            this.parent = parent;
+        }
+
+        void time(Supplier<Boolean> operation) {
+            long start = System.nanoTime();
+            boolean succeeded;
+            try {
+                succeeded = operation.get();
+            } catch (RuntimeException e) {
+                succeeded = false;
+            }
+            if (succeeded) {
+                record(System.nanoTime() - start);
+            } else {
+                failed();
+            }
+        }
+
+        private void record(long nanos) {
+            interval.get().record(nanos);
+            total.get().record(nanos);
+            if (parent != null) {
+                parent.record(nanos);
+            }
+        }
+
+        private void failed() {
+            intervalErrors.increment();
+            totalErrors.increment();
+            if (parent != null) {
+                parent.failed();
+            }
+        }
+
+        void resetTotal() {
+            total.set(new LatencyHistogram());
+            totalErrors.reset();
+        }
+    }
+
+    /**
+     * What one interval measured.
+     */
+    private static final class Sample {
+        static final String HEADER = String.format("%7s %9s %8s %8s %8s %7s %9s %7s %8s %8s %8s %8s %8s %7s",
+            "s", "ops/s", "p50 ms", "p99 ms", "max ms", "errors", "alloc MB/s", "gc ms", "heap MB", "live MB",
+            "rows", "indexed", "shown", "queries");
+        static final String CSV_HEADER = "seconds,warmup,operations,errors,p50_ms,p99_ms,max_ms,"
+            + "allocated_bytes,gc_ms,heap_bytes,live_heap_bytes,rows,indexed,shown,cached_queries"
+            + ",read_p99_ms,page_p99_ms,search_p99_ms,local_p99_ms,write_p99_ms,reload_p99_ms";
+
+        long elapsedNanos;
+        long intervalNanos;
+        boolean warmup;
+        long operations;
+        long errors;
+        LatencyHistogram.Snapshot latency;
+        final Map<Op, Double> p99Millis = new EnumMap<>(Op.class);
+        long allocatedBytes;
+        long gcMillis;
+        long gcTotalMillis;
+        long heapBytes;
+        // Heap in use once the sample was taken, after the full GC if there was one
+        long baselineBytes;
+        long freedBytes;
+        long liveHeapBytes = -1;
+        int[] sizes;
+
+        static Sample first(HeapMeter heap) {
+            Sample sample = new Sample();
+            sample.gcTotalMillis = heap.gcMillis();
+            sample.freedBytes = heap.freedBytes();
+            sample.baselineBytes = heap.usedBytes();
+            return sample;
+        }
+
+        static Sample take(Sample previous, long elapsedNanos, boolean warmup, Map<Op, Recorder> recorders,
+                           Recorder sessionOps, HeapMeter heap, boolean liveHeap, int[] sizes) {
+            Sample sample = new Sample();
+            sample.elapsedNanos = elapsedNanos;
+            sample.intervalNanos = elapsedNanos - previous.elapsedNanos;
+            sample.warmup = warmup;
+            recorders.forEach((op, recorder) -> {
+                LatencyHistogram interval = recorder.interval.getAndSet(new LatencyHistogram());
+                recorder.intervalErrors.reset();
+                sample.p99Millis.put(op, interval.percentileMillis(99));
+            });
+            sample.latency = sessionOps.interval.getAndSet(new LatencyHistogram()).snapshot();
+            sample.operations = sample.latency.getCount();
+            sample.errors = sessionOps.intervalErrors.sumThenReset();
+            sample.heapBytes = heap.usedBytes();
+            sample.freedBytes = heap.freedBytes();
+            // What is in use now and was freed since, less what was in use then
+            sample.allocatedBytes = Math.max(0,
+                sample.heapBytes + sample.freedBytes - previous.freedBytes - previous.baselineBytes);
+            sample.gcTotalMillis = heap.gcMillis();
+            sample.gcMillis = sample.gcTotalMillis - previous.gcTotalMillis;
+            sample.baselineBytes = sample.heapBytes;
+            if (liveHeap) {
+                // Neither its time nor what it frees is counted
+                System.gc();
+                sample.liveHeapBytes = heap.usedBytes();
+                sample.baselineBytes = sample.liveHeapBytes;
+                sample.gcTotalMillis = heap.gcMillis();
+            }
+            sample.sizes = sizes;
+            return sample;
+        }
+
+        String format() {
+            double seconds = intervalNanos / 1e9;
+            return String.format("%7.0f %9.1f %8.2f %8.2f %8.2f %7d %9.1f %7d %8.1f %8s %8d %8d %8d %7d%s",
+                elapsedNanos / 1e9, operations / seconds, latency.getP50Millis(), latency.getP99Millis(),
+                latency.getMaxMillis(), errors, allocatedBytes / MB / seconds, gcMillis, heapBytes / MB,
+                liveHeapBytes < 0 ? "-" : String.format("%.1f", liveHeapBytes / MB),
+                sizes[0], sizes[1], sizes[2], sizes[3], warmup ? "  warmup" : "");
+        }
+
+        String csv() {
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+                "%.1f,%b,%d,%d,%.3f,%.3f,%.3f,%d,%d,%d,%d,%d,%d,%d,%d", elapsedNanos / 1e9, warmup, operations,
+                errors, latency.getP50Millis(), latency.getP99Millis(), latency.getMaxMillis(), allocatedBytes,
+                gcMillis, heapBytes, liveHeapBytes, sizes[0], sizes[1], sizes[2], sizes[3]));
+            for (Op op : Op.values()) {
+                line.append(String.format(Locale.ROOT, ",%.3f", p99Millis.get(op)));
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * Heap use and what the collector has freed, from which the allocation rate follows without
+     * per-thread counters, which lose the allocations of threads that have ended. Full GCs asked
+     * for with {@link System#gc()} are left out, since the samples run them.
+     */
+    private static final class HeapMeter {
+        private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        private final LongAdder freed = new LongAdder();
+        private final LongAdder explicitMillis = new LongAdder();
+
+        HeapMeter() {
+            Set<String> heapPools = new HashSet<>();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            NotificationListener listener = (notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                if (info.getGcCause().equals("System.gc()")) {
+                    explicitMillis.add(info.getGcInfo().getDuration());
+                    return;
+                }
+                Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+                Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+                long bytes = 0;
+                for (String pool : heapPools) {
+                    if (before.containsKey(pool) && after.containsKey(pool)) {
+                        bytes += before.get(pool).getUsed() - after.get(pool).getUsed();
+                    }
+                }
+                freed.add(bytes);
+            };
+            for (GarbageCollectorMXBean collector : collectors) {
+                ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+            }
+        }
+
+        long usedBytes() {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        long freedBytes() {
+            return freed.sum();
+        }
+
+        /**
+         * Time in collections, other than those asked for, as far as they have been reported.
+         */
+        long gcMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : collectors) {
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            return millis - explicitMillis.sum();
+        }
+    }
+
+    /**
+     * Search texts taken from the catalog: single title words, which match many books, and
+     * author names, which match a few.
+     */
+    private static List<String> queries(List<Book> catalog) {
+        Random random = new Random(7);
+        List<String> queries = new ArrayList<>(QUERIES);
+        while (queries.size() < QUERIES && !catalog.isEmpty()) {
+            Book book = catalog.get(random.nextInt(catalog.size()));
+            String[] title = book.getTitle().split(" ");
+            queries.add(random.nextBoolean()
+                ? title[title.length - 1].toLowerCase(Locale.ROOT)
+                : book.getAuthor().toLowerCase(Locale.ROOT));
+        }
+        return queries;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Op op(String name) {
+        for (Op op : Op.values()) {
+            if (op.name.equals(name) && !isRefresh(op)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation in the mix: " + name);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+}
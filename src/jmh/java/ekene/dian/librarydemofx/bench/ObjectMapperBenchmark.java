@@ -0,0 +1,70 @@
+package ekene.dian.librarydemofx.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a typical 200-book page with a mapper configured once and shared, against the
+ * original code's {@code configure} call before every read and a new mapper per call. Runs on
+ * four threads, as concurrent page fetches do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ObjectMapperBenchmark {
+    private static final TypeReference<PageResponse<Book>> PAGE_TYPE = new TypeReference<>() {
+    };
+
+    private byte[] body;
+    private ObjectMapper sharedMapper;
+    private ObjectReader sharedReader;
+
+    @Setup
+    public void setUp() {
+        sharedMapper = BookData.objectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        sharedReader = sharedMapper.readerFor(PAGE_TYPE);
+        body = BookData.pageJson(sharedMapper, BookData.books(200), 0, 200);
+    }
+
+    @Benchmark
+    public PageResponse<Book> reusedReader() throws IOException {
+        return sharedReader.readValue(body);
+    }
+
+    @Benchmark
+    public PageResponse<Book> configurePerCall() throws IOException {
+        sharedMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return sharedMapper.readValue(body, PAGE_TYPE);
+    }
+
+    @Benchmark
+    public PageResponse<Book> newMapperPerCall() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper.readValue(body, PAGE_TYPE);
+    }
+}
@@ -0,0 +1,64 @@
+package ekene.dian.librarydemofx.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+import ekene.dian.librarydemofx.service.PageReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one {@code PageResponse<Book>} body: the original way, reading it into a
+ * {@code String} and binding the whole tree, against {@link PageReader} streaming it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class PageDecodingBenchmark {
+    private static final TypeReference<PageResponse<Book>> PAGE_TYPE = new TypeReference<>() {
+    };
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private byte[] body;
+    private ObjectMapper objectMapper;
+    private PageReader pageReader;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BookData.objectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        body = BookData.pageJson(objectMapper, BookData.books(rows), 0, rows);
+        pageReader = new PageReader(objectMapper);
+    }
+
+    @Benchmark
+    public PageResponse<Book> string() throws IOException {
+        String response = new String(body, StandardCharsets.UTF_8);
+        return objectMapper.readValue(response, PAGE_TYPE);
+    }
+
+    @Benchmark
+    public PageResponse<Book> stream() throws IOException {
+        return pageReader.read(new ByteArrayInputStream(body));
+    }
+}
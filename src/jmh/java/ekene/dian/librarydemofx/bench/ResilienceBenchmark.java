@@ -0,0 +1,92 @@
+package ekene.dian.librarydemofx.bench;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.service.BookService;
+import ekene.dian.librarydemofx.service.ClientConfig;
+import ekene.dian.librarydemofx.service.ServiceResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single book reads against a {@link BookServerStub} injecting faults, sampled so that the tail
+ * shows: {@code slow} delays 3% of the responses by 200 ms, {@code dropped} closes 20% of the
+ * connections without answering, and {@code outage} answers everything with 503.
+ *
+ * With {@code resilience=on} reads are retried, slow reads hedged and the circuit breaker is on;
+ * with {@code off} none of them are. Compare the p99 of {@code slow} and the time per call of
+ * {@code dropped} and {@code outage}; the request, fault, retry and hedge counts are printed at
+ * the end of each trial.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResilienceBenchmark {
+    private static final int BOOKS = 1_000;
+
+    @Param({"slow", "dropped", "outage"})
+    public String fault;
+
+    @Param({"off", "on"})
+    public String resilience;
+
+    private BookServerStub stub;
+    private BookService bookService;
+    private long nextId;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = new BookServerStub(0, BookData.books(BOOKS)).start();
+        switch (fault) {
+            case "slow":
+                stub.withSlowRequests(0.03, 200);
+                break;
+            case "dropped":
+                stub.withDroppedConnections(0.2);
+                break;
+            default:
+                stub.withErrors(1.0, 503);
+        }
+
+        boolean on = resilience.equals("on");
+        Properties properties = new Properties();
+        properties.setProperty("library.server.url", stub.getUrl());
+        properties.setProperty("library.metrics.exporters", "");
+        properties.setProperty("library.retry.reads", String.valueOf(on));
+        properties.setProperty("library.retry.initial-delay-ms", "10");
+        properties.setProperty("library.circuit.enabled", String.valueOf(on));
+        properties.setProperty("library.hedge.enabled", String.valueOf(on));
+        bookService = new BookService(new ClientConfig(properties));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%d requests, %d faults, %d retries, %d hedges, %d refused by the circuit breaker%n",
+            stub.getRequestCount(), stub.getFaultCount(), bookService.getMetrics().getRetries(),
+            bookService.getMetrics().getHedges(), bookService.getMetrics().getCircuitRejections());
+        bookService.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public ServiceResult<Book> getBookById() {
+        nextId = nextId % BOOKS + 1;
+        return bookService.getBookById(nextId);
+    }
+}
@@ -0,0 +1,118 @@
+package ekene.dian.librarydemofx.bench;
+
+import ekene.dian.librarydemofx.ColumnarBookList;
+import ekene.dian.librarydemofx.ObjectBookList;
+import ekene.dian.librarydemofx.SortedBookList;
+import ekene.dian.librarydemofx.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying edits from the server to one screen of the eager table's rows and asking each edited
+ * row's cells for their values again, as the table does for a row whose item changed.
+ * {@code replace} puts the new books in the list, as the controller used to, so their properties
+ * are created anew; {@code update} copies their values onto the books already shown, whose
+ * properties exist. Each invocation gives the rows new titles. {@code sorted} has a
+ * {@link SortedBookList} sorted by title on top, which moves the edited rows; {@code list} has
+ * nothing on top.
+ *
+ * {@link CellRenderBenchmark} measures the cell lookups alone and {@link TableModelBenchmark}
+ * sorting the whole list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowEditBenchmark {
+    private static final int ROWS = 100_000;
+    private static final int SCREEN = 40;
+
+    @Param({"replace", "update"})
+    public String mode;
+
+    @Param({"list", "sorted"})
+    public String view;
+
+    private ObjectBookList bookList;
+    private SortedBookList sorted;
+    // Stands in for the FX thread's event queue
+    private final BlockingQueue<Runnable> published = new LinkedBlockingQueue<>();
+    private int round;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        bookList = new ObjectBookList();
+        bookList.addAll(BookData.books(ROWS));
+        if (view.equals("sorted")) {
+            sorted = new SortedBookList(bookList, published::add);
+            sorted.sortBy(List.of(new ColumnarBookList.SortKey(ColumnarBookList.Column.TITLE, true)));
+            while (sorted.sortingProperty().get()) {
+                published.take().run();
+            }
+        }
+        for (int row = 0; row < SCREEN; row++) {
+            render(bookList.get(row), null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (sorted != null) {
+            sorted.close();
+        }
+    }
+
+    @Benchmark
+    public void editOneScreen(Blackhole blackhole) {
+        round++;
+        List<Book> edits = new ArrayList<>(SCREEN);
+        for (int row = 0; row < SCREEN; row++) {
+            Book shown = bookList.get(row);
+            Book edit = new Book("Edit " + round + " " + row, shown.getAuthor(), shown.getIsbn(), shown.getPublishedDate());
+            edit.setId(shown.getId());
+            edits.add(edit);
+        }
+        if (mode.equals("replace")) {
+            for (int row = 0; row < SCREEN; row++) {
+                bookList.set(row, edits.get(row));
+            }
+        } else {
+            bookList.updateById(edits);
+        }
+        for (int row = 0; row < SCREEN; row++) {
+            render(bookList.get(row), blackhole);
+        }
+    }
+
+    private static void render(Book book, Blackhole blackhole) {
+        Object[] values = {
+            book.idProperty().getValue(),
+            book.titleProperty().getValue(),
+            book.authorProperty().getValue(),
+            book.isbnProperty().getValue(),
+            book.publishedDateProperty().getValue()
+        };
+        if (blackhole != null) {
+            blackhole.consume(values);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ekene.dian.librarydemofx.bench;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.service.BookIndex;
+import ekene.dian.librarydemofx.service.QueryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searching 100k loaded books: through {@link BookIndex}, against checking every book with
+ * {@link QueryCache#matches}, and against a hit in the query cache. {@code buildIndex} is the
+ * cost of indexing the whole catalog once, e.g. after a full load.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Param({"river", "bronte sal", "978-3-1"})
+    public String query;
+
+    private List<Book> books;
+    private BookIndex index;
+    private QueryCache queryCache;
+
+    @Setup
+    public void setUp() {
+        books = BookData.books(ROWS);
+        index = new BookIndex();
+        index.putAll(books);
+        queryCache = new QueryCache(16, Long.MAX_VALUE, TimeUnit.HOURS.toMillis(1), false);
+        QueryCache.Collector collector = queryCache.collector(query);
+        collector.add(scanMatches());
+        collector.complete();
+    }
+
+    @Benchmark
+    public int index() {
+        return index.search(query).size();
+    }
+
+    @Benchmark
+    public int scan() {
+        return scanMatches().size();
+    }
+
+    @Benchmark
+    public int cacheHit() {
+        return queryCache.get(query).size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public int buildIndex() {
+        BookIndex fresh = new BookIndex();
+        fresh.putAll(books);
+        return fresh.size();
+    }
+
+    private List<Book> scanMatches() {
+        String normalized = QueryCache.normalize(query);
+        List<Book> matches = new ArrayList<>();
+        for (Book book : books) {
+            if (QueryCache.matches(book, normalized)) {
+                matches.add(book);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,182 @@
+package ekene.dian.librarydemofx.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the start of the runtime image built by {@code mvn -Pimage package} and retrains its
+ * class data sharing archive on a typical session: the window, the catalog streamed from a
+ * {@link BookServerStub} and a local catalog in a temporary directory.
+ *
+ * The application is started repeatedly with {@code library.startup.exit-after-load}, first
+ * without CDS, then with the image's archive of the JDK's classes, then, after a training session
+ * has listed the classes it loads and the archive has been dumped again from that list, with the
+ * application's classes archived too. The median of each startup milestone is printed and
+ * written to {@code startup-report.txt} next to the image. The retrained archive stays in the
+ * image, so {@code bin/app} uses it from then on.
+ *
+ * Needs a display. Arguments: the image directory (target/app), runs per configuration (5) and
+ * number of books (10000).
+ */
+public final class StartupReport {
+    private static final String MAIN = "ekene.dian.librarydemofx/ekene.dian.librarydemofx.HelloApplication";
+    private static final Pattern MILESTONE = Pattern.compile("Startup: (.+) after (\\d+) ms");
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private final Path image;
+    private final Path java;
+    private final List<String> appOptions;
+
+    private StartupReport(Path image, List<String> appOptions) {
+        this.image = image;
+        this.java = image.resolve("bin").resolve(isWindows() ? "java.exe" : "java");
+        this.appOptions = appOptions;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path image = Paths.get(args.length > 0 ? args[0] : "target/app").toAbsolutePath();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        Path store = Files.createTempDirectory("library-startup");
+
+        try (BookServerStub stub = new BookServerStub(0, BookData.books(count)).start()) {
+            StartupReport report = new StartupReport(image, List.of(
+                "-Dlibrary.server.url=" + stub.getUrl(),
+                "-Dlibrary.store.dir=" + store,
+                "-Dlibrary.startup.exit-after-load=true"));
+
+            // Fills the local catalog and the OS file cache, so every measured start finds both
+            report.start(List.of());
+
+            Map<String, Map<String, Long>> medians = new LinkedHashMap<>();
+            medians.put("No CDS", report.measure(runs, List.of("-Xshare:off")));
+            medians.put("CDS, JDK classes", report.measure(runs, List.of()));
+            report.train();
+            medians.put("AppCDS, trained", report.measure(runs, List.of()));
+
+            String text = format(medians, runs, count);
+            System.out.print(text);
+            Path file = image.resolveSibling("startup-report.txt");
+            Files.writeString(file, text, StandardCharsets.UTF_8);
+            System.out.println("Written to " + file);
+        }
+    }
+
+    /**
+     * Starts the application {@code runs} times and returns the median time of each milestone.
+     */
+    private Map<String, Long> measure(int runs, List<String> options) throws IOException, InterruptedException {
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        for (int i = 0; i < runs; i++) {
+            start(options).forEach((milestone, millis) ->
+                samples.computeIfAbsent(milestone, k -> new ArrayList<>()).add(millis));
+        }
+        Map<String, Long> medians = new LinkedHashMap<>();
+        samples.forEach((milestone, values) -> {
+            values.sort(Comparator.naturalOrder());
+            medians.put(milestone, values.get(values.size() / 2));
+        });
+        return medians;
+    }
+
+    /**
+     * Lists the classes a session loads and dumps the image's default archive from that list.
+     */
+    private void train() throws IOException, InterruptedException {
+        Path classList = image.resolve("lib").resolve("app.classlist");
+        start(List.of("-XX:DumpLoadedClassList=" + classList));
+        run(List.of(java.toString(), "-Xshare:dump", "-XX:SharedClassListFile=" + classList));
+    }
+
+    /**
+     * Starts the application once and returns the milestones it logged.
+     */
+    private Map<String, Long> start(List<String> options) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(java.toString());
+        command.addAll(options);
+        command.addAll(appOptions);
+        command.add("-m");
+        command.add(MAIN);
+        Map<String, Long> milestones = new LinkedHashMap<>();
+        for (String line : run(command)) {
+            Matcher matcher = MILESTONE.matcher(line);
+            if (matcher.find()) {
+                milestones.put(matcher.group(1), Long.parseLong(matcher.group(2)));
+            }
+        }
+        if (!milestones.containsKey("first load")) {
+            throw new IllegalStateException("The application didn't finish loading: " + command);
+        }
+        return milestones;
+    }
+
+    private static List<String> run(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> output = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    synchronized (output) {
+                        output.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                // The process is gone
+            }
+        }, "startup-output");
+        reader.start();
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Timed out after " + TIMEOUT_SECONDS + " s: " + command);
+        }
+        reader.join();
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException("Exit code " + process.exitValue() + ": " + command + "\n"
+                + String.join("\n", output));
+        }
+        return output;
+    }
+
+    private static String format(Map<String, Map<String, Long>> medians, int runs, int count) {
+        List<String> milestones = new ArrayList<>();
+        medians.values().forEach(times -> times.keySet().stream()
+            .filter(milestone -> !milestones.contains(milestone))
+            .forEach(milestones::add));
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Startup of the runtime image, ms since the process started, median of %d runs, %d books%n%n",
+            runs, count));
+        text.append(String.format("%-18s", ""));
+        for (String configuration : medians.keySet()) {
+            text.append(String.format("%18s", configuration));
+        }
+        text.append(System.lineSeparator());
+        for (String milestone : milestones) {
+            text.append(String.format("%-18s", milestone));
+            for (Map<String, Long> times : medians.values()) {
+                Long millis = times.get(milestone);
+                text.append(String.format("%18s", millis == null ? "-" : millis.toString()));
+            }
+            text.append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name").startsWith("Windows");
+    }
+}
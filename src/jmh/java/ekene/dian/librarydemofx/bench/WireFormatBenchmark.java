@@ -0,0 +1,68 @@
+package ekene.dian.librarydemofx.bench;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+import ekene.dian.librarydemofx.service.PageReader;
+import ekene.dian.librarydemofx.service.WireCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decoding one page with {@link PageReader} in each wire format the client can negotiate. The
+ * body size, raw and gzipped, is printed at the start of each trial: the binary formats are
+ * mostly a decoding win, since gzip already removes most of the repetition in JSON field names.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"200", "10000"})
+    public int rows;
+
+    private byte[] body;
+    private PageReader pageReader;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException, IOException {
+        WireCodec codec = WireCodec.create(format);
+        ObjectMapper mapper = (codec == null ? BookData.objectMapper() : BookData.objectMapper(codec.createFactory()))
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        body = BookData.pageJson(mapper, BookData.books(rows), 0, rows);
+        pageReader = new PageReader(mapper);
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(body);
+        }
+        System.out.printf("%n%s page of %d books: %d bytes, %d gzipped%n", format, rows, body.length, gzipped.size());
+    }
+
+    @Benchmark
+    public PageResponse<Book> decode() throws IOException {
+        return pageReader.read(new ByteArrayInputStream(body));
+    }
+}
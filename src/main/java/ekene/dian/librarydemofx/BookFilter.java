@@ -0,0 +1,86 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.service.BookIndex;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * The table's column filters: text the author must contain, ignoring case and accents as the
+ * local search does, and a range of publication dates, either end of which may be open. Books
+ * without a date are left out once either end is set.
+ *
+ * Immutable, so it can be tested from several threads at once.
+ */
+public final class BookFilter implements Predicate<Book> {
+    public static final BookFilter NONE = new BookFilter(null, null, null);
+    // The epoch day of a book without a publication date
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    // Folded, empty for any author
+    private final String author;
+    private final int fromDay;
+    private final int toDay;
+
+    /**
+     * @param author text the author must contain, or {@code null} or blank for any author
+     * @param from the earliest publication date, inclusive, or {@code null}
+     * @param to the latest publication date, inclusive, or {@code null}
+     */
+    public BookFilter(String author, LocalDate from, LocalDate to) {
+        this.author = BookIndex.foldText(author);
+        this.fromDay = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+        this.toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+    }
+
+    /**
+     * Whether every book passes.
+     */
+    public boolean isEmpty() {
+        return author.isEmpty() && !hasDateRange();
+    }
+
+    @Override
+    public boolean test(Book book) {
+        LocalDate date = book.getPublishedDate();
+        return test(author.isEmpty() ? "" : BookIndex.foldText(book.getAuthor()),
+            date == null ? NO_DATE : (int) date.toEpochDay());
+    }
+
+    /**
+     * {@link #test(Book)} for a book whose author has already been folded with
+     * {@link BookIndex#foldText} and whose date is an epoch day, or {@link #NO_DATE}.
+     */
+    boolean test(String foldedAuthor, int epochDay) {
+        if (!author.isEmpty() && !foldedAuthor.contains(author)) {
+            return false;
+        }
+        if (!hasDateRange()) {
+            return true;
+        }
+        return epochDay != NO_DATE && epochDay >= fromDay && epochDay <= toDay;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BookFilter)) {
+            return false;
+        }
+        BookFilter other = (BookFilter) o;
+        return author.equals(other.author) && fromDay == other.fromDay && toDay == other.toDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(author, fromDay, toDay);
+    }
+
+    private boolean hasDateRange() {
+        return fromDay != Integer.MIN_VALUE || toDay != Integer.MAX_VALUE;
+    }
+}
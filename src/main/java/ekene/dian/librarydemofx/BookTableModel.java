@@ -0,0 +1,638 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.BookEvent;
+import ekene.dian.librarydemofx.service.AsyncBookService;
+import ekene.dian.librarydemofx.service.BatchResult;
+import ekene.dian.librarydemofx.service.BookIndex;
+import ekene.dian.librarydemofx.service.ClientConfig;
+import ekene.dian.librarydemofx.service.DeltaSync;
+import ekene.dian.librarydemofx.service.LiveUpdates;
+import ekene.dian.librarydemofx.service.LocalCatalog;
+import ekene.dian.librarydemofx.service.QueryCache;
+import ekene.dian.librarydemofx.service.ServiceResult;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The book table's rows and what keeps them current, without the table: the book list with its
+ * search index, the loads that stream the catalog into it, delta refreshes, live updates applied
+ * once per frame, the local catalog, and this client's own writes. {@link HelloController} shows
+ * the rows and is told about changes through a {@link View}; the load test drives the same model
+ * without a display.
+ *
+ * The objects list holds books of its own, which changes from the server update in place: the
+ * books that were listed, pushed or synced stay as they came, for the caches, the local catalog
+ * and the delta sync, which read them on other threads.
+ *
+ * In the lazy table mode the rows are a {@link LazyBookList} instead, which is told about changes
+ * and fetches what it shows from the server; the book list stays empty.
+ *
+ * All methods must be called on the JavaFX Application Thread, or on the thread standing in for
+ * it, which is also where results are delivered.
+ */
+public class BookTableModel implements AutoCloseable {
+    /**
+     * What the model needs from whatever shows the rows, and what it tells it.
+     */
+    public interface View {
+        /**
+         * The text in the search field, which may not have been searched for yet.
+         */
+        default String getSearchText() {
+            return "";
+        }
+
+        /**
+         * Rows removed by changes from the server, rather than by this client's own deletes.
+         */
+        default void rowsRemoved(Set<Long> ids) {
+        }
+
+        /**
+         * Books changed on the server, by live updates or a sync, just before their rows are
+         * given the new values.
+         */
+        default void booksChanged(List<Book> books) {
+        }
+
+        /**
+         * Live updates may have missed changes, so the rows should be refreshed.
+         */
+        default void resyncNeeded() {
+        }
+    }
+
+    private final ClientConfig config;
+    private final Executor fxThread;
+    private final Function<Runnable, FrameBatcher.Pulse> pulses;
+    private final ObservableList<Book> bookList;
+    // Mirrors bookList; only set in the eager table mode with local search
+    private final BookIndex bookIndex;
+    private View view = new View() { };
+    // Set once services are built; nothing that needs it runs before
+    private AsyncBookService bookService;
+    // Only set in the lazy table mode, where rows are fetched page by page while scrolling
+    private LazyBookList lazyBookList;
+    // Last known catalog and changes made offline; null if disabled or it couldn't be opened
+    private LocalCatalog localCatalog;
+    // Only set in the eager table mode with delta refresh
+    private DeltaSync deltaSync;
+    // Changes pushed by the server, applied once per frame; null if live updates are off
+    private LiveUpdates liveUpdates;
+    private FrameBatcher<BookEvent> liveEvents;
+    // Set once the server has answered, so a slow cold start doesn't overwrite fresher rows
+    private boolean loadedFromServer;
+    // Bumped by every load; the list holds the whole catalog from the server when wholeCatalogLoad matches
+    private long loadGeneration;
+    private long wholeCatalogLoad = -1;
+    // Refresh asked for the whole catalog again, even though a search is shown
+    private boolean reloadRequested;
+    // Rows added by creates and live updates while a server load streams in, by id, so the
+    // load keeps them and doesn't add them a second time; null while no load is running
+    private Map<Long, Book> addedDuringLoad;
+
+    public BookTableModel(ClientConfig config) {
+        this(config, Platform::runLater, FrameBatcher::animationPulse);
+    }
+
+    /**
+     * A model that hands live updates to {@code fxThread} and applies them on the pulse made by
+     * {@code pulses}. Lets it run without the JavaFX toolkit.
+     */
+    public BookTableModel(ClientConfig config, Executor fxThread, Function<Runnable, FrameBatcher.Pulse> pulses) {
+        this.config = config;
+        this.fxThread = fxThread;
+        this.pulses = pulses;
+        bookList = "columnar".equalsIgnoreCase(config.getTableStorage())
+            ? new ColumnarBookList() : new ObjectBookList();
+        bookIndex = !isLazy() && config.isLocalSearchEnabled() ? index(bookList) : null;
+    }
+
+    /**
+     * Keeps a search index in step with every change to {@code books}. The listener is added
+     * before any view's own, so the index is current by the time a filter looks at a changed row.
+     */
+    private static BookIndex index(ObservableList<Book> books) {
+        BookIndex index = new BookIndex();
+        books.addListener((ListChangeListener<Book>) change -> {
+            while (change.next()) {
+                if (change.wasUpdated()) {
+                    // Edited in place: the same books, with other words
+                    index.putAll(change.getList().subList(change.getFrom(), change.getTo()));
+                    continue;
+                }
+                if (change.getAddedSize() == change.getList().size()) {
+                    // setAll() or the first page: nothing that was indexed is left
+                    index.clear();
+                } else {
+                    for (Book removed : change.getRemoved()) {
+                        index.remove(removed.getId());
+                    }
+                }
+                index.putAll(change.getAddedSubList());
+            }
+        });
+        return index;
+    }
+
+    public void setView(View view) {
+        this.view = view;
+    }
+
+    public boolean isLazy() {
+        return "lazy".equalsIgnoreCase(config.getTableMode());
+    }
+
+    /**
+     * The rows of the eager table mode, a {@link ColumnarBookList} or an {@link ObjectBookList}
+     * depending on {@code library.table.storage}.
+     */
+    public ObservableList<Book> getBooks() {
+        return bookList;
+    }
+
+    /**
+     * The search index of the book list, or null without local search.
+     */
+    public BookIndex getIndex() {
+        return bookIndex;
+    }
+
+    /**
+     * The rows of the lazy table mode, or null in the eager mode or before {@link #start}.
+     */
+    public LazyBookList getLazyRows() {
+        return lazyBookList;
+    }
+
+    /**
+     * Connects the model to the service once it has been built, and to the local catalog if
+     * there is one, which the eager table shows until the server answers.
+     */
+    public void start(AsyncBookService service, LocalCatalog catalog) {
+        bookService = service;
+        localCatalog = catalog;
+        if (isLazy()) {
+            lazyBookList = new LazyBookList(bookService, config.getPageSize(), config.getResidentPages());
+        } else if ("delta".equalsIgnoreCase(config.getSyncMode())) {
+            deltaSync = new DeltaSync(bookService.getBookService());
+        }
+
+        if (localCatalog != null && lazyBookList == null) {
+            bookService.submit(localCatalog::getBooks).whenComplete((books, error) -> {
+                if (books != null && !loadedFromServer && view.getSearchText().isEmpty()) {
+                    bookList.setAll(newRows(books));
+                }
+            });
+        }
+    }
+
+    /**
+     * Whether the book list holds the whole catalog as last loaded from the server, kept current
+     * by refreshes and live updates, so searches can run against it.
+     */
+    public boolean hasWholeCatalog() {
+        return bookIndex != null && wholeCatalogLoad == loadGeneration && !reloadRequested;
+    }
+
+    /**
+     * Whether a refresh can ask the server what changed instead of loading the rows again.
+     */
+    public boolean canSyncInPlace() {
+        return deltaSync != null && wholeCatalogLoad == loadGeneration
+            && (bookIndex != null || view.getSearchText().isEmpty());
+    }
+
+    /**
+     * Makes the next load fetch the whole catalog again, even while a search is shown, if the
+     * local index can filter it here.
+     */
+    public void requestReload() {
+        reloadRequested = bookIndex != null;
+    }
+
+    /**
+     * What to ask the server for to show {@code searchText}: with the local index, a requested
+     * reload fetches the whole catalog and filters it here. Clears the request.
+     */
+    public String serverQuery(String searchText) {
+        String query = bookIndex != null && reloadRequested ? "" : searchText;
+        reloadRequested = false;
+        return query;
+    }
+
+    /**
+     * Streams the books matching {@code serverQuery}, or the whole catalog if it is empty, into
+     * the book list. With a local catalog the rows shown stay until the first page replaces them.
+     * Pages that arrive once {@code current} is false are dropped. A complete listing also
+     * refreshes the local catalog and the delta sync's baseline.
+     *
+     * @return the number of books listed; cancelling it stops the load
+     */
+    public CompletableFuture<Long> load(String serverQuery, BooleanSupplier current) {
+        long generation = ++loadGeneration;
+        if (localCatalog == null) {
+            bookList.clear();
+        }
+        boolean[] firstPage = {true};
+        boolean keepListing = (localCatalog != null || deltaSync != null) && serverQuery.isEmpty();
+        List<Book> fresh = keepListing ? new ArrayList<>() : null;
+        Map<Long, Book> added = new HashMap<>();
+        addedDuringLoad = added;
+        Consumer<List<Book>> appendPage = page -> {
+            if (current.getAsBoolean()) {
+                loadedFromServer = true;
+                List<Book> listed = page;
+                if (!added.isEmpty()) {
+                    // Rows already added by a create or live update are updated, not added again
+                    listed = new ArrayList<>(page.size());
+                    for (Book book : page) {
+                        if (added.remove(book.getId()) != null && !firstPage[0]) {
+                            updateRows(List.of(book));
+                        } else {
+                            listed.add(book);
+                        }
+                    }
+                }
+                if (firstPage[0]) {
+                    firstPage[0] = false;
+                    bookList.setAll(newRows(listed));
+                    // Added after the listing passed them, so later pages won't have them either
+                    bookList.addAll(added.values());
+                } else {
+                    bookList.addAll(newRows(listed));
+                }
+                if (fresh != null) {
+                    fresh.addAll(page);
+                }
+            }
+        };
+
+        CompletableFuture<Long> request;
+        if (!serverQuery.isEmpty()) {
+            request = bookService.streamSearchBooks(serverQuery, appendPage);
+        } else if (deltaSync != null) {
+            // The delta sync takes a watermark first, so its first refresh needn't fetch everything
+            request = bookService.streamAllBooks(deltaSync::markListing, appendPage);
+        } else {
+            request = bookService.streamAllBooks(appendPage);
+        }
+
+        request.whenComplete((count, error) -> {
+            if (addedDuringLoad == added) {
+                addedDuringLoad = null;
+            }
+            if (error != null || request.isCancelled() || !current.getAsBoolean()) {
+                return;
+            }
+            loadedFromServer = true;
+            if (firstPage[0]) {
+                // Nothing listed, but books created meanwhile stay
+                bookList.setAll(added.values());
+            }
+            if (serverQuery.isEmpty()) {
+                wholeCatalogLoad = generation;
+            }
+            if (fresh != null) {
+                bookService.submit(() -> {
+                    if (deltaSync != null) {
+                        deltaSync.seed(fresh);
+                    }
+                    if (localCatalog != null) {
+                        localCatalog.reconcile(fresh);
+                    }
+                    return null;
+                });
+            }
+        });
+        return request;
+    }
+
+    /**
+     * Shows the local catalog's books matching {@code searchText}, for when the server can't be
+     * reached, unless {@code current} is false by the time they are read.
+     */
+    public void showLocalBooks(String searchText, BooleanSupplier current) {
+        bookService.submit(() -> localCatalog.search(searchText)).whenComplete((books, error) -> {
+            if (books != null && current.getAsBoolean()) {
+                bookList.setAll(newRows(books));
+            }
+        });
+    }
+
+    /**
+     * Asks the server what changed since the rows were loaded and applies just that, so the rows
+     * that didn't change keep their place and selection. Only for when {@link #canSyncInPlace}.
+     *
+     * @return what changed, or null if a search or full reload replaced the rows meanwhile
+     */
+    public CompletableFuture<DeltaSync.Result> sync() {
+        long generation = loadGeneration;
+        return bookService.submit(deltaSync::sync).handle((result, error) -> {
+            if (generation != loadGeneration) {
+                return null;
+            }
+            if (error != null) {
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+            view.booksChanged(result.getChanged());
+            applyChanges(result.getChanged(), result.getDeleted(), result.isBaseline());
+            if (localCatalog != null && !result.isEmpty()) {
+                bookService.submit(() -> {
+                    if (result.isBaseline()) {
+                        localCatalog.reconcile(result.getChanged());
+                    } else {
+                        localCatalog.applyChanges(result.getChanged(), result.getDeleted());
+                    }
+                    return null;
+                });
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Starts applying the changes the server pushes, once per frame.
+     */
+    public void startLiveUpdates() {
+        liveEvents = new FrameBatcher<>(this::applyEvents, fxThread, pulses);
+        liveUpdates = new LiveUpdates(bookService.getBookService(), new LiveUpdates.Listener() {
+            @Override
+            public void onEvent(BookEvent event) {
+                liveEvents.add(event);
+            }
+
+            @Override
+            public void onResync() {
+                fxThread.execute(() -> view.resyncNeeded());
+            }
+        });
+        liveUpdates.start();
+    }
+
+    /**
+     * Applies one frame's worth of pushed changes. Only the last change to each book counts.
+     */
+    private void applyEvents(List<BookEvent> events) {
+        Map<Long, BookEvent> latest = new LinkedHashMap<>();
+        for (BookEvent event : events) {
+            latest.put(event.getId(), event);
+        }
+
+        List<Book> changed = new ArrayList<>();
+        Set<Long> deleted = new HashSet<>();
+        boolean createdOrDeleted = false;
+        for (BookEvent event : latest.values()) {
+            if (event.getType() == BookEvent.Type.DELETED) {
+                deleted.add(event.getId());
+            } else if (event.getBook() != null) {
+                changed.add(event.getBook());
+            }
+            createdOrDeleted |= event.getType() != BookEvent.Type.UPDATED;
+        }
+
+        if (localCatalog != null) {
+            bookService.submit(() -> {
+                localCatalog.applyChanges(changed, deleted);
+                return null;
+            });
+        }
+
+        if (lazyBookList != null) {
+            changed.forEach(lazyBookList::replace);
+            if (createdOrDeleted) {
+                // Where new rows go, and which rows move up, depends on the server-side order
+                lazyBookList.reload();
+            }
+            return;
+        }
+
+        // While a server search is shown, only books that match it belong in the table
+        String query = hasWholeCatalog() ? "" : QueryCache.normalize(view.getSearchText());
+        List<Book> shown = new ArrayList<>();
+        Set<Long> hidden = new HashSet<>(deleted);
+        for (Book book : changed) {
+            if (query.isEmpty() || QueryCache.matches(book, query)) {
+                shown.add(book);
+            } else {
+                hidden.add(book.getId());
+            }
+        }
+        view.booksChanged(shown);
+        applyChanges(shown, hidden, false);
+    }
+
+    /**
+     * Applies changes to the rows as individual updates, removals and additions, so rows that
+     * didn't change keep their place and selection.
+     *
+     * @param baseline whether {@code changed} is the whole catalog, so other rows are gone
+     */
+    private void applyChanges(Collection<Book> changed, Set<Long> deleted, boolean baseline) {
+        Set<Long> removed = new HashSet<>(deleted);
+        Set<Long> present = new HashSet<>();
+        for (Book book : changed) {
+            present.add(book.getId());
+        }
+        List<Book> added = updateRows(changed);
+        if (baseline) {
+            // Everything the server still has was listed; books created offline aren't on it yet
+            for (Book book : bookList) {
+                if (!present.contains(book.getId()) && !LocalCatalog.isLocalId(book.getId())) {
+                    removed.add(book.getId());
+                }
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            removeRows(removed);
+            view.rowsRemoved(removed);
+        }
+        addRows(added);
+    }
+
+    /**
+     * Creates {@code book}, through the local catalog if there is one, and adds its row.
+     */
+    public CompletableFuture<ServiceResult<Book>> create(Book book) {
+        CompletableFuture<ServiceResult<Book>> request = localCatalog != null
+            ? bookService.submit(() -> localCatalog.createBook(book))
+            : bookService.createBook(book);
+        return request.whenComplete((result, error) -> {
+            if (error == null && result.isSuccess()) {
+                add(result.getValue());
+            }
+        });
+    }
+
+    /**
+     * Saves {@code book}, through the local catalog if there is one, and updates its row.
+     */
+    public CompletableFuture<ServiceResult<Book>> update(Book book) {
+        CompletableFuture<ServiceResult<Book>> request = localCatalog != null
+            ? bookService.submit(() -> localCatalog.updateBook(book))
+            : bookService.updateBook(book);
+        return request.whenComplete((result, error) -> {
+            if (error == null && result.isSuccess()) {
+                replace(book);
+            }
+        });
+    }
+
+    /**
+     * Deletes the book with {@code id}, through the local catalog if there is one, and removes
+     * its row.
+     */
+    public CompletableFuture<ServiceResult<Long>> delete(Long id) {
+        CompletableFuture<ServiceResult<Long>> request = localCatalog != null
+            ? bookService.submit(() -> localCatalog.deleteBook(id))
+            : bookService.deleteBook(id);
+        return request.whenComplete((result, error) -> {
+            if (error == null && result.isSuccess()) {
+                remove(Set.of(id));
+            }
+        });
+    }
+
+    /**
+     * Saves {@code books} as one batch and updates the rows of those that were saved.
+     */
+    public CompletableFuture<BatchResult<Book>> updateAll(List<Book> books) {
+        CompletableFuture<BatchResult<Book>> request = localCatalog != null
+            ? bookService.submit(() -> localCatalog.updateBooks(books))
+            : bookService.updateBooks(books);
+        return request.whenComplete((result, error) -> {
+            if (error == null) {
+                result.getSuccessfulValues().forEach(this::replace);
+            }
+        });
+    }
+
+    /**
+     * Deletes the books with {@code ids} as one batch and removes the rows of those that were
+     * deleted. Books created offline, and all books while offline, are only deleted locally.
+     */
+    public CompletableFuture<BatchResult<Long>> deleteAll(List<Long> ids) {
+        CompletableFuture<BatchResult<Long>> request = localCatalog != null
+            ? bookService.submit(() -> localCatalog.deleteBooks(ids))
+            : bookService.deleteBooks(ids);
+        return request.whenComplete((result, error) -> {
+            if (error == null) {
+                remove(new HashSet<>(result.getSuccessfulValues()));
+            }
+        });
+    }
+
+    /**
+     * Adds a created book, or updates its row if a live update or a load got there first.
+     */
+    private void add(Book book) {
+        if (lazyBookList != null) {
+            // The new row's position depends on the server-side sort order
+            lazyBookList.reload();
+        } else {
+            addRows(updateRows(List.of(book)));
+        }
+    }
+
+    /**
+     * Removes the rows of the books with {@code ids}.
+     */
+    public void remove(Set<Long> ids) {
+        if (lazyBookList != null) {
+            lazyBookList.reload();
+        } else {
+            removeRows(ids);
+        }
+    }
+
+    /**
+     * Shows {@code book}'s values in its row, if it has one.
+     */
+    public void replace(Book book) {
+        if (lazyBookList != null) {
+            lazyBookList.replace(book);
+        } else {
+            updateRows(List.of(book));
+        }
+    }
+
+    private void addRows(List<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        List<Book> rows = newRows(books);
+        bookList.addAll(rows);
+        if (addedDuringLoad != null) {
+            rows.forEach(book -> addedDuringLoad.put(book.getId(), book));
+        }
+    }
+
+    /**
+     * The books to add for {@code books}: copies for the objects list, which updates its books
+     * in place. The columnar list copies the values into its columns anyway.
+     */
+    private List<Book> newRows(List<Book> books) {
+        if (!(bookList instanceof ObjectBookList)) {
+            return books;
+        }
+        List<Book> rows = new ArrayList<>(books.size());
+        for (Book book : books) {
+            rows.add(book.copy());
+        }
+        return rows;
+    }
+
+    private void removeRows(Set<Long> ids) {
+        if (bookList instanceof ColumnarBookList) {
+            ((ColumnarBookList) bookList).removeIds(ids);
+        } else {
+            bookList.removeIf(book -> ids.contains(book.getId()));
+        }
+        if (addedDuringLoad != null) {
+            addedDuringLoad.keySet().removeAll(ids);
+        }
+    }
+
+    /**
+     * Gives the rows of books with the same ids the new values: the columnar list rewrites its
+     * columns and moves the rows to keep its sort order, the objects list updates the books it
+     * holds in place.
+     *
+     * @return the books that have no row
+     */
+    private List<Book> updateRows(Collection<Book> books) {
+        if (bookList instanceof ColumnarBookList) {
+            return ((ColumnarBookList) bookList).replaceById(books);
+        }
+        return ((ObjectBookList) bookList).updateById(books);
+    }
+
+    /**
+     * Stops live updates. Closing the service and the local catalog is up to whoever opened them.
+     */
+    @Override
+    public void close() {
+        if (liveUpdates != null) {
+            liveUpdates.close();
+            liveEvents.stop();
+        }
+    }
+}
@@ -0,0 +1,936 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.model.Book;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.TableColumn;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * An observable list of books stored column by column, for catalogs with millions of rows.
+ *
+ * Each row costs a primitive {@code long} id, an {@code int} epoch-day date, an {@code int} code
+ * into a pool of distinct author names, and its title and ISBN as UTF-8 bytes packed into one
+ * array per field, instead of a {@code Book}, a {@code Long}, a {@code LocalDate} and three
+ * {@code String}s per row: roughly a quarter of the memory.
+ * {@link #get(int)} hands out a short-lived {@code Book} built from the columns; nothing keeps it,
+ * so changing it doesn't change the list, and two calls return different objects. Compare rows by
+ * id, not identity, and write changes back with {@link #set(int, Book)}.
+ *
+ * The list sorts itself ({@link #sortBy}), by comparing the columns directly, and keeps new and
+ * changed rows in order, so the table doesn't need a {@code SortedList}, which would hold a
+ * {@code Book} for every row. The sort runs on the calling thread and compares titles and authors
+ * by code point, not by collation; {@link SortedBookList} sorts a list of books on a thread of
+ * its own instead.
+ *
+ * Removing rows doesn't build them either: the change handed to listeners reads a removed book
+ * from the columns it was taken out with when asked for it. {@link #removeIds} picks the rows by
+ * their id column. Author names no row uses any more are dropped once they outnumber the rest.
+ *
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class ColumnarBookList extends ObservableListBase<Book> {
+    private static final long NO_ID = Long.MIN_VALUE;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_AUTHOR = -1;
+    // Up to this many rows added to a sorted list are inserted one by one instead of merged
+    private static final int SMALL_BATCH = 64;
+    // The author pool isn't compacted for fewer unused names than this
+    private static final int MIN_COMPACT_AUTHORS = 1024;
+
+    public enum Column {
+        ID,
+        TITLE,
+        AUTHOR,
+        ISBN,
+        PUBLISHED_DATE
+    }
+
+    /**
+     * One level of a sort order.
+     */
+    public static final class SortKey {
+        private final Column column;
+        private final boolean ascending;
+
+        public SortKey(Column column, boolean ascending) {
+            this.column = column;
+            this.ascending = ascending;
+        }
+
+        public Column getColumn() {
+            return column;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+    }
+
+    // Column ids follow the fx:id naming in hello-view.fxml
+    private static final Map<String, Column> COLUMNS_BY_ID = Map.of(
+        "idColumn", Column.ID,
+        "titleColumn", Column.TITLE,
+        "authorColumn", Column.AUTHOR,
+        "isbnColumn", Column.ISBN,
+        "publishedDateColumn", Column.PUBLISHED_DATE);
+
+    private long[] ids = new long[16];
+    private final TextColumn titles = new TextColumn(16);
+    private int[] authors = new int[16];
+    private final TextColumn isbns = new TextColumn(16);
+    private int[] dates = new int[16];
+    private int size;
+
+    // Replaced rather than cleared, since removed rows handed to listeners may still read them
+    private Map<String, Integer> authorCodes = new HashMap<>();
+    private List<String> authorNames = new ArrayList<>();
+    // Rows using each author code, and how many codes no row uses
+    private int[] authorUses = new int[16];
+    private int unusedAuthors;
+    private List<SortKey> sortKeys = Collections.emptyList();
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book get(int index) {
+        Objects.checkIndex(index, size);
+        return book(ids[index], titles.read(index), author(index), isbns.read(index), dates[index]);
+    }
+
+    /**
+     * The position of the book with {@code id}, or -1. Scans the id column without building any
+     * {@code Book}.
+     */
+    public int indexOfId(Long id) {
+        long key = id == null ? NO_ID : id;
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean add(Book book) {
+        addAll(List.of(book));
+        return true;
+    }
+
+    /**
+     * Adds books at the end, or at their place in the current sort order.
+     */
+    @Override
+    public boolean addAll(Collection<? extends Book> books) {
+        if (books.isEmpty()) {
+            return false;
+        }
+        ensureCapacity(size + books.size());
+        beginChange();
+        if (sortKeys.isEmpty()) {
+            int first = size;
+            for (Book book : books) {
+                write(size++, book, false);
+            }
+            nextAdd(first, size);
+        } else if (books.size() <= SMALL_BATCH) {
+            // Each row moves into place, which costs far less than rewriting every column
+            for (Book book : books) {
+                write(size++, book, false);
+                int target = sortedPosition(size - 1);
+                moveRow(size - 1, target);
+                nextAdd(target, target + 1);
+            }
+        } else {
+            // Sort just the new rows, then merge them into place
+            int first = size;
+            for (Book book : books) {
+                write(size++, book, false);
+            }
+            int[] added = range(first, size);
+            mergeSort(added);
+            int[] order = merge(range(0, first), added);
+            applyOrder(order);
+            for (int i = 0; i < size; i++) {
+                if (order[i] >= first) {
+                    nextAdd(i, i + 1);
+                }
+            }
+        }
+        endChange();
+        return true;
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends Book> books) {
+        List<Book> removed = takeAllRows();
+        if (!books.isEmpty()) {
+            ensureCapacity(books.size());
+            for (Book book : books) {
+                write(size++, book, false);
+            }
+            if (!sortKeys.isEmpty()) {
+                int[] order = range(0, size);
+                mergeSort(order);
+                applyOrder(order);
+            }
+        }
+        if (size > 0 || !removed.isEmpty()) {
+            fireChange(new RowChange(this, new int[]{0}, new int[]{size}, List.of(removed)));
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        List<Book> removed = takeAllRows();
+        fireChange(new RowChange(this, new int[]{0}, new int[]{0}, List.of(removed)));
+    }
+
+    /**
+     * Replaces a row. If its sort key changed, the row moves to its new place.
+     */
+    @Override
+    public Book set(int index, Book book) {
+        Book old = get(index);
+        write(index, book, true);
+        int target = sortKeys.isEmpty() ? index : sortedPosition(index);
+
+        beginChange();
+        if (target == index) {
+            nextSet(index, old);
+        } else {
+            nextRemove(index, old);
+            moveRow(index, target);
+            nextAdd(target, target + 1);
+        }
+        endChange();
+        compact();
+        return old;
+    }
+
+    /**
+     * Replaces the rows of books with the same ids in a single pass, then moves them to their
+     * place in the sort order. Unlike repeated {@link #set} calls, positions don't shift while
+     * it runs.
+     *
+     * @return the books that have no row yet
+     */
+    public List<Book> replaceById(Collection<? extends Book> books) {
+        Map<Long, Book> byId = new HashMap<>();
+        for (Book book : books) {
+            byId.put(book.getId() == null ? NO_ID : book.getId(), book);
+        }
+
+        beginChange();
+        for (int i = 0; i < size && !byId.isEmpty(); i++) {
+            Book book = byId.remove(ids[i]);
+            if (book != null && !hasContent(i, book)) {
+                Book old = get(i);
+                write(i, book, true);
+                nextSet(i, old);
+            }
+        }
+        endChange();
+        compact();
+        if (!sortKeys.isEmpty()) {
+            sortBy(sortKeys);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    @Override
+    public Book remove(int index) {
+        Book old = get(index);
+        beginChange();
+        nextRemove(index, old);
+        release(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        endChange();
+        compact();
+        return old;
+    }
+
+    /**
+     * Removes the rows {@code filter} accepts. The filter is handed one {@code Book}, refilled
+     * from the columns for each row, so it must not keep it.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Book> filter) {
+        Book book = new Book();
+        return removeRows(row -> {
+            book.setId(ids[row] == NO_ID ? null : ids[row]);
+            book.setTitle(titles.read(row));
+            book.setAuthor(author(row));
+            book.setIsbn(isbns.read(row));
+            book.setPublishedDate(dates[row] == NO_DATE ? null : LocalDate.ofEpochDay(dates[row]));
+            return filter.test(book);
+        });
+    }
+
+    /**
+     * Removes the books with these ids, looking only at the id column.
+     */
+    public boolean removeIds(Set<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return false;
+        }
+        return removeRows(row -> bookIds.contains(ids[row] == NO_ID ? null : ids[row]));
+    }
+
+    /**
+     * Sorts the rows, most significant key first, and keeps them sorted from then on. An empty
+     * list of keys keeps the current order and stops sorting.
+     */
+    public void sortBy(List<SortKey> keys) {
+        sortKeys = List.copyOf(keys);
+        if (sortKeys.isEmpty() || size < 2) {
+            return;
+        }
+        int[] order = range(0, size);
+        mergeSort(order);
+        int[] permutation = new int[size];
+        boolean moved = false;
+        for (int newIndex = 0; newIndex < size; newIndex++) {
+            permutation[order[newIndex]] = newIndex;
+            moved |= order[newIndex] != newIndex;
+        }
+        if (!moved) {
+            return;
+        }
+        applyOrder(order);
+        beginChange();
+        nextPermutation(0, size, permutation);
+        endChange();
+    }
+
+    /**
+     * Translates a table's sort order into sort keys, for the columns named after a book field,
+     * as with {@link LazyBookList#sortOrders}.
+     */
+    public static List<SortKey> sortKeys(List<? extends TableColumn<Book, ?>> sortOrder) {
+        List<SortKey> keys = new ArrayList<>();
+        for (TableColumn<Book, ?> column : sortOrder) {
+            Column field = column.getId() != null ? COLUMNS_BY_ID.get(column.getId()) : null;
+            if (field != null) {
+                keys.add(new SortKey(field, column.getSortType() != TableColumn.SortType.DESCENDING));
+            }
+        }
+        return keys;
+    }
+
+    private boolean removeRows(IntPredicate selected) {
+        int[] removed = new int[16];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (selected.test(row)) {
+                if (count == removed.length) {
+                    removed = Arrays.copyOf(removed, count * 2);
+                }
+                removed[count++] = row;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        RemovedRows gone = copyRows(removed, count);
+        // One change per run of adjacent rows, at its position after the earlier runs went
+        int[] positions = new int[count];
+        List<List<Book>> runs = new ArrayList<>();
+        int kept = 0;
+        int next = 0;
+        int row = 0;
+        while (row < size) {
+            if (next < count && removed[next] == row) {
+                int first = next;
+                do {
+                    release(row++);
+                    next++;
+                } while (next < count && removed[next] == row);
+                positions[runs.size()] = kept;
+                runs.add(gone.subList(first, next));
+            } else {
+                int start = row;
+                while (row < size && (next == count || removed[next] != row)) {
+                    row++;
+                }
+                if (kept != start) {
+                    shift(start, kept, row - start);
+                }
+                kept += row - start;
+            }
+        }
+        size = kept;
+        positions = Arrays.copyOf(positions, runs.size());
+        fireChange(new RowChange(this, positions, positions, runs));
+        compact();
+        return true;
+    }
+
+    // The rows as removed rows, which no longer change with the list
+    private RemovedRows copyRows(int[] rows, int count) {
+        long[] copiedIds = new long[count];
+        int[] copiedAuthors = new int[count];
+        int[] copiedDates = new int[count];
+        for (int i = 0; i < count; i++) {
+            copiedIds[i] = ids[rows[i]];
+            copiedAuthors[i] = authors[rows[i]];
+            copiedDates[i] = dates[rows[i]];
+        }
+        return new RemovedRows(copiedIds, titles.copyRows(rows, count), copiedAuthors, authorNames,
+            isbns.copyRows(rows, count), copiedDates, count);
+    }
+
+    // Empties the list, handing its columns over as the removed rows
+    private List<Book> takeAllRows() {
+        if (size == 0) {
+            return List.of();
+        }
+        RemovedRows removed = new RemovedRows(ids, titles.takeAll(), authors, authorNames, isbns.takeAll(), dates, size);
+        ids = new long[ids.length];
+        authors = new int[authors.length];
+        dates = new int[dates.length];
+        size = 0;
+        // Nothing refers to the pooled names any more
+        authorCodes = new HashMap<>();
+        authorNames = new ArrayList<>();
+        authorUses = new int[16];
+        unusedAuthors = 0;
+        return removed;
+    }
+
+    private void write(int row, Book book, boolean replacing) {
+        ids[row] = book.getId() == null ? NO_ID : book.getId();
+        titles.write(row, book.getTitle(), replacing);
+        int author = authorCode(book.getAuthor());
+        if (replacing) {
+            releaseAuthor(authors[row]);
+        }
+        authors[row] = author;
+        isbns.write(row, book.getIsbn(), replacing);
+        dates[row] = book.getPublishedDate() == null ? NO_DATE : (int) book.getPublishedDate().toEpochDay();
+    }
+
+    private void release(int row) {
+        titles.release(row);
+        isbns.release(row);
+        releaseAuthor(authors[row]);
+    }
+
+    private void compact() {
+        titles.compact(size);
+        isbns.compact(size);
+        compactAuthors();
+    }
+
+    // Drops the names no row uses once they outnumber the ones in use. The pool is rebuilt rather
+    // than changed, since removed rows handed to listeners may still read the old one
+    private void compactAuthors() {
+        int names = authorNames.size();
+        if (unusedAuthors < MIN_COMPACT_AUTHORS || unusedAuthors <= names - unusedAuthors) {
+            return;
+        }
+        int[] newCodes = new int[names];
+        List<String> keptNames = new ArrayList<>(names - unusedAuthors);
+        Map<String, Integer> keptCodes = new HashMap<>();
+        int[] keptUses = new int[Math.max(16, names - unusedAuthors)];
+        for (int code = 0; code < names; code++) {
+            if (authorUses[code] > 0) {
+                int newCode = keptNames.size();
+                String name = authorNames.get(code);
+                newCodes[code] = newCode;
+                keptUses[newCode] = authorUses[code];
+                keptCodes.put(name, newCode);
+                keptNames.add(name);
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (authors[row] != NO_AUTHOR) {
+                authors[row] = newCodes[authors[row]];
+            }
+        }
+        authorNames = keptNames;
+        authorCodes = keptCodes;
+        authorUses = keptUses;
+        unusedAuthors = 0;
+    }
+
+    /**
+     * Distinct author names held for the rows, for tests.
+     */
+    int pooledAuthors() {
+        return authorNames.size();
+    }
+
+    private boolean hasContent(int row, Book book) {
+        return titles.matches(row, book.getTitle())
+            && Objects.equals(author(row), book.getAuthor())
+            && isbns.matches(row, book.getIsbn())
+            && dates[row] == (book.getPublishedDate() == null ? NO_DATE : (int) book.getPublishedDate().toEpochDay());
+    }
+
+    private String author(int row) {
+        return authors[row] == NO_AUTHOR ? null : authorNames.get(authors[row]);
+    }
+
+    private int authorCode(String author) {
+        if (author == null) {
+            return NO_AUTHOR;
+        }
+        Integer code = authorCodes.get(author);
+        if (code == null) {
+            code = authorNames.size();
+            authorNames.add(author);
+            authorCodes.put(author, code);
+            if (code == authorUses.length) {
+                authorUses = Arrays.copyOf(authorUses, code * 2);
+            }
+        } else if (authorUses[code] == 0) {
+            unusedAuthors--;
+        }
+        authorUses[code]++;
+        return code;
+    }
+
+    private void releaseAuthor(int code) {
+        if (code != NO_AUTHOR && --authorUses[code] == 0) {
+            unusedAuthors++;
+        }
+    }
+
+    private static Book book(long id, String title, String author, String isbn, int date) {
+        Book book = new Book(title, author, isbn, date == NO_DATE ? null : LocalDate.ofEpochDay(date));
+        book.setId(id == NO_ID ? null : id);
+        return book;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        titles.grow(newCapacity);
+        authors = Arrays.copyOf(authors, newCapacity);
+        isbns.grow(newCapacity);
+        dates = Arrays.copyOf(dates, newCapacity);
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(ids, from, ids, to, length);
+        titles.shift(from, to, length);
+        System.arraycopy(authors, from, authors, to, length);
+        isbns.shift(from, to, length);
+        System.arraycopy(dates, from, dates, to, length);
+    }
+
+    // Moves one row, shifting the rows in between by one
+    private void moveRow(int from, int to) {
+        long id = ids[from];
+        long title = titles.slot(from);
+        int author = authors[from];
+        long isbn = isbns.slot(from);
+        int date = dates[from];
+        if (from < to) {
+            shift(from + 1, from, to - from);
+        } else {
+            shift(to, to + 1, from - to);
+        }
+        ids[to] = id;
+        titles.setSlot(to, title);
+        authors[to] = author;
+        isbns.setSlot(to, isbn);
+        dates[to] = date;
+    }
+
+    // Where a row that may be out of order belongs, counted as if it had been taken out
+    private int sortedPosition(int row) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int probe = middle < row ? middle : middle + 1;
+            if (compareRows(probe, row) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Rewrites every column so that row i comes from row order[i]
+    private void applyOrder(int[] order) {
+        long[] newIds = new long[ids.length];
+        int[] newAuthors = new int[authors.length];
+        int[] newDates = new int[dates.length];
+        for (int i = 0; i < size; i++) {
+            int row = order[i];
+            newIds[i] = ids[row];
+            newAuthors[i] = authors[row];
+            newDates[i] = dates[row];
+        }
+        ids = newIds;
+        titles.reorder(order, size);
+        authors = newAuthors;
+        isbns.reorder(order, size);
+        dates = newDates;
+    }
+
+    private int compareRows(int a, int b) {
+        for (SortKey key : sortKeys) {
+            int result;
+            switch (key.column) {
+                case ID:
+                    result = Long.compare(ids[a], ids[b]);
+                    break;
+                case TITLE:
+                    result = titles.compare(a, b);
+                    break;
+                case AUTHOR:
+                    result = authors[a] == authors[b] ? 0 : compareNullable(author(a), author(b));
+                    break;
+                case ISBN:
+                    result = isbns.compare(a, b);
+                    break;
+                case PUBLISHED_DATE:
+                    // NO_DATE is the smallest int, so books without a date come first
+                    result = Integer.compare(dates[a], dates[b]);
+                    break;
+                default:
+                    result = 0;
+            }
+            if (result != 0) {
+                return key.ascending ? result : -result;
+            }
+        }
+        return 0;
+    }
+
+    // Nulls first, as TableColumn's default comparator does
+    private static int compareNullable(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    private static int[] range(int from, int to) {
+        int[] rows = new int[to - from];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = from + i;
+        }
+        return rows;
+    }
+
+    // Stable, so rows with equal keys keep their relative order
+    private void mergeSort(int[] rows) {
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int from = 0; from < rows.length - width; from += 2 * width) {
+                int middle = from + width;
+                int to = Math.min(from + 2 * width, rows.length);
+                if (compareRows(rows[middle - 1], rows[middle]) <= 0) {
+                    continue;
+                }
+                int i = from;
+                int j = middle;
+                int k = from;
+                while (i < middle && j < to) {
+                    buffer[k++] = compareRows(rows[j], rows[i]) < 0 ? rows[j++] : rows[i++];
+                }
+                while (i < middle) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < to) {
+                    buffer[k++] = rows[j++];
+                }
+                System.arraycopy(buffer, from, rows, from, to - from);
+            }
+        }
+    }
+
+    private int[] merge(int[] existing, int[] added) {
+        int[] merged = new int[existing.length + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < existing.length && j < added.length) {
+            merged[k++] = compareRows(added[j], existing[i]) < 0 ? added[j++] : existing[i++];
+        }
+        while (i < existing.length) {
+            merged[k++] = existing[i++];
+        }
+        while (j < added.length) {
+            merged[k++] = added[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Rows taken out of the list, kept as columns and built into books only when read.
+     */
+    private static final class RemovedRows extends AbstractList<Book> {
+        private final long[] ids;
+        private final TextColumn titles;
+        private final int[] authors;
+        private final List<String> authorNames;
+        private final TextColumn isbns;
+        private final int[] dates;
+        private final int size;
+
+        RemovedRows(long[] ids, TextColumn titles, int[] authors, List<String> authorNames,
+                    TextColumn isbns, int[] dates, int size) {
+            this.ids = ids;
+            this.titles = titles;
+            this.authors = authors;
+            this.authorNames = authorNames;
+            this.isbns = isbns;
+            this.dates = dates;
+            this.size = size;
+        }
+
+        @Override
+        public Book get(int index) {
+            Objects.checkIndex(index, size);
+            String author = authors[index] == NO_AUTHOR ? null : authorNames.get(authors[index]);
+            return book(ids[index], titles.read(index), author, isbns.read(index), dates[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A change made of removals, or for {@link #setAll} one replacement, whose removed books come
+     * from {@link RemovedRows}. {@code ListChangeBuilder} would build every one of them.
+     */
+    private static final class RowChange extends ListChangeListener.Change<Book> {
+        private final int[] froms;
+        private final int[] tos;
+        private final List<List<Book>> removed;
+        private int cursor = -1;
+
+        RowChange(ObservableList<Book> list, int[] froms, int[] tos, List<List<Book>> removed) {
+            super(list);
+            this.froms = froms;
+            this.tos = tos;
+            this.removed = removed;
+        }
+
+        @Override
+        public boolean next() {
+            if (cursor < froms.length) {
+                cursor++;
+            }
+            return cursor < froms.length;
+        }
+
+        @Override
+        public void reset() {
+            cursor = -1;
+        }
+
+        @Override
+        public int getFrom() {
+            checkCursor();
+            return froms[cursor];
+        }
+
+        @Override
+        public int getTo() {
+            checkCursor();
+            return tos[cursor];
+        }
+
+        @Override
+        public List<Book> getRemoved() {
+            checkCursor();
+            return removed.get(cursor);
+        }
+
+        @Override
+        protected int[] getPermutation() {
+            checkCursor();
+            return new int[0];
+        }
+
+        private void checkCursor() {
+            if (cursor < 0 || cursor >= froms.length) {
+                throw new IllegalStateException("Invalid Change state: next() must be called before inspecting the Change.");
+            }
+        }
+    }
+
+    /**
+     * The strings of one field, as UTF-8 bytes packed back to back in one array, with an offset
+     * and length per row. Replaced and removed strings leave gaps, which are squeezed out once
+     * they take up more room than the strings still in use.
+     */
+    private static final class TextColumn {
+        private static final int NULL_LENGTH = -1;
+        private static final int MIN_COMPACT_BYTES = 1 << 16;
+
+        private byte[] bytes = new byte[1024];
+        private int used;
+        private int live;
+        private int[] offsets;
+        private int[] lengths;
+
+        TextColumn(int capacity) {
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+        }
+
+        private TextColumn(byte[] bytes, int[] offsets, int[] lengths) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.lengths = lengths;
+        }
+
+        void grow(int capacity) {
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+
+        String read(int row) {
+            int length = lengths[row];
+            return length == NULL_LENGTH ? null : new String(bytes, offsets[row], length, StandardCharsets.UTF_8);
+        }
+
+        void write(int row, String text, boolean replacing) {
+            if (replacing) {
+                release(row);
+            }
+            if (text == null) {
+                lengths[row] = NULL_LENGTH;
+                return;
+            }
+            byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+            if (used + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(used + encoded.length, bytes.length + (bytes.length >> 1)));
+            }
+            System.arraycopy(encoded, 0, bytes, used, encoded.length);
+            offsets[row] = used;
+            lengths[row] = encoded.length;
+            used += encoded.length;
+            live += encoded.length;
+        }
+
+        // The row's string is no longer needed
+        void release(int row) {
+            if (lengths[row] != NULL_LENGTH) {
+                live -= lengths[row];
+            }
+        }
+
+        boolean matches(int row, String text) {
+            if (text == null || lengths[row] == NULL_LENGTH) {
+                return text == null && lengths[row] == NULL_LENGTH;
+            }
+            byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+            return Arrays.equals(bytes, offsets[row], offsets[row] + lengths[row], encoded, 0, encoded.length);
+        }
+
+        // Nulls first. UTF-8 byte order is code point order, which only differs from
+        // String.compareTo for characters outside the Basic Multilingual Plane
+        int compare(int a, int b) {
+            if (lengths[a] == NULL_LENGTH || lengths[b] == NULL_LENGTH) {
+                return Boolean.compare(lengths[b] == NULL_LENGTH, lengths[a] == NULL_LENGTH);
+            }
+            return Arrays.compareUnsigned(bytes, offsets[a], offsets[a] + lengths[a],
+                bytes, offsets[b], offsets[b] + lengths[b]);
+        }
+
+        // A row's offset and length in one value, for moving it around
+        long slot(int row) {
+            return ((long) offsets[row] << 32) | (lengths[row] & 0xFFFFFFFFL);
+        }
+
+        void setSlot(int row, long slot) {
+            offsets[row] = (int) (slot >>> 32);
+            lengths[row] = (int) slot;
+        }
+
+        void shift(int from, int to, int length) {
+            System.arraycopy(offsets, from, offsets, to, length);
+            System.arraycopy(lengths, from, lengths, to, length);
+        }
+
+        void reorder(int[] order, int size) {
+            int[] newOffsets = new int[offsets.length];
+            int[] newLengths = new int[lengths.length];
+            for (int i = 0; i < size; i++) {
+                newOffsets[i] = offsets[order[i]];
+                newLengths[i] = lengths[order[i]];
+            }
+            offsets = newOffsets;
+            lengths = newLengths;
+        }
+
+        // A column of just these rows, sharing the bytes: they are only ever appended to, and
+        // compacting copies them to a new array
+        TextColumn copyRows(int[] rows, int count) {
+            int[] copiedOffsets = new int[count];
+            int[] copiedLengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                copiedOffsets[i] = offsets[rows[i]];
+                copiedLengths[i] = lengths[rows[i]];
+            }
+            return new TextColumn(bytes, copiedOffsets, copiedLengths);
+        }
+
+        // Hands over every row and starts empty
+        TextColumn takeAll() {
+            TextColumn taken = new TextColumn(bytes, offsets, lengths);
+            bytes = new byte[1024];
+            offsets = new int[offsets.length];
+            lengths = new int[lengths.length];
+            used = 0;
+            live = 0;
+            return taken;
+        }
+
+        void compact(int size) {
+            if (used < MIN_COMPACT_BYTES || used - live <= live) {
+                return;
+            }
+            byte[] packed = new byte[Math.max(1024, live + (live >> 2))];
+            int end = 0;
+            for (int row = 0; row < size; row++) {
+                if (lengths[row] != NULL_LENGTH) {
+                    System.arraycopy(bytes, offsets[row], packed, end, lengths[row]);
+                    offsets[row] = end;
+                    end += lengths[row];
+                }
+            }
+            bytes = packed;
+            used = end;
+        }
+    }
+}
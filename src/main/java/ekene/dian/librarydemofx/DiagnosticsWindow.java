@@ -0,0 +1,186 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.service.ClientMetrics;
+import ekene.dian.librarydemofx.service.LatencyHistogram;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A window showing the client's metrics, refreshed every second while it is open: requests,
+ * errors, p50/p99 latency and bytes per endpoint, then decoding time, retries, cache hit rates,
+ * FX thread stalls and pulse times, the state of each backend node if there are several, and the
+ * watchdog's latest report.
+ */
+public class DiagnosticsWindow {
+
+    private static final class Row {
+        final String endpoint;
+        final long requests;
+        final long errors;
+        final double p50Millis;
+        final double p99Millis;
+        final long bytes;
+
+        Row(ClientMetrics.Endpoint endpoint) {
+            LatencyHistogram.Snapshot latency = endpoint.getLatency().snapshot();
+            this.endpoint = endpoint.getName();
+            this.requests = latency.getCount();
+            this.errors = endpoint.getErrors();
+            this.p50Millis = latency.getP50Millis();
+            this.p99Millis = latency.getP99Millis();
+            this.bytes = endpoint.getBytesReceived();
+        }
+    }
+
+    private final ClientMetrics metrics;
+    private final FxWatchdog watchdog;
+    private final Stage stage = new Stage();
+    private final ObservableList<Row> rows = FXCollections.observableArrayList();
+    private final Label decodingLabel = new Label();
+    private final Label retriesLabel = new Label();
+    private final Label cachesLabel = new Label();
+    private final Label fxStallLabel = new Label();
+    private final Label pulseLabel = new Label();
+    private final Label backendsLabel = new Label();
+    private final TextArea reportArea = new TextArea();
+    private final Timeline refresher = new Timeline(new KeyFrame(Duration.seconds(1), event -> refresh()));
+
+    /**
+     * @param watchdog whose reports to show, or {@code null} if it is off
+     */
+    public DiagnosticsWindow(ClientMetrics metrics, FxWatchdog watchdog, Window owner) {
+        this.metrics = metrics;
+        this.watchdog = watchdog;
+
+        TableView<Row> table = new TableView<>(rows);
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        TableColumn<Row, String> endpointColumn = new TableColumn<>("Endpoint");
+        endpointColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().endpoint));
+        endpointColumn.setPrefWidth(240);
+        table.getColumns().add(endpointColumn);
+        table.getColumns().add(column("Requests", row -> row.requests));
+        table.getColumns().add(column("Errors", row -> row.errors));
+        table.getColumns().add(column("p50 ms", row -> millis(row.p50Millis)));
+        table.getColumns().add(column("p99 ms", row -> millis(row.p99Millis)));
+        table.getColumns().add(column("KB", row -> row.bytes / 1024));
+
+        GridPane totals = new GridPane();
+        totals.setHgap(12);
+        totals.setVgap(4);
+        totals.addRow(0, new Label("Decoding"), decodingLabel);
+        totals.addRow(1, new Label("Retries"), retriesLabel);
+        totals.addRow(2, new Label("Cache hit rate"), cachesLabel);
+        totals.addRow(3, new Label("FX thread stalls"), fxStallLabel);
+        totals.addRow(4, new Label("Pulse CSS + layout"), pulseLabel);
+        if (!metrics.getBackends().isEmpty()) {
+            totals.addRow(5, new Label("Backends"), backendsLabel);
+        }
+
+        reportArea.setEditable(false);
+        reportArea.setPrefRowCount(8);
+        reportArea.setStyle("-fx-font-family: monospace;");
+
+        VBox root = new VBox(10, table, totals, reportArea);
+        root.setPadding(new Insets(10));
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        stage.setTitle("Diagnostics");
+        stage.initOwner(owner);
+        stage.setScene(new Scene(root, 720, 560));
+        stage.setOnShown(event -> refresher.play());
+        stage.setOnHidden(event -> refresher.stop());
+        refresher.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    public void show() {
+        refresh();
+        stage.show();
+        stage.toFront();
+    }
+
+    public void close() {
+        stage.close();
+    }
+
+    private void refresh() {
+        List<Row> current = new ArrayList<>();
+        for (ClientMetrics.Endpoint endpoint : metrics.getEndpoints().values()) {
+            current.add(new Row(endpoint));
+        }
+        rows.setAll(current);
+
+        decodingLabel.setText(percentiles(metrics.getDecoding().snapshot()));
+        retriesLabel.setText(String.valueOf(metrics.getRetries()));
+        StringBuilder caches = new StringBuilder();
+        for (ClientMetrics.CacheCounters cache : metrics.getCaches()) {
+            if (caches.length() > 0) {
+                caches.append(", ");
+            }
+            caches.append(cache.getName()).append(' ')
+                .append(String.format(Locale.ROOT, "%.0f%%", cache.getHitRate() * 100))
+                .append(" of ").append(cache.getHits() + cache.getMisses());
+        }
+        cachesLabel.setText(caches.toString());
+        LatencyHistogram.Snapshot stalls = metrics.getFxStalls().snapshot();
+        fxStallLabel.setText(percentiles(stalls) + ", max " + millis(stalls.getMaxMillis()) + " ms, "
+            + metrics.getFxBlocks() + " over threshold");
+        pulseLabel.setText(percentiles(metrics.getPulses().snapshot()));
+        StringBuilder backends = new StringBuilder();
+        for (ClientMetrics.Backend backend : metrics.getBackends()) {
+            if (backends.length() > 0) {
+                backends.append('\n');
+            }
+            backends.append(backend.getUrl()).append(": ")
+                .append(backend.isHealthy() ? "" : "out of rotation, ")
+                .append(backend.getOutstanding()).append(" in flight, ")
+                .append(percentiles(backend.getLatency().snapshot()))
+                .append(", ").append(backend.getFailures()).append(" failed");
+        }
+        backendsLabel.setText(backends.toString());
+
+        List<FxWatchdog.StallReport> reports = watchdog != null ? watchdog.getReports() : List.of();
+        String report = reports.isEmpty()
+            ? (watchdog != null ? "No FX thread stalls reported." : "The FX watchdog is off.")
+            : reports.get(reports.size() - 1).format();
+        if (!report.equals(reportArea.getText())) {
+            reportArea.setText(report);
+        }
+    }
+
+    private static String percentiles(LatencyHistogram.Snapshot snapshot) {
+        return "p50 " + millis(snapshot.getP50Millis()) + " ms, p99 " + millis(snapshot.getP99Millis())
+            + " ms (" + snapshot.getCount() + ")";
+    }
+
+    private static String millis(double millis) {
+        return String.format(Locale.ROOT, millis < 10 ? "%.2f" : "%.0f", millis);
+    }
+
+    private static <T> TableColumn<Row, T> column(String title, Function<Row, T> value) {
+        TableColumn<Row, T> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        column.setStyle("-fx-alignment: CENTER-RIGHT;");
+        return column;
+    }
+}
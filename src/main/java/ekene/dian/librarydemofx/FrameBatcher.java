@@ -0,0 +1,110 @@
+package ekene.dian.librarydemofx;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Hands items produced on background threads to the JavaFX Application Thread in batches, at
+ * most one batch per rendered frame.
+ *
+ * The first item of a burst posts a single {@code Platform.runLater}, which starts an
+ * {@link AnimationTimer}; from then on every pulse drains whatever arrived since the previous
+ * one, and the timer stops on the first pulse that finds nothing. However fast items arrive, the
+ * FX event queue sees one runnable per burst and the consumer one call per frame.
+ */
+public class FrameBatcher<T> {
+    /**
+     * Something that calls back once per frame while started, like an {@link AnimationTimer}.
+     */
+    public interface Pulse {
+        void start();
+
+        void stop();
+    }
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Consumer<List<T>> consumer;
+    private final Executor fxThread;
+    private final Pulse timer;
+
+    public FrameBatcher(Consumer<List<T>> consumer) {
+        this(consumer, Platform::runLater, FrameBatcher::animationPulse);
+    }
+
+    /**
+     * A batcher that posts to {@code fxThread} and drains on the pulse made by {@code pulses},
+     * which is given what to run on each frame. Lets it run without the JavaFX toolkit.
+     */
+    FrameBatcher(Consumer<List<T>> consumer, Executor fxThread, Function<Runnable, Pulse> pulses) {
+        this.consumer = consumer;
+        this.fxThread = fxThread;
+        this.timer = pulses.apply(this::drain);
+    }
+
+    static Pulse animationPulse(Runnable frame) {
+        AnimationTimer timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                frame.run();
+            }
+        };
+        return new Pulse() {
+            @Override
+            public void start() {
+                timer.start();
+            }
+
+            @Override
+            public void stop() {
+                timer.stop();
+            }
+        };
+    }
+
+    /**
+     * Queues an item; may be called from any thread.
+     */
+    public void add(T item) {
+        queue.add(item);
+        if (scheduled.compareAndSet(false, true)) {
+            fxThread.execute(timer::start);
+        }
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<>();
+        T item;
+        while ((item = queue.poll()) != null) {
+            batch.add(item);
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+            return;
+        }
+
+        timer.stop();
+        scheduled.set(false);
+        // Something may have been queued after the poll but before the flag was cleared
+        if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Stops delivering; items still queued are dropped. Must be called on the FX thread.
+     */
+    public void stop() {
+        timer.stop();
+        queue.clear();
+    }
+}
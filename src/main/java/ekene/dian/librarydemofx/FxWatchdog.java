@@ -0,0 +1,233 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.service.ClientMetrics;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the JavaFX Application Thread and reports when it stays busy too long.
+ *
+ * Every {@code intervalMillis} a background thread posts an empty {@code Platform.runLater} and
+ * records the time until it runs as an FX stall. Only one beat is outstanding at a time, so a
+ * blocked FX thread is one long stall rather than a queue of them. When a beat has waited
+ * {@code thresholdMillis}, the same thread captures the FX thread's stack and the lock it is
+ * waiting for, if any, and logs it as a {@link StallReport}; once the beat finally runs, the
+ * report gets its total duration. The last few reports are kept for the diagnostics window.
+ *
+ * Scenes passed to {@link #watch} also have the CSS and layout time of every pulse recorded.
+ */
+public class FxWatchdog {
+    private static final Logger LOG = System.getLogger(FxWatchdog.class.getName());
+    private static final int MAX_REPORTS = 20;
+    private static final DateTimeFormatter FILE_TIME =
+        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneId.systemDefault());
+
+    /**
+     * One time the FX thread stayed busy past the threshold, with its stack as captured then.
+     */
+    public static final class StallReport {
+        private final long beat;
+        private final Instant startedAt;
+        private final long thresholdMillis;
+        private final ThreadInfo thread;
+        private volatile long durationMillis = -1;
+
+        StallReport(long beat, Instant startedAt, long thresholdMillis, ThreadInfo thread) {
+            this.beat = beat;
+            this.startedAt = startedAt;
+            this.thresholdMillis = thresholdMillis;
+            this.thread = thread;
+        }
+
+        /**
+         * When the heartbeat that wasn't answered was posted.
+         */
+        public Instant getStartedAt() {
+            return startedAt;
+        }
+
+        /**
+         * How long the FX thread was busy in all, or -1 if it still is.
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public StackTraceElement[] getStackTrace() {
+            return thread.getStackTrace();
+        }
+
+        /**
+         * The report as text: what the FX thread was doing, then its stack.
+         */
+        public String format() {
+            StringBuilder text = new StringBuilder("FX thread busy for ");
+            text.append(durationMillis < 0 ? "over " + thresholdMillis + " ms, still running" : durationMillis + " ms");
+            text.append(" since ").append(startedAt).append("; ").append(thread.getThreadState());
+            if (thread.getLockName() != null) {
+                text.append(" on ").append(thread.getLockName());
+                if (thread.getLockOwnerName() != null) {
+                    text.append(" held by \"").append(thread.getLockOwnerName()).append('"');
+                }
+            }
+            for (StackTraceElement frame : thread.getStackTrace()) {
+                text.append(System.lineSeparator()).append("\tat ").append(frame);
+            }
+            return text.toString();
+        }
+    }
+
+    private final ClientMetrics metrics;
+    private final long intervalMillis;
+    private final long thresholdNanos;
+    private final Path reportDirectory;
+    private final Object lock = new Object();
+    private final Deque<StallReport> reports = new ArrayDeque<>();
+    private ScheduledExecutorService scheduler;
+
+    // Guarded by lock; posted is the nanoTime of the outstanding beat, 0 if there is none
+    private long posted;
+    private StallReport current;
+    private Thread fxThread;
+
+    /**
+     * @param reportDirectory where to write each report as a text file, or {@code null} for none
+     */
+    public FxWatchdog(ClientMetrics metrics, long intervalMillis, long thresholdMillis, Path reportDirectory) {
+        this.metrics = metrics;
+        this.intervalMillis = Math.max(1, intervalMillis);
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, thresholdMillis));
+        this.reportDirectory = reportDirectory;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fx-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::beat, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Records the CSS and layout time of each of {@code scene}'s pulses. Must be called on the FX
+     * thread.
+     */
+    public void watch(Scene scene) {
+        long[] pulseStart = new long[1];
+        scene.addPreLayoutPulseListener(() -> pulseStart[0] = System.nanoTime());
+        scene.addPostLayoutPulseListener(() -> metrics.recordPulse(System.nanoTime() - pulseStart[0]));
+    }
+
+    /**
+     * The most recent reports, oldest first.
+     */
+    public List<StallReport> getReports() {
+        synchronized (lock) {
+            return new ArrayList<>(reports);
+        }
+    }
+
+    private void beat() {
+        long beat;
+        Thread thread;
+        synchronized (lock) {
+            if (posted == 0) {
+                long now = System.nanoTime();
+                posted = now;
+                Platform.runLater(() -> answered(now));
+                return;
+            }
+            if (current != null && current.beat == posted) {
+                return;
+            }
+            if (fxThread == null || System.nanoTime() - posted < thresholdNanos) {
+                return;
+            }
+            beat = posted;
+            thread = fxThread;
+        }
+
+        // Capturing takes a moment, so it is done without holding the lock the FX thread needs
+        ThreadInfo info = ManagementFactory.getThreadMXBean().getThreadInfo(thread.getId(), Integer.MAX_VALUE);
+        if (info == null) {
+            return;
+        }
+        Instant startedAt = Instant.now().minusNanos(System.nanoTime() - beat);
+        StallReport report = new StallReport(beat, startedAt, TimeUnit.NANOSECONDS.toMillis(thresholdNanos), info);
+        synchronized (lock) {
+            if (posted != beat) {
+                // Answered while the stack was being captured
+                return;
+            }
+            current = report;
+            reports.addLast(report);
+            if (reports.size() > MAX_REPORTS) {
+                reports.removeFirst();
+            }
+        }
+        metrics.recordFxBlock();
+        LOG.log(Level.WARNING, report.format());
+        writeReport(report);
+    }
+
+    private void answered(long beat) {
+        long waited = System.nanoTime() - beat;
+        metrics.recordFxStall(waited);
+        StallReport finished = null;
+        synchronized (lock) {
+            fxThread = Thread.currentThread();
+            posted = 0;
+            if (current != null && current.beat == beat) {
+                finished = current;
+                current = null;
+            }
+        }
+        if (finished != null) {
+            finished.durationMillis = TimeUnit.NANOSECONDS.toMillis(waited);
+            LOG.log(Level.INFO, "FX thread responsive again after " + finished.durationMillis + " ms");
+        }
+    }
+
+    private void writeReport(StallReport report) {
+        if (reportDirectory == null) {
+            return;
+        }
+        Path file = reportDirectory.resolve("fx-stall-" + FILE_TIME.format(report.getStartedAt()) + ".txt");
+        try {
+            Files.createDirectories(reportDirectory);
+            Files.writeString(file, report.format() + System.lineSeparator(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error writing FX stall report " + file + ": " + e.getMessage());
+        }
+    }
+}
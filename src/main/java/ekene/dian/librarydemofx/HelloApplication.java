@@ -9,21 +9,28 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.stage.Stage;
 
-import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
 
 public class HelloApplication extends Application {
+    private static final Logger LOG = System.getLogger(HelloApplication.class.getName());
+    private final StartupTimer startupTimer = StartupTimer.sinceProcessStart();
+    private HelloController controller;
+
     @Override
     public void start(Stage primaryStage) {
         try {
-            // Load the FXML file
+            // Load the FXML file; the controller builds the service in the background meanwhile
             FXMLLoader loader = new FXMLLoader(getClass().getResource("hello-view.fxml"));
             Parent root = loader.load();
+            controller = loader.getController();
             
             // Set up the scene with a reasonable default size
             Scene scene = new Scene(root, 900, 600);
             
             // Apply the CSS
             scene.getStylesheets().add(getClass().getResource("styles.css").toExternalForm());
+            controller.attachScene(scene, startupTimer);
             
             // Configure the stage
             primaryStage.setTitle("Library Management System");
@@ -36,6 +43,7 @@ public class HelloApplication extends Application {
             
             // Show the stage
             primaryStage.show();
+            startupTimer.markFirstFrame(scene);
             
         } catch (Exception e) {
             showError(Thread.currentThread(), e);
@@ -43,9 +51,15 @@ public class HelloApplication extends Application {
         }
     }
     
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
+    
     private static void showError(Thread t, Throwable e) {
-        System.err.println("An unexpected error occurred: " + e.getMessage());
-        e.printStackTrace();
+        LOG.log(Level.ERROR, "Uncaught exception in " + t.getName(), e);
         
         // Show error dialog if we're on the JavaFX Application Thread
         if (Platform.isFxApplicationThread()) {
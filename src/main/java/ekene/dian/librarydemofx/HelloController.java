@@ -1,27 +1,105 @@
 package ekene.dian.librarydemofx;
 
 import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.BookValidator;
+import ekene.dian.librarydemofx.service.AsyncBookService;
+import ekene.dian.librarydemofx.service.BatchResult;
+import ekene.dian.librarydemofx.service.BookExporter;
+import ekene.dian.librarydemofx.service.BookFileFormat;
+import ekene.dian.librarydemofx.service.BookImporter;
 import ekene.dian.librarydemofx.service.BookService;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.collections.FXCollections;
+import ekene.dian.librarydemofx.service.ClientConfig;
+import ekene.dian.librarydemofx.service.ClientMetrics;
+import ekene.dian.librarydemofx.service.LocalCatalog;
+import ekene.dian.librarydemofx.service.ServiceExecutors;
+import ekene.dian.librarydemofx.service.ServiceResult;
+import ekene.dian.librarydemofx.service.TransferListener;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.binding.BooleanExpression;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.application.Platform;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.layout.HBox;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
 import java.net.URL;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 public class HelloController implements Initializable {
-    private final BookService bookService = new BookService();
-    private final ObservableList<Book> bookList = FXCollections.observableArrayList();
+    private static final Logger LOG = System.getLogger(HelloController.class.getName());
+    private final ClientConfig config = ClientConfig.load();
+    // Shared with the watchdog, which starts before the service exists
+    private final ClientMetrics metrics = new ClientMetrics();
+    // Built off the FX thread, so the window shows without waiting for it
+    private final CompletableFuture<AsyncBookService> services = CompletableFuture.supplyAsync(
+        () -> new AsyncBookService(new BookService(config, metrics), config),
+        task -> ServiceExecutors.daemonThreadFactory("book-service-startup").newThread(task).start());
+    // Set on the FX thread once services are built; nothing that needs it is enabled before
+    private AsyncBookService bookService;
+    // The rows and everything that keeps them current; the table shows them
+    private final BookTableModel rows = new BookTableModel(config);
+    // What the eager table shows of the rows, after the local search and the column filters
+    private final FilteredList<Book> filteredBooks = new FilteredList<>(rows.getBooks());
+    // Only set in the eager table mode with objects storage and parallel sorting
+    private SortedBookList sortedBooks;
+    // The local search's matches, or null to show every book
+    private Predicate<Book> searchMatches;
+    private BookFilter columnFilter = BookFilter.NONE;
+    // What the form was filled from, a copy: the row itself takes changes from the server
     private Book selectedBook = null;
 
+    // Loading state, tracked per kind of operation so one slow call doesn't hide another
+    private final IntegerProperty pendingLoads = new SimpleIntegerProperty();
+    private final BooleanProperty loadingDetails = new SimpleBooleanProperty();
+    private final BooleanProperty saving = new SimpleBooleanProperty();
+    private final BooleanProperty transferring = new SimpleBooleanProperty();
+    private final BooleanProperty starting = new SimpleBooleanProperty(true);
+    private CompletableFuture<?> transfer;
+    private CompletableFuture<ServiceResult<Book>> detailsRequest;
+    private PauseTransition revalidateTimer;
+    private SearchPipeline searchPipeline;
+    // Last known catalog and changes made offline; null if disabled or it couldn't be opened
+    private LocalCatalog localCatalog;
+    // Null if the watchdog is turned off
+    private final FxWatchdog watchdog = config.isFxWatchdogEnabled()
+        ? new FxWatchdog(metrics, config.getFxWatchdogIntervalMillis(),
+            config.getFxWatchdogThresholdMillis(), config.getFxWatchdogReportDirectory())
+        : null;
+    // Created the first time it is opened
+    private DiagnosticsWindow diagnosticsWindow;
+    // Null unless the application is timing its start
+    private StartupTimer startupTimer;
+    private boolean firstLoadDone;
+
     @FXML private TableView<Book> bookTableView;
     @FXML private TableColumn<Book, Long> idColumn;
     @FXML private TableColumn<Book, String> titleColumn;
@@ -34,39 +112,152 @@ public class HelloController implements Initializable {
     @FXML private TextField isbnField;
     @FXML private DatePicker publishedDatePicker;
     @FXML private TextField searchField;
+    @FXML private ProgressIndicator loadingIndicator;
+    @FXML private Button refreshButton;
+    @FXML private Label offlineLabel;
+    @FXML private Button addButton;
+    @FXML private Button updateButton;
+    @FXML private Button deleteButton;
+    @FXML private Button importButton;
+    @FXML private Button exportButton;
+    @FXML private HBox filterBox;
+    @FXML private TextField authorFilterField;
+    @FXML private DatePicker publishedFromPicker;
+    @FXML private DatePicker publishedToPicker;
+    @FXML private HBox transferBox;
+    @FXML private ProgressBar transferProgress;
+    @FXML private Label transferStatus;
 
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         try {
             setupTableColumns();
+            bookTableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
             setupTableSelection();
+            if (watchdog != null) {
+                watchdog.start();
+            }
             
-            SortedList<Book> sortedData = new SortedList<>(bookList);
-            sortedData.comparatorProperty().bind(bookTableView.comparatorProperty());
-            bookTableView.setItems(sortedData);
-            
-            searchField.textProperty().addListener((observable, oldValue, newValue) -> {
-                if (newValue == null || newValue.trim().isEmpty() ||
-                    (oldValue != null && !newValue.equals(oldValue) && newValue.length() >= 3)) {
-                    Platform.runLater(this::loadBooks);
+            setupRows();
+            if (!rows.isLazy()) {
+                if (rows.getBooks() instanceof ColumnarBookList) {
+                    setupColumnarTable((ColumnarBookList) rows.getBooks());
+                } else if ("parallel".equalsIgnoreCase(config.getTableSorting())) {
+                    setupParallelTable();
+                } else {
+                    SortedList<Book> sortedData = new SortedList<>(filteredBooks);
+                    sortedData.comparatorProperty().bind(bookTableView.comparatorProperty());
+                    bookTableView.setItems(sortedData);
                 }
-            });
+                setupColumnFilters();
+            } else {
+                // The server can't filter by these
+                filterBox.setVisible(false);
+                filterBox.setManaged(false);
+            }
+            setupLoadingState();
+            
+            // The rest needs the service; until then the table is empty and shows as loading
+            pendingLoads.set(pendingLoads.get() + 1);
+            services.whenCompleteAsync(this::servicesStarted, Platform::runLater);
+            
+        } catch (Exception e) {
+            LOG.log(Level.ERROR, "Initialization failed", e);
+            showAlert("Initialization Error", "Failed to initialize the application: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Finishes initialization once the service has been built: sets up what depends on it and
+     * starts the first load.
+     */
+    private void servicesStarted(AsyncBookService service, Throwable error) {
+        pendingLoads.set(pendingLoads.get() - 1);
+        if (error != null) {
+            LOG.log(Level.ERROR, "Initialization failed", error);
+            firstLoadDone();
+            showAlert("Initialization Error", "Failed to initialize the application: " + rootMessage(error));
+            return;
+        }
+        bookService = service;
+        starting.set(false);
+        markStartup("service ready");
+        try {
+            openLocalCatalog();
+            rows.start(bookService, localCatalog);
+            if (rows.isLazy()) {
+                setupLazyTable();
+            }
+            watchFirstRows();
+            
+            searchPipeline = new SearchPipeline(this::loadBooks,
+                config.getSearchDebounceMillis(), config.getSearchMinLength());
+            searchPipeline.setImmediate(rows::hasWholeCatalog);
+            searchField.textProperty().addListener((observable, oldValue, newValue) ->
+                searchPipeline.queryChanged(newValue));
             
             loadBooks();
+            if (config.isLiveUpdatesEnabled()) {
+                rows.startLiveUpdates();
+            }
             
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.log(Level.ERROR, "Initialization failed", e);
             showAlert("Initialization Error", "Failed to initialize the application: " + e.getMessage());
         }
     }
+    
+    /**
+     * Marks the first rows the table shows, from the server or the local catalog. In the lazy
+     * table mode they also end the first load, which has no end of its own.
+     */
+    private void watchFirstRows() {
+        ObservableList<Book> items = bookTableView.getItems();
+        ListChangeListener<Book> listener = new ListChangeListener<>() {
+            @Override
+            public void onChanged(Change<? extends Book> change) {
+                if (!items.isEmpty()) {
+                    items.removeListener(this);
+                    markStartup("first rows");
+                    if (rows.isLazy()) {
+                        firstLoadDone();
+                    }
+                }
+            }
+        };
+        items.addListener(listener);
+    }
+    
+    private void markStartup(String milestone) {
+        if (startupTimer != null) {
+            startupTimer.mark(milestone);
+        }
+    }
+    
+    /**
+     * Called when the first load has ended, however it ended. With
+     * {@code library.startup.exit-after-load} the application exits a second later, once the
+     * rows have been laid out and rendered.
+     */
+    private void firstLoadDone() {
+        if (firstLoadDone) {
+            return;
+        }
+        firstLoadDone = true;
+        markStartup("first load");
+        if (config.isExitAfterFirstLoad()) {
+            PauseTransition exit = new PauseTransition(Duration.seconds(1));
+            exit.setOnFinished(event -> Platform.exit());
+            exit.play();
+        }
+    }
 
     private void setupTableColumns() {
-        idColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
-        titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-        authorColumn.setCellValueFactory(new PropertyValueFactory<>("author"));
-        isbnColumn.setCellValueFactory(new PropertyValueFactory<>("isbn"));
-        publishedDateColumn.setCellValueFactory(cellData -> 
-            new SimpleObjectProperty<>(cellData.getValue().getPublishedDate()));
+        idColumn.setCellValueFactory(cellData -> cellData.getValue().idProperty());
+        titleColumn.setCellValueFactory(cellData -> cellData.getValue().titleProperty());
+        authorColumn.setCellValueFactory(cellData -> cellData.getValue().authorProperty());
+        isbnColumn.setCellValueFactory(cellData -> cellData.getValue().isbnProperty());
+        publishedDateColumn.setCellValueFactory(cellData -> cellData.getValue().publishedDateProperty());
         
         publishedDateColumn.setCellFactory(column -> new TableCell<>() {
             @Override
@@ -77,63 +268,335 @@ public class HelloController implements Initializable {
         });
     }
     
-    private void loadBooks() {
-        try {
-            bookList.clear();
+    /**
+     * Lets the rows see the search field, and keeps the form in step with changes from the
+     * server.
+     */
+    private void setupRows() {
+        rows.setView(new BookTableModel.View() {
+            @Override
+            public String getSearchText() {
+                return searchField.getText();
+            }
             
-            // If search field has text, use server-side search, otherwise get all books
-            String searchText = searchField.getText();
-            List<Book> books;
+            @Override
+            public void rowsRemoved(Set<Long> ids) {
+                if (selectedBook != null && ids.contains(selectedBook.getId())) {
+                    clearForm();
+                    selectedBook = null;
+                }
+            }
             
-            if (searchText != null && !searchText.trim().isEmpty()) {
-                // Use server-side search
-                books = bookService.searchBooks(searchText);
-            } else {
-                // Get all books
-                books = bookService.getAllBooks();
+            @Override
+            public void booksChanged(List<Book> books) {
+                // Show someone else's edit of the selected book unless the user has started changing it
+                for (Book book : books) {
+                    if (selectedBook != null && Objects.equals(book.getId(), selectedBook.getId())
+                            && !book.hasSameContent(selectedBook)) {
+                        boolean formUntouched = formShows(selectedBook);
+                        selectedBook = book.copy();
+                        if (formUntouched) {
+                            showDetails(book);
+                        }
+                    }
+                }
             }
             
-            if (books != null) {
-                bookList.setAll(books);
+            @Override
+            public void resyncNeeded() {
+                if (rows.canSyncInPlace()) {
+                    syncBooks();
+                } else {
+                    loadBooks();
+                }
+            }
+        });
+    }
+    
+    private void showLocalMatches(String searchText) {
+        searchMatches = searchText.isEmpty() ? null : rows.getIndex().search(searchText)::test;
+        applyFilters();
+    }
+    
+    /**
+     * Filters the rows by the local search and, unless sortedBooks applies them itself, the
+     * column filters.
+     */
+    private void applyFilters() {
+        Predicate<Book> predicate = searchMatches;
+        if (sortedBooks == null && !columnFilter.isEmpty()) {
+            predicate = predicate == null ? columnFilter : predicate.and(columnFilter);
+        }
+        filteredBooks.setPredicate(predicate);
+    }
+    
+    /**
+     * Filters the eager table by author and publication date whenever a filter field changes.
+     */
+    private void setupColumnFilters() {
+        InvalidationListener listener = observable -> {
+            columnFilter = new BookFilter(authorFilterField.getText(),
+                publishedFromPicker.getValue(), publishedToPicker.getValue());
+            if (sortedBooks != null) {
+                sortedBooks.setFilter(columnFilter);
             } else {
-                showAlert("Error", "Failed to load books. Please check your connection to the server.");
+                applyFilters();
             }
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            showAlert("Error", "An error occurred while loading books: " + e.getMessage());
-        } finally {
-            // Ensure the table is updated even if there's an error
-            bookTableView.refresh();
+        };
+        authorFilterField.textProperty().addListener(listener);
+        publishedFromPicker.valueProperty().addListener(listener);
+        publishedToPicker.valueProperty().addListener(listener);
+    }
+    
+    @FXML
+    private void handleClearFilters() {
+        authorFilterField.clear();
+        publishedFromPicker.setValue(null);
+        publishedToPicker.setValue(null);
+    }
+    
+    /**
+     * Shows the columnar list directly and lets it sort itself, since a SortedList on top would
+     * keep a Book for every row.
+     */
+    private void setupColumnarTable(ColumnarBookList columns) {
+        bookTableView.setItems(filteredBooks);
+        bookTableView.setSortPolicy(table -> {
+            columns.sortBy(ColumnarBookList.sortKeys(table.getSortOrder()));
+            return true;
+        });
+    }
+    
+    /**
+     * Shows the objects list through a SortedBookList, which sorts and applies the column
+     * filters on a background thread, and lets it sort by the table's sort order.
+     */
+    private void setupParallelTable() {
+        sortedBooks = new SortedBookList(filteredBooks);
+        bookTableView.setItems(sortedBooks);
+        bookTableView.setSortPolicy(table -> {
+            sortedBooks.sortBy(ColumnarBookList.sortKeys(table.getSortOrder()));
+            return true;
+        });
+    }
+    
+    private void setupLazyTable() {
+        LazyBookList lazyBookList = rows.getLazyRows();
+        bookTableView.setItems(lazyBookList);
+        // Sorting happens on the server, so the table only tells the list which order it wants
+        bookTableView.setSortPolicy(table -> {
+            lazyBookList.sortBy(LazyBookList.sortOrders(table.getSortOrder()));
+            return true;
+        });
+    }
+    
+    private void setupLoadingState() {
+        BooleanExpression busy = pendingLoads.greaterThan(0).or(loadingDetails);
+        if (sortedBooks != null) {
+            busy = busy.or(sortedBooks.sortingProperty());
+        }
+        loadingIndicator.visibleProperty().bind(busy);
+        refreshButton.disableProperty().bind(pendingLoads.greaterThan(0));
+        addButton.disableProperty().bind(saving.or(starting));
+        updateButton.disableProperty().bind(saving.or(starting));
+        deleteButton.disableProperty().bind(saving.or(starting));
+        importButton.disableProperty().bind(transferring.or(starting));
+        exportButton.disableProperty().bind(transferring.or(starting));
+        transferBox.visibleProperty().bind(transferring);
+        transferBox.managedProperty().bind(transferring);
+    }
+    
+    /**
+     * Opens the on-disk copy of the catalog, which the rows show until the server answers.
+     */
+    private void openLocalCatalog() {
+        if (!config.isLocalStoreEnabled()) {
+            return;
+        }
+        try {
+            localCatalog = LocalCatalog.open(bookService.getBookService(), config);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error opening the local catalog: " + e.getMessage(), e);
+            return;
+        }
+        
+        localCatalog.setStatusListener(() -> Platform.runLater(this::showOfflineStatus));
+        // Books created offline have their real ids now
+        localCatalog.setReplayListener(() -> Platform.runLater(this::loadBooks));
+        showOfflineStatus();
+    }
+    
+    private void showOfflineStatus() {
+        int pending = localCatalog.getPendingCount();
+        boolean offline = localCatalog.isOffline();
+        String text = offline ? "Offline" : "";
+        if (pending > 0) {
+            text += (offline ? " - " : "") + pending + (pending == 1 ? " change" : " changes") + " waiting to be sent";
+        }
+        offlineLabel.setText(text);
+        offlineLabel.setVisible(!text.isEmpty());
+    }
+    
+    private void loadBooks() {
+        searchPipeline.submitNow(searchField.getText());
+    }
+    
+    /**
+     * Runs one search for the {@link SearchPipeline}. Pages of a search that has since been
+     * superseded are dropped.
+     */
+    private CompletableFuture<Long> loadBooks(String searchText, long sequence) {
+        LazyBookList lazyBookList = rows.getLazyRows();
+        if (lazyBookList != null) {
+            lazyBookList.load(searchText);
+            return CompletableFuture.completedFuture((long) lazyBookList.size());
+        }
+        if (rows.hasWholeCatalog()) {
+            showLocalMatches(searchText);
+            return CompletableFuture.completedFuture((long) filteredBooks.size());
+        }
+        
+        // With the local index, Refresh reloads the whole catalog and filters it here
+        String serverQuery = rows.serverQuery(searchText);
+        if (rows.getIndex() != null && serverQuery.isEmpty()) {
+            showLocalMatches(searchText);
+        } else {
+            searchMatches = null;
+            applyFilters();
         }
+        
+        CompletableFuture<Long> request = rows.load(serverQuery, () -> searchPipeline.isCurrent(sequence));
+        pendingLoads.set(pendingLoads.get() + 1);
+        request.whenComplete((count, error) -> {
+            pendingLoads.set(pendingLoads.get() - 1);
+            firstLoadDone();
+            if (request.isCancelled() || !searchPipeline.isCurrent(sequence)) {
+                return;
+            }
+            if (error != null && localCatalog != null && localCatalog.reportFailure(error)) {
+                // The server can't be reached: show what we have instead
+                rows.showLocalBooks(searchText, () -> searchPipeline.isCurrent(sequence));
+            } else if (error != null) {
+                LOG.log(Level.WARNING, "Loading books failed", error);
+                showAlert("Error", "Failed to load books. Please check your connection to the server.\n" + rootMessage(error));
+            }
+        });
+        return request;
     }
     
     @FXML
     private void refreshBooks() {
+        if (rows.canSyncInPlace()) {
+            // Keeps the rows, scroll position and selection that didn't change
+            syncBooks();
+            return;
+        }
+        rows.requestReload();
         loadBooks();
         clearForm();
         selectedBook = null;
     }
     
+    /**
+     * Asks the server what changed since the table was loaded and applies just that.
+     */
+    private void syncBooks() {
+        pendingLoads.set(pendingLoads.get() + 1);
+        rows.sync().whenComplete((result, error) -> {
+            pendingLoads.set(pendingLoads.get() - 1);
+            if (error != null && (localCatalog == null || !localCatalog.reportFailure(error))) {
+                LOG.log(Level.WARNING, "Refreshing books failed", error);
+                showAlert("Error", "Failed to refresh books. Please check your connection to the server.\n" + rootMessage(error));
+            }
+        });
+    }
+    
     private void setupTableSelection() {
+        revalidateTimer = new PauseTransition(Duration.millis(config.getSelectionRevalidateDelayMillis()));
+        revalidateTimer.setOnFinished(event -> revalidateSelection());
+        
         bookTableView.getSelectionModel().selectedItemProperty().addListener(
             (observable, oldValue, newValue) -> {
+                if (newValue != null && selectedBook != null && Objects.equals(newValue.getId(), selectedBook.getId())) {
+                    // Still the same book: its row was replaced, e.g. by its revalidated version,
+                    // or re-read from the columnar list, and whoever replaced it updated the form
+                    return;
+                }
+                // A newer selection supersedes any details request still in flight
+                if (detailsRequest != null) {
+                    detailsRequest.cancel(true);
+                    detailsRequest = null;
+                }
+                loadingDetails.set(false);
                 if (newValue != null) {
-                    // Fetch the latest data from the server when a book is selected
-                    Book updatedBook = bookService.getBookById(newValue.getId());
-                    if (updatedBook != null) {
-                        selectedBook = updatedBook;
-                        titleField.setText(updatedBook.getTitle());
-                        authorField.setText(updatedBook.getAuthor());
-                        isbnField.setText(updatedBook.getIsbn());
-                        publishedDatePicker.setValue(updatedBook.getPublishedDate());
-                    } else {
-                        showAlert("Error", "Could not fetch book details. Please try again.");
-                    }
+                    // Show what we already know straight away
+                    Book cached = bookService.getCachedBook(newValue.getId());
+                    showDetails(cached != null ? cached : newValue);
+                    // Check with the server once the selection stops moving
+                    revalidateTimer.playFromStart();
+                } else {
+                    revalidateTimer.stop();
                 }
             });
     }
     
+    /**
+     * Fetches the latest version of the selected book and updates the form and row if it
+     * changed on the server.
+     */
+    private void revalidateSelection() {
+        Book shown = selectedBook;
+        if (shown == null || shown.getId() == null) {
+            return;
+        }
+        
+        CompletableFuture<ServiceResult<Book>> request = bookService.getBookById(shown.getId());
+        detailsRequest = request;
+        loadingDetails.set(true);
+        request.whenComplete((result, error) -> {
+            if (request.isCancelled() || request != detailsRequest) {
+                return;
+            }
+            detailsRequest = null;
+            loadingDetails.set(false);
+            if (error != null || !result.isSuccess()) {
+                showAlert("Error", failureMessage("Could not fetch book details.", result, error));
+                return;
+            }
+            Book latest = result.getValue();
+            if (latest == null) {
+                // Deleted on the server since it was listed
+                rows.remove(Set.of(shown.getId()));
+                clearForm();
+                selectedBook = null;
+                showAlert("Book Deleted", "This book no longer exists on the server.");
+            } else if (!latest.hasSameContent(shown)) {
+                // Don't overwrite anything the user has started typing
+                boolean formUntouched = formShows(shown);
+                selectedBook = latest.copy();
+                if (formUntouched) {
+                    showDetails(latest);
+                }
+                rows.replace(latest);
+            }
+        });
+    }
+    
+    private void showDetails(Book book) {
+        selectedBook = book.copy();
+        titleField.setText(book.getTitle());
+        authorField.setText(book.getAuthor());
+        isbnField.setText(book.getIsbn());
+        publishedDatePicker.setValue(book.getPublishedDate());
+    }
+    
+    private boolean formShows(Book book) {
+        return Objects.equals(titleField.getText(), book.getTitle())
+            && Objects.equals(authorField.getText(), book.getAuthor())
+            && Objects.equals(isbnField.getText(), book.getIsbn())
+            && Objects.equals(publishedDatePicker.getValue(), book.getPublishedDate());
+    }
+    
     @FXML
     private void handleAddBook() {
         if (validateInput()) {
@@ -144,33 +607,55 @@ public class HelloController implements Initializable {
                 publishedDatePicker.getValue()
             );
             
-            Book createdBook = bookService.createBook(book);
-            if (createdBook != null) {
-                bookList.add(createdBook);
-                clearForm();
-                showAlert("Success", "Book added successfully!");
-            } else {
-                showAlert("Error", "Failed to add book.");
-            }
+            saving.set(true);
+            rows.create(book).whenComplete((result, error) -> {
+                saving.set(false);
+                Book createdBook = error == null && result.isSuccess() ? result.getValue() : null;
+                if (createdBook != null) {
+                    clearForm();
+                    if (LocalCatalog.isLocalId(createdBook.getId())) {
+                        showAlert("Saved Offline", "The server can't be reached. The book was saved and will be added once it can.");
+                    } else {
+                        showAlert("Success", "Book added successfully!");
+                    }
+                } else {
+                    showAlert("Error", failureMessage("Failed to add book.", result, error));
+                }
+            });
         }
     }
     
     @FXML
     private void handleUpdateBook() {
-        if (selectedBook != null && validateInput()) {
-            selectedBook.setTitle(titleField.getText());
-            selectedBook.setAuthor(authorField.getText());
-            selectedBook.setIsbn(isbnField.getText());
-            selectedBook.setPublishedDate(publishedDatePicker.getValue());
-            
-            if (bookService.updateBook(selectedBook)) {
-                bookTableView.refresh();
-                clearForm();
-                selectedBook = null;
-                showAlert("Success", "Book updated successfully!");
-            } else {
-                showAlert("Error", "Failed to update book.");
+        List<Book> selection = new ArrayList<>();
+        for (Book book : bookTableView.getSelectionModel().getSelectedItems()) {
+            if (book != null && book.getId() != null) {
+                selection.add(book);
             }
+        }
+        if (selection.size() > 1 && selectedBook != null) {
+            updateBooks(selection);
+        } else if (selectedBook != null && validateInput()) {
+            // Send a copy so the selected book stays untouched if the update fails
+            Book book = new Book(
+                titleField.getText(),
+                authorField.getText(),
+                isbnField.getText(),
+                publishedDatePicker.getValue()
+            );
+            book.setId(selectedBook.getId());
+            
+            saving.set(true);
+            rows.update(book).whenComplete((result, error) -> {
+                saving.set(false);
+                if (error == null && result.isSuccess()) {
+                    clearForm();
+                    selectedBook = null;
+                    showAlert("Success", savedMessage("Book updated successfully!"));
+                } else {
+                    showAlert("Error", failureMessage("Failed to update book.", result, error));
+                }
+            });
         } else {
             showAlert("No Selection", "Please select a book to update.");
         }
@@ -178,49 +663,335 @@ public class HelloController implements Initializable {
     
     @FXML
     private void handleDeleteBook() {
-        if (selectedBook != null) {
-            if (bookService.deleteBook(selectedBook.getId())) {
-                bookList.remove(selectedBook);
-                clearForm();
-                selectedBook = null;
-                showAlert("Success", "Book deleted successfully!");
-            } else {
-                showAlert("Error", "Failed to delete book.");
+        List<Long> selectedIds = new ArrayList<>();
+        for (Book book : bookTableView.getSelectionModel().getSelectedItems()) {
+            if (book != null && book.getId() != null) {
+                selectedIds.add(book.getId());
             }
+        }
+        if (selectedIds.size() > 1) {
+            deleteBooks(selectedIds);
+        } else if (selectedBook != null) {
+            Long id = selectedBook.getId();
+            saving.set(true);
+            rows.delete(id).whenComplete((result, error) -> {
+                saving.set(false);
+                if (error == null && result.isSuccess()) {
+                    clearForm();
+                    selectedBook = null;
+                    showAlert("Success", savedMessage("Book deleted successfully!"));
+                } else {
+                    showAlert("Error", failureMessage("Failed to delete book.", result, error));
+                }
+            });
         } else {
             showAlert("No Selection", "Please select a book to delete.");
         }
     }
     
+    /**
+     * Gives every selected book the author and published date the form was changed to. Titles
+     * and ISBNs belong to one book, so they can't be changed for several at once.
+     */
+    private void updateBooks(List<Book> selection) {
+        boolean authorChanged = !Objects.equals(authorField.getText(), selectedBook.getAuthor());
+        boolean dateChanged = !Objects.equals(publishedDatePicker.getValue(), selectedBook.getPublishedDate());
+        if (!Objects.equals(titleField.getText(), selectedBook.getTitle())
+                || !Objects.equals(isbnField.getText(), selectedBook.getIsbn())) {
+            showAlert("Several Books Selected", "The title and ISBN can only be changed one book at a time.");
+            return;
+        }
+        if (!authorChanged && !dateChanged) {
+            showAlert("Several Books Selected", "Change the author or published date to give it to all "
+                + selection.size() + " selected books.");
+            return;
+        }
+        if (!validateInput()) {
+            return;
+        }
+        
+        List<Book> books = new ArrayList<>(selection.size());
+        for (Book selected : selection) {
+            Book book = new Book(selected.getTitle(),
+                authorChanged ? authorField.getText() : selected.getAuthor(),
+                selected.getIsbn(),
+                dateChanged ? publishedDatePicker.getValue() : selected.getPublishedDate());
+            book.setId(selected.getId());
+            books.add(book);
+        }
+        
+        saving.set(true);
+        rows.updateAll(books).whenComplete((result, error) -> {
+            saving.set(false);
+            if (error != null) {
+                showAlert("Error", "Failed to update books: " + rootMessage(error));
+                return;
+            }
+            clearForm();
+            selectedBook = null;
+            if (result.getFailureCount() == 0) {
+                showAlert("Success", savedMessage(result.getSuccessCount() + " books updated successfully!"));
+            } else {
+                showAlert("Partially Completed", result.getSuccessCount() + " books updated, "
+                    + result.getFailureCount() + " failed:\n" + describeFailures(result, books));
+            }
+        });
+    }
+    
+    private void deleteBooks(List<Long> ids) {
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("Delete Books");
+        confirm.setHeaderText(null);
+        confirm.setContentText("Delete the " + ids.size() + " selected books?");
+        if (confirm.showAndWait().filter(ButtonType.OK::equals).isEmpty()) {
+            return;
+        }
+        
+        saving.set(true);
+        rows.deleteAll(ids).whenComplete((result, error) -> {
+            saving.set(false);
+            if (error != null) {
+                showAlert("Error", "Failed to delete books: " + rootMessage(error));
+                return;
+            }
+            clearForm();
+            selectedBook = null;
+            if (result.getFailureCount() == 0) {
+                showAlert("Success", savedMessage(result.getSuccessCount() + " books deleted successfully!"));
+            } else {
+                showAlert("Partially Completed", result.getSuccessCount() + " books deleted, "
+                    + result.getFailureCount() + " failed:\n" + describeFailures(result, ids));
+            }
+        });
+    }
+    
     @FXML
-    private void handleRefresh() {
-        refreshBooks();
+    private void handleImport() {
+        File file = bookFileChooser("Import Books").showOpenDialog(bookTableView.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        
+        BookImporter importer = new BookImporter(bookService.getBookService());
+        TransferListener listener = startTransfer("Importing " + file.getName() + "...");
+        CompletableFuture<BookImporter.Report> request =
+            bookService.submit(() -> importer.importFile(file.toPath(), listener));
+        transfer = request;
+        request.whenComplete((report, error) -> {
+            transferring.set(false);
+            // Even a failed or cancelled import may have added books
+            loadBooks();
+            if (error instanceof CancellationException) {
+                showAlert("Import Cancelled", "The import was cancelled. Books sent before that were imported.");
+            } else if (error != null) {
+                LOG.log(Level.WARNING, "Importing " + file + " failed", error);
+                showAlert("Error", "Failed to import " + file.getName() + ": " + rootMessage(error));
+            } else {
+                String summary = String.format("%,d records read: %,d imported, %,d rejected, %,d failed.",
+                    report.getRecordsRead(), report.getImported(), report.getRejected(), report.getFailed());
+                if (!report.getProblems().isEmpty()) {
+                    summary += "\n\n" + String.join("\n", report.getProblems());
+                }
+                showAlert("Import Finished", summary);
+            }
+        });
     }
     
-    private boolean validateInput() {
-        String errorMessage = "";
+    @FXML
+    private void handleExport() {
+        FileChooser chooser = bookFileChooser("Export Books");
+        chooser.setInitialFileName("books.csv");
+        File file = chooser.showSaveDialog(bookTableView.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        BookFileFormat format = BookFileFormat.fromFileName(file.getName());
+        if (format == null) {
+            // Use the format picked in the dialog when the name has no known extension
+            FileChooser.ExtensionFilter filter = chooser.getSelectedExtensionFilter();
+            format = filter != null ? BookFileFormat.fromFileName(filter.getExtensions().get(0)) : BookFileFormat.CSV;
+        }
         
-        if (titleField.getText() == null || titleField.getText().trim().isEmpty()) {
-            errorMessage += "Title is required!\n";
+        BookExporter exporter = new BookExporter(bookService.getBookService());
+        BookFileFormat exportFormat = format;
+        TransferListener listener = startTransfer("Exporting to " + file.getName() + "...");
+        CompletableFuture<Long> request =
+            bookService.submit(() -> exporter.exportFile(file.toPath(), exportFormat, listener));
+        transfer = request;
+        request.whenComplete((count, error) -> {
+            transferring.set(false);
+            if (error instanceof CancellationException) {
+                showAlert("Export Cancelled", "The export was cancelled.");
+            } else if (error != null) {
+                LOG.log(Level.WARNING, "Exporting books failed", error);
+                showAlert("Error", "Failed to export books: " + rootMessage(error));
+            } else {
+                showAlert("Export Finished", String.format("%,d books exported to %s.", count, file.getName()));
+            }
+        });
+    }
+    
+    @FXML
+    private void handleCancelTransfer() {
+        if (transfer != null) {
+            transfer.cancel(true);
         }
-        if (authorField.getText() == null || authorField.getText().trim().isEmpty()) {
-            errorMessage += "Author is required!\n";
+    }
+    
+    private static FileChooser bookFileChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        for (BookFileFormat format : BookFileFormat.values()) {
+            List<String> patterns = new ArrayList<>();
+            for (String extension : format.getExtensions()) {
+                patterns.add("*." + extension);
+            }
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(format.getDescription(), patterns));
         }
-        if (isbnField.getText() == null || isbnField.getText().trim().isEmpty()) {
-            errorMessage += "ISBN is required!\n";
+        return chooser;
+    }
+    
+    /**
+     * Shows the transfer progress bar and returns a listener that updates it. Updates arriving
+     * faster than the FX thread can show them are coalesced, so only the newest one is drawn.
+     */
+    private TransferListener startTransfer(String message) {
+        transferProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        transferStatus.setText(message);
+        transferring.set(true);
+        
+        AtomicReference<Runnable> latest = new AtomicReference<>();
+        return (fraction, progressMessage) -> {
+            Runnable update = () -> {
+                transferProgress.setProgress(fraction < 0 ? ProgressBar.INDETERMINATE_PROGRESS : fraction);
+                transferStatus.setText(progressMessage);
+            };
+            if (latest.getAndSet(update) == null) {
+                Platform.runLater(() -> latest.getAndSet(null).run());
+            }
+        };
+    }
+    
+    private static String describeFailures(BatchResult<?> result, List<?> inputs) {
+        StringBuilder message = new StringBuilder();
+        int shown = 0;
+        for (BatchResult.Item<?> item : result.getItems()) {
+            if (item != null && !item.isSuccess() && shown++ < 10) {
+                message.append(inputs.get(item.getIndex())).append(": ").append(item.getError()).append('\n');
+            }
         }
-        if (publishedDatePicker.getValue() == null) {
-            errorMessage += "Published date is required!\n";
+        if (shown > 10) {
+            message.append("... and ").append(shown - 10).append(" more");
         }
+        return message.toString();
+    }
+    
+    @FXML
+    private void handleRefresh() {
+        refreshBooks();
+    }
+    
+    private boolean validateInput() {
+        List<String> errors = BookValidator.validate(
+            titleField.getText(),
+            authorField.getText(),
+            isbnField.getText(),
+            publishedDatePicker.getValue()
+        );
         
-        if (errorMessage.isEmpty()) {
+        if (errors.isEmpty()) {
             return true;
         } else {
-            showAlert("Invalid Fields", errorMessage);
+            showAlert("Invalid Fields", String.join("\n", errors));
             return false;
         }
     }
     
+    private String savedMessage(String message) {
+        if (localCatalog != null && localCatalog.isOffline()) {
+            return message + "\nThe server can't be reached, so the change will be sent once it can.";
+        }
+        return message;
+    }
+    
+    /**
+     * {@code summary} followed by why the call failed, either as a failed result or with an
+     * error from the future itself.
+     */
+    private static String failureMessage(String summary, ServiceResult<?> result, Throwable error) {
+        if (error != null) {
+            return summary + "\n" + rootMessage(error);
+        }
+        if (result.isSuccess()) {
+            return summary;
+        }
+        if (result.isUnreachable()) {
+            return summary + " The server can't be reached.\n" + result.getErrorMessage();
+        }
+        return summary + "\n" + result.getErrorMessage();
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+    
+    /**
+     * Hooks the main window's scene up: the watchdog times its pulses, and Ctrl+Shift+D
+     * (Cmd+Shift+D on macOS) opens the diagnostics window, unless it was turned off. The
+     * service ready, first rows and first load milestones are marked on {@code startupTimer},
+     * which may be {@code null}.
+     */
+    public void attachScene(Scene scene, StartupTimer startupTimer) {
+        this.startupTimer = startupTimer;
+        if (watchdog != null) {
+            watchdog.watch(scene);
+        }
+        if (config.isDiagnosticsPanelEnabled()) {
+            scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.D, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN),
+                this::showDiagnostics);
+        }
+    }
+
+    private void showDiagnostics() {
+        if (diagnosticsWindow == null) {
+            diagnosticsWindow = new DiagnosticsWindow(metrics, watchdog,
+                bookTableView.getScene().getWindow());
+        }
+        diagnosticsWindow.show();
+    }
+
+    /**
+     * Stops background work. Called by {@link HelloApplication} when the application exits.
+     */
+    public void shutdown() {
+        if (watchdog != null) {
+            watchdog.stop();
+        }
+        if (diagnosticsWindow != null) {
+            diagnosticsWindow.close();
+        }
+        if (searchPipeline != null) {
+            searchPipeline.cancel();
+        }
+        if (transfer != null) {
+            transfer.cancel(true);
+        }
+        rows.close();
+        if (localCatalog != null) {
+            localCatalog.close();
+        }
+        if (sortedBooks != null) {
+            sortedBooks.close();
+        }
+        // Closes the service once it's built, if it's still being built
+        services.thenAccept(AsyncBookService::close);
+    }
+    
     private void clearForm() {
         titleField.clear();
         authorField.clear();
@@ -0,0 +1,260 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+import ekene.dian.librarydemofx.service.AsyncBookService;
+import ekene.dian.librarydemofx.service.BookService;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.TableColumn;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A read-only list of books for the {@code TableView} that is backed by server pages.
+ *
+ * The list reports the server's {@code totalElements} as its size but only keeps the most recently
+ * used pages in memory. Asking for a row whose page is not resident returns {@code null} (rendered
+ * as an empty row) and fetches the page in the background; when it arrives the affected rows are
+ * replaced so the table repaints them. Sorting is done by the server.
+ *
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class LazyBookList extends ObservableListBase<Book> {
+    private static final Logger LOG = System.getLogger(LazyBookList.class.getName());
+
+    private final AsyncBookService bookService;
+    private final int pageSize;
+    private final int maxResidentPages;
+
+    // Access-ordered, so iteration starts at the least recently used page
+    private final LinkedHashMap<Integer, List<Book>> residentPages = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, CompletableFuture<PageResponse<Book>>> pendingPages = new LinkedHashMap<>();
+    // Pages dropped by reload() whose rows listeners still think are shown, until a change replaces them
+    private Map<Integer, List<Book>> replacedPages = new HashMap<>();
+
+    private int size;
+    private int generation;
+    private String query = "";
+    private List<String> sort = Collections.emptyList();
+    private Consumer<Throwable> errorHandler = error -> LOG.log(Level.WARNING, "Loading a page failed", error);
+
+    public LazyBookList(AsyncBookService bookService, int pageSize, int maxResidentPages) {
+        this.bookService = bookService;
+        this.pageSize = Math.max(1, pageSize);
+        this.maxResidentPages = Math.max(2, maxResidentPages);
+    }
+
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book get(int index) {
+        Objects.checkIndex(index, size);
+        int page = index / pageSize;
+        List<Book> content = residentPages.get(page);
+        if (content == null) {
+            requestPage(page);
+            return null;
+        }
+        // Read ahead so that scrolling forward rarely shows empty rows
+        int offset = index % pageSize;
+        if (offset >= pageSize / 2 && (page + 1) * pageSize < size && !residentPages.containsKey(page + 1)) {
+            requestPage(page + 1);
+        }
+        return offset < content.size() ? content.get(offset) : null;
+    }
+
+    /**
+     * Drops every resident page and starts over with a new search query. An empty query lists
+     * the whole catalog.
+     */
+    public void load(String query) {
+        this.query = query == null ? "" : query.trim();
+        reload();
+    }
+
+    /**
+     * Changes the server-side sort order and starts over, unless the order is unchanged.
+     */
+    public void sortBy(List<String> sort) {
+        if (!sort.equals(this.sort)) {
+            this.sort = List.copyOf(sort);
+            reload();
+        }
+    }
+
+    /**
+     * Refetches the current view, keeping the query and sort order.
+     */
+    public void reload() {
+        generation++;
+        for (CompletableFuture<PageResponse<Book>> pending : pendingPages.values()) {
+            pending.cancel(true);
+        }
+        pendingPages.clear();
+        residentPages.forEach(replacedPages::putIfAbsent);
+        residentPages.clear();
+        // Fetch the first page before showing anything so the size is known
+        requestPage(0);
+    }
+
+    /**
+     * Replaces a resident row in place, e.g. after a successful update, without refetching.
+     */
+    public void replace(Book book) {
+        for (Map.Entry<Integer, List<Book>> entry : residentPages.entrySet()) {
+            List<Book> content = entry.getValue();
+            for (int i = 0; i < content.size(); i++) {
+                if (Objects.equals(content.get(i).getId(), book.getId())) {
+                    Book old = content.set(i, book);
+                    int index = entry.getKey() * pageSize + i;
+                    if (index < size) {
+                        beginChange();
+                        nextSet(index, old);
+                        endChange();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds Spring Data sort orders from the table's current sort columns.
+     */
+    public static List<String> sortOrders(List<? extends TableColumn<Book, ?>> sortOrder) {
+        List<String> orders = new ArrayList<>();
+        for (TableColumn<Book, ?> column : sortOrder) {
+            String property = column.getId() != null ? sortProperty(column.getId()) : null;
+            if (property != null) {
+                String direction = column.getSortType() == TableColumn.SortType.DESCENDING ? "desc" : "asc";
+                orders.add(property + "," + direction);
+            }
+        }
+        return orders;
+    }
+
+    private static String sortProperty(String columnId) {
+        // Column ids follow the fx:id naming in hello-view.fxml, e.g. "titleColumn"
+        return columnId.endsWith("Column") ? columnId.substring(0, columnId.length() - "Column".length()) : null;
+    }
+
+    private void requestPage(int page) {
+        if (pendingPages.containsKey(page)) {
+            return;
+        }
+        // Fast scrolling requests many pages; only the most recent ones are still worth loading
+        if (pendingPages.size() >= maxResidentPages) {
+            Iterator<CompletableFuture<PageResponse<Book>>> oldest = pendingPages.values().iterator();
+            oldest.next().cancel(true);
+            oldest.remove();
+        }
+
+        int requestGeneration = generation;
+        BookService service = bookService.getBookService();
+        String pageQuery = query;
+        List<String> pageSort = sort;
+        CompletableFuture<PageResponse<Book>> request = bookService.submit(() -> pageQuery.isEmpty()
+            ? service.getBooksPage(page, pageSize, pageSort)
+            : service.searchBooksPage(pageQuery, page, pageSize, pageSort));
+        pendingPages.put(page, request);
+
+        request.whenComplete((response, error) -> {
+            if (request.isCancelled() || requestGeneration != generation) {
+                return;
+            }
+            pendingPages.remove(page);
+            if (error != null) {
+                errorHandler.accept(error);
+            } else {
+                pageArrived(page, response);
+            }
+        });
+    }
+
+    private void pageArrived(int page, PageResponse<Book> response) {
+        List<Book> content = new ArrayList<>(response.getContent());
+        List<Book> shown = shownRows(page, residentPages.put(page, content));
+        evictPages();
+
+        int newSize = (int) Math.min(Integer.MAX_VALUE - 1, Math.max(0, response.getTotalElements()));
+        if (response.getTotalElements() == 0 && !content.isEmpty()) {
+            // Server didn't report a total; trust what we were given
+            newSize = page * pageSize + content.size();
+        }
+
+        beginChange();
+        if (newSize != size) {
+            // The result set changed shape (new query, new sort or concurrent edits), so replace everything
+            replacedPages = new HashMap<>();
+            size = newSize;
+            nextReplace(0, size, shown);
+        } else {
+            int from = page * pageSize;
+            int to = Math.min(size, from + content.size());
+            replacedPages.remove(page);
+            if (from < to) {
+                nextReplace(from, to, shown.subList(from, to));
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * The rows as listeners were last told about them, before {@code page} arrived with new
+     * content in place of {@code previous}, for reporting them as removed. Rows of pages that
+     * were never loaded, or were evicted since, are the {@code null} placeholders get() returns
+     * for them.
+     */
+    private List<Book> shownRows(int page, List<Book> previous) {
+        Map<Integer, List<Book>> pages = new HashMap<>(residentPages);
+        pages.putAll(replacedPages);
+        List<Book> old = replacedPages.containsKey(page) ? replacedPages.get(page) : previous;
+        if (old == null) {
+            pages.remove(page);
+        } else {
+            pages.put(page, old);
+        }
+        int count = size;
+        return new AbstractList<>() {
+            @Override
+            public Book get(int index) {
+                Objects.checkIndex(index, count);
+                List<Book> rows = pages.get(index / pageSize);
+                int offset = index % pageSize;
+                return rows != null && offset < rows.size() ? rows.get(offset) : null;
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private void evictPages() {
+        Iterator<Integer> leastRecentlyUsed = residentPages.keySet().iterator();
+        while (residentPages.size() > maxResidentPages && leastRecentlyUsed.hasNext()) {
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.model.Book;
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * An observable list of {@code Book} objects whose rows can be changed in place.
+ *
+ * {@link #updateById} copies new field values onto the books already in the list instead of
+ * replacing them. Table cells are bound to a book's properties, so they repaint without being
+ * bound again, and a book's properties, once a cell has created them, aren't created again for
+ * its replacement. The rows are reported as updated, which {@code FilteredList}, {@code SortedList}
+ * and {@link SortedBookList} take as a cue to filter and place them again.
+ *
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class ObjectBookList extends ModifiableObservableListBase<Book> {
+    private final List<Book> books = new ArrayList<>();
+
+    @Override
+    public Book get(int index) {
+        return books.get(index);
+    }
+
+    @Override
+    public int size() {
+        return books.size();
+    }
+
+    /**
+     * Gives the books in the list with the same ids the field values of {@code changed}, as one
+     * change. Books whose values are the same already are left alone.
+     *
+     * @return the books that have no row yet
+     */
+    public List<Book> updateById(Collection<? extends Book> changed) {
+        Map<Long, Book> byId = new HashMap<>();
+        for (Book book : changed) {
+            byId.put(book.getId(), book);
+        }
+
+        beginChange();
+        for (int i = 0; i < books.size() && !byId.isEmpty(); i++) {
+            Book book = books.get(i);
+            Book values = byId.remove(book.getId());
+            if (values != null && values != book && !book.hasSameContent(values)) {
+                book.copyFrom(values);
+                nextUpdate(i);
+            }
+        }
+        endChange();
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * Removes the books {@code filter} accepts in one pass over the list.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Book> filter) {
+        int size = books.size();
+        int kept = 0;
+        beginChange();
+        for (int i = 0; i < size; i++) {
+            Book book = books.get(i);
+            if (filter.test(book)) {
+                // Positions are reported as of after the earlier removals
+                nextRemove(kept, book);
+            } else {
+                books.set(kept++, book);
+            }
+        }
+        books.subList(kept, size).clear();
+        endChange();
+        return kept != size;
+    }
+
+    @Override
+    protected void doAdd(int index, Book element) {
+        books.add(index, element);
+    }
+
+    @Override
+    protected Book doSet(int index, Book element) {
+        return books.set(index, element);
+    }
+
+    @Override
+    protected Book doRemove(int index) {
+        return books.remove(index);
+    }
+
+    // The default removes one row at a time, each shifting the rest: quadratic for clear()
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex == toIndex) {
+            return;
+        }
+        List<Book> range = books.subList(fromIndex, toIndex);
+        beginChange();
+        nextRemove(fromIndex, new ArrayList<>(range));
+        range.clear();
+        endChange();
+    }
+}
@@ -0,0 +1,125 @@
+package ekene.dian.librarydemofx;
+
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Turns search field edits into backend searches.
+ *
+ * Edits are debounced, so a burst of keystrokes produces one search once typing pauses. Starting
+ * a search cancels the one in flight, and each search gets a sequence number so callbacks can
+ * check {@link #isCurrent(long)} before touching the UI; a late response for an older query is
+ * therefore never applied over a newer one. A query identical to the one already running or
+ * displayed is not sent again.
+ *
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class SearchPipeline {
+
+    @FunctionalInterface
+    public interface Search {
+        /**
+         * Starts a search for {@code query}; an empty query means "everything". The returned
+         * future is cancelled if a newer search supersedes it.
+         */
+        CompletableFuture<?> run(String query, long sequence);
+    }
+
+    private final Search search;
+    private final int minLength;
+    private final PauseTransition debounceTimer;
+
+    private BooleanSupplier immediate = () -> false;
+    private String pendingQuery = "";
+    private String activeQuery;
+    private CompletableFuture<?> inFlight;
+    private long sequence;
+
+    public SearchPipeline(Search search, long debounceMillis, int minLength) {
+        this.search = search;
+        this.minLength = minLength;
+        this.debounceTimer = new PauseTransition(Duration.millis(Math.max(0, debounceMillis)));
+        this.debounceTimer.setOnFinished(event -> start(pendingQuery, false));
+    }
+
+    /**
+     * Searches that are cheap while {@code immediate} holds, e.g. because they run locally, skip
+     * the debounce and the minimum length.
+     */
+    public void setImmediate(BooleanSupplier immediate) {
+        this.immediate = immediate;
+    }
+
+    /**
+     * Call on every edit of the search text. Queries shorter than the minimum length (other than
+     * an empty one) are ignored until the user types more.
+     */
+    public void queryChanged(String text) {
+        String query = normalize(text);
+        if (immediate.getAsBoolean()) {
+            debounceTimer.stop();
+            pendingQuery = query;
+            start(query, false);
+            return;
+        }
+        if (!query.isEmpty() && query.length() < minLength) {
+            debounceTimer.stop();
+            return;
+        }
+        pendingQuery = query;
+        debounceTimer.playFromStart();
+    }
+
+    /**
+     * Runs a search right away, skipping the debounce and re-running even an identical query.
+     * Used for the initial load and the Refresh button.
+     */
+    public void submitNow(String text) {
+        debounceTimer.stop();
+        pendingQuery = normalize(text);
+        start(pendingQuery, true);
+    }
+
+    /**
+     * Whether {@code sequence} belongs to the most recently started search.
+     */
+    public boolean isCurrent(long sequence) {
+        return sequence == this.sequence;
+    }
+
+    public void cancel() {
+        debounceTimer.stop();
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+        sequence++;
+    }
+
+    private void start(String query, boolean force) {
+        if (!force && query.equals(activeQuery)) {
+            // Same query as the one running or already on screen
+            return;
+        }
+        if (inFlight != null) {
+            inFlight.cancel(true);
+        }
+        long current = ++sequence;
+        activeQuery = query;
+        CompletableFuture<?> request = search.run(query, current);
+        inFlight = request;
+        request.whenComplete((result, error) -> {
+            if (error != null && isCurrent(current)) {
+                // Let the same query be retried after a failure
+                activeQuery = null;
+            }
+        });
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,589 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.ColumnarBookList.SortKey;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.service.BookIndex;
+import ekene.dian.librarydemofx.service.ServiceExecutors;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * A sorted and filtered view of a list of books that sorts and filters off the JavaFX
+ * Application Thread, for tables of hundreds of thousands of rows.
+ *
+ * A pass snapshots the source and, on a thread of its own, works out each book's keys in
+ * parallel: collation keys for title and author, the id and publication date as primitives and
+ * the folded author for {@link BookFilter}. Keys are kept for the books a pass has seen and only
+ * worked out again for books that are new or changed. The rows are then filtered with a parallel
+ * stream and sorted with {@link Arrays#parallelSort}, both on the common fork-join pool, and the
+ * result is published on the FX thread as a single change: a permutation when the same books are
+ * shown, otherwise a replacement of every row. Until then the list keeps showing the previous
+ * result, and changes arriving meanwhile start one more pass once it ends.
+ *
+ * Small changes to the source, such as a book added, edited or deleted, don't need a pass: the
+ * rows are removed, and inserted where a binary search places them in the sort order, on the FX
+ * thread. A book updated in place is taken out and put back the same way. Unsorted, only rows
+ * added at the end of the source, replacing a shown row or updating one are placed that way.
+ *
+ * Title and author are compared with a {@link Collator} for the default locale, so accented and
+ * capitalized names sort with their plain lower-case forms rather than after "z".
+ *
+ * All methods must be called on the JavaFX Application Thread, or the thread given as owner.
+ */
+public class SortedBookList extends ObservableListBase<Book> {
+    private static final Logger LOG = System.getLogger(SortedBookList.class.getName());
+    private static final long NO_ID = Long.MIN_VALUE;
+    // Up to this many rows added and removed by one change are put in place without a pass
+    private static final int SMALL_CHANGE = 64;
+    private static final Row[] NO_ROWS = new Row[0];
+    // A Collator must not be shared between threads
+    private static final ThreadLocal<Collator> COLLATOR = ThreadLocal.withInitial(Collator::getInstance);
+
+    private final ObservableList<Book> source;
+    private final Executor owner;
+    private final ExecutorService executor =
+        Executors.newSingleThreadExecutor(ServiceExecutors.daemonThreadFactory("book-sort"));
+    private final ReadOnlyBooleanWrapper sorting = new ReadOnlyBooleanWrapper(this, "sorting");
+
+    private Row[] rows = NO_ROWS;
+    private List<SortKey> sortKeys = List.of();
+    // Null while unsorted
+    private Comparator<Row> order;
+    private BookFilter filter = BookFilter.NONE;
+    // Another pass is needed once the running one ends
+    private boolean passPending;
+    private boolean closed;
+    // Rows put in place since the last pass, for the next one to reuse
+    private List<Row> placedRows = new ArrayList<>();
+    // The rows of the last pass by book, compared by identity since Book.equals compares content;
+    // only used by passes, one at a time
+    private Map<Book, Row> known = new IdentityHashMap<>();
+    private long passCount;
+
+    /**
+     * A list for a table, published on the JavaFX Application Thread.
+     */
+    public SortedBookList(ObservableList<Book> source) {
+        this(source, Platform::runLater);
+    }
+
+    /**
+     * A list owned by the thread that {@code owner} runs tasks on, which is where pass results
+     * are published. Only that thread may use the list.
+     */
+    public SortedBookList(ObservableList<Book> source, Executor owner) {
+        this.source = source;
+        this.owner = owner;
+        source.addListener((ListChangeListener<Book>) this::sourceChanged);
+        if (!source.isEmpty()) {
+            requestPass();
+        }
+    }
+
+    @Override
+    public Book get(int index) {
+        Objects.checkIndex(index, rows.length);
+        return rows[index].book;
+    }
+
+    @Override
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * Sorts by {@code keys}, most significant first; no keys shows the books in source order.
+     * The new order is shown once a pass has sorted the rows.
+     */
+    public void sortBy(List<SortKey> keys) {
+        if (sameKeys(keys, sortKeys)) {
+            return;
+        }
+        sortKeys = List.copyOf(keys);
+        order = comparator(sortKeys);
+        requestPass();
+    }
+
+    /**
+     * Shows only the books that pass {@code filter}, once a pass has filtered the rows.
+     */
+    public void setFilter(BookFilter filter) {
+        if (filter.equals(this.filter)) {
+            return;
+        }
+        this.filter = filter;
+        requestPass();
+    }
+
+    public BookFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Whether a pass is running, so the rows shown may be about to change.
+     */
+    public ReadOnlyBooleanProperty sortingProperty() {
+        return sorting.getReadOnlyProperty();
+    }
+
+    /**
+     * Stops the thread running the passes. The list stops following the source.
+     */
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    private void sourceChanged(ListChangeListener.Change<? extends Book> change) {
+        if (closed) {
+            return;
+        }
+        if (sorting.get() || !applyInPlace(change)) {
+            requestPass();
+        }
+    }
+
+    /**
+     * Applies a small change without a pass. Returns false, without changing anything, if the
+     * change is too large or where its rows go depends on books that aren't shown.
+     */
+    private boolean applyInPlace(ListChangeListener.Change<? extends Book> change) {
+        int count = 0;
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                return false;
+            }
+            if (change.wasUpdated()) {
+                count += change.getTo() - change.getFrom();
+                if (count > SMALL_CHANGE || (order == null && !updatesShownRows(change))) {
+                    return false;
+                }
+                continue;
+            }
+            count += change.getRemovedSize() + change.getAddedSize();
+            if (count > SMALL_CHANGE) {
+                return false;
+            }
+            if (order == null && change.wasAdded() && !isAppend(change) && !replacesShownRow(change)) {
+                return false;
+            }
+        }
+
+        change.reset();
+        beginChange();
+        while (change.next()) {
+            if (change.wasUpdated()) {
+                placeUpdated(change.getList().subList(change.getFrom(), change.getTo()));
+                continue;
+            }
+            int replaced = -1;
+            for (Book book : change.getRemoved()) {
+                int index = indexOfBook(book);
+                if (index >= 0) {
+                    removeRow(index);
+                    nextRemove(index, book);
+                    replaced = index;
+                }
+            }
+            for (Book book : change.getAddedSubList()) {
+                Row row = new Row(book, COLLATOR.get());
+                if (!row.passes(filter)) {
+                    continue;
+                }
+                int index = order != null ? sortedPosition(row) : replaced >= 0 ? replaced : rows.length;
+                insertRow(index, row);
+                nextAdd(index, index + 1);
+                placedRows.add(row);
+            }
+        }
+        endChange();
+        return true;
+    }
+
+    // Takes out the rows of books changed in place and puts them back where they now belong, in
+    // one pass over the rows. Unsorted, they keep their place
+    private void placeUpdated(List<? extends Book> books) {
+        Map<Book, Row> updated = new IdentityHashMap<>();
+        // Rows are matched by id first, since ids don't change in place and looking at them doesn't
+        // touch the books of the other rows; a bit per id hash rules most rows out cheaply
+        long[] updatedIds = new long[books.size()];
+        long[] idBits = new long[64];
+        for (int i = 0; i < updatedIds.length; i++) {
+            Row row = new Row(books.get(i), COLLATOR.get());
+            updated.put(row.book, row);
+            updatedIds[i] = row.id;
+            int bit = idBit(row.id);
+            idBits[bit >>> 6] |= 1L << bit;
+        }
+        Arrays.sort(updatedIds);
+        Row[] kept = new Row[rows.length];
+        int count = 0;
+        List<Row> moved = new ArrayList<>();
+        for (Row row : rows) {
+            int bit = idBit(row.id);
+            boolean maybeUpdated = (idBits[bit >>> 6] & (1L << bit)) != 0
+                && Arrays.binarySearch(updatedIds, row.id) >= 0;
+            Row current = maybeUpdated ? updated.remove(row.book) : null;
+            if (current == null) {
+                kept[count++] = row;
+            } else if (order == null && current.passes(filter)) {
+                kept[count] = current;
+                nextUpdate(count++);
+                placedRows.add(current);
+            } else {
+                nextRemove(count, row.book);
+                if (current.passes(filter)) {
+                    moved.add(current);
+                }
+            }
+        }
+        // Books that weren't shown; unsorted there are none, see applyInPlace
+        for (Row row : updated.values()) {
+            if (row.passes(filter)) {
+                moved.add(row);
+            }
+        }
+        if (moved.isEmpty()) {
+            rows = count == kept.length ? kept : Arrays.copyOf(kept, count);
+            return;
+        }
+        moved.sort(order);
+        Row[] merged = new Row[count + moved.size()];
+        int from = 0;
+        for (int j = 0; j < moved.size(); j++) {
+            Row row = moved.get(j);
+            int to = upperBound(kept, from, count, row);
+            System.arraycopy(kept, from, merged, from + j, to - from);
+            merged[to + j] = row;
+            nextAdd(to + j, to + j + 1);
+            placedRows.add(row);
+            from = to;
+        }
+        System.arraycopy(kept, from, merged, from + moved.size(), count - from);
+        rows = merged;
+    }
+
+    // One of 4096 bits for an id
+    private static int idBit(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 52);
+    }
+
+    // The first position in rows[from, to) after every row that sorts before or with row
+    private int upperBound(Row[] rows, int from, int to, Row row) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(rows[middle], row) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean updatesShownRows(ListChangeListener.Change<? extends Book> change) {
+        for (int i = change.getFrom(); i < change.getTo(); i++) {
+            if (indexOfBook(change.getList().get(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAppend(ListChangeListener.Change<? extends Book> change) {
+        return change.getTo() == change.getList().size();
+    }
+
+    private boolean replacesShownRow(ListChangeListener.Change<? extends Book> change) {
+        return change.wasReplaced() && change.getRemovedSize() == 1 && change.getAddedSize() == 1
+            && indexOfBook(change.getRemoved().get(0)) >= 0;
+    }
+
+    /**
+     * Starts a pass over the source as it is now, or asks for one once the running pass ends.
+     */
+    private void requestPass() {
+        if (closed) {
+            return;
+        }
+        if (sorting.get()) {
+            passPending = true;
+            return;
+        }
+        sorting.set(true);
+        passPending = false;
+        Book[] books = source.toArray(new Book[0]);
+        Row[] shown = rows;
+        List<Row> placed = placedRows;
+        placedRows = new ArrayList<>();
+        Comparator<Row> passOrder = order;
+        BookFilter passFilter = filter;
+        CompletableFuture.supplyAsync(() -> runPass(books, shown, placed, passOrder, passFilter), executor)
+            .whenCompleteAsync(this::passDone, owner);
+    }
+
+    private void passDone(PassResult result, Throwable error) {
+        sorting.set(false);
+        if (closed) {
+            return;
+        }
+        if (error != null) {
+            LOG.log(Level.WARNING, "Sorting the table failed", error);
+        } else {
+            publish(result);
+        }
+        if (passPending) {
+            requestPass();
+        }
+    }
+
+    private void publish(PassResult result) {
+        Row[] old = rows;
+        rows = result.rows;
+        beginChange();
+        if (result.permutation != null) {
+            if (result.moved) {
+                nextPermutation(0, rows.length, result.permutation);
+            }
+        } else {
+            if (old.length > 0) {
+                List<Book> removed = new ArrayList<>(old.length);
+                for (Row row : old) {
+                    removed.add(row.book);
+                }
+                nextRemove(0, removed);
+            }
+            if (rows.length > 0) {
+                nextAdd(0, rows.length);
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * Filters and sorts {@code books} on the pass thread. {@code shown} is what the list shows
+     * meanwhile, for working out a permutation, and {@code placed} the rows it put in place
+     * since the last pass.
+     */
+    private PassResult runPass(Book[] books, Row[] shown, List<Row> placed,
+                               Comparator<Row> passOrder, BookFilter passFilter) {
+        long start = System.nanoTime();
+        Map<Book, Row> previous = known;
+        for (Row row : placed) {
+            previous.put(row.book, row);
+        }
+        Row[] all = new Row[books.length];
+        LongAdder built = new LongAdder();
+        IntStream.range(0, books.length).parallel().forEach(i -> {
+            Row row = previous.get(books[i]);
+            if (row == null || !row.isCurrent()) {
+                row = new Row(books[i], COLLATOR.get());
+                built.increment();
+            }
+            all[i] = row;
+        });
+        if (built.sum() > 0 || previous.size() != all.length) {
+            // Drops the books that are gone, so they can be collected
+            Map<Book, Row> current = new IdentityHashMap<>(all.length);
+            for (Row row : all) {
+                current.put(row.book, row);
+            }
+            known = current;
+        }
+
+        Row[] passed = passFilter.isEmpty()
+            ? all
+            : Arrays.stream(all).parallel().filter(row -> row.passes(passFilter)).toArray(Row[]::new);
+        if (passOrder != null) {
+            Arrays.parallelSort(passed, passOrder);
+        }
+        PassResult result = new PassResult(passed, shown, ++passCount);
+        LOG.log(Level.DEBUG, () -> String.format("Sorted %,d of %,d books in %d ms",
+            passed.length, books.length, (System.nanoTime() - start) / 1_000_000));
+        return result;
+    }
+
+    // The first position after every row that sorts before or with row
+    private int sortedPosition(Row row) {
+        return upperBound(rows, 0, rows.length, row);
+    }
+
+    private int indexOfBook(Book book) {
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i].book == book) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insertRow(int index, Row row) {
+        Row[] grown = new Row[rows.length + 1];
+        System.arraycopy(rows, 0, grown, 0, index);
+        grown[index] = row;
+        System.arraycopy(rows, index, grown, index + 1, rows.length - index);
+        rows = grown;
+    }
+
+    private void removeRow(int index) {
+        Row[] shrunk = new Row[rows.length - 1];
+        System.arraycopy(rows, 0, shrunk, 0, index);
+        System.arraycopy(rows, index + 1, shrunk, index, rows.length - index - 1);
+        rows = shrunk;
+    }
+
+    private static Comparator<Row> comparator(List<SortKey> keys) {
+        Comparator<Row> comparator = null;
+        for (SortKey key : keys) {
+            Comparator<Row> level;
+            switch (key.getColumn()) {
+                case ID:
+                    level = Comparator.comparingLong(row -> row.id);
+                    break;
+                case TITLE:
+                    level = (a, b) -> compareNullable(a.titleKey, b.titleKey);
+                    break;
+                case AUTHOR:
+                    level = (a, b) -> compareNullable(a.authorKey, b.authorKey);
+                    break;
+                case ISBN:
+                    level = (a, b) -> compareNullable(a.isbn, b.isbn);
+                    break;
+                default:
+                    // NO_DATE is the smallest int, so books without a date come first
+                    level = Comparator.comparingInt(row -> row.day);
+            }
+            if (!key.isAscending()) {
+                level = level.reversed();
+            }
+            comparator = comparator == null ? level : comparator.thenComparing(level);
+        }
+        return comparator;
+    }
+
+    // Nulls first, as TableColumn's default comparator does
+    private static <T extends Comparable<T>> int compareNullable(T a, T b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    private static boolean sameKeys(List<SortKey> a, List<SortKey> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getColumn() != b.get(i).getColumn() || a.get(i).isAscending() != b.get(i).isAscending()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A book with its sort and filter keys, as of when they were worked out.
+     */
+    private static final class Row {
+        final Book book;
+        final String title;
+        final String author;
+        final String isbn;
+        final LocalDate date;
+        final long id;
+        final int day;
+        final CollationKey titleKey;
+        final CollationKey authorKey;
+        final String foldedAuthor;
+        // Where the last pass to see this row found it shown; only used by passes
+        long pass;
+        int shownAt;
+
+        Row(Book book, Collator collator) {
+            this.book = book;
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.isbn = book.getIsbn();
+            this.date = book.getPublishedDate();
+            this.id = book.getId() == null ? NO_ID : book.getId();
+            this.day = date == null ? BookFilter.NO_DATE : (int) date.toEpochDay();
+            this.titleKey = title == null ? null : collator.getCollationKey(title);
+            this.authorKey = author == null ? null : collator.getCollationKey(author);
+            this.foldedAuthor = BookIndex.foldText(author);
+        }
+
+        // Whether the book still has the values the keys were worked out from
+        boolean isCurrent() {
+            Long bookId = book.getId();
+            return (bookId == null ? NO_ID : bookId) == id
+                && Objects.equals(book.getTitle(), title)
+                && Objects.equals(book.getAuthor(), author)
+                && Objects.equals(book.getIsbn(), isbn)
+                && Objects.equals(book.getPublishedDate(), date);
+        }
+
+        boolean passes(BookFilter filter) {
+            return filter.test(foldedAuthor, day);
+        }
+    }
+
+    /**
+     * The rows a pass produced and, if they are the rows shown when it started in another order,
+     * the permutation between the two.
+     */
+    private static final class PassResult {
+        final Row[] rows;
+        // permutation[old index] is the new index; null if the books differ
+        final int[] permutation;
+        final boolean moved;
+
+        PassResult(Row[] rows, Row[] shown, long pass) {
+            this.rows = rows;
+            int[] permutation = rows.length == shown.length ? new int[rows.length] : null;
+            boolean moved = false;
+            if (permutation != null) {
+                // Rows are reused while their book is unchanged, so each shown row is marked
+                // with where it is shown now
+                for (int i = 0; i < shown.length; i++) {
+                    shown[i].pass = pass;
+                    shown[i].shownAt = i;
+                }
+                for (int i = 0; i < rows.length && permutation != null; i++) {
+                    if (rows[i].pass != pass) {
+                        permutation = null;
+                    } else {
+                        permutation[rows[i].shownAt] = i;
+                        moved |= rows[i].shownAt != i;
+                    }
+                }
+            }
+            this.permutation = permutation;
+            this.moved = moved;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ekene.dian.librarydemofx;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times the start of the application from the launch of the process, so that startup can be
+ * compared with and without a class data sharing archive.
+ *
+ * Each milestone is logged once, at INFO, as {@code Startup: <milestone> after <n> ms}. The
+ * process start time comes from the OS and is only as precise as its clock ticks, typically
+ * 10 ms.
+ */
+public class StartupTimer {
+    private static final Logger LOG = System.getLogger(StartupTimer.class.getName());
+
+    private final long startMillis;
+    // Guarded by this; marked from the FX thread and the thread building the service
+    private final Map<String, Long> milestones = new LinkedHashMap<>();
+
+    public StartupTimer(long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * A timer started when the process was, or now if the OS doesn't tell.
+     */
+    public static StartupTimer sinceProcessStart() {
+        long start = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElseGet(System::currentTimeMillis);
+        return new StartupTimer(start);
+    }
+
+    /**
+     * Records {@code milestone} as reached now, unless it was already.
+     */
+    public void mark(String milestone) {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        synchronized (this) {
+            if (milestones.putIfAbsent(milestone, elapsed) != null) {
+                return;
+            }
+        }
+        LOG.log(Level.INFO, "Startup: " + milestone + " after " + elapsed + " ms");
+    }
+
+    /**
+     * Marks {@code first frame} at the end of the next layout pass of {@code scene}, which is
+     * followed by its first rendering. Called on the FX thread once the stage is shown.
+     */
+    public void markFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            mark("first frame");
+            // Not while the scene is running its listeners
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /**
+     * Milliseconds from the start of the process to each milestone reached, in order.
+     */
+    public synchronized Map<String, Long> getMilestones() {
+        return new LinkedHashMap<>(milestones);
+    }
+}
@@ -1,7 +1,19 @@
 package ekene.dian.librarydemofx.model;
 
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
 import java.time.LocalDate;
+import java.util.Objects;
 
+/**
+ * A book. Each field can also be observed as a JavaFX property, which is only created the first
+ * time it is asked for, e.g. by a table cell; until then the book is a plain object. Once a
+ * property exists, the getter and setter go through it, and setting it should happen on the FX
+ * thread.
+ */
 public class Book {
     private Long id;
     private String title;
@@ -9,6 +21,12 @@ public class Book {
     private String isbn;
     private LocalDate publishedDate;
 
+    private ObjectProperty<Long> idProperty;
+    private StringProperty titleProperty;
+    private StringProperty authorProperty;
+    private StringProperty isbnProperty;
+    private ObjectProperty<LocalDate> publishedDateProperty;
+
     // Default constructor for JSON deserialization
     public Book() {
     }
@@ -22,53 +40,140 @@ public class Book {
 
     // Getters and setters
     public Long getId() {
-        return id;
+        return idProperty != null ? idProperty.get() : id;
     }
 
     public void setId(Long id) {
-        this.id = id;
+        if (idProperty != null) {
+            idProperty.set(id);
+        } else {
+            this.id = id;
+        }
+    }
+
+    public ObjectProperty<Long> idProperty() {
+        if (idProperty == null) {
+            idProperty = new SimpleObjectProperty<>(this, "id", id);
+        }
+        return idProperty;
     }
 
     public String getTitle() {
-        return title;
+        return titleProperty != null ? titleProperty.get() : title;
     }
 
     public void setTitle(String title) {
-        this.title = title;
+        if (titleProperty != null) {
+            titleProperty.set(title);
+        } else {
+            this.title = title;
+        }
+    }
+
+    public StringProperty titleProperty() {
+        if (titleProperty == null) {
+            titleProperty = new SimpleStringProperty(this, "title", title);
+        }
+        return titleProperty;
     }
 
     public String getAuthor() {
-        return author;
+        return authorProperty != null ? authorProperty.get() : author;
     }
 
     public void setAuthor(String author) {
-        this.author = author;
+        if (authorProperty != null) {
+            authorProperty.set(author);
+        } else {
+            this.author = author;
+        }
+    }
+
+    public StringProperty authorProperty() {
+        if (authorProperty == null) {
+            authorProperty = new SimpleStringProperty(this, "author", author);
+        }
+        return authorProperty;
     }
 
     public String getIsbn() {
-        return isbn;
+        return isbnProperty != null ? isbnProperty.get() : isbn;
     }
 
     public void setIsbn(String isbn) {
-        this.isbn = isbn;
+        if (isbnProperty != null) {
+            isbnProperty.set(isbn);
+        } else {
+            this.isbn = isbn;
+        }
+    }
+
+    public StringProperty isbnProperty() {
+        if (isbnProperty == null) {
+            isbnProperty = new SimpleStringProperty(this, "isbn", isbn);
+        }
+        return isbnProperty;
     }
 
     public LocalDate getPublishedDate() {
-        return publishedDate;
+        return publishedDateProperty != null ? publishedDateProperty.get() : publishedDate;
     }
 
     public void setPublishedDate(LocalDate publishedDate) {
-        this.publishedDate = publishedDate;
+        if (publishedDateProperty != null) {
+            publishedDateProperty.set(publishedDate);
+        } else {
+            this.publishedDate = publishedDate;
+        }
+    }
+
+    public ObjectProperty<LocalDate> publishedDateProperty() {
+        if (publishedDateProperty == null) {
+            publishedDateProperty = new SimpleObjectProperty<>(this, "publishedDate", publishedDate);
+        }
+        return publishedDateProperty;
+    }
+
+    /**
+     * Takes the field values of {@code other}, all but the id, through the properties that
+     * exist, so whatever observes them sees the change.
+     */
+    public void copyFrom(Book other) {
+        setTitle(other.getTitle());
+        setAuthor(other.getAuthor());
+        setIsbn(other.getIsbn());
+        setPublishedDate(other.getPublishedDate());
+    }
+
+    /**
+     * A new book with the same id and field values, and none of this one's properties.
+     */
+    public Book copy() {
+        Book copy = new Book(getTitle(), getAuthor(), getIsbn(), getPublishedDate());
+        copy.setId(getId());
+        return copy;
+    }
+
+    /**
+     * Whether both books have the same id and field values.
+     */
+    public boolean hasSameContent(Book other) {
+        return other != null
+                && Objects.equals(getId(), other.getId())
+                && Objects.equals(getTitle(), other.getTitle())
+                && Objects.equals(getAuthor(), other.getAuthor())
+                && Objects.equals(getIsbn(), other.getIsbn())
+                && Objects.equals(getPublishedDate(), other.getPublishedDate());
     }
 
     @Override
     public String toString() {
         return "Book{" +
-                "id=" + id +
-                ", title='" + title + '\'' +
-                ", author='" + author + '\'' +
-                ", isbn='" + isbn + '\'' +
-                ", publishedDate=" + publishedDate +
+                "id=" + getId() +
+                ", title='" + getTitle() + '\'' +
+                ", author='" + getAuthor() + '\'' +
+                ", isbn='" + getIsbn() + '\'' +
+                ", publishedDate=" + getPublishedDate() +
                 '}';
     }
 }
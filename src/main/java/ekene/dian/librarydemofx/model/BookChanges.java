@@ -0,0 +1,53 @@
+package ekene.dian.librarydemofx.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One answer of {@code GET /api/books/changes}: the books created or changed and the ids of
+ * books deleted since a watermark, and the watermark to ask from next time.
+ *
+ * The watermark is opaque to the client; the server may use an update timestamp or a version
+ * number.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BookChanges {
+    private List<Book> changed = new ArrayList<>();
+    private List<Long> deleted = new ArrayList<>();
+    private String watermark;
+    // More changes follow; ask again from the new watermark
+    private boolean more;
+
+    public List<Book> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<Book> changed) {
+        this.changed = changed != null ? changed : new ArrayList<>();
+    }
+
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Long> deleted) {
+        this.deleted = deleted != null ? deleted : new ArrayList<>();
+    }
+
+    public String getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(String watermark) {
+        this.watermark = watermark;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+}
@@ -0,0 +1,65 @@
+package ekene.dian.librarydemofx.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A change to one book, pushed by the server on {@code /api/books/events}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BookEvent {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private Type type;
+    private Long id;
+    // The new version of the book; null for a delete
+    private Book book;
+
+    // Default constructor for JSON deserialization
+    public BookEvent() {
+    }
+
+    public BookEvent(Type type, Long id, Book book) {
+        this.type = type;
+        this.id = id;
+        this.book = book;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * The id of the book that changed, falling back to the book's own id.
+     */
+    public Long getId() {
+        return id != null || book == null ? id : book.getId();
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+
+    @Override
+    public String toString() {
+        return "BookEvent{" +
+                "type=" + type +
+                ", id=" + getId() +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package ekene.dian.librarydemofx.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rules a book has to pass before it is sent to the server. Used by the form and by file
+ * imports, so both reject the same books with the same messages.
+ */
+public final class BookValidator {
+    public static final String TITLE_REQUIRED = "Title is required!";
+    public static final String AUTHOR_REQUIRED = "Author is required!";
+    public static final String ISBN_REQUIRED = "ISBN is required!";
+    public static final String PUBLISHED_DATE_REQUIRED = "Published date is required!";
+
+    private BookValidator() {
+    }
+
+    public static List<String> validate(Book book) {
+        return validate(book.getTitle(), book.getAuthor(), book.getIsbn(), book.getPublishedDate());
+    }
+
+    /**
+     * Returns one message per problem, or an empty list if the values are valid.
+     */
+    public static List<String> validate(String title, String author, String isbn, LocalDate publishedDate) {
+        List<String> errors = new ArrayList<>();
+        if (isBlank(title)) {
+            errors.add(TITLE_REQUIRED);
+        }
+        if (isBlank(author)) {
+            errors.add(AUTHOR_REQUIRED);
+        }
+        if (isBlank(isbn)) {
+            errors.add(ISBN_REQUIRED);
+        }
+        if (publishedDate == null) {
+            errors.add(PUBLISHED_DATE_REQUIRED);
+        }
+        return errors;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,76 @@
+package ekene.dian.librarydemofx.model;
+
+/**
+ * A change made while the server couldn't be reached, waiting to be sent.
+ */
+public class PendingOperation {
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private Type type;
+    private Long bookId;
+    // The book to create or update; null for a delete
+    private Book book;
+    // Sent with a create, so the server applies it only once however often it is sent
+    private String idempotencyKey;
+    // Set when a create was sent but no answer came, so it may exist on the server already
+    private boolean possiblySent;
+
+    // Default constructor for JSON deserialization
+    public PendingOperation() {
+    }
+
+    public PendingOperation(Type type, Long bookId, Book book) {
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public boolean isPossiblySent() {
+        return possiblySent;
+    }
+
+    public void setPossiblySent(boolean possiblySent) {
+        this.possiblySent = possiblySent;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + bookId;
+    }
+}
@@ -0,0 +1,160 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+import javafx.application.Platform;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking facade over {@link BookService}.
+ *
+ * Every call runs on a background executor and the returned future is completed through the
+ * callback executor, which defaults to {@link Platform#runLater(Runnable)} so that dependent
+ * stages can touch the UI directly. Cancelling a returned future interrupts the running call.
+ */
+public class AsyncBookService implements AutoCloseable {
+    private final BookService bookService;
+    private final ExecutorService executor;
+    private final Executor callbackExecutor;
+
+    public AsyncBookService(BookService bookService, ClientConfig config) {
+        this(bookService, ServiceExecutors.create(config), Platform::runLater);
+    }
+
+    public AsyncBookService(BookService bookService, ExecutorService executor, Executor callbackExecutor) {
+        this.bookService = bookService;
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public BookService getBookService() {
+        return bookService;
+    }
+
+    public CompletableFuture<ServiceResult<List<Book>>> getAllBooks() {
+        return submit(bookService::getAllBooks);
+    }
+
+    public CompletableFuture<ServiceResult<List<Book>>> searchBooks(String query) {
+        return submit(() -> bookService.searchBooks(query));
+    }
+
+    /**
+     * Streams every book, delivering each page to {@code onPage} on the callback executor as soon
+     * as it arrives. The returned future completes with the number of books delivered.
+     */
+    public CompletableFuture<Long> streamAllBooks(Consumer<List<Book>> onPage) {
+        return submit(() -> bookService.streamAllBooks(page -> callbackExecutor.execute(() -> onPage.accept(page))));
+    }
+
+    /**
+     * Like {@link #streamAllBooks(Consumer)}, but runs {@code first} on the background thread
+     * before the first page is requested.
+     */
+    public CompletableFuture<Long> streamAllBooks(Runnable first, Consumer<List<Book>> onPage) {
+        return submit(() -> {
+            first.run();
+            return bookService.streamAllBooks(page -> callbackExecutor.execute(() -> onPage.accept(page)));
+        });
+    }
+
+    /**
+     * Streams every search result, delivering each page to {@code onPage} on the callback executor.
+     */
+    public CompletableFuture<Long> streamSearchBooks(String query, Consumer<List<Book>> onPage) {
+        return submit(() -> bookService.streamSearchBooks(query, page -> callbackExecutor.execute(() -> onPage.accept(page))));
+    }
+
+    /**
+     * Returns the last known version of a book straight away, without any I/O.
+     */
+    public Book getCachedBook(Long id) {
+        return bookService.getCachedBook(id);
+    }
+
+    public CompletableFuture<ServiceResult<Book>> getBookById(Long id) {
+        return submit(() -> bookService.getBookById(id));
+    }
+
+    public CompletableFuture<ServiceResult<Book>> createBook(Book book) {
+        return submit(() -> bookService.createBook(book));
+    }
+
+    public CompletableFuture<ServiceResult<Book>> updateBook(Book book) {
+        return submit(() -> bookService.updateBook(book));
+    }
+
+    public CompletableFuture<ServiceResult<Long>> deleteBook(Long id) {
+        return submit(() -> bookService.deleteBook(id));
+    }
+
+    public CompletableFuture<BatchResult<Book>> createBooks(List<Book> books) {
+        return submit(() -> bookService.createBooks(books));
+    }
+
+    public CompletableFuture<BatchResult<Book>> updateBooks(List<Book> books) {
+        return submit(() -> bookService.updateBooks(books));
+    }
+
+    public CompletableFuture<BatchResult<Long>> deleteBooks(Collection<Long> ids) {
+        return submit(() -> bookService.deleteBooks(ids));
+    }
+
+    /**
+     * Runs {@code call} on the background executor and completes the returned future on the
+     * callback executor.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<T> task = new FutureTask<>(call) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    T value = get();
+                    callbackExecutor.execute(() -> result.complete(value));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    callbackExecutor.execute(() -> result.completeExceptionally(cause));
+                }
+            }
+        };
+
+        // Propagate cancellation of the returned future to the running call
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new CompletionException("Too many pending requests", e));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        bookService.close();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
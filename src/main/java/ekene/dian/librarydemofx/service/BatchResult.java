@@ -0,0 +1,94 @@
+package ekene.dian.librarydemofx.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-item outcome of a batch write, in the same order as the batch's input.
+ *
+ * @param <T> the result of one successful item, e.g. the created book
+ */
+public class BatchResult<T> {
+
+    public static final class Item<T> {
+        private final int index;
+        private final T value;
+        private final String error;
+
+        private Item(int index, T value, String error) {
+            this.index = index;
+            this.value = value;
+            this.error = error;
+        }
+
+        /**
+         * Position of this item in the batch input.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Why this item failed, or {@code null} if it succeeded.
+         */
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final List<Item<T>> items;
+
+    BatchResult(int size) {
+        this.items = new ArrayList<>(Collections.nCopies(size, null));
+    }
+
+    synchronized void succeeded(int index, T value) {
+        items.set(index, new Item<>(index, value, null));
+    }
+
+    synchronized void failed(int index, Throwable error) {
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        items.set(index, new Item<>(index, null, message));
+    }
+
+    public synchronized List<Item<T>> getItems() {
+        return Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    public synchronized List<T> getSuccessfulValues() {
+        List<T> values = new ArrayList<>();
+        for (Item<T> item : items) {
+            if (item != null && item.isSuccess()) {
+                values.add(item.value);
+            }
+        }
+        return values;
+    }
+
+    public synchronized int getSuccessCount() {
+        int count = 0;
+        for (Item<T> item : items) {
+            if (item != null && item.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized int getFailureCount() {
+        return items.size() - getSuccessCount();
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+}
@@ -0,0 +1,157 @@
+package ekene.dian.librarydemofx.service;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+
+/**
+ * Runs the batch writes behind {@link BookService#createBooks}, {@link BookService#updateBooks}
+ * and {@link BookService#deleteBooks}.
+ *
+ * Each chunk of the input is first offered to the bulk endpoint. If the server turns out not to
+ * have one (it answers the very first bulk call with 404, 405, 415 or 501), bulk calls for
+ * that endpoint stop for the life of the service. Items that could not go through a bulk call are
+ * sent one request each, with at most {@code maxInFlight} requests outstanding. Every call is
+ * retried according to the {@link RetryPolicy}.
+ *
+ * A failed bulk chunk of a non-idempotent write is only resent item by item when the server
+ * certainly didn't process it; otherwise its items are reported as failed rather than risking
+ * duplicates.
+ */
+class BatchRunner {
+    private static final Logger LOG = System.getLogger(BatchRunner.class.getName());
+
+    interface BulkCall<I, R> {
+        /**
+         * Sends one chunk and returns the per-item results in input order.
+         */
+        List<R> send(List<I> chunk) throws Exception;
+    }
+
+    interface ItemCall<I, R> {
+        R send(I item) throws Exception;
+    }
+
+    private final RetryPolicy retryPolicy;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final int chunkSize;
+    private final boolean bulkEnabled;
+
+    private final Set<String> confirmedBulk = ConcurrentHashMap.newKeySet();
+    private final Set<String> unsupportedBulk = ConcurrentHashMap.newKeySet();
+
+    BatchRunner(RetryPolicy retryPolicy, Executor executor, int maxInFlight, int chunkSize, boolean bulkEnabled) {
+        this.retryPolicy = retryPolicy;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.bulkEnabled = bulkEnabled;
+    }
+
+    <I, R> BatchResult<R> run(String bulkEndpoint, List<I> inputs, BulkCall<I, R> bulk, ItemCall<I, R> single,
+                              Predicate<Throwable> retryable) {
+        BatchResult<R> result = new BatchResult<>(inputs.size());
+        List<Integer> oneByOne = new ArrayList<>();
+
+        for (int from = 0; from < inputs.size(); from += chunkSize) {
+            int to = Math.min(inputs.size(), from + chunkSize);
+            if (bulkEnabled && !unsupportedBulk.contains(bulkEndpoint)
+                    && sendBulk(bulkEndpoint, inputs.subList(from, to), from, bulk, retryable, result)) {
+                continue;
+            }
+            for (int i = from; i < to; i++) {
+                oneByOne.add(i);
+            }
+        }
+
+        sendPipelined(inputs, oneByOne, single, retryable, result);
+        return result;
+    }
+
+    private <I, R> boolean sendBulk(String bulkEndpoint, List<I> chunk, int offset, BulkCall<I, R> bulk,
+                                    Predicate<Throwable> retryable, BatchResult<R> result) {
+        try {
+            List<R> values = retryPolicy.call(() -> bulk.send(chunk), retryable);
+            confirmedBulk.add(bulkEndpoint);
+            for (int i = 0; i < chunk.size(); i++) {
+                result.succeeded(offset + i, i < values.size() ? values.get(i) : null);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            if (!confirmedBulk.contains(bulkEndpoint) && isMissingEndpoint(e)) {
+                unsupportedBulk.add(bulkEndpoint);
+                LOG.log(Level.INFO, "No bulk endpoint at " + bulkEndpoint + ", sending one request per book");
+                return false;
+            }
+            if (retryable != RetryPolicy.IDEMPOTENT && !RetryPolicy.NOT_PROCESSED.test(e)) {
+                LOG.log(Level.WARNING, "Bulk request to " + bulkEndpoint + " failed: " + e.getMessage());
+                for (int i = 0; i < chunk.size(); i++) {
+                    result.failed(offset + i, e);
+                }
+                return true;
+            }
+            LOG.log(Level.WARNING, "Bulk request to " + bulkEndpoint + " failed, sending one request per book: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private <I, R> void sendPipelined(List<I> inputs, List<Integer> indexes, ItemCall<I, R> single,
+                                      Predicate<Throwable> retryable, BatchResult<R> result) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        int submitted = 0;
+        try {
+            for (int index : indexes) {
+                inFlight.acquire();
+                submitted++;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            result.succeeded(index, retryPolicy.call(() -> single.send(inputs.get(index)), retryable));
+                        } catch (Exception e) {
+                            result.failed(index, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    result.failed(index, e);
+                    inFlight.release();
+                }
+            }
+            // Wait for the stragglers
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedException cancelled = new InterruptedException("Batch cancelled");
+            for (int i = submitted; i < indexes.size(); i++) {
+                result.failed(indexes.get(i), cancelled);
+            }
+        }
+    }
+
+    /**
+     * Whether a call failed because the server has no such endpoint. A 400 doesn't count: it
+     * usually means the endpoint exists but rejected this particular request.
+     */
+    static boolean isMissingEndpoint(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BookServiceException) {
+                int status = ((BookServiceException) cause).getStatusCode();
+                return status == 404 || status == 405 || status == 415 || status == 501;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,122 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Books by id, filled from list and search results and from single-book fetches.
+ *
+ * Alongside each book it keeps the {@code ETag} and {@code Last-Modified} validators from the
+ * last single-book response, if the server sent any, so the book can be revalidated with a
+ * conditional GET. The cache holds at most {@code maxEntries} books, evicting the least recently
+ * used.
+ */
+public class BookEntityCache {
+
+    public static final class Entry {
+        private final Book book;
+        private final String etag;
+        private final String lastModified;
+
+        Entry(Book book, String etag, String lastModified) {
+            this.book = book;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    private final Map<Long, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BookEntityCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized Book get(Long id) {
+        Entry entry = entries.get(id);
+        (entry != null ? hits : misses).incrementAndGet();
+        return entry != null ? entry.book : null;
+    }
+
+    public synchronized Entry getEntry(Long id) {
+        return entries.get(id);
+    }
+
+    /**
+     * Stores a book from a single-book response together with its validators.
+     */
+    public synchronized void put(Book book, String etag, String lastModified) {
+        if (book != null && book.getId() != null) {
+            entries.put(book.getId(), new Entry(book, etag, lastModified));
+        }
+    }
+
+    /**
+     * Stores books from a list or search page. Validators from an earlier single-book response
+     * are kept: if the book has changed since, the server will not match them and sends the new
+     * version.
+     */
+    public synchronized void putAll(Collection<Book> books) {
+        for (Book book : books) {
+            if (book.getId() != null) {
+                Entry previous = entries.get(book.getId());
+                entries.put(book.getId(), previous != null
+                    ? new Entry(book, previous.etag, previous.lastModified)
+                    : new Entry(book, null, null));
+            }
+        }
+    }
+
+    /**
+     * Stores a book after a local write. Validators are dropped since they describe the old
+     * version.
+     */
+    public synchronized void replace(Book book) {
+        put(book, null, null);
+    }
+
+    public synchronized void remove(Long id) {
+        entries.remove(id);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Lookups through {@link #get} that found the book.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,87 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import ekene.dian.librarydemofx.model.Book;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Exports the whole catalog to a CSV or JSON Lines file.
+ *
+ * Pages are written as they arrive from the server and are not kept, and the query cache is
+ * bypassed, so memory use stays flat however large the catalog is. The file is written next to
+ * its destination under a {@code .part} name and only moved into place once complete, so a
+ * failed or cancelled export never leaves a truncated file behind.
+ */
+public class BookExporter {
+    private final BookService bookService;
+
+    public BookExporter(BookService bookService) {
+        this.bookService = bookService;
+    }
+
+    /**
+     * Exports to {@code file}, picking the format from its extension.
+     */
+    public long exportFile(Path file, TransferListener listener) throws IOException {
+        BookFileFormat format = BookFileFormat.fromFileName(file.getFileName().toString());
+        if (format == null) {
+            throw new IOException("Unsupported file type: " + file.getFileName());
+        }
+        return exportFile(file, format, listener);
+    }
+
+    /**
+     * Exports to {@code file}, replacing it if it exists.
+     *
+     * @return the number of books written
+     */
+    public long exportFile(Path file, BookFileFormat format, TransferListener listener) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        // Only used for progress; books added or removed meanwhile just make it less accurate
+        long expected = bookService.getBooksPage(0, 1).getTotalElements();
+        long[] written = {0};
+
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             SequenceWriter writer = format.writeBooks(Channels.newOutputStream(channel))) {
+            bookService.streamAllBooksUncached(page -> {
+                write(writer, page);
+                written[0] += page.size();
+                listener.progress(expected > 0 ? Math.min(1, (double) written[0] / expected) : -1,
+                    String.format("Exported %,d books", written[0]));
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(partial);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+
+        try {
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        listener.progress(1, String.format("Exported %,d books", written[0]));
+        return written[0];
+    }
+
+    private static void write(SequenceWriter writer, List<Book> page) {
+        try {
+            writer.writeAll(page);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ekene.dian.librarydemofx.model.Book;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * File formats for importing and exporting the catalog. Both are read and written one record at
+ * a time with Jackson's streaming parser and generator.
+ *
+ * Records are read as maps from column (or field) name to text, so an import tolerates columns
+ * in any order, extra columns and JSON numbers where text is expected.
+ */
+public enum BookFileFormat {
+    CSV("CSV", "csv") {
+        @Override
+        public MappingIterator<Map<String, String>> readRecords(InputStream in) throws IOException {
+            return Mappers.CSV.readerForMapOf(String.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(in);
+        }
+
+        @Override
+        public SequenceWriter writeBooks(OutputStream out) throws IOException {
+            return Mappers.CSV.writerFor(Book.class)
+                .with(Mappers.CSV_SCHEMA)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValues(out);
+        }
+    },
+
+    JSON_LINES("JSON Lines", "jsonl", "ndjson") {
+        @Override
+        public MappingIterator<Map<String, String>> readRecords(InputStream in) throws IOException {
+            return Mappers.JSON.readerForMapOf(String.class).readValues(in);
+        }
+
+        @Override
+        public SequenceWriter writeBooks(OutputStream out) throws IOException {
+            return Mappers.JSON.writerFor(Book.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValues(out);
+        }
+    };
+
+    private final String description;
+    private final List<String> extensions;
+
+    BookFileFormat(String description, String... extensions) {
+        this.description = description;
+        this.extensions = List.of(extensions);
+    }
+
+    /**
+     * Picks the format from a file name's extension, or returns {@code null} if it isn't one of
+     * ours.
+     */
+    public static BookFileFormat fromFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        for (BookFileFormat format : values()) {
+            for (String extension : format.extensions) {
+                if (lower.endsWith("." + extension)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * File extensions without the leading dot, the preferred one first.
+     */
+    public List<String> getExtensions() {
+        return extensions;
+    }
+
+    /**
+     * Opens a lazy iterator over the records of {@code in}. A malformed record fails only its own
+     * {@code nextValue()} call; the iterator skips past it on the next {@code hasNextValue()}.
+     */
+    public abstract MappingIterator<Map<String, String>> readRecords(InputStream in) throws IOException;
+
+    /**
+     * Opens a writer that encodes one book per record. Output is only flushed when the
+     * generator's buffer fills up or the writer is closed; closing it closes {@code out}.
+     */
+    public abstract SequenceWriter writeBooks(OutputStream out) throws IOException;
+
+    // Created on first use, so the CSV classes aren't loaded until a file is imported or exported
+    private static final class Mappers {
+        static final ObjectMapper JSON = configure(new ObjectMapper());
+        static final CsvMapper CSV = configure(new CsvMapper())
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES)
+            .enable(CsvParser.Feature.TRIM_SPACES);
+        static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+            .addNumberColumn("id")
+            .addColumn("title")
+            .addColumn("author")
+            .addColumn("isbn")
+            .addColumn("publishedDate")
+            .setUseHeader(true)
+            .build();
+
+        private static <M extends ObjectMapper> M configure(M mapper) {
+            mapper.registerModule(new JavaTimeModule());
+            mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            return mapper;
+        }
+    }
+}
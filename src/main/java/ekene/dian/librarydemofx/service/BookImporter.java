@@ -0,0 +1,225 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.BookValidator;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Imports books from a CSV or JSON Lines file as new books.
+ *
+ * The file is parsed one record at a time and valid books are sent in chunks through
+ * {@link BookService#createBooks}, which uses the bulk endpoint or concurrent single requests,
+ * so memory use depends on the chunk size and not on the size of the file. Records are checked
+ * with {@link BookValidator}, the same rules as the form; an {@code id} column is ignored, since
+ * the server assigns ids.
+ *
+ * Column names are matched ignoring case, spaces and punctuation, so both {@code publishedDate}
+ * and {@code Published Date} work.
+ */
+public class BookImporter {
+    private static final int MAX_PROBLEMS = 100;
+    // Give up rather than report every line of a file that isn't in the format we expected
+    private static final int MAX_MALFORMED_IN_A_ROW = 1000;
+
+    /**
+     * What an import did. Problems are listed for the first {@value #MAX_PROBLEMS} rejected or
+     * failed records only.
+     */
+    public static final class Report {
+        private long recordsRead;
+        private long imported;
+        private long rejected;
+        private long failed;
+        private final List<String> problems = new ArrayList<>();
+
+        public long getRecordsRead() {
+            return recordsRead;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * Records that were malformed or failed validation, and were never sent.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Valid records the server didn't accept.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        public List<String> getProblems() {
+            return Collections.unmodifiableList(problems);
+        }
+
+        private void problem(long line, String message) {
+            if (problems.size() < MAX_PROBLEMS) {
+                problems.add("Line " + line + ": " + message);
+            }
+        }
+    }
+
+    private final BookService bookService;
+    private final int chunkSize;
+
+    public BookImporter(BookService bookService) {
+        this(bookService, bookService.getConfig().getImportChunkSize());
+    }
+
+    public BookImporter(BookService bookService, int chunkSize) {
+        this.bookService = bookService;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Imports {@code file}, picking the format from its extension.
+     */
+    public Report importFile(Path file, TransferListener listener) throws IOException {
+        BookFileFormat format = BookFileFormat.fromFileName(file.getFileName().toString());
+        if (format == null) {
+            throw new IOException("Unsupported file type: " + file.getFileName());
+        }
+        return importFile(file, format, listener);
+    }
+
+    /**
+     * Imports {@code file}. Interrupting the calling thread stops the import after the chunk
+     * being sent; books sent before that stay imported.
+     *
+     * @throws CancellationException if the import was interrupted
+     */
+    public Report importFile(Path file, BookFileFormat format, TransferListener listener) throws IOException {
+        Report report = new Report();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             MappingIterator<Map<String, String>> records = format.readRecords(Channels.newInputStream(channel))) {
+            double fileSize = Math.max(1, channel.size());
+            List<Book> chunk = new ArrayList<>(chunkSize);
+            List<Long> chunkLines = new ArrayList<>(chunkSize);
+            // Header names seen so far, mapped to their normalized form
+            Map<String, String> fieldNames = new HashMap<>();
+            int malformedInARow = 0;
+
+            while (records.hasNextValue()) {
+                long line = records.getCurrentLocation().getLineNr();
+                Map<String, String> record;
+                try {
+                    record = records.nextValue();
+                    malformedInARow = 0;
+                } catch (JsonProcessingException e) {
+                    report.recordsRead++;
+                    report.rejected++;
+                    report.problem(line, "Malformed record: " + e.getOriginalMessage());
+                    if (++malformedInARow >= MAX_MALFORMED_IN_A_ROW) {
+                        throw new IOException("Too many malformed records; is this a " + format.getDescription() + " file?", e);
+                    }
+                    continue;
+                }
+
+                report.recordsRead++;
+                List<String> errors = new ArrayList<>();
+                Book book = toBook(record, fieldNames, errors);
+                if (errors.isEmpty()) {
+                    chunk.add(book);
+                    chunkLines.add(line);
+                } else {
+                    report.rejected++;
+                    report.problem(line, String.join(" ", errors));
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    send(chunk, chunkLines, report);
+                }
+                if (report.recordsRead % chunkSize == 0) {
+                    // The parser closes the channel once it has read the end of the file
+                    double fraction = channel.isOpen() ? channel.position() / fileSize : 1;
+                    listener.progress(fraction, describe(report));
+                }
+            }
+            send(chunk, chunkLines, report);
+        }
+        listener.progress(1, describe(report));
+        return report;
+    }
+
+    private void send(List<Book> chunk, List<Long> chunkLines, Report report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Import cancelled after " + report.imported + " books");
+        }
+        BatchResult<Book> result = bookService.createBooks(chunk);
+        List<BatchResult.Item<Book>> items = result.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            BatchResult.Item<Book> item = items.get(i);
+            if (item != null && item.isSuccess()) {
+                report.imported++;
+            } else {
+                report.failed++;
+                report.problem(chunkLines.get(i), item != null ? item.getError() : "Not sent");
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    private static Book toBook(Map<String, String> record, Map<String, String> fieldNames, List<String> errors) {
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, String> field : record.entrySet()) {
+            String value = field.getValue() != null ? field.getValue().trim() : "";
+            if (!value.isEmpty()) {
+                fields.put(fieldNames.computeIfAbsent(field.getKey(), BookImporter::normalizeName), value);
+            }
+        }
+
+        String dateText = fields.get("publisheddate");
+        LocalDate publishedDate = null;
+        String dateError = null;
+        if (dateText != null) {
+            try {
+                publishedDate = LocalDate.parse(dateText);
+            } catch (DateTimeParseException e) {
+                dateError = "Published date \"" + dateText + "\" is not a yyyy-MM-dd date!";
+            }
+        }
+
+        Book book = new Book(fields.get("title"), fields.get("author"), fields.get("isbn"), publishedDate);
+        errors.addAll(BookValidator.validate(book));
+        if (dateError != null) {
+            errors.remove(BookValidator.PUBLISHED_DATE_REQUIRED);
+            errors.add(dateError);
+        }
+        return book;
+    }
+
+    private static String normalizeName(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+    private static String describe(Report report) {
+        return String.format("Read %,d records: %,d imported, %,d rejected, %,d failed",
+            report.recordsRead, report.imported, report.rejected, report.failed);
+    }
+}
@@ -0,0 +1,341 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory full-text index over the title, author and ISBN of the books the client holds.
+ *
+ * Text is folded to lower case without diacritics ("Brontë" matches "bronte"), and ISBNs are
+ * indexed without hyphens or spaces. A query is split into words, and a book matches when every
+ * word occurs somewhere in its fields, as a whole word, a prefix or any part of a word. Words of
+ * three or more characters are looked up through trigram posting lists, so only the few books
+ * sharing all their trigrams are checked against the text; shorter queries check every book.
+ *
+ * Books get a new slot whenever their text changes, so posting lists only ever grow at the end
+ * and stay sorted; stale entries are skipped and reclaimed by an occasional rebuild.
+ *
+ * Not thread-safe; the controller only uses it on the FX thread.
+ */
+public class BookIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern ISBN_SEPARATORS = Pattern.compile("[\\s-]+");
+    private static final int MIN_REBUILD_SLOTS = 4096;
+
+    /**
+     * A compiled search. It remembers which books matched when it ran and checks books indexed
+     * since then against their text, so it stays correct while the index changes.
+     */
+    public final class Query {
+        private final String[] words;
+        private final Set<Long> matches;
+        private final int slotLimit;
+        private final int epoch;
+
+        private Query(String[] words, Set<Long> matches) {
+            this.words = words;
+            this.matches = matches;
+            this.slotLimit = slotCount;
+            this.epoch = BookIndex.this.epoch;
+        }
+
+        public boolean test(Book book) {
+            if (words.length == 0) {
+                return true;
+            }
+            Integer slot = slotsById.get(book.getId());
+            if (slot == null) {
+                return false;
+            }
+            if (epoch == BookIndex.this.epoch && slot < slotLimit) {
+                return matches.contains(book.getId());
+            }
+            return containsAll(texts[slot], words);
+        }
+
+        /**
+         * The number of books that matched when the search ran.
+         */
+        public int size() {
+            return words.length == 0 ? liveCount : matches.size();
+        }
+    }
+
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // Folded text and id per slot; the text is null once the slot is stale
+    private String[] texts = new String[1024];
+    private long[] slotIds = new long[1024];
+    private int slotCount;
+    private int liveCount;
+    // Bumped by every rebuild, which renumbers the slots
+    private int epoch;
+
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * Adds a book, or updates it if it is already indexed.
+     */
+    public void put(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        String text = fold(book);
+        Integer slot = slotsById.get(book.getId());
+        if (slot != null) {
+            if (text.equals(texts[slot])) {
+                return;
+            }
+            texts[slot] = null;
+            liveCount--;
+        }
+        index(book.getId(), text);
+        maybeRebuild();
+    }
+
+    public void putAll(List<? extends Book> books) {
+        for (Book book : books) {
+            put(book);
+        }
+    }
+
+    public void remove(Long id) {
+        Integer slot = slotsById.remove(id);
+        if (slot != null) {
+            texts[slot] = null;
+            liveCount--;
+            maybeRebuild();
+        }
+    }
+
+    public void clear() {
+        slotsById.clear();
+        postings.clear();
+        texts = new String[1024];
+        slotIds = new long[1024];
+        slotCount = 0;
+        liveCount = 0;
+        epoch++;
+    }
+
+    /**
+     * Finds the books matching {@code text}; an empty query matches everything.
+     */
+    public Query search(String text) {
+        String[] words = words(foldText(text == null ? "" : text));
+        Set<Long> matches = new HashSet<>();
+        if (words.length == 0) {
+            return new Query(words, matches);
+        }
+
+        Postings candidates = candidates(words);
+        if (candidates == null) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (texts[slot] != null && containsAll(texts[slot], words)) {
+                    matches.add(slotIds[slot]);
+                }
+            }
+        } else {
+            for (int i = 0; i < candidates.size; i++) {
+                int slot = candidates.slots[i];
+                if (texts[slot] != null && containsAll(texts[slot], words)) {
+                    matches.add(slotIds[slot]);
+                }
+            }
+        }
+        return new Query(words, matches);
+    }
+
+    /**
+     * The slots that contain every trigram of every long enough word, or {@code null} if no
+     * word is long enough to narrow the search.
+     */
+    private Postings candidates(String[] words) {
+        List<Postings> lists = new ArrayList<>();
+        for (String word : words) {
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                Postings list = postings.get(trigram(word, i));
+                if (list == null) {
+                    return new Postings();
+                }
+                lists.add(list);
+            }
+        }
+        if (lists.isEmpty()) {
+            return null;
+        }
+
+        // Intersect starting from the shortest list, so the working set only shrinks
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        Postings result = lists.get(0).copy();
+        for (int i = 1; i < lists.size() && result.size > 0; i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private void index(long id, String text) {
+        if (slotCount == texts.length) {
+            texts = Arrays.copyOf(texts, slotCount * 2);
+            slotIds = Arrays.copyOf(slotIds, slotCount * 2);
+        }
+        int slot = slotCount++;
+        texts[slot] = text;
+        slotIds[slot] = id;
+        slotsById.put(id, slot);
+        liveCount++;
+
+        for (long key : trigrams(text)) {
+            postings.computeIfAbsent(key, k -> new Postings()).add(slot);
+        }
+    }
+
+    private void maybeRebuild() {
+        int stale = slotCount - liveCount;
+        if (stale < MIN_REBUILD_SLOTS || stale < liveCount) {
+            return;
+        }
+        String[] oldTexts = texts;
+        long[] oldIds = slotIds;
+        int oldCount = slotCount;
+        clear();
+        for (int slot = 0; slot < oldCount; slot++) {
+            if (oldTexts[slot] != null) {
+                index(oldIds[slot], oldTexts[slot]);
+            }
+        }
+    }
+
+    // The distinct trigrams inside the words of a folded text
+    private static long[] trigrams(String text) {
+        long[] keys = new long[Math.max(0, text.length() - 2)];
+        int count = 0;
+        int wordStart = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ' ') {
+                for (int j = wordStart; j + 3 <= i; j++) {
+                    keys[count++] = trigram(text, j);
+                }
+                wordStart = i + 1;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || keys[distinct - 1] != keys[i]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static boolean containsAll(String text, String[] words) {
+        for (String word : words) {
+            if (!text.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] words(String folded) {
+        String trimmed = folded.trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split(" ");
+    }
+
+    // Fields joined by spaces, so no word or trigram spans two fields
+    private static String fold(Book book) {
+        String isbn = book.getIsbn() == null ? "" : ISBN_SEPARATORS.matcher(book.getIsbn()).replaceAll("");
+        return foldText(book.getTitle()) + " " + foldText(book.getAuthor()) + " " + foldText(isbn);
+    }
+
+    /**
+     * Lower-cases {@code text}, strips diacritics and turns every run of punctuation or spaces
+     * into a single space. Safe to call from any thread.
+     */
+    public static String foldText(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        // Most text is plain ASCII, which needs neither the normalizer nor the regexes
+        StringBuilder folded = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                return foldUnicode(text);
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (pendingSpace && folded.length() > 0) {
+                    folded.append(' ');
+                }
+                pendingSpace = false;
+                folded.append(c);
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return folded.toString();
+    }
+
+    private static String foldUnicode(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String plain = DIACRITICS.matcher(decomposed).replaceAll("");
+        return NOT_WORD.matcher(plain.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // Ascending slot numbers
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        Postings copy() {
+            Postings copy = new Postings();
+            copy.slots = Arrays.copyOf(slots, Math.max(1, size));
+            copy.size = size;
+            return copy;
+        }
+
+        void retainAll(Postings other) {
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = slots[i];
+                while (j < other.size && other.slots[j] < slot) {
+                    j++;
+                }
+                if (j < other.size && other.slots[j] == slot) {
+                    slots[kept++] = slot;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Walks every page of a paged {@code /api/books} endpoint.
+ *
+ * Two modes are supported: {@link #prefetch} fetches pages concurrently once the first page has
+ * told us {@code totalPages}, and {@link #pageIterator()} / {@link #iterator()} /
+ * {@link #publisher} fetch one page at a time as the consumer asks for more. Either way at most
+ * a handful of pages are held in memory at once.
+ */
+public class BookPager implements Iterable<Book> {
+
+    @FunctionalInterface
+    public interface PageFetcher {
+        PageResponse<Book> fetch(int page, int size);
+    }
+
+    private final PageFetcher fetcher;
+    private final int pageSize;
+
+    public BookPager(PageFetcher fetcher, int pageSize) {
+        this.fetcher = fetcher;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Fetches the first page, then the remaining {@code totalPages - 1} pages with at most
+     * {@code parallelism} requests in flight. Pages are handed to {@code onPage} in page order on
+     * the calling thread, so out-of-order arrivals are buffered only within that window. A page
+     * the executor has no room for is fetched on the calling thread instead.
+     *
+     * @return the number of books delivered
+     */
+    public long prefetch(Executor executor, int parallelism, Consumer<List<Book>> onPage) {
+        PageResponse<Book> first = fetcher.fetch(0, pageSize);
+        long delivered = deliver(first, onPage);
+        if (first.isLast() || isEmpty(first)) {
+            return delivered;
+        }
+
+        int totalPages = first.getTotalPages();
+        Deque<Future<PageResponse<Book>>> window = new ArrayDeque<>();
+        int next = 1;
+        try {
+            while (next < totalPages && window.size() < Math.max(1, parallelism)) {
+                window.add(submit(executor, next++));
+            }
+            while (!window.isEmpty()) {
+                PageResponse<Book> page = await(window.poll());
+                delivered += deliver(page, onPage);
+                if (isEmpty(page)) {
+                    // The catalog shrank while we were paging; stop rather than request empty pages
+                    break;
+                }
+                if (next < totalPages) {
+                    window.add(submit(executor, next++));
+                }
+            }
+        } finally {
+            for (Future<PageResponse<Book>> pending : window) {
+                pending.cancel(true);
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Lazily fetches page after page until the server reports the last one.
+     */
+    public Iterator<List<Book>> pageIterator() {
+        return new Iterator<>() {
+            private int nextPage = 0;
+            private boolean done = false;
+            private List<Book> buffered;
+
+            @Override
+            public boolean hasNext() {
+                if (buffered == null && !done) {
+                    PageResponse<Book> page = fetcher.fetch(nextPage++, pageSize);
+                    List<Book> content = page.getContent() != null ? page.getContent() : Collections.emptyList();
+                    done = page.isLast() || content.isEmpty();
+                    buffered = content.isEmpty() ? null : content;
+                }
+                return buffered != null;
+            }
+
+            @Override
+            public List<Book> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<Book> content = buffered;
+                buffered = null;
+                return content;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Book> iterator() {
+        Iterator<List<Book>> pages = pageIterator();
+        return new Iterator<>() {
+            private Iterator<Book> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && pages.hasNext()) {
+                    current = pages.next().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Book next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Publishes every book to a {@link Flow.Subscriber}. Pages are only fetched when the
+     * subscriber has outstanding demand, and all signals are delivered from {@code executor}.
+     */
+    public Flow.Publisher<Book> publisher(Executor executor) {
+        return subscriber -> subscriber.onSubscribe(new PageSubscription(subscriber, iterator(), executor));
+    }
+
+    private Future<PageResponse<Book>> submit(Executor executor, int page) {
+        FutureTask<PageResponse<Book>> task = new FutureTask<>(() -> fetcher.fetch(page, pageSize));
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The pool is busy with other loads; this page just doesn't overlap the others
+            task.run();
+        }
+        return task;
+    }
+
+    private static PageResponse<Book> await(Future<PageResponse<Book>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Paging interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BookServiceException("Failed to fetch page", cause);
+        }
+    }
+
+    private static long deliver(PageResponse<Book> page, Consumer<List<Book>> onPage) {
+        if (isEmpty(page)) {
+            return 0;
+        }
+        onPage.accept(page.getContent());
+        return page.getContent().size();
+    }
+
+    private static boolean isEmpty(PageResponse<Book> page) {
+        return page.getContent() == null || page.getContent().isEmpty();
+    }
+
+    private static final class PageSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Book> subscriber;
+        private final Iterator<Book> books;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        PageSubscription(Flow.Subscriber<? super Book> subscriber, Iterator<Book> books, Executor executor) {
+            this.subscriber = subscriber;
+            this.books = books;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                executor.execute(() -> subscriber.onError(
+                    new IllegalArgumentException("Demand must be positive, was " + n)));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> {
+                long sum = current + added;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            if (pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                try {
+                    while (!cancelled && demand.get() > 0) {
+                        if (!books.hasNext()) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        Book book = books.next();
+                        demand.decrementAndGet();
+                        subscriber.onNext(book);
+                    }
+                } catch (RuntimeException e) {
+                    cancelled = true;
+                    subscriber.onError(e);
+                    return;
+                }
+                missed = pendingDrains.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
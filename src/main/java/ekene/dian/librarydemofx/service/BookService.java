@@ -1,136 +1,860 @@
 package ekene.dian.librarydemofx.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.BookChanges;
+import ekene.dian.librarydemofx.model.BookEvent;
 import ekene.dian.librarydemofx.model.PageResponse;
-import org.springframework.http.*;
-import org.springframework.web.client.RestTemplate;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-public class BookService {
-    private static final String API_BASE_URL = "http://localhost:8080/api/books";
-    private final RestTemplate restTemplate;
+public class BookService implements AutoCloseable {
+    private static final Logger LOG = System.getLogger(BookService.class.getName());
+    private static final Map<String, String> JSON_HEADERS = Map.of("Accept", "application/json");
+    private static final Map<String, String> JSON_BODY_HEADERS = Map.of(
+        "Accept", "application/json",
+        "Content-Type", "application/json"
+    );
+    private final HttpTransport transport;
     private final ObjectMapper objectMapper;
+    private final PageReader pageReader;
+    // Null when only JSON is asked for
+    private final WireCodec wireCodec;
+    private final PageReader codecPageReader;
+    // Accept headers for page and search requests
+    private final Map<String, String> pageHeaders;
+    private final ClientConfig config;
+    private final String apiBaseUrl;
+    private final ExecutorService pageExecutor;
+    // Null when caching is disabled
+    private final QueryCache queryCache;
+    private final BookEntityCache entityCache;
+    private final RetryPolicy retryPolicy;
+    // Applied to reads; a single attempt if read retries are off
+    private final RetryPolicy readRetryPolicy;
+    // Null when hedging is disabled
+    private final ExecutorService hedgeExecutor;
+    private final ExecutorService batchExecutor;
+    private final BatchRunner batchRunner;
+    private final ClientMetrics metrics;
+
+    private interface Decoder<T> {
+        T decode(InputStream body) throws IOException;
+    }
 
     public BookService() {
-        this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-    }
-
-    public List<Book> getAllBooks() {
-        try {
-            String response = restTemplate.getForObject(API_BASE_URL, String.class);
-            if (response != null && !response.trim().isEmpty()) {
-                System.out.println("API Response: " + response); // Debug log
-                
-                objectMapper.configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-                
-                PageResponse<Book> pageResponse = objectMapper.readValue(
-                    response, 
-                    new TypeReference<PageResponse<Book>>() {}
-                );
-                
-                return pageResponse.getContent() != null ? pageResponse.getContent() : Collections.emptyList();
-            }
-            return Collections.emptyList();
+        this(ClientConfig.load());
+    }
+
+    public BookService(ClientConfig config) {
+        this(config, new ClientMetrics());
+    }
+
+    /**
+     * A service recording into {@code metrics}, which may already be in use, e.g. by the FX
+     * watchdog while this service is still being built. The service closes them with itself.
+     */
+    public BookService(ClientConfig config, ClientMetrics metrics) {
+        this(config, HttpTransport.fromConfig(config), metrics);
+    }
+
+    public BookService(ClientConfig config, HttpTransport transport) {
+        this(config, transport, new ClientMetrics());
+    }
+
+    public BookService(ClientConfig config, HttpTransport transport, ClientMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+        this.apiBaseUrl = config.getServerUrl();
+        // Requests refused by an open circuit never reach the network, so they aren't timed; a
+        // request failed over to another node is timed once, from the first attempt
+        List<String> serverUrls = config.getServerUrls();
+        HttpTransport balanced = serverUrls.size() > 1
+            ? new LoadBalancingTransport(transport, serverUrls,
+                LoadBalancingTransport.strategy(config.getBalancerStrategy()),
+                config.getBalancerFailureThreshold(), config.getBalancerEjectMillis(), metrics)
+            : transport;
+        HttpTransport instrumented = new InstrumentedTransport(balanced, metrics);
+        this.transport = config.isCircuitBreakerEnabled()
+            ? new CircuitBreakerTransport(instrumented, config.getCircuitFailureThreshold(), config.getCircuitOpenMillis(), metrics)
+            : instrumented;
+        this.objectMapper = configure(new ObjectMapper());
+        this.pageReader = new PageReader(objectMapper);
+        this.wireCodec = wireCodec(config);
+        this.codecPageReader = wireCodec != null
+            ? new PageReader(configure(new ObjectMapper(wireCodec.createFactory())))
+            : null;
+        this.pageHeaders = wireCodec != null
+            ? Map.of("Accept", wireCodec.getMediaType() + ", application/json;q=0.9")
+            : JSON_HEADERS;
+        // Only page prefetch tasks run here; each prefetch keeps at most "parallelism" of them queued
+        int parallelism = Math.max(1, config.getPageParallelism());
+        this.pageExecutor = ServiceExecutors.newBoundedExecutor("book-pages", parallelism, parallelism * 16);
+        this.queryCache = config.isCacheEnabled() ? QueryCache.fromConfig(config) : null;
+        this.entityCache = new BookEntityCache(config.getEntityCacheMaxEntries());
+        this.retryPolicy = RetryPolicy.fromConfig(config).withOnRetry(metrics::recordRetry);
+        this.readRetryPolicy = config.isReadRetryEnabled() ? retryPolicy : new RetryPolicy(1, 0, 0, 1);
+        this.hedgeExecutor = config.isHedgingEnabled()
+            ? ServiceExecutors.newBoundedExecutor("book-hedge", Math.max(2, config.getMaxConnections()), 64)
+            : null;
+        int maxInFlight = Math.max(1, config.getBatchMaxInFlight());
+        this.batchExecutor = ServiceExecutors.newBoundedExecutor("book-batch", maxInFlight, maxInFlight * 16);
+        this.batchRunner = new BatchRunner(retryPolicy, batchExecutor, maxInFlight,
+            config.getBulkChunkSize(), config.isBulkEndpointEnabled());
+        if (queryCache != null) {
+            metrics.registerCache("query", queryCache::getHits, queryCache::getMisses);
+        }
+        metrics.registerCache("entity", entityCache::getHits, entityCache::getMisses);
+        metrics.bindExporters(config);
+    }
+
+    // Configured once here; a mapper must not be reconfigured once it is shared between threads
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        // Send dates as "2024-01-31", as Spring's own converters did
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return mapper;
+    }
+
+    private static WireCodec wireCodec(ClientConfig config) {
+        try {
+            return WireCodec.create(config.getWireFormat());
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            LOG.log(Level.WARNING, "Unknown wire format " + config.getWireFormat() + ", using JSON: " + e);
+            return null;
+        }
+    }
+
+    public ClientConfig getConfig() {
+        return config;
+    }
+
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Returns the last known version of a book without contacting the server, or {@code null}
+     * if it has not been seen yet.
+     */
+    public Book getCachedBook(Long id) {
+        return entityCache.get(id);
+    }
+
+    /**
+     * Returns every book in the catalog, following all pages of {@code /api/books}.
+     */
+    public ServiceResult<List<Book>> getAllBooks() {
+        try {
+            List<Book> books = new ArrayList<>();
+            streamAllBooks(books::addAll);
+            return ServiceResult.success(books);
+        } catch (Exception e) {
+            LOG.log(Level.DEBUG, "Error fetching all books: " + e.getMessage(), e);
+            return ServiceResult.failure(e);
+        }
+    }
+
+    /**
+     * Streams every book in the catalog to {@code onPage}, one page at a time, using the
+     * configured paging mode.
+     *
+     * @return the number of books delivered
+     */
+    public long streamAllBooks(Consumer<List<Book>> onPage) {
+        return streamCached("", pager(), onPage);
+    }
+
+    /**
+     * Streams every search result to {@code onPage}, one page at a time, using the configured
+     * paging mode.
+     *
+     * @return the number of books delivered
+     */
+    public long streamSearchBooks(String query, Consumer<List<Book>> onPage) {
+        return streamCached(query, searchPager(query), onPage);
+    }
+
+    /**
+     * Like {@link #streamAllBooks} but without reading or filling the query cache, so memory use
+     * stays flat however large the catalog is. Meant for exports.
+     *
+     * @return the number of books delivered
+     */
+    public long streamAllBooksUncached(Consumer<List<Book>> onPage) {
+        return stream(pager(), onPage);
+    }
+
+    public BookPager pager() {
+        return new BookPager(this::getBooksPage, config.getPageSize());
+    }
+
+    public BookPager searchPager(String query) {
+        return new BookPager((page, size) -> searchBooksPage(query, page, size), config.getPageSize());
+    }
+
+    public PageResponse<Book> getBooksPage(int page, int size) {
+        return getBooksPage(page, size, Collections.emptyList());
+    }
+
+    /**
+     * Fetches one page, sorted on the server.
+     *
+     * @param sort Spring Data style sort orders such as {@code "title,asc"}, most significant first
+     */
+    public PageResponse<Book> getBooksPage(int page, int size, List<String> sort) {
+        try {
+            String url = apiBaseUrl + "?page=" + page + "&size=" + size + sortParams(sort);
+            return read(() -> fetchPage(url));
         } catch (Exception e) {
-            System.err.println("Error fetching all books: " + e.getMessage());
-            e.printStackTrace();
-            return Collections.emptyList();
+            throw new BookServiceException("Error fetching page " + page + " of books: " + e.getMessage(), e);
         }
     }
 
-    public Book getBookById(Long id) {
+    public PageResponse<Book> searchBooksPage(String query, int page, int size) {
+        return searchBooksPage(query, page, size, Collections.emptyList());
+    }
+
+    public PageResponse<Book> searchBooksPage(String query, int page, int size, List<String> sort) {
         try {
-            String response = restTemplate.getForObject(API_BASE_URL + "/" + id, String.class);
-            if (response != null && !response.trim().isEmpty()) {
-                return objectMapper.readValue(response, Book.class);
+            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+            String url = apiBaseUrl + "/search?query=" + encodedQuery + "&page=" + page + "&size=" + size + sortParams(sort);
+            return read(() -> hedged("GET", url, () -> fetchPage(url)));
+        } catch (Exception e) {
+            throw new BookServiceException("Error searching books: " + e.getMessage(), e);
+        }
+    }
+
+    private long streamCached(String query, BookPager pager, Consumer<List<Book>> onPage) {
+        if (queryCache == null) {
+            return stream(pager, onPage);
+        }
+
+        List<Book> cached = queryCache.get(query);
+        if (cached != null) {
+            // Hand cached results out in page-sized chunks, like a load from the server would
+            int pageSize = pager.getPageSize();
+            for (int from = 0; from < cached.size(); from += pageSize) {
+                onPage.accept(cached.subList(from, Math.min(cached.size(), from + pageSize)));
             }
-            return null;
+            return cached.size();
+        }
+
+        QueryCache.Collector collector = queryCache.collector(query);
+        long delivered = stream(pager, page -> {
+            collector.add(page);
+            onPage.accept(page);
+        });
+        // Only reached once every page has been fetched, so the result set is complete
+        collector.complete();
+        return delivered;
+    }
+
+    private void invalidateQueryCache() {
+        if (queryCache != null) {
+            queryCache.invalidateAll();
+        }
+    }
+
+    private long stream(BookPager pager, Consumer<List<Book>> onPage) {
+        if ("stream".equalsIgnoreCase(config.getPagingMode())) {
+            long delivered = 0;
+            Iterator<List<Book>> pages = pager.pageIterator();
+            while (pages.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Paging cancelled");
+                }
+                List<Book> page = pages.next();
+                onPage.accept(page);
+                delivered += page.size();
+            }
+            return delivered;
+        }
+        return pager.prefetch(pageExecutor, config.getPageParallelism(), onPage);
+    }
+
+    /**
+     * Fetches and decodes one page, reading the books straight off the response stream.
+     */
+    private PageResponse<Book> fetchPage(String url) throws IOException {
+        PageResponse<Book> page;
+        try (TransportResponse response = transport.execute("GET", url, pageHeaders, null)) {
+            checkStatus(response, "GET", url);
+            page = decode(response, pageReaderFor(response)::read);
+        }
+        entityCache.putAll(page.getContent());
+        return page;
+    }
+
+    /**
+     * The reader for the encoding the server chose: the wire codec's if it answered with its
+     * media type, JSON otherwise.
+     */
+    private PageReader pageReaderFor(TransportResponse response) {
+        String contentType = response.getHeader("Content-Type");
+        if (codecPageReader != null && contentType != null) {
+            int parameters = contentType.indexOf(';');
+            String mediaType = (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim();
+            if (mediaType.equalsIgnoreCase(wireCodec.getMediaType())) {
+                return codecPageReader;
+            }
+        }
+        return pageReader;
+    }
+
+    /**
+     * A page together with the {@code ETag} it was served with, if any.
+     */
+    static final class VersionedPage {
+        final PageResponse<Book> page;
+        final String etag;
+
+        VersionedPage(PageResponse<Book> page, String etag) {
+            this.page = page;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Fetches one page of the whole catalog, conditionally if {@code etag} is known.
+     *
+     * @return {@code null} if the server answered {@code 304 Not Modified}
+     */
+    VersionedPage getBooksPageIfChanged(int page, int size, List<String> sort, String etag) throws IOException {
+        return read(() -> fetchPageIfChanged(page, size, sort, etag));
+    }
+
+    private VersionedPage fetchPageIfChanged(int page, int size, List<String> sort, String etag) throws IOException {
+        String url = apiBaseUrl + "?page=" + page + "&size=" + size + sortParams(sort);
+        Map<String, String> headers = pageHeaders;
+        if (etag != null) {
+            headers = new HashMap<>(pageHeaders);
+            headers.put("If-None-Match", etag);
+        }
+        VersionedPage versioned;
+        try (TransportResponse response = transport.execute("GET", url, headers, null)) {
+            if (response.getStatus() == 304 && etag != null) {
+                return null;
+            }
+            checkStatus(response, "GET", url);
+            versioned = new VersionedPage(decode(response, pageReaderFor(response)::read), response.getHeader("ETag"));
+        }
+        entityCache.putAll(versioned.page.getContent());
+        return versioned;
+    }
+
+    /**
+     * Fetches what changed since {@code since} from {@code GET /api/books/changes}; with no
+     * watermark every book comes back as changed.
+     */
+    BookChanges getChanges(String since, int size) throws IOException {
+        return read(() -> fetchChanges(since, size));
+    }
+
+    private BookChanges fetchChanges(String since, int size) throws IOException {
+        String url = apiBaseUrl + "/changes?size=" + size
+            + (since != null ? "&since=" + URLEncoder.encode(since, StandardCharsets.UTF_8) : "");
+        BookChanges changes;
+        try (TransportResponse response = transport.execute("GET", url, JSON_HEADERS, null)) {
+            checkStatus(response, "GET", url);
+            changes = decode(response, body -> objectMapper.readValue(body, BookChanges.class));
+        }
+        entityCache.putAll(changes.getChanged());
+        changes.getDeleted().forEach(entityCache::remove);
+        if (!changes.getChanged().isEmpty() || !changes.getDeleted().isEmpty()) {
+            invalidateQueryCache();
+        }
+        return changes;
+    }
+
+    /**
+     * Opens {@code GET /api/books/events}, resuming after {@code lastEventId} if given. The
+     * caller reads the event stream from the response and closes it.
+     */
+    TransportResponse openEvents(String lastEventId) throws IOException {
+        String url = apiBaseUrl + "/events";
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "text/event-stream");
+        headers.put("Cache-Control", "no-cache");
+        if (lastEventId != null) {
+            headers.put("Last-Event-ID", lastEventId);
+        }
+        TransportResponse response = transport.execute("GET", url, headers, null);
+        if (!response.isSuccessful()) {
+            response.close();
+            checkStatus(response, "GET", url);
+        }
+        return response;
+    }
+
+    /**
+     * Brings the caches in line with a change pushed by the server.
+     */
+    void applyEvent(BookEvent event) {
+        if (event.getType() == BookEvent.Type.DELETED) {
+            entityCache.remove(event.getId());
+        } else if (event.getBook() != null) {
+            entityCache.replace(event.getBook());
+        }
+        invalidateQueryCache();
+    }
+
+    /**
+     * Runs an idempotent read, retrying it according to the read retry policy.
+     */
+    private <T> T read(Callable<T> call) throws IOException {
+        try {
+            return readRetryPolicy.call(call, RetryPolicy.IDEMPOTENT);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
         } catch (Exception e) {
-            System.err.println("Error fetching book with id " + id + ": " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            throw new BookServiceException(e.getMessage(), e);
         }
     }
 
-    public Book createBook(Book book) {
+    /**
+     * Runs an idempotent read and, if hedging is on and it hasn't answered within the hedge
+     * delay, runs it a second time and returns whichever answers first; the other is then
+     * cancelled, which interrupts it. Only when both fail is the first one's error thrown.
+     */
+    private <T> T hedged(String method, String url, Callable<T> call) throws Exception {
+        if (hedgeExecutor == null) {
+            return call.call();
+        }
+        CompletableFuture<T> primary;
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Book> request = new HttpEntity<>(book, headers);
-            
-            String response = restTemplate.postForObject(API_BASE_URL, request, String.class);
-            if (response != null && !response.trim().isEmpty()) {
-                return objectMapper.readValue(response, Book.class);
+            primary = runHedge(call);
+        } catch (RejectedExecutionException e) {
+            return call.call();
+        }
+        try {
+            return awaitHedge(primary, hedgeDelayMillis(method, url));
+        } catch (TimeoutException e) {
+            // Slow: race it
+        }
+
+        CompletableFuture<T> backup;
+        try {
+            backup = runHedge(call);
+        } catch (RejectedExecutionException e) {
+            return awaitHedge(primary, Long.MAX_VALUE);
+        }
+        metrics.recordHedge();
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        // Fails with the primary's error once both have failed
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                first.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(error);
             }
-            return null;
+        });
+        backup.whenComplete((value, error) -> {
+            if (error == null) {
+                first.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                primary.whenComplete((v, primaryError) -> first.completeExceptionally(primaryError));
+            }
+        });
+        // Frees the loser's thread and connection; cancelling a finished call does nothing
+        first.whenComplete((value, error) -> {
+            primary.cancel(true);
+            backup.cancel(true);
+        });
+        return awaitHedge(first, Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs {@code call} on the hedge executor; cancelling the returned future interrupts it.
+     */
+    private <T> CompletableFuture<T> runHedge(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task = hedgeExecutor.submit(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private static <T> T awaitHedge(CompletableFuture<T> future, long timeoutMillis) throws Exception {
+        try {
+            return timeoutMillis == Long.MAX_VALUE ? future.get() : future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The configured hedge delay, or the endpoint's 95th percentile latency once it has enough
+     * samples to go by (100 ms until then).
+     */
+    private long hedgeDelayMillis(String method, String url) {
+        long configured = config.getHedgeDelayMillis();
+        if (configured > 0) {
+            return configured;
+        }
+        LatencyHistogram latency = metrics.endpoint(InstrumentedTransport.endpoint(method, url)).getLatency();
+        return latency.getCount() < 20 ? 100 : Math.max(1, (long) Math.ceil(latency.percentileMillis(95)));
+    }
+
+    /**
+     * Decodes a response body, timing it as decoding.
+     */
+    private <T> T decode(TransportResponse response, Decoder<T> decoder) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return decoder.decode(response.getBody());
+        } finally {
+            metrics.recordDecoding(System.nanoTime() - start);
+        }
+    }
+
+    private static void checkStatus(TransportResponse response, String method, String url) {
+        if (!response.isSuccessful()) {
+            throw new BookServiceException(method + " " + url + " returned HTTP " + response.getStatus(), response.getStatus());
+        }
+    }
+
+    private static String sortParams(List<String> sort) {
+        StringBuilder params = new StringBuilder();
+        for (String order : sort) {
+            params.append("&sort=").append(URLEncoder.encode(order, StandardCharsets.UTF_8));
+        }
+        return params.toString();
+    }
+
+    /**
+     * Fetches the latest version of a book. If an earlier response carried an {@code ETag} or
+     * {@code Last-Modified} header, the request is conditional and a {@code 304 Not Modified}
+     * answer returns the cached book without transferring it again.
+     *
+     * @return the book, or a successful {@code null} if the server has no such book
+     */
+    public ServiceResult<Book> getBookById(Long id) {
+        String url = apiBaseUrl + "/" + id;
+        try {
+            return ServiceResult.success(read(() -> hedged("GET", url, () -> fetchBook(id, url))));
         } catch (Exception e) {
-            System.err.println("Error creating book: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            if (e instanceof BookServiceException && ((BookServiceException) e).getStatusCode() == 404) {
+                entityCache.remove(id);
+                return ServiceResult.success(null);
+            }
+            LOG.log(Level.DEBUG, "Error fetching book with id " + id + ": " + e.getMessage(), e);
+            return ServiceResult.failure(e);
         }
     }
 
-    public boolean updateBook(Book book) {
+    private Book fetchBook(Long id, String url) throws IOException {
+        BookEntityCache.Entry cached = entityCache.getEntry(id);
+        Map<String, String> headers = new HashMap<>(JSON_HEADERS);
+        if (cached != null && cached.getEtag() != null) {
+            headers.put("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            headers.put("If-Modified-Since", cached.getLastModified());
+        }
+
+        try (TransportResponse response = transport.execute("GET", url, headers, null)) {
+            if (response.getStatus() == 304 && cached != null) {
+                return cached.getBook();
+            }
+            checkStatus(response, "GET", url);
+
+            Book book = decode(response, pageReader::readBook);
+            if (book != null) {
+                entityCache.put(book, response.getHeader("ETag"), response.getHeader("Last-Modified"));
+            }
+            return book;
+        }
+    }
+
+    /**
+     * @return the book as created by the server
+     */
+    public ServiceResult<Book> createBook(Book book) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Book> request = new HttpEntity<>(book, headers);
-            
-            restTemplate.put(API_BASE_URL + "/" + book.getId(), request);
-            return true;
+            return ServiceResult.success(sendCreate(book));
         } catch (Exception e) {
-            System.err.println("Error updating book: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            LOG.log(Level.DEBUG, "Error creating book: " + e.getMessage(), e);
+            return ServiceResult.failure(e);
+        } finally {
+            // Even a failed write may have reached the server
+            invalidateQueryCache();
         }
     }
 
-    public boolean deleteBook(Long id) {
+    /**
+     * @return the book as sent
+     */
+    public ServiceResult<Book> updateBook(Book book) {
         try {
-            restTemplate.delete(API_BASE_URL + "/" + id);
-            return true;
+            sendUpdate(book);
+            return ServiceResult.success(book);
         } catch (Exception e) {
-            System.err.println("Error deleting book: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            LOG.log(Level.DEBUG, "Error updating book: " + e.getMessage(), e);
+            return ServiceResult.failure(e);
+        } finally {
+            invalidateQueryCache();
         }
     }
 
-    public List<Book> searchBooks(String query) {
+    /**
+     * @return the id of the deleted book
+     */
+    public ServiceResult<Long> deleteBook(Long id) {
         try {
-            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-            String url = API_BASE_URL + "/search?query=" + encodedQuery;
-            System.out.println("Search URL: " + url); // Debug log
-            
-            String response = restTemplate.getForObject(url, String.class);
-            
-            if (response != null && !response.trim().isEmpty()) {
-                System.out.println("Search Response: " + response); // Debug log
-                
-                objectMapper.configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-                
-                PageResponse<Book> pageResponse = objectMapper.readValue(
-                    response, 
-                    new TypeReference<PageResponse<Book>>() {}
-                );
-                
-                return pageResponse.getContent() != null ? pageResponse.getContent() : Collections.emptyList();
+            sendDelete(id);
+            return ServiceResult.success(id);
+        } catch (Exception e) {
+            LOG.log(Level.DEBUG, "Error deleting book: " + e.getMessage(), e);
+            return ServiceResult.failure(e);
+        } finally {
+            invalidateQueryCache();
+        }
+    }
+
+    /**
+     * Creates many books, through {@code POST /api/books/bulk} when the server has it and
+     * otherwise with concurrent single requests. Creates are only retried when the server
+     * certainly didn't receive them, so a retry never produces a duplicate.
+     *
+     * @return the created books, in input order
+     */
+    public BatchResult<Book> createBooks(List<Book> books) {
+        try {
+            return batchRunner.run("POST " + apiBaseUrl + "/bulk", books, this::sendBulkCreate, this::sendCreate,
+                RetryPolicy.NOT_PROCESSED);
+        } finally {
+            invalidateQueryCache();
+        }
+    }
+
+    /**
+     * Updates many books, through {@code PUT /api/books/bulk} when the server has it and
+     * otherwise with concurrent single requests.
+     */
+    public BatchResult<Book> updateBooks(List<Book> books) {
+        try {
+            return batchRunner.run("PUT " + apiBaseUrl + "/bulk", books, this::sendBulkUpdate, book -> {
+                sendUpdate(book);
+                return book;
+            }, RetryPolicy.IDEMPOTENT);
+        } finally {
+            invalidateQueryCache();
+        }
+    }
+
+    /**
+     * Deletes many books, through {@code POST /api/books/bulk-delete} when the server has it and
+     * otherwise with concurrent single requests.
+     *
+     * @return the deleted ids, in input order
+     */
+    public BatchResult<Long> deleteBooks(Collection<Long> ids) {
+        try {
+            return batchRunner.run("POST " + apiBaseUrl + "/bulk-delete", new ArrayList<>(ids), this::sendBulkDelete, id -> {
+                sendDelete(id);
+                return id;
+            }, RetryPolicy.IDEMPOTENT);
+        } finally {
+            invalidateQueryCache();
+        }
+    }
+
+    // For LocalCatalog, which has to tell an unreachable server from one that rejected the write
+
+    /**
+     * Sends a create carrying {@code idempotencyKey}, so a server that supports the header
+     * applies it only once however often it is sent.
+     */
+    Book sendCreateBook(Book book, String idempotencyKey) throws IOException {
+        Map<String, String> headers = new HashMap<>(JSON_BODY_HEADERS);
+        headers.put(HttpTransport.IDEMPOTENCY_KEY, idempotencyKey);
+        try {
+            return sendCreate(book, headers);
+        } finally {
+            invalidateQueryCache();
+        }
+    }
+
+    /**
+     * Looks on the server for a book with the same title, author, ISBN and published date as
+     * {@code book}, for a create that may or may not have reached it.
+     *
+     * @return the book as stored by the server, or {@code null} if there is none
+     */
+    Book findCreated(Book book) {
+        Book[] found = {null};
+        stream(searchPager(book.getTitle()), page -> {
+            for (Book candidate : page) {
+                if (found[0] == null && Objects.equals(candidate.getTitle(), book.getTitle())
+                        && Objects.equals(candidate.getAuthor(), book.getAuthor())
+                        && Objects.equals(candidate.getIsbn(), book.getIsbn())
+                        && Objects.equals(candidate.getPublishedDate(), book.getPublishedDate())) {
+                    found[0] = candidate;
+                }
             }
-            return Collections.emptyList();
+        });
+        return found[0];
+    }
+
+    void sendUpdateBook(Book book) throws IOException {
+        try {
+            sendUpdate(book);
+        } finally {
+            invalidateQueryCache();
+        }
+    }
+
+    void sendDeleteBook(Long id) throws IOException {
+        try {
+            sendDelete(id);
+        } finally {
+            invalidateQueryCache();
+        }
+    }
+
+    ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    private Book sendCreate(Book book) throws IOException {
+        return sendCreate(book, JSON_BODY_HEADERS);
+    }
+
+    private Book sendCreate(Book book, Map<String, String> headers) throws IOException {
+        Book created;
+        try (TransportResponse response = transport.execute(
+                "POST", apiBaseUrl, headers, objectMapper.writeValueAsBytes(book))) {
+            checkStatus(response, "POST", apiBaseUrl);
+            created = decode(response, pageReader::readBook);
+        }
+        if (created != null) {
+            entityCache.replace(created);
+        }
+        return created;
+    }
+
+    private void sendUpdate(Book book) throws IOException {
+        String url = apiBaseUrl + "/" + book.getId();
+        try (TransportResponse response = transport.execute(
+                "PUT", url, JSON_BODY_HEADERS, objectMapper.writeValueAsBytes(book))) {
+            checkStatus(response, "PUT", url);
+        }
+        entityCache.replace(book);
+    }
+
+    private void sendDelete(Long id) throws IOException {
+        String url = apiBaseUrl + "/" + id;
+        try (TransportResponse response = transport.execute("DELETE", url, JSON_HEADERS, null)) {
+            checkStatus(response, "DELETE", url);
+        }
+        entityCache.remove(id);
+    }
+
+    private List<Book> sendBulkCreate(List<Book> books) throws IOException {
+        String url = apiBaseUrl + "/bulk";
+        List<Book> created;
+        try (TransportResponse response = transport.execute(
+                "POST", url, JSON_BODY_HEADERS, objectMapper.writeValueAsBytes(books))) {
+            checkStatus(response, "POST", url);
+            created = decode(response, body -> objectMapper.readerForListOf(Book.class).readValue(body));
+        }
+        created.forEach(entityCache::replace);
+        return created;
+    }
+
+    private List<Book> sendBulkUpdate(List<Book> books) throws IOException {
+        String url = apiBaseUrl + "/bulk";
+        try (TransportResponse response = transport.execute(
+                "PUT", url, JSON_BODY_HEADERS, objectMapper.writeValueAsBytes(books))) {
+            checkStatus(response, "PUT", url);
+        }
+        books.forEach(entityCache::replace);
+        return books;
+    }
+
+    private List<Long> sendBulkDelete(List<Long> ids) throws IOException {
+        String url = apiBaseUrl + "/bulk-delete";
+        try (TransportResponse response = transport.execute(
+                "POST", url, JSON_BODY_HEADERS, objectMapper.writeValueAsBytes(ids))) {
+            checkStatus(response, "POST", url);
+        }
+        ids.forEach(entityCache::remove);
+        return ids;
+    }
+
+    /**
+     * Returns every search result, following all pages of {@code /api/books/search}.
+     */
+    public ServiceResult<List<Book>> searchBooks(String query) {
+        try {
+            List<Book> books = new ArrayList<>();
+            streamSearchBooks(query, books::addAll);
+            return ServiceResult.success(books);
         } catch (Exception e) {
-            System.err.println("Error searching books: " + e.getMessage());
-            e.printStackTrace();
-            return Collections.emptyList();
+            LOG.log(Level.DEBUG, "Error searching books: " + e.getMessage(), e);
+            return ServiceResult.failure(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pageExecutor.shutdownNow();
+        batchExecutor.shutdownNow();
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
         }
+        transport.close();
+        metrics.close();
     }
 }
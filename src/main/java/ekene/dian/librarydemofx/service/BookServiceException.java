@@ -0,0 +1,36 @@
+package ekene.dian.librarydemofx.service;
+
+/**
+ * Thrown when a call to the library backend fails.
+ */
+public class BookServiceException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public BookServiceException(String message) {
+        this(message, -1);
+    }
+
+    /**
+     * For a response with an unexpected HTTP status.
+     */
+    public BookServiceException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public BookServiceException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = cause instanceof BookServiceException
+            ? ((BookServiceException) cause).getStatusCode()
+            : -1;
+    }
+
+    /**
+     * The HTTP status that caused this failure, or -1 if the request didn't get a response.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,134 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending requests for a while once the backend looks down, so that callers fail at once
+ * instead of each waiting out a connect timeout.
+ *
+ * A request fails if it ends in an I/O error or a 500, 502, 503 or 504. A request the client
+ * cancelled, e.g. a prefetch for a search that was replaced or the slower copy of a hedged read,
+ * says nothing about the server and doesn't count. After
+ * {@code failureThreshold} failures in a row the circuit opens and every request throws
+ * {@link CircuitOpenException} without touching the network. Once {@code openMillis} have passed
+ * a single trial request is let through: if it succeeds the circuit closes, otherwise it stays
+ * open for another {@code openMillis}.
+ */
+class CircuitBreakerTransport implements HttpTransport {
+    private static final Logger LOG = System.getLogger(CircuitBreakerTransport.class.getName());
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final HttpTransport delegate;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final ClientMetrics metrics;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    CircuitBreakerTransport(HttpTransport delegate, int failureThreshold, long openMillis, ClientMetrics metrics) {
+        this.delegate = delegate;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, openMillis));
+        this.metrics = metrics;
+    }
+
+    @Override
+    public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        acquire();
+        TransportResponse response;
+        try {
+            response = delegate.execute(method, url, headers, body);
+        } catch (IOException e) {
+            if (wasCancelled(e)) {
+                cancelled();
+            } else {
+                failed();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            failed();
+            throw e;
+        }
+        if (isServerFailure(response.getStatus())) {
+            failed();
+        } else {
+            succeeded();
+        }
+        return response;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private synchronized void acquire() throws CircuitOpenException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        long openFor = openedAt + openNanos - System.nanoTime();
+        if (state == State.OPEN && openFor <= 0) {
+            // This request is the trial; the rest keep failing fast until it is answered
+            state = State.HALF_OPEN;
+            return;
+        }
+        metrics.recordCircuitRejection();
+        long retryAfter = Math.max(0, TimeUnit.NANOSECONDS.toMillis(openFor));
+        throw new CircuitOpenException("The library server is unavailable; not retrying for "
+            + retryAfter + " ms", retryAfter);
+    }
+
+    private synchronized void succeeded() {
+        if (state != State.CLOSED) {
+            LOG.log(Level.INFO, "The library server is answering again, circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    private synchronized void cancelled() {
+        if (state == State.HALF_OPEN) {
+            // The trial never got an answer; the next request becomes the trial
+            state = State.OPEN;
+        }
+    }
+
+    private synchronized void failed() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            if (state == State.CLOSED) {
+                LOG.log(Level.WARNING, consecutiveFailures + " requests in a row failed, failing fast for "
+                    + TimeUnit.NANOSECONDS.toMillis(openNanos) + " ms");
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Whether the request was interrupted on purpose rather than failing; a read timeout is an
+     * {@link InterruptedIOException} too, but a failure.
+     */
+    private static boolean wasCancelled(IOException e) {
+        return Thread.currentThread().isInterrupted()
+            || (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException));
+    }
+
+    private static boolean isServerFailure(int status) {
+        return status == 500 || status == 502 || status == 503 || status == 504;
+    }
+}
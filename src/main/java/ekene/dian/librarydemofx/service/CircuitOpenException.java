@@ -0,0 +1,26 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker is open, i.e. while recent
+ * requests suggest the backend is down. It is an {@link IOException} because, to the caller, the
+ * server can't be reached; unlike other I/O errors it is never retried.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public CircuitOpenException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * How long until the breaker lets a request through again.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
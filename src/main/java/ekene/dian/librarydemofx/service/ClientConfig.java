@@ -0,0 +1,521 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Client-side settings for talking to the library backend.
+ *
+ * Values are resolved in this order, later sources winning:
+ * the bundled {@code library-client.properties} resource, the file named by
+ * the {@code library.config} system property, and finally individual
+ * {@code library.*} system properties.
+ */
+public class ClientConfig {
+    private static final Logger LOG = System.getLogger(ClientConfig.class.getName());
+
+    public static final String CONFIG_FILE_PROPERTY = "library.config";
+    private static final String DEFAULTS_RESOURCE = "/library-client.properties";
+
+    private final Properties properties;
+
+    public ClientConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static ClientConfig load() {
+        Properties properties = new Properties();
+
+        try (InputStream in = ClientConfig.class.getResourceAsStream(DEFAULTS_RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error reading " + DEFAULTS_RESOURCE + ": " + e.getMessage());
+        }
+
+        String configFile = System.getProperty(CONFIG_FILE_PROPERTY);
+        if (configFile != null && !configFile.isBlank()) {
+            Path path = Paths.get(configFile);
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error reading client config " + path + ": " + e.getMessage());
+            }
+        }
+
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("library.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+
+        return new ClientConfig(properties);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.log(Level.WARNING, "Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.log(Level.WARNING, "Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.log(Level.WARNING, "Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    // Executor settings
+
+    public String getExecutorType() {
+        return getString("library.executor.type", "auto");
+    }
+
+    public int getExecutorThreads() {
+        return getInt("library.executor.threads", Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public int getExecutorQueueCapacity() {
+        return getInt("library.executor.queue-capacity", 256);
+    }
+
+    // Paging settings
+
+    public int getPageSize() {
+        return getInt("library.page.size", 200);
+    }
+
+    public int getPageParallelism() {
+        return getInt("library.page.parallelism", 4);
+    }
+
+    /**
+     * Either {@code prefetch} (concurrent, driven by {@code totalPages}) or {@code stream}
+     * (one page at a time).
+     */
+    public String getPagingMode() {
+        return getString("library.page.mode", "prefetch");
+    }
+
+    // Table settings
+
+    /**
+     * Either {@code eager} (load every row into memory) or {@code lazy} (fetch pages on demand
+     * while scrolling and sort on the server).
+     */
+    public String getTableMode() {
+        return getString("library.table.mode", "eager");
+    }
+
+    public int getResidentPages() {
+        return getInt("library.table.resident-pages", 8);
+    }
+
+    /**
+     * How the eager table keeps its rows: {@code objects} (one {@code Book} per row, sorted and
+     * filtered off the FX thread) or {@code columnar} (one array per field, with shared author
+     * names, sorted and filtered on the FX thread).
+     */
+    public String getTableStorage() {
+        return getString("library.table.storage", "objects");
+    }
+
+    /**
+     * How the eager table sorts {@code objects} storage: {@code parallel} (on a background thread,
+     * with precomputed collation keys) or {@code sortedlist} (a {@code SortedList} on the FX
+     * thread). Columnar storage always sorts itself.
+     */
+    public String getTableSorting() {
+        return getString("library.table.sorting", "parallel");
+    }
+
+    // Search settings
+
+    public long getSearchDebounceMillis() {
+        return getLong("library.search.debounce-ms", 300);
+    }
+
+    public int getSearchMinLength() {
+        return getInt("library.search.min-length", 3);
+    }
+
+    /**
+     * Whether the eager table searches the loaded catalog through a local index instead of
+     * asking the server.
+     */
+    public boolean isLocalSearchEnabled() {
+        return getBoolean("library.search.local", true);
+    }
+
+    // Query cache settings
+
+    public boolean isCacheEnabled() {
+        return getBoolean("library.cache.enabled", true);
+    }
+
+    public int getCacheMaxEntries() {
+        return getInt("library.cache.max-entries", 64);
+    }
+
+    public long getCacheMaxBytes() {
+        return getLong("library.cache.max-bytes", 64L * 1024 * 1024);
+    }
+
+    public long getCacheTtlSeconds() {
+        return getLong("library.cache.ttl-seconds", 60);
+    }
+
+    public boolean isCacheLocalRefinement() {
+        return getBoolean("library.cache.local-refinement", true);
+    }
+
+    // Entity cache and selection settings
+
+    public int getEntityCacheMaxEntries() {
+        return getInt("library.entity-cache.max-entries", 50_000);
+    }
+
+    public long getSelectionRevalidateDelayMillis() {
+        return getLong("library.selection.revalidate-delay-ms", 150);
+    }
+
+    // HTTP transport settings
+
+    /**
+     * The books resource of the backend, without a trailing slash; the first one if there are
+     * several.
+     */
+    public String getServerUrl() {
+        return getServerUrls().get(0);
+    }
+
+    /**
+     * The books resource of each backend node, without trailing slashes. Several comma-separated
+     * URLs are replicas of the same backend, which requests are balanced over.
+     */
+    public List<String> getServerUrls() {
+        List<String> urls = new ArrayList<>();
+        for (String url : getString("library.server.url", "http://localhost:8080/api/books").split(",")) {
+            url = url.trim();
+            if (!url.isEmpty()) {
+                urls.add(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+            }
+        }
+        return urls.isEmpty() ? List.of("http://localhost:8080/api/books") : urls;
+    }
+
+    /**
+     * Either {@code httpclient} ({@code java.net.http}, HTTP/2 capable) or {@code resttemplate}
+     * (Spring's {@code RestTemplate} over {@code HttpURLConnection}).
+     */
+    public String getTransportType() {
+        return getString("library.http.transport", "httpclient");
+    }
+
+    public long getConnectTimeoutMillis() {
+        return getLong("library.http.connect-timeout-ms", 5_000);
+    }
+
+    public long getReadTimeoutMillis() {
+        return getLong("library.http.read-timeout-ms", 30_000);
+    }
+
+    public long getRequestTimeoutMillis() {
+        return getLong("library.http.request-timeout-ms", 60_000);
+    }
+
+    /**
+     * How long an idle connection is kept for reuse; best below the server's own idle timeout,
+     * so the server doesn't close connections the client is about to reuse.
+     */
+    public long getKeepAliveMillis() {
+        return getLong("library.http.keep-alive-ms", 15_000);
+    }
+
+    public int getMaxConnections() {
+        return getInt("library.http.max-connections", 20);
+    }
+
+    public boolean isCompressionEnabled() {
+        return getBoolean("library.http.compression", true);
+    }
+
+    /**
+     * The encoding asked for on page and search responses: {@code json}, {@code smile},
+     * {@code cbor} or a {@link WireCodec} class name. JSON stays acceptable as a fallback.
+     */
+    public String getWireFormat() {
+        return getString("library.http.wire-format", "smile");
+    }
+
+    // Retry settings
+
+    public int getRetryMaxAttempts() {
+        return getInt("library.retry.max-attempts", 3);
+    }
+
+    public long getRetryInitialDelayMillis() {
+        return getLong("library.retry.initial-delay-ms", 200);
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return getLong("library.retry.max-delay-ms", 5_000);
+    }
+
+    public double getRetryMultiplier() {
+        return getDouble("library.retry.multiplier", 2.0);
+    }
+
+    /**
+     * Whether reads (page, search, single book and change requests) are retried as well as
+     * batch writes.
+     */
+    public boolean isReadRetryEnabled() {
+        return getBoolean("library.retry.reads", true);
+    }
+
+    // Circuit breaker settings
+
+    public boolean isCircuitBreakerEnabled() {
+        return getBoolean("library.circuit.enabled", true);
+    }
+
+    /**
+     * How many requests in a row must fail before requests fail fast.
+     */
+    public int getCircuitFailureThreshold() {
+        return getInt("library.circuit.failure-threshold", 5);
+    }
+
+    /**
+     * How long requests fail fast before one is let through to test the server.
+     */
+    public long getCircuitOpenMillis() {
+        return getLong("library.circuit.open-ms", 10_000);
+    }
+
+    // Load balancing settings
+
+    /**
+     * How a node is picked for each request when there are several: {@code p2c} (the less busy
+     * of two picked at random) or {@code least-outstanding} (the least busy of all).
+     */
+    public String getBalancerStrategy() {
+        return getString("library.balancer.strategy", "p2c");
+    }
+
+    /**
+     * How many requests in a row must fail on a node before it is taken out of rotation.
+     */
+    public int getBalancerFailureThreshold() {
+        return getInt("library.balancer.failure-threshold", 3);
+    }
+
+    /**
+     * How long a failing node gets no requests while other nodes are healthy.
+     */
+    public long getBalancerEjectMillis() {
+        return getLong("library.balancer.eject-ms", 15_000);
+    }
+
+    // Hedging settings
+
+    /**
+     * Whether a slow single book or search page request is raced by a second one.
+     */
+    public boolean isHedgingEnabled() {
+        return getBoolean("library.hedge.enabled", false);
+    }
+
+    /**
+     * How long to wait before sending the second request; 0 waits for the endpoint's 95th
+     * percentile latency so far.
+     */
+    public long getHedgeDelayMillis() {
+        return getLong("library.hedge.delay-ms", 0);
+    }
+
+    // Batch write settings
+
+    /**
+     * Whether to try the {@code /bulk} endpoints before falling back to one request per book.
+     */
+    public boolean isBulkEndpointEnabled() {
+        return getBoolean("library.batch.bulk-endpoint", true);
+    }
+
+    public int getBulkChunkSize() {
+        return getInt("library.batch.bulk-size", 500);
+    }
+
+    public int getBatchMaxInFlight() {
+        return getInt("library.batch.max-in-flight", 8);
+    }
+
+    // Local store settings
+
+    /**
+     * Whether to keep a copy of the catalog on disk, for a fast start and for working offline.
+     */
+    public boolean isLocalStoreEnabled() {
+        return getBoolean("library.store.enabled", true);
+    }
+
+    public Path getLocalStoreDirectory() {
+        String directory = getString("library.store.dir", null);
+        return directory != null
+            ? Paths.get(directory)
+            : Paths.get(System.getProperty("user.home"), ".library-demo-fx");
+    }
+
+    /**
+     * How often to try sending changes made while offline.
+     */
+    public long getOfflineReplayIntervalMillis() {
+        return getLong("library.offline.replay-interval-ms", 10000);
+    }
+
+    // Refresh settings
+
+    /**
+     * How Refresh reloads the whole catalog: "delta" applies only what changed since the last
+     * load, "full" reloads every row.
+     */
+    public String getSyncMode() {
+        return getString("library.sync.mode", "delta");
+    }
+
+    // Live update settings
+
+    /**
+     * Whether to listen for changes pushed by the server on {@code /api/books/events}.
+     */
+    public boolean isLiveUpdatesEnabled() {
+        return getBoolean("library.live.enabled", true);
+    }
+
+    public long getLiveReconnectDelayMillis() {
+        return getLong("library.live.reconnect-delay-ms", 1000);
+    }
+
+    public long getLiveReconnectMaxDelayMillis() {
+        return getLong("library.live.reconnect-max-delay-ms", 30000);
+    }
+
+    // Import settings
+
+    /**
+     * How many valid records an import collects before sending them as one batch.
+     */
+    public int getImportChunkSize() {
+        return getInt("library.import.chunk-size", 2000);
+    }
+
+    // Metrics settings
+
+    /**
+     * Where to publish the client's metrics: {@code jmx}, {@code micrometer} or the class name of
+     * a {@link MetricsBinder}, comma separated. Empty publishes nothing.
+     */
+    public List<String> getMetricsExporters() {
+        List<String> exporters = new ArrayList<>();
+        for (String name : properties.getProperty("library.metrics.exporters", "jmx").split(",")) {
+            if (!name.isBlank()) {
+                exporters.add(name.trim());
+            }
+        }
+        return exporters;
+    }
+
+    /**
+     * Whether Ctrl+Shift+D opens the diagnostics window.
+     */
+    public boolean isDiagnosticsPanelEnabled() {
+        return getBoolean("library.metrics.panel", true);
+    }
+
+    // FX watchdog settings
+
+    /**
+     * Whether to watch the JavaFX Application Thread and report when it stays busy too long.
+     */
+    public boolean isFxWatchdogEnabled() {
+        return getBoolean("library.fx.watchdog.enabled", true);
+    }
+
+    public long getFxWatchdogIntervalMillis() {
+        return getLong("library.fx.watchdog.interval-ms", 100);
+    }
+
+    /**
+     * How long the FX thread may stay busy before its stack is captured and reported.
+     */
+    public long getFxWatchdogThresholdMillis() {
+        return getLong("library.fx.watchdog.threshold-ms", 500);
+    }
+
+    /**
+     * Where to write each report as a text file, or {@code null} to only log them.
+     */
+    public Path getFxWatchdogReportDirectory() {
+        String directory = getString("library.fx.watchdog.report-dir", null);
+        return directory != null ? Paths.get(directory) : null;
+    }
+
+    // Startup settings
+
+    /**
+     * Whether to exit once the first catalog load has been shown, to train a class data sharing
+     * archive on a typical start or to measure startup.
+     */
+    public boolean isExitAfterFirstLoad() {
+        return getBoolean("library.startup.exit-after-load", false);
+    }
+}
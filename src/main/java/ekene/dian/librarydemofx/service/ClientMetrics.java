@@ -0,0 +1,358 @@
+package ekene.dian.librarydemofx.service;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * What the client measures about itself: latency, bytes and errors per endpoint, time spent
+ * decoding responses, retries, hedged requests, circuit breaker rejections, cache hit rates, the
+ * load and latency of each backend node, how long the FX thread was kept busy and how long its
+ * pulses took.
+ *
+ * Recording is lock-free and always on. Nothing leaves the process unless exporters are bound
+ * with {@link #bindExporters}: {@code jmx} registers a {@link ClientMetricsMXBean},
+ * {@code micrometer} publishes to Micrometer's global registry, and any other name is taken as
+ * the class name of a {@link MetricsBinder}.
+ */
+public class ClientMetrics implements AutoCloseable {
+    private static final Logger LOG = System.getLogger(ClientMetrics.class.getName());
+
+    /**
+     * Requests sent to one endpoint, e.g. {@code GET /api/books/{id}}.
+     */
+    public static final class Endpoint {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Time until the response headers arrived.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Response body bytes, after decompression.
+         */
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        /**
+         * Requests that failed with an I/O error or an error status.
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+    }
+
+    /**
+     * Hit and miss counters of one cache.
+     */
+    public static final class CacheCounters {
+        private final String name;
+        private final LongSupplier hits;
+        private final LongSupplier misses;
+
+        CacheCounters(String name, LongSupplier hits, LongSupplier misses) {
+            this.name = name;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getHits() {
+            return hits.getAsLong();
+        }
+
+        public long getMisses() {
+            return misses.getAsLong();
+        }
+
+        /**
+         * Hits as a fraction of lookups, or 0 before the first lookup.
+         */
+        public double getHitRate() {
+            long hitCount = getHits();
+            long lookups = hitCount + getMisses();
+            return lookups == 0 ? 0 : (double) hitCount / lookups;
+        }
+    }
+
+    /**
+     * One of several replicas of the backend that requests are balanced over.
+     */
+    public static final class Backend {
+        private final String url;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder ejections = new LongAdder();
+        private final IntSupplier outstanding;
+        private final BooleanSupplier healthy;
+
+        Backend(String url, IntSupplier outstanding, BooleanSupplier healthy) {
+            this.url = url;
+            this.outstanding = outstanding;
+            this.healthy = healthy;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Time until the node's response headers arrived, for requests it answered.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Requests that failed on the node with an I/O error or a 502, 503 or 504.
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Times the node was taken out of rotation.
+         */
+        public long getEjections() {
+            return ejections.sum();
+        }
+
+        /**
+         * Requests sent to the node whose response hasn't been closed yet.
+         */
+        public int getOutstanding() {
+            return outstanding.getAsInt();
+        }
+
+        public boolean isHealthy() {
+            return healthy.getAsBoolean();
+        }
+
+        void recordFailure() {
+            failures.increment();
+        }
+
+        void recordEjection() {
+            ejections.increment();
+        }
+    }
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final LatencyHistogram decoding = new LatencyHistogram();
+    private final LatencyHistogram fxStalls = new LatencyHistogram();
+    private final LatencyHistogram pulses = new LatencyHistogram();
+    private final LongAdder fxBlocks = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder circuitRejections = new LongAdder();
+    private final List<CacheCounters> caches = new CopyOnWriteArrayList<>();
+    private final List<Backend> backends = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Endpoint>> endpointListeners = new CopyOnWriteArrayList<>();
+    private final List<MetricsBinder> binders = new ArrayList<>();
+
+    public Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        Endpoint created = new Endpoint(name);
+        endpoint = endpoints.putIfAbsent(name, created);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        for (Consumer<Endpoint> listener : endpointListeners) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    public void recordRequest(String endpoint, long nanos, boolean failed) {
+        Endpoint stats = endpoint(endpoint);
+        stats.latency.record(nanos);
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    public void recordBytes(String endpoint, long bytes) {
+        endpoint(endpoint).bytesReceived.add(bytes);
+    }
+
+    public void recordDecoding(long nanos) {
+        decoding.record(nanos);
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    /**
+     * Counts a second, hedged request sent because the first was slow.
+     */
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    /**
+     * Counts a request refused by the open circuit breaker without being sent.
+     */
+    public void recordCircuitRejection() {
+        circuitRejections.increment();
+    }
+
+    /**
+     * Records how long a task queued for the FX thread waited before it ran.
+     */
+    public void recordFxStall(long nanos) {
+        fxStalls.record(nanos);
+    }
+
+    /**
+     * Records the CSS and layout time of one JavaFX pulse.
+     */
+    public void recordPulse(long nanos) {
+        pulses.record(nanos);
+    }
+
+    /**
+     * Counts a time the FX thread stayed busy past the watchdog's threshold.
+     */
+    public void recordFxBlock() {
+        fxBlocks.increment();
+    }
+
+    public void registerCache(String name, LongSupplier hits, LongSupplier misses) {
+        caches.add(new CacheCounters(name, hits, misses));
+    }
+
+    public Backend registerBackend(String url, IntSupplier outstanding, BooleanSupplier healthy) {
+        Backend backend = new Backend(url, outstanding, healthy);
+        backends.add(backend);
+        return backend;
+    }
+
+    /**
+     * Endpoints by name, in name order.
+     */
+    public Map<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableMap(new TreeMap<>(endpoints));
+    }
+
+    /**
+     * Calls {@code listener} for every endpoint seen so far and every one seen from now on.
+     */
+    public void onEndpoint(Consumer<Endpoint> listener) {
+        endpointListeners.add(listener);
+        endpoints.values().forEach(listener);
+    }
+
+    /**
+     * Time spent turning response bodies into objects, including reading them off the stream.
+     */
+    public LatencyHistogram getDecoding() {
+        return decoding;
+    }
+
+    public LatencyHistogram getFxStalls() {
+        return fxStalls;
+    }
+
+    public LatencyHistogram getPulses() {
+        return pulses;
+    }
+
+    public long getFxBlocks() {
+        return fxBlocks.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getCircuitRejections() {
+        return circuitRejections.sum();
+    }
+
+    public List<CacheCounters> getCaches() {
+        return Collections.unmodifiableList(caches);
+    }
+
+    /**
+     * The backend nodes, in configured order; empty unless there are several.
+     */
+    public List<Backend> getBackends() {
+        return Collections.unmodifiableList(backends);
+    }
+
+    public long getRequestCount() {
+        return endpoints.values().stream().mapToLong(endpoint -> endpoint.latency.getCount()).sum();
+    }
+
+    public long getErrorCount() {
+        return endpoints.values().stream().mapToLong(Endpoint::getErrors).sum();
+    }
+
+    public long getBytesReceived() {
+        return endpoints.values().stream().mapToLong(Endpoint::getBytesReceived).sum();
+    }
+
+    /**
+     * Binds the exporters named in {@code library.metrics.exporters}. One that can't be bound is
+     * logged and skipped.
+     */
+    public synchronized void bindExporters(ClientConfig config) {
+        for (String name : config.getMetricsExporters()) {
+            MetricsBinder binder;
+            try {
+                binder = MetricsBinder.create(name);
+                binder.bind(this);
+            } catch (Exception | LinkageError e) {
+                LOG.log(Level.WARNING, "Could not bind metrics exporter " + name + ": " + e);
+                continue;
+            }
+            binders.add(binder);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (MetricsBinder binder : binders) {
+            binder.close();
+        }
+        binders.clear();
+    }
+}
@@ -0,0 +1,95 @@
+package ekene.dian.librarydemofx.service;
+
+import java.util.List;
+
+/**
+ * The client's metrics as a JMX MXBean, registered as
+ * {@code ekene.dian.librarydemofx:type=ClientMetrics} by the {@code jmx} exporter. Durations are
+ * in milliseconds.
+ */
+public interface ClientMetricsMXBean {
+
+    /**
+     * One endpoint's requests, e.g. {@code GET /api/books/{id}}.
+     */
+    final class EndpointSummary {
+        private final String endpoint;
+        private final long requests;
+        private final long errors;
+        private final long bytesReceived;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        public EndpointSummary(String endpoint, long requests, long errors, long bytesReceived,
+                               double p50Millis, double p99Millis, double maxMillis) {
+            this.endpoint = endpoint;
+            this.requests = requests;
+            this.errors = errors;
+            this.bytesReceived = bytesReceived;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+    }
+
+    long getRequestCount();
+
+    long getErrorCount();
+
+    long getRetryCount();
+
+    long getHedgeCount();
+
+    long getCircuitRejectionCount();
+
+    long getBytesReceived();
+
+    List<EndpointSummary> getEndpoints();
+
+    double getDecodingP50Millis();
+
+    double getDecodingP99Millis();
+
+    double getFxStallP99Millis();
+
+    double getFxStallMaxMillis();
+
+    long getFxBlockCount();
+
+    double getPulseP50Millis();
+
+    double getPulseP99Millis();
+
+    double getQueryCacheHitRate();
+
+    double getEntityCacheHitRate();
+}
@@ -0,0 +1,286 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.BookChanges;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Works out what changed in the whole catalog since the last sync, so a refresh only has to
+ * apply the difference instead of reloading every row.
+ *
+ * If the server has {@code GET /api/books/changes}, it is asked for the changes since the
+ * watermark it returned last time. Otherwise the catalog is walked page by page in id order:
+ * pages are requested with the {@code ETag} they were last served with, so unchanged pages
+ * aren't sent again by servers that support it, and a page whose content hash is unchanged is
+ * skipped without looking at its rows. Either way the cost of a sync follows the amount of
+ * change rather than the size of the catalog, apart from the page walk on servers without
+ * {@code ETag}s, which still transfers every page.
+ */
+public class DeltaSync {
+    private static final Logger LOG = System.getLogger(DeltaSync.class.getName());
+
+    private static final List<String> ID_ORDER = List.of("id,asc");
+
+    /**
+     * The books created or changed and the ids of books deleted since the previous sync.
+     */
+    public static final class Result {
+        private final List<Book> changed;
+        private final Set<Long> deleted;
+        private final boolean baseline;
+
+        Result(List<Book> changed, Set<Long> deleted, boolean baseline) {
+            this.changed = Collections.unmodifiableList(changed);
+            this.deleted = Collections.unmodifiableSet(deleted);
+            this.baseline = baseline;
+        }
+
+        public List<Book> getChanged() {
+            return changed;
+        }
+
+        public Set<Long> getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Whether there was nothing to compare against, so {@link #getChanged()} is the whole
+         * catalog and any book not in it has been deleted.
+         */
+        public boolean isBaseline() {
+            return baseline;
+        }
+
+        public boolean isEmpty() {
+            return !baseline && changed.isEmpty() && deleted.isEmpty();
+        }
+    }
+
+    // What the page walk saw of one page last time
+    private static final class PageState {
+        final String etag;
+        final long hash;
+        final long[] ids;
+        final boolean last;
+
+        PageState(String etag, long hash, long[] ids, boolean last) {
+            this.etag = etag;
+            this.hash = hash;
+            this.ids = ids;
+            this.last = last;
+        }
+    }
+
+    private final BookService bookService;
+    private final int pageSize;
+    private String watermark;
+    // Taken by markListing() for the listing seed() will be given
+    private String listingWatermark;
+    private boolean changesEndpointMissing;
+    private final List<PageState> pages = new ArrayList<>();
+    // Content hash of the last seen version of every book, for the page walk
+    private final Map<Long, Long> contentHashes = new HashMap<>();
+
+    public DeltaSync(BookService bookService) {
+        this.bookService = bookService;
+        this.pageSize = bookService.getConfig().getPageSize();
+    }
+
+    /**
+     * Asks {@code /changes} for its current watermark, just before a complete listing is loaded
+     * for {@link #seed}, so the first sync after it only asks for what changed since. The answer
+     * to {@code size=0} carries no books; one that does, from a server ignoring the size, is
+     * past rows the listing may not reflect, so its watermark isn't used. Blocks on network I/O
+     * but never fails: without a watermark the first sync just fetches the whole catalog.
+     */
+    public synchronized void markListing() {
+        listingWatermark = null;
+        if (changesEndpointMissing) {
+            return;
+        }
+        try {
+            BookChanges tail = bookService.getChanges(null, 0);
+            if (tail.getChanged().isEmpty() && tail.getDeleted().isEmpty()) {
+                listingWatermark = tail.getWatermark();
+            }
+        } catch (BookServiceException e) {
+            if (BatchRunner.isMissingEndpoint(e)) {
+                changesEndpointMissing = true;
+            } else {
+                LOG.log(Level.DEBUG, "No watermark for the listing: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            LOG.log(Level.DEBUG, "No watermark for the listing: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records a complete listing the caller already has, so the next sync only reports what
+     * differs from it: the page walk compares against it, and {@code /changes} is asked from the
+     * watermark {@link #markListing} took before it was loaded, if any.
+     */
+    public synchronized void seed(Collection<Book> books) {
+        if (listingWatermark != null) {
+            watermark = listingWatermark;
+            listingWatermark = null;
+        }
+        contentHashes.clear();
+        pages.clear();
+        for (Book book : books) {
+            contentHashes.put(book.getId(), contentHash(book));
+        }
+    }
+
+    /**
+     * Fetches what changed since the previous call. Blocks on network I/O.
+     *
+     * @throws BookServiceException if the server couldn't be asked
+     */
+    public synchronized Result sync() {
+        try {
+            if (!changesEndpointMissing) {
+                try {
+                    return fetchChanges();
+                } catch (BookServiceException e) {
+                    if (e.getStatusCode() == 410) {
+                        // The server no longer remembers that far back
+                        watermark = null;
+                        return fetchChanges();
+                    }
+                    if (!BatchRunner.isMissingEndpoint(e)) {
+                        throw e;
+                    }
+                    changesEndpointMissing = true;
+                    LOG.log(Level.INFO, "No /changes endpoint, comparing pages instead");
+                }
+            }
+            return walkPages();
+        } catch (IOException e) {
+            throw new BookServiceException("Error syncing books: " + e.getMessage(), e);
+        }
+    }
+
+    private Result fetchChanges() throws IOException {
+        boolean baseline = watermark == null;
+        Map<Long, Book> changed = new HashMap<>();
+        Set<Long> deleted = new HashSet<>();
+        String since = watermark;
+        BookChanges changes;
+        do {
+            checkInterrupted();
+            changes = bookService.getChanges(since, pageSize);
+            // A later batch wins if a book changed more than once
+            for (Book book : changes.getChanged()) {
+                changed.put(book.getId(), book);
+                deleted.remove(book.getId());
+            }
+            for (Long id : changes.getDeleted()) {
+                changed.remove(id);
+                deleted.add(id);
+            }
+            since = changes.getWatermark();
+        } while (changes.isMore() && since != null);
+
+        // Only move the watermark once every batch has arrived
+        watermark = since;
+        return new Result(new ArrayList<>(changed.values()), deleted, baseline);
+    }
+
+    private Result walkPages() throws IOException {
+        boolean baseline = contentHashes.isEmpty();
+        List<Book> changed = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        List<PageState> walked = new ArrayList<>();
+        // Kept aside until the walk completes, so a failed sync reports the same rows next time
+        Map<Long, Long> updatedHashes = new HashMap<>();
+
+        for (int page = 0; ; page++) {
+            checkInterrupted();
+            PageState previous = page < pages.size() ? pages.get(page) : null;
+            BookService.VersionedPage fetched = bookService.getBooksPageIfChanged(page, pageSize, ID_ORDER,
+                previous != null ? previous.etag : null);
+
+            PageState state;
+            if (fetched == null) {
+                state = previous;
+            } else {
+                List<Book> books = fetched.page.getContent() != null ? fetched.page.getContent() : List.of();
+                long[] ids = new long[books.size()];
+                long[] hashes = new long[books.size()];
+                long pageHash = 1;
+                for (int i = 0; i < books.size(); i++) {
+                    ids[i] = books.get(i).getId();
+                    hashes[i] = contentHash(books.get(i));
+                    pageHash = pageHash * 1_000_003 + hashes[i];
+                }
+                if (previous == null || previous.hash != pageHash) {
+                    for (int i = 0; i < books.size(); i++) {
+                        Long known = contentHashes.get(ids[i]);
+                        if (known == null || known != hashes[i]) {
+                            changed.add(books.get(i));
+                            updatedHashes.put(ids[i], hashes[i]);
+                        }
+                    }
+                }
+                state = new PageState(fetched.etag, pageHash, ids, fetched.page.isLast() || books.isEmpty());
+            }
+
+            walked.add(state);
+            for (long id : state.ids) {
+                seen.add(id);
+            }
+            // A 304 means the whole page body is unchanged, including whether it was the last
+            if (state.last) {
+                break;
+            }
+        }
+
+        contentHashes.putAll(updatedHashes);
+        Set<Long> deleted = new HashSet<>();
+        for (Iterator<Long> ids = contentHashes.keySet().iterator(); ids.hasNext(); ) {
+            Long id = ids.next();
+            if (!seen.contains(id)) {
+                ids.remove();
+                deleted.add(id);
+            }
+        }
+        pages.clear();
+        pages.addAll(walked);
+
+        if (!changed.isEmpty() || !deleted.isEmpty()) {
+            QueryCache queryCache = bookService.getQueryCache();
+            if (queryCache != null) {
+                queryCache.invalidateAll();
+            }
+        }
+        return new Result(changed, baseline ? Set.of() : deleted, baseline);
+    }
+
+    private static long contentHash(Book book) {
+        long hash = Objects.hashCode(book.getId());
+        hash = hash * 1_000_003 + Objects.hashCode(book.getTitle());
+        hash = hash * 1_000_003 + Objects.hashCode(book.getAuthor());
+        hash = hash * 1_000_003 + Objects.hashCode(book.getIsbn());
+        return hash * 1_000_003 + Objects.hashCode(book.getPublishedDate());
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Sync cancelled");
+        }
+    }
+}
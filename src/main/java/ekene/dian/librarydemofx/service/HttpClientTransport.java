@@ -0,0 +1,257 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport built on {@code java.net.http.HttpClient}.
+ *
+ * One client, and so one connection pool, is shared by every request. HTTP/2 is preferred and
+ * the client falls back to HTTP/1.1 when the server doesn't offer it. The connect timeout bounds
+ * connection setup, the request timeout bounds the wait for the response headers and the read
+ * timeout every wait for more of the body.
+ *
+ * The pool's size and how long it keeps an idle connection are JDK-wide system properties, read
+ * once when the first client is built; they are set from the configuration unless they are set
+ * already. Idle connections are dropped before the usual server idle timeouts run out, but a
+ * server may still close one just as it is reused. The JDK sends a {@code GET} again when that
+ * happens; this transport does the same for other requests that can safely be repeated.
+ */
+public class HttpClientTransport implements HttpTransport {
+    private static final Logger LOG = System.getLogger(HttpClientTransport.class.getName());
+    private static final Set<String> REPEATABLE_METHODS = Set.of("PUT", "DELETE");
+    private static final int MAX_RESENDS = 2;
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final long readTimeoutMillis;
+    private final boolean compression;
+
+    public HttpClientTransport(ClientConfig config) {
+        if (System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+            System.setProperty("jdk.httpclient.connectionPoolSize", String.valueOf(config.getMaxConnections()));
+        }
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(config.getKeepAliveMillis()));
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(seconds));
+        }
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.requestTimeout = Duration.ofMillis(config.getRequestTimeoutMillis());
+        this.readTimeoutMillis = config.getReadTimeoutMillis();
+        this.compression = config.isCompressionEnabled();
+    }
+
+    @Override
+    public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+            .timeout(requestTimeout)
+            .method(method, body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body));
+        headers.forEach(request::header);
+        if (compression) {
+            request.header("Accept-Encoding", "gzip, deflate");
+        }
+
+        HttpResponse<Flow.Publisher<List<ByteBuffer>>> response;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                response = send(request.build());
+                break;
+            } catch (IOException e) {
+                // Each failure takes a dead connection out of the pool, so the next attempt may find a live one
+                if (attempt > MAX_RESENDS || !isClosedBeforeResponse(e) || !canRepeat(method, headers)) {
+                    throw e;
+                }
+                LOG.log(Level.DEBUG, () -> "The connection for " + method + " " + url + " was closed, sending it again");
+            }
+        }
+
+        BodyStream raw = new BodyStream(readTimeoutMillis);
+        response.body().subscribe(raw);
+        String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+        return new TransportResponse(
+            response.statusCode(),
+            response.headers().map(),
+            TransportResponse.decode(encoding, raw),
+            raw::close
+        );
+    }
+
+    @Override
+    public void close() {
+        // HttpClient has no close() before JDK 21; its connections die with the pool threads
+    }
+
+    private HttpResponse<Flow.Publisher<List<ByteBuffer>>> send(HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofPublisher());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request to " + request.uri() + " was interrupted");
+        }
+    }
+
+    /**
+     * Whether the server closed the connection without sending any of a response, which is how a
+     * pooled connection that the server has dropped fails. The JDK reports it only by message.
+     */
+    private static boolean isClosedBeforeResponse(IOException e) {
+        return !(e instanceof HttpTimeoutException) && e.getMessage() != null
+            && e.getMessage().contains("received no bytes");
+    }
+
+    private static boolean canRepeat(String method, Map<String, String> headers) {
+        // A create carrying an idempotency key isn't applied twice by the server
+        return REPEATABLE_METHODS.contains(method) || headers.containsKey(IDEMPOTENCY_KEY);
+    }
+
+    /**
+     * A response body as a stream, like {@code BodyHandlers.ofInputStream()}, but whose reads
+     * give up with a {@link SocketTimeoutException} when no data arrives within the read timeout,
+     * as {@code HttpURLConnection}'s do.
+     */
+    private static final class BodyStream extends InputStream implements Flow.Subscriber<List<ByteBuffer>> {
+        private static final Object END = new Object();
+
+        // Lists of buffers, END or the Throwable the body failed with
+        private final BlockingQueue<Object> items = new LinkedBlockingQueue<>();
+        private final long timeoutMillis;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean closed;
+        // Set once the whole body has arrived, after which the connection may already be reused
+        private volatile boolean complete;
+        private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+        private ByteBuffer current;
+        private boolean finished;
+        private IOException failure;
+        private final byte[] one = new byte[1];
+
+        BodyStream(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            complete = true;
+            items.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+            items.add(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (current == null || !current.hasRemaining()) {
+                if (buffers.hasNext()) {
+                    current = buffers.next();
+                    continue;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                if (finished) {
+                    return -1;
+                }
+                if (closed) {
+                    throw new IOException("closed");
+                }
+                next();
+            }
+            int count = Math.min(length, current.remaining());
+            current.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.remaining();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            Flow.Subscription subscribed = subscription;
+            // Cancelling closes the connection, which the pool may have handed out again by now
+            if (subscribed != null && !complete) {
+                subscribed.cancel();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void next() throws IOException {
+            Object item;
+            try {
+                item = timeoutMillis > 0 ? items.poll(timeoutMillis, TimeUnit.MILLISECONDS) : items.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading the response was interrupted");
+            }
+            if (item == null) {
+                close();
+                throw new SocketTimeoutException("No data received for " + timeoutMillis + " ms");
+            }
+            if (item == END) {
+                finished = true;
+            } else if (item instanceof Throwable) {
+                Throwable error = (Throwable) item;
+                failure = error instanceof IOException ? (IOException) error : new IOException(error);
+                throw failure;
+            } else {
+                buffers = ((List<ByteBuffer>) item).iterator();
+                subscription.request(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sends HTTP requests to the library backend.
+ *
+ * Implementations keep connections alive between requests, enforce the configured timeouts and
+ * hand back the response body as a decompressed stream.
+ */
+public interface HttpTransport extends AutoCloseable {
+    /**
+     * Header identifying one logical request, so that a server supporting it applies a request
+     * sent again with the same key only once.
+     */
+    String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    /**
+     * Sends a request and returns once the response headers have arrived. Responses with error
+     * statuses are returned, not thrown; the caller must close the response.
+     *
+     * @param body the request body, or {@code null} for none
+     */
+    TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException;
+
+    @Override
+    void close();
+
+    static HttpTransport fromConfig(ClientConfig config) {
+        String type = config.getTransportType();
+        if ("resttemplate".equalsIgnoreCase(type)) {
+            try {
+                return new RestTemplateTransport(config);
+            } catch (LinkageError e) {
+                // Spring isn't in the runtime image, and on the module path it needs --add-modules spring.web
+                System.getLogger(HttpTransport.class.getName())
+                    .log(System.Logger.Level.WARNING, "Spring Web isn't available, using httpclient: " + e);
+                return new HttpClientTransport(config);
+            }
+        }
+        if (!"httpclient".equalsIgnoreCase(type)) {
+            System.getLogger(HttpTransport.class.getName())
+                .log(System.Logger.Level.WARNING, "Unknown transport " + type + ", using httpclient");
+        }
+        return new HttpClientTransport(config);
+    }
+}
@@ -0,0 +1,110 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.URI;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Records every request's latency, status and response size in {@link ClientMetrics}, and logs
+ * it at {@code DEBUG} as a line of {@code key=value} pairs.
+ *
+ * Requests are grouped by method and path, with numeric path segments replaced by
+ * {@code {id}}, so {@code GET /api/books/42} and {@code GET /api/books/43} share one endpoint.
+ * Latency runs until the response headers arrive; the body is counted as it is read and
+ * reported when the response is closed.
+ */
+class InstrumentedTransport implements HttpTransport {
+    private static final Logger LOG = System.getLogger(InstrumentedTransport.class.getName());
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    private final HttpTransport delegate;
+    private final ClientMetrics metrics;
+
+    InstrumentedTransport(HttpTransport delegate, ClientMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        String endpoint = endpoint(method, url);
+        long start = System.nanoTime();
+        TransportResponse response;
+        try {
+            response = delegate.execute(method, url, headers, body);
+        } catch (IOException | RuntimeException e) {
+            long nanos = System.nanoTime() - start;
+            metrics.recordRequest(endpoint, nanos, true);
+            LOG.log(Level.DEBUG, () -> "http endpoint=\"" + endpoint + "\" error=\"" + e + "\" ms=" + nanos / 1_000_000);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        int status = response.getStatus();
+        metrics.recordRequest(endpoint, nanos, status >= 400);
+
+        CountingInputStream counted = new CountingInputStream(response.getBody());
+        return new TransportResponse(status, response.getHeaders(), counted, () -> {
+            try {
+                response.close();
+            } finally {
+                metrics.recordBytes(endpoint, counted.count);
+                LOG.log(Level.DEBUG, () -> "http endpoint=\"" + endpoint + "\" status=" + status
+                    + " ms=" + nanos / 1_000_000 + " bytes=" + counted.count);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    static String endpoint(String method, String url) {
+        String path;
+        try {
+            path = URI.create(url).getRawPath();
+        } catch (IllegalArgumentException e) {
+            path = url;
+        }
+        return method + " " + NUMERIC_SEGMENT.matcher(path == null ? "" : path).replaceAll("/{id}");
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        // Only read by the thread that reads and closes the response
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ekene.dian.librarydemofx.service;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers a {@link ClientMetricsMXBean} with the platform MBean server, where JConsole or
+ * VisualVM can read it. A second client in the same JVM gets a numbered name.
+ */
+public class JmxMetricsBinder implements MetricsBinder {
+    private static final String NAME = "ekene.dian.librarydemofx:type=ClientMetrics";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private ObjectName registered;
+
+    @Override
+    public void bind(ClientMetrics metrics) {
+        try {
+            for (int i = 1; registered == null; i++) {
+                ObjectName name = new ObjectName(i == 1 ? NAME : NAME + ",instance=" + i);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new MXBean(metrics), name);
+                    registered = name;
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + NAME, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (registered != null) {
+            try {
+                server.unregisterMBean(registered);
+            } catch (JMException e) {
+                // Already gone
+            }
+            registered = null;
+        }
+    }
+
+    private static final class MXBean implements ClientMetricsMXBean {
+        private final ClientMetrics metrics;
+
+        MXBean(ClientMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public long getRequestCount() {
+            return metrics.getRequestCount();
+        }
+
+        @Override
+        public long getErrorCount() {
+            return metrics.getErrorCount();
+        }
+
+        @Override
+        public long getRetryCount() {
+            return metrics.getRetries();
+        }
+
+        @Override
+        public long getHedgeCount() {
+            return metrics.getHedges();
+        }
+
+        @Override
+        public long getCircuitRejectionCount() {
+            return metrics.getCircuitRejections();
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return metrics.getBytesReceived();
+        }
+
+        @Override
+        public List<EndpointSummary> getEndpoints() {
+            List<EndpointSummary> summaries = new ArrayList<>();
+            for (ClientMetrics.Endpoint endpoint : metrics.getEndpoints().values()) {
+                LatencyHistogram.Snapshot latency = endpoint.getLatency().snapshot();
+                summaries.add(new EndpointSummary(endpoint.getName(), latency.getCount(), endpoint.getErrors(),
+                    endpoint.getBytesReceived(), latency.getP50Millis(), latency.getP99Millis(), latency.getMaxMillis()));
+            }
+            return summaries;
+        }
+
+        @Override
+        public double getDecodingP50Millis() {
+            return metrics.getDecoding().percentileMillis(50);
+        }
+
+        @Override
+        public double getDecodingP99Millis() {
+            return metrics.getDecoding().percentileMillis(99);
+        }
+
+        @Override
+        public double getFxStallP99Millis() {
+            return metrics.getFxStalls().percentileMillis(99);
+        }
+
+        @Override
+        public double getFxStallMaxMillis() {
+            return metrics.getFxStalls().snapshot().getMaxMillis();
+        }
+
+        @Override
+        public long getFxBlockCount() {
+            return metrics.getFxBlocks();
+        }
+
+        @Override
+        public double getPulseP50Millis() {
+            return metrics.getPulses().percentileMillis(50);
+        }
+
+        @Override
+        public double getPulseP99Millis() {
+            return metrics.getPulses().percentileMillis(99);
+        }
+
+        @Override
+        public double getQueryCacheHitRate() {
+            return hitRate("query");
+        }
+
+        @Override
+        public double getEntityCacheHitRate() {
+            return hitRate("entity");
+        }
+
+        private double hitRate(String cache) {
+            for (ClientMetrics.CacheCounters counters : metrics.getCaches()) {
+                if (counters.getName().equals(cache)) {
+                    return counters.getHitRate();
+                }
+            }
+            return 0;
+        }
+    }
+}
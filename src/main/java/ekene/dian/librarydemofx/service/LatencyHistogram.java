@@ -0,0 +1,150 @@
+package ekene.dian.librarydemofx.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, cheap enough to record every request into.
+ *
+ * Durations are counted in buckets of whole microseconds below 16 µs and, above that, in eight
+ * buckets per power of two, so a percentile is off by at most one eighth of its value. Recording
+ * is a couple of atomic increments; no samples are kept.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 16;
+    private static final int SUB_BUCKETS = 8;
+    // Up to 2^42 µs, about 50 days
+    private static final int BUCKETS = LINEAR + (42 - 4) * SUB_BUCKETS;
+
+    /**
+     * Percentiles and totals as of one moment, in milliseconds.
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        Snapshot(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP90Millis() {
+            return p90Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(value)));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * The duration below which {@code percentile} percent of the recordings fall, in
+     * milliseconds, or 0 if nothing was recorded.
+     */
+    public double percentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        return percentileMillis(snapshot, total, percentile);
+    }
+
+    public Snapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        double mean = total == 0 ? 0 : totalNanos.sum() / 1e6 / total;
+        return new Snapshot(total, mean,
+            percentileMillis(snapshot, total, 50),
+            percentileMillis(snapshot, total, 90),
+            percentileMillis(snapshot, total, 99),
+            maxNanos.get() / 1e6);
+    }
+
+    private double percentileMillis(long[] snapshot, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // The middle of the bucket, but never more than the largest value recorded
+                double micros = (lowerBound(i) + lowerBound(i + 1)) / 2.0;
+                return Math.min(micros / 1000.0, maxNanos.get() / 1e6);
+            }
+        }
+        return maxNanos.get() / 1e6;
+    }
+
+    private static int bucket(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, LINEAR + (exponent - 4) * SUB_BUCKETS + sub);
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) sub << (exponent - 3));
+    }
+}
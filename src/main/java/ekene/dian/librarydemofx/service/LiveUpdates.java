@@ -0,0 +1,198 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import ekene.dian.librarydemofx.model.BookEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Listens for book changes pushed by the server as server-sent events on
+ * {@code GET /api/books/events}.
+ *
+ * Each event carries a {@link BookEvent} as JSON in its {@code data} field and an {@code id}.
+ * The connection is reopened when it drops, after a growing, jittered delay (or the server's
+ * {@code retry} value), sending the last event id seen as {@code Last-Event-ID} so the server
+ * can resume where the stream left off. A server that can't resume sends an event of type
+ * {@code reset} instead, after which the client has to reload. Comment lines are ignored, so the
+ * server can send them as keep-alives.
+ *
+ * The listener is called on the reader thread, once per event, in order.
+ */
+public class LiveUpdates implements AutoCloseable {
+    private static final Logger LOG = System.getLogger(LiveUpdates.class.getName());
+
+    public interface Listener {
+        void onEvent(BookEvent event);
+
+        /**
+         * Events may have been missed, e.g. because the server couldn't resume the stream.
+         */
+        default void onResync() {
+        }
+
+        default void onConnectionChanged(boolean connected) {
+        }
+    }
+
+    private final BookService bookService;
+    private final Listener listener;
+    private final ObjectReader eventReader;
+    private final long initialDelayMillis;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile TransportResponse current;
+    private String lastEventId;
+    // Set by the server's "retry" field
+    private long serverRetryMillis = -1;
+
+    public LiveUpdates(BookService bookService, Listener listener) {
+        this.bookService = bookService;
+        this.listener = listener;
+        this.eventReader = bookService.getObjectMapper().readerFor(BookEvent.class);
+        this.initialDelayMillis = Math.max(100, bookService.getConfig().getLiveReconnectDelayMillis());
+        this.thread = ServiceExecutors.daemonThreadFactory("book-events").newThread(this::run);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        RetryPolicy backoff = new RetryPolicy(Integer.MAX_VALUE, initialDelayMillis,
+            bookService.getConfig().getLiveReconnectMaxDelayMillis(), 2.0);
+        int failures = 0;
+        boolean connectedBefore = false;
+        while (!closed) {
+            try (TransportResponse response = bookService.openEvents(lastEventId)) {
+                current = response;
+                failures = 0;
+                listener.onConnectionChanged(true);
+                if (connectedBefore && lastEventId == null) {
+                    // Nothing to resume from, so whatever happened while disconnected was missed
+                    listener.onResync();
+                }
+                connectedBefore = true;
+                read(response);
+            } catch (BookServiceException e) {
+                if (BatchRunner.isMissingEndpoint(e)) {
+                    LOG.log(Level.INFO, "The server has no event stream, live updates are off: " + e.getMessage());
+                    return;
+                }
+                failures++;
+            } catch (Exception e) {
+                if (closed) {
+                    return;
+                }
+                failures++;
+            } finally {
+                current = null;
+            }
+            if (closed) {
+                return;
+            }
+            listener.onConnectionChanged(false);
+
+            long delay = serverRetryMillis >= 0 && failures <= 1 ? serverRetryMillis : backoff.delayMillis(Math.max(1, failures));
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void read(TransportResponse response) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+        StringBuilder data = new StringBuilder();
+        String eventType = null;
+        String eventId = null;
+        String line;
+        while ((line = reader.readLine()) != null && !closed) {
+            if (line.isEmpty()) {
+                if (eventId != null) {
+                    lastEventId = eventId;
+                }
+                dispatch(eventType, data);
+                data.setLength(0);
+                eventType = null;
+                eventId = null;
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(line.startsWith(" ", colon + 1) ? colon + 2 : colon + 1);
+            switch (field) {
+                case "data":
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                case "event":
+                    eventType = value;
+                    break;
+                case "id":
+                    if (value.indexOf('\0') < 0) {
+                        eventId = value;
+                    }
+                    break;
+                case "retry":
+                    try {
+                        serverRetryMillis = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        // Ignored, as the spec says
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void dispatch(String eventType, StringBuilder data) {
+        if ("reset".equals(eventType)) {
+            listener.onResync();
+            return;
+        }
+        if (data.length() == 0 || (eventType != null && !"book".equals(eventType) && !"message".equals(eventType))) {
+            return;
+        }
+        BookEvent event;
+        try {
+            event = eventReader.readValue(data.toString());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Ignoring malformed book event: " + e.getMessage());
+            return;
+        }
+        if (event.getType() == null || event.getId() == null) {
+            LOG.log(Level.WARNING, "Ignoring incomplete " + event);
+            return;
+        }
+        bookService.applyEvent(event);
+        listener.onEvent(event);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        TransportResponse response = current;
+        if (response != null) {
+            try {
+                // Unblocks the reader thread
+                response.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads requests over several replicas of the backend and moves a request to another replica
+ * when its node can't serve it.
+ *
+ * Requests are addressed to the first node's URL and sent to the node picked for them.
+ * {@code least-outstanding} picks the node with the fewest requests in flight; {@code p2c} (power
+ * of two choices) picks two nodes at random and takes the one with fewer, which balances nearly as
+ * well without every client sending its next request to the same idle node. A request is in flight
+ * until its response is closed, so a node streaming a long listing counts as busy. Ties go to the
+ * node with the lower recent latency.
+ *
+ * Failures are noticed passively, from the requests themselves: an I/O error or a 502, 503 or 504
+ * counts against the node, unless the client cancelled the request itself, and after {@code failureThreshold} of them in a row the node gets no
+ * requests for {@code ejectMillis}. After that it is tried again, and taken out again by its next
+ * failure; a success puts it back for good. While every node is out, requests go to the one due
+ * back first rather than being refused, which is the circuit breaker's job.
+ *
+ * A request that fails on its node is sent to a node it hasn't been tried on when that is safe: if
+ * the connection was refused, whatever the method, and after other I/O errors or a 502, 503 or 504
+ * only for methods that can be repeated ({@code GET}, {@code PUT} and {@code DELETE}). Timeouts
+ * aren't failed over, since the request may still be running; the retry policy decides those.
+ */
+class LoadBalancingTransport implements HttpTransport {
+    private static final Logger LOG = System.getLogger(LoadBalancingTransport.class.getName());
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE");
+    // Weight of the newest sample in a node's moving average latency
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    enum Strategy { P2C, LEAST_OUTSTANDING }
+
+    private final HttpTransport delegate;
+    private final List<Node> nodes = new ArrayList<>();
+    private final Strategy strategy;
+    private final int failureThreshold;
+    private final long ejectNanos;
+
+    LoadBalancingTransport(HttpTransport delegate, List<String> baseUrls, Strategy strategy,
+                           int failureThreshold, long ejectMillis, ClientMetrics metrics) {
+        this.delegate = delegate;
+        this.strategy = strategy;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.ejectNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ejectMillis));
+        for (String baseUrl : baseUrls) {
+            Node node = new Node(baseUrl);
+            node.metrics = metrics.registerBackend(baseUrl, node.outstanding::get, () -> node.isHealthy(System.nanoTime()));
+            nodes.add(node);
+        }
+    }
+
+    static Strategy strategy(String name) {
+        if ("least-outstanding".equalsIgnoreCase(name)) {
+            return Strategy.LEAST_OUTSTANDING;
+        }
+        if (!"p2c".equalsIgnoreCase(name)) {
+            LOG.log(Level.WARNING, "Unknown balancer strategy " + name + ", using p2c");
+        }
+        return Strategy.P2C;
+    }
+
+    @Override
+    public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        String base = nodes.get(0).baseUrl;
+        if (!url.startsWith(base)) {
+            // Not a books resource URL; nothing to balance
+            return delegate.execute(method, url, headers, body);
+        }
+        String path = url.substring(base.length());
+        boolean idempotent = IDEMPOTENT_METHODS.contains(method);
+        List<Node> tried = new ArrayList<>(nodes.size());
+        while (true) {
+            Node node = pick(tried);
+            tried.add(node);
+            boolean last = tried.size() == nodes.size();
+            TransportResponse response;
+            try {
+                response = send(node, method, node.baseUrl + path, headers, body);
+            } catch (IOException e) {
+                if (last || !canFailOver(e, idempotent)) {
+                    throw e;
+                }
+                LOG.log(Level.DEBUG, () -> method + " " + path + " failed on " + node.baseUrl + ", trying another node: " + e);
+                continue;
+            }
+            if (last || !idempotent || !isUnavailable(response.getStatus())) {
+                return response;
+            }
+            LOG.log(Level.DEBUG, () -> method + " " + path + " got " + response.getStatus() + " from "
+                + node.baseUrl + ", trying another node");
+            response.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private TransportResponse send(Node node, String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        node.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        TransportResponse response;
+        try {
+            response = delegate.execute(method, url, headers, body);
+        } catch (IOException e) {
+            node.outstanding.decrementAndGet();
+            if (!wasCancelled(e)) {
+                failed(node);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            node.outstanding.decrementAndGet();
+            failed(node);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        if (isUnavailable(response.getStatus())) {
+            failed(node);
+        } else {
+            node.succeeded(nanos);
+        }
+        AtomicInteger released = new AtomicInteger();
+        return new TransportResponse(response.getStatus(), response.getHeaders(), response.getBody(), () -> {
+            try {
+                response.close();
+            } finally {
+                if (released.getAndIncrement() == 0) {
+                    node.outstanding.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private void failed(Node node) {
+        node.metrics.recordFailure();
+        if (node.failed(failureThreshold, ejectNanos)) {
+            node.metrics.recordEjection();
+            LOG.log(Level.WARNING, node.baseUrl + " keeps failing, sending it no requests for "
+                + TimeUnit.NANOSECONDS.toMillis(ejectNanos) + " ms");
+        }
+    }
+
+    /**
+     * The node for the next attempt, from those not tried yet.
+     */
+    private Node pick(List<Node> tried) {
+        long now = System.nanoTime();
+        List<Node> candidates = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            if (!tried.contains(node) && node.isHealthy(now)) {
+                candidates.add(node);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Every node left is out of rotation: the one due back first may be back already
+            Node soonest = null;
+            for (Node node : nodes) {
+                if (!tried.contains(node) && (soonest == null || node.ejectedUntil() - soonest.ejectedUntil() < 0)) {
+                    soonest = node;
+                }
+            }
+            return soonest;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        if (strategy == Strategy.P2C) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(candidates.size());
+            int second = random.nextInt(candidates.size() - 1);
+            if (second >= first) {
+                second++;
+            }
+            return lessBusy(candidates.get(first), candidates.get(second));
+        }
+        Node best = candidates.get(0);
+        for (int i = 1; i < candidates.size(); i++) {
+            best = lessBusy(best, candidates.get(i));
+        }
+        return best;
+    }
+
+    private static Node lessBusy(Node a, Node b) {
+        int outstandingA = a.outstanding.get();
+        int outstandingB = b.outstanding.get();
+        if (outstandingA != outstandingB) {
+            return outstandingA < outstandingB ? a : b;
+        }
+        return a.latencyNanos() <= b.latencyNanos() ? a : b;
+    }
+
+    private static boolean canFailOver(IOException e, boolean idempotent) {
+        if (e instanceof ConnectException) {
+            // Nothing was sent
+            return true;
+        }
+        return idempotent && !(e instanceof HttpTimeoutException) && !(e instanceof InterruptedIOException);
+    }
+
+    /**
+     * Whether the request was interrupted on purpose, e.g. a superseded prefetch, rather than
+     * failing on its node; a read timeout is an {@link InterruptedIOException} too, but a failure.
+     */
+    private static boolean wasCancelled(IOException e) {
+        return Thread.currentThread().isInterrupted()
+            || (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException));
+    }
+
+    private static boolean isUnavailable(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * One replica and what is known about it.
+     */
+    static final class Node {
+        final String baseUrl;
+        final AtomicInteger outstanding = new AtomicInteger();
+        ClientMetrics.Backend metrics;
+
+        // Guarded by this
+        private int consecutiveFailures;
+        private long ejectedUntil;
+        private boolean ejected;
+        private double latencyNanos;
+
+        Node(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        synchronized boolean isHealthy(long now) {
+            return !ejected || now - ejectedUntil >= 0;
+        }
+
+        synchronized long ejectedUntil() {
+            return ejectedUntil;
+        }
+
+        /**
+         * Moving average of the time until the response headers arrived.
+         */
+        synchronized double latencyNanos() {
+            return latencyNanos;
+        }
+
+        void succeeded(long nanos) {
+            metrics.getLatency().record(nanos);
+            synchronized (this) {
+                consecutiveFailures = 0;
+                if (ejected) {
+                    LOG.log(Level.INFO, baseUrl + " is answering again");
+                }
+                ejected = false;
+                latencyNanos = latencyNanos == 0 ? nanos : latencyNanos + LATENCY_WEIGHT * (nanos - latencyNanos);
+            }
+        }
+
+        /**
+         * Counts a failure; returns whether it took the node out of rotation.
+         */
+        synchronized boolean failed(int threshold, long ejectNanos) {
+            consecutiveFailures++;
+            if (consecutiveFailures < threshold) {
+                return false;
+            }
+            long now = System.nanoTime();
+            // A failure while out of rotation, e.g. of a request sent before, doesn't extend it
+            if (ejected && now - ejectedUntil < 0) {
+                return false;
+            }
+            ejected = true;
+            ejectedUntil = now + ejectNanos;
+            return true;
+        }
+    }
+}
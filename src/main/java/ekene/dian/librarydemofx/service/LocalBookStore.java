@@ -0,0 +1,616 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ekene.dian.librarydemofx.model.Book;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * An on-disk store of books, used to show the catalog straight away at startup and while the
+ * server can't be reached.
+ *
+ * Books live in an append-only log, {@code books.log}. A put or delete appends a record and
+ * never rewrites an old one, so a crash can at worst leave a torn record at the end, which is cut
+ * off the next time the store is opened. A memory-mapped hash index, {@code books.idx}, maps each
+ * id to the offset of its latest record and remembers how much of the log it covers, so opening
+ * the store only reads what was appended after the index was last updated. Superseded records
+ * are dropped by compaction once they make up most of the log.
+ *
+ * Log record layout: {@code int length, int crc32, byte op, long id, payload}, where length and
+ * crc cover everything after them and the payload is the book as JSON (empty for a delete).
+ *
+ * Writes are not forced to disk one by one: the store is a copy of the server's data, and pending
+ * offline changes are kept separately by {@link OfflineQueue}.
+ */
+public class LocalBookStore implements AutoCloseable {
+    private static final Logger LOG = System.getLogger(LocalBookStore.class.getName());
+
+    private static final String LOG_FILE = "books.log";
+    private static final String INDEX_FILE = "books.idx";
+    private static final int LOG_MAGIC = 0x4C42534C;
+    private static final int INDEX_MAGIC = 0x4C425349;
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER = 8;
+    // length + crc
+    private static final int RECORD_HEADER = 8;
+    // op + id
+    private static final int RECORD_PREFIX = 9;
+    private static final int MAX_RECORD = 16 * 1024 * 1024;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    // magic, version, capacity, used slots, live count, unused, log length covered, live bytes
+    private static final int INDEX_HEADER = 40;
+    // id, offset, crc, record length
+    private static final int SLOT = 24;
+    private static final long EMPTY = 0;
+    private static final long DELETED = -1;
+    private static final int MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.6;
+    // Compact when superseded records take more than half the log and at least this much space
+    private static final long MIN_GARBAGE = 4 * 1024 * 1024;
+    private static final int WRITE_BUFFER = 1024 * 1024;
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final ObjectReader bookReader;
+    private final ObjectWriter bookWriter;
+
+    private FileChannel log;
+    private long logLength;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int usedSlots;
+    private int liveCount;
+    private long liveBytes;
+
+    // Records appended but not yet written to the log, with their index entries
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER);
+    private final List<long[]> unwritten = new ArrayList<>();
+
+    private LocalBookStore(Path directory, ObjectMapper objectMapper) {
+        this.logPath = directory.resolve(LOG_FILE);
+        this.indexPath = directory.resolve(INDEX_FILE);
+        this.bookReader = objectMapper.readerFor(Book.class);
+        this.bookWriter = objectMapper.writerFor(Book.class);
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it if needed.
+     */
+    public static LocalBookStore open(Path directory, ObjectMapper objectMapper) throws IOException {
+        Files.createDirectories(directory);
+        LocalBookStore store = new LocalBookStore(directory, objectMapper);
+        try {
+            store.openFiles();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void openFiles() throws IOException {
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() < LOG_HEADER) {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER).putInt(LOG_MAGIC).putInt(VERSION).flip();
+            writeFully(log, header, 0);
+            log.truncate(LOG_HEADER);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER);
+            readFully(log, header, 0);
+            if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(logPath + " is not a book store");
+            }
+        }
+        logLength = log.size();
+
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long covered = mapExistingIndex();
+        if (covered < 0) {
+            if (logLength > LOG_HEADER) {
+                LOG.log(Level.INFO, "Rebuilding local book index " + indexPath);
+            }
+            rebuildIndex(MIN_CAPACITY);
+        } else {
+            // Pick up whatever was appended after the index was last written
+            long end = scan(covered, this::indexRecord);
+            truncateTornTail(end);
+            writeIndexHeader();
+        }
+
+        if (shouldCompact()) {
+            compact();
+        }
+    }
+
+    /**
+     * Maps the index file if it is usable, returning the log length it covers, or -1 if it has to
+     * be rebuilt.
+     */
+    private long mapExistingIndex() throws IOException {
+        if (indexChannel.size() < INDEX_HEADER) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+        readFully(indexChannel, header, 0);
+        int storedCapacity = header.getInt(8);
+        long covered = header.getLong(24);
+        if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION
+                || storedCapacity < MIN_CAPACITY || Integer.bitCount(storedCapacity) != 1
+                || indexChannel.size() < INDEX_HEADER + (long) storedCapacity * SLOT
+                || covered < LOG_HEADER || covered > logLength) {
+            return -1;
+        }
+        capacity = storedCapacity;
+        usedSlots = header.getInt(12);
+        liveCount = header.getInt(16);
+        liveBytes = header.getLong(32);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) capacity * SLOT);
+        return covered;
+    }
+
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    public synchronized boolean contains(long id) {
+        return lookupOffset(id) > 0;
+    }
+
+    public synchronized Book get(long id) throws IOException {
+        int slot = findSlot(id);
+        int position = slotPosition(slot);
+        long offset = index.getLong(position + 8);
+        if (offset == EMPTY || offset == DELETED) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(index.getInt(position + 20));
+        readFully(log, record, offset);
+        return bookReader.readValue(record.array(), RECORD_HEADER + RECORD_PREFIX, record.capacity() - RECORD_HEADER - RECORD_PREFIX);
+    }
+
+    /**
+     * Returns every book, in the order they were last written. Reads the log sequentially rather
+     * than following the index, which is much faster for a cold cache.
+     */
+    public synchronized List<Book> getAll() throws IOException {
+        List<Book> books = new ArrayList<>(liveCount);
+        scan(LOG_HEADER, (offset, op, id, crc, length, payload) -> {
+            if (op == OP_PUT && lookupOffset(id) == offset) {
+                books.add(bookReader.readValue(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()));
+            }
+        });
+        return books;
+    }
+
+    /**
+     * Returns the ids of all books in the store.
+     */
+    public synchronized Set<Long> ids() {
+        Set<Long> ids = new HashSet<>(liveCount * 2);
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 8);
+            if (offset != EMPTY && offset != DELETED) {
+                ids.add(index.getLong(position));
+            }
+        }
+        return ids;
+    }
+
+    public synchronized void put(Book book) throws IOException {
+        append(OP_PUT, book.getId(), bookWriter.writeValueAsBytes(book));
+        flush();
+    }
+
+    public synchronized void putAll(Collection<Book> books) throws IOException {
+        for (Book book : books) {
+            append(OP_PUT, book.getId(), bookWriter.writeValueAsBytes(book));
+        }
+        flush();
+        compactIfNeeded();
+    }
+
+    public synchronized void delete(long id) throws IOException {
+        if (lookupOffset(id) > 0) {
+            append(OP_DELETE, id, new byte[0]);
+            flush();
+        }
+    }
+
+    /**
+     * Makes the store hold exactly {@code books}, writing only the books that changed. Books for
+     * which {@code keep} is true are left as they are, whether or not they are in {@code books}.
+     */
+    public synchronized void replaceAll(Collection<Book> books, LongPredicate keep) throws IOException {
+        Set<Long> seen = new HashSet<>(books.size() * 2);
+        CRC32 crc = new CRC32();
+        for (Book book : books) {
+            Long id = book.getId();
+            if (id == null || !seen.add(id) || keep.test(id)) {
+                continue;
+            }
+            byte[] payload = bookWriter.writeValueAsBytes(book);
+            int position = slotPosition(findSlot(id));
+            long offset = index.getLong(position + 8);
+            if (offset != EMPTY && offset != DELETED && index.getInt(position + 16) == checksum(crc, OP_PUT, id, payload)) {
+                continue;
+            }
+            append(OP_PUT, id, payload);
+        }
+        for (Long id : ids()) {
+            if (!seen.contains(id) && !keep.test(id)) {
+                append(OP_DELETE, id, new byte[0]);
+            }
+        }
+        flush();
+        compactIfNeeded();
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each book, then rebuilds the index.
+     */
+    public synchronized void compact() throws IOException {
+        flush();
+        Path compacted = logPath.resolveSibling(LOG_FILE + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+            buffer.putInt(LOG_MAGIC).putInt(VERSION);
+            long[] written = {0};
+            scan(LOG_HEADER, (offset, op, id, crc, length, payload) -> {
+                if (op != OP_PUT || lookupOffset(id) != offset) {
+                    return;
+                }
+                if (buffer.remaining() < length) {
+                    buffer.flip();
+                    writeFully(out, buffer, written[0]);
+                    written[0] += buffer.limit();
+                    buffer.clear();
+                }
+                if (buffer.remaining() < length) {
+                    // Bigger than the buffer; write it on its own
+                    ByteBuffer single = ByteBuffer.allocate(length);
+                    single.putInt(length - RECORD_HEADER).putInt(crc).put(op).putLong(id).put(payload).flip();
+                    writeFully(out, single, written[0]);
+                    written[0] += length;
+                    return;
+                }
+                buffer.putInt(length - RECORD_HEADER).putInt(crc).put(op).putLong(id).put(payload);
+            });
+            buffer.flip();
+            writeFully(out, buffer, written[0]);
+            out.force(true);
+        }
+
+        log.close();
+        try {
+            Files.move(compacted, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(compacted, logPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logLength = log.size();
+        rebuildIndex(capacityFor(liveCount));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            flush();
+            if (index != null) {
+                index.force();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error writing local book store: " + e.getMessage());
+        }
+        closeQuietly(log);
+        closeQuietly(indexChannel);
+    }
+
+    // Log records
+
+    private void append(byte op, long id, byte[] payload) throws IOException {
+        int length = RECORD_HEADER + RECORD_PREFIX + payload.length;
+        if (length > MAX_RECORD) {
+            throw new IOException("Book " + id + " is too large to store");
+        }
+        if (writeBuffer.remaining() < length) {
+            flush();
+            if (writeBuffer.capacity() < length) {
+                writeBuffer = ByteBuffer.allocate(length);
+            }
+        }
+        int crc = checksum(new CRC32(), op, id, payload);
+        long offset = logLength + writeBuffer.position();
+        writeBuffer.putInt(length - RECORD_HEADER).putInt(crc).put(op).putLong(id).put(payload);
+        unwritten.add(new long[] {id, op == OP_PUT ? offset : DELETED, crc, length});
+    }
+
+    /**
+     * Writes buffered records to the log, then points the index at them. In that order, a crash
+     * never leaves the index pointing past the end of the log.
+     */
+    private void flush() throws IOException {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        writeFully(log, writeBuffer, logLength);
+        logLength += writeBuffer.limit();
+        writeBuffer.clear();
+        for (long[] entry : unwritten) {
+            setEntry(entry[0], entry[1], (int) entry[2], (int) entry[3]);
+        }
+        unwritten.clear();
+        writeIndexHeader();
+    }
+
+    private static int checksum(CRC32 crc, byte op, long id, byte[] payload) {
+        crc.reset();
+        crc.update(ByteBuffer.allocate(RECORD_PREFIX).put(op).putLong(id).flip());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private interface RecordVisitor {
+        void visit(long offset, byte op, long id, int crc, int length, ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * Reads the records from {@code from} to the end of the log, stopping at the first one that
+     * is truncated or fails its checksum.
+     *
+     * @return the offset just past the last good record
+     */
+    private long scan(long from, RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+        buffer.flip();
+        long readPosition = from;
+        long offset = from;
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            if (buffer.remaining() < RECORD_HEADER) {
+                readPosition = fill(buffer, RECORD_HEADER, readPosition);
+                if (buffer.remaining() < RECORD_HEADER) {
+                    break;
+                }
+            }
+            int start = buffer.position();
+            int bodyLength = buffer.getInt(start);
+            int storedCrc = buffer.getInt(start + 4);
+            if (bodyLength < RECORD_PREFIX || bodyLength > MAX_RECORD - RECORD_HEADER) {
+                break;
+            }
+            int length = RECORD_HEADER + bodyLength;
+            if (buffer.remaining() < length) {
+                if (buffer.capacity() < length) {
+                    ByteBuffer bigger = ByteBuffer.allocate(length);
+                    bigger.put(buffer).flip();
+                    buffer = bigger;
+                }
+                readPosition = fill(buffer, length, readPosition);
+                if (buffer.remaining() < length) {
+                    break;
+                }
+                start = buffer.position();
+            }
+
+            crc.reset();
+            crc.update(buffer.array(), start + RECORD_HEADER, bodyLength);
+            if ((int) crc.getValue() != storedCrc) {
+                break;
+            }
+            byte op = buffer.get(start + RECORD_HEADER);
+            long id = buffer.getLong(start + RECORD_HEADER + 1);
+            ByteBuffer payload = buffer.slice(start + RECORD_HEADER + RECORD_PREFIX, bodyLength - RECORD_PREFIX);
+            visitor.visit(offset, op, id, storedCrc, length, payload);
+            buffer.position(start + length);
+            offset += length;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads more of the log into {@code buffer} until it has {@code needed} bytes remaining or
+     * the log ends. Returns the new read position.
+     */
+    private long fill(ByteBuffer buffer, int needed, long readPosition) throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed && buffer.hasRemaining()) {
+            int read = log.read(buffer, readPosition);
+            if (read < 0) {
+                break;
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+        return readPosition;
+    }
+
+    private void truncateTornTail(long end) throws IOException {
+        if (end < log.size()) {
+            LOG.log(Level.WARNING, "Discarding " + (log.size() - end) + " bytes of incomplete records from " + logPath);
+            log.truncate(end);
+        }
+        logLength = end;
+    }
+
+    // Index
+
+    private void indexRecord(long offset, byte op, long id, int crc, int length, ByteBuffer payload) {
+        setEntry(id, op == OP_PUT ? offset : DELETED, crc, length);
+    }
+
+    private long lookupOffset(long id) {
+        return index.getLong(slotPosition(findSlot(id)) + 8);
+    }
+
+    /**
+     * Returns the slot holding {@code id}, or the empty slot where it would go.
+     */
+    private int findSlot(long id) {
+        int mask = capacity - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            if (index.getLong(position + 8) == EMPTY || index.getLong(position) == id) {
+                return slot;
+            }
+        }
+    }
+
+    private void setEntry(long id, long offset, int crc, int length) {
+        int position = slotPosition(findSlot(id));
+        long previous = index.getLong(position + 8);
+        if (previous == EMPTY) {
+            if (offset == DELETED) {
+                return;
+            }
+            usedSlots++;
+            index.putLong(position, id);
+        } else if (previous != DELETED) {
+            liveCount--;
+            liveBytes -= index.getInt(position + 20);
+        }
+        // Deleted ids keep their slot so that probing past them still works
+        index.putLong(position + 8, offset);
+        index.putInt(position + 16, crc);
+        index.putInt(position + 20, length);
+        if (offset != DELETED) {
+            liveCount++;
+            liveBytes += length;
+        }
+
+        if (usedSlots > capacity * MAX_LOAD) {
+            resizeIndex(capacity * 2);
+        }
+    }
+
+    private void resizeIndex(int newCapacity) {
+        List<long[]> live = new ArrayList<>(liveCount);
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 8);
+            if (offset != EMPTY && offset != DELETED) {
+                live.add(new long[] {index.getLong(position), offset, index.getInt(position + 16), index.getInt(position + 20)});
+            }
+        }
+        try {
+            mapEmptyIndex(newCapacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow local book index", e);
+        }
+        for (long[] entry : live) {
+            setEntry(entry[0], entry[1], (int) entry[2], (int) entry[3]);
+        }
+    }
+
+    private void rebuildIndex(int newCapacity) throws IOException {
+        mapEmptyIndex(newCapacity);
+        long end = scan(LOG_HEADER, this::indexRecord);
+        truncateTornTail(end);
+        writeIndexHeader();
+    }
+
+    private void mapEmptyIndex(int newCapacity) throws IOException {
+        long size = INDEX_HEADER + (long) newCapacity * SLOT;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Local book index is full");
+        }
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        byte[] zeros = new byte[64 * 1024];
+        index.position(0);
+        while (index.hasRemaining()) {
+            index.put(zeros, 0, Math.min(zeros.length, index.remaining()));
+        }
+        index.position(0);
+        capacity = newCapacity;
+        usedSlots = 0;
+        liveCount = 0;
+        liveBytes = 0;
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, capacity);
+        index.putInt(12, usedSlots);
+        index.putInt(16, liveCount);
+        index.putLong(24, logLength);
+        index.putLong(32, liveBytes);
+    }
+
+    private boolean shouldCompact() {
+        long garbage = logLength - LOG_HEADER - liveBytes;
+        return garbage > MIN_GARBAGE && garbage > liveBytes;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (shouldCompact()) {
+            compact();
+        }
+    }
+
+    private static int capacityFor(int entries) {
+        int needed = (int) Math.ceil(entries / MAX_LOAD) + 1;
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER + slot * SLOT;
+    }
+
+    private static int hash(long id) {
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of local book store");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - start);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error closing local book store: " + e.getMessage());
+            }
+        }
+    }
+}
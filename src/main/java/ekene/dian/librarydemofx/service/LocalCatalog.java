@@ -0,0 +1,495 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PendingOperation;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps the catalog usable without the server: a {@link LocalBookStore} holding the last known
+ * catalog, and an {@link OfflineQueue} of changes made while the server couldn't be reached.
+ *
+ * Writes go to the server when it is reachable and the queue is empty, and are queued otherwise,
+ * so queued changes always reach the server in the order they were made. A book created offline
+ * gets a temporary negative id until it has been sent; later edits to it are folded into the
+ * queued create. A background thread retries the queue every
+ * {@code library.offline.replay-interval-ms}. A queued change the server rejects is dropped and
+ * logged rather than blocking the ones behind it.
+ *
+ * A create that was sent but got no answer, e.g. because it timed out, may have been stored by
+ * the server all the same. Creates carry an idempotency key, kept with a queued create, and such
+ * a create is only sent again once the server has been searched for it and it isn't there.
+ *
+ * All methods block on disk or network I/O and must not be called on the FX thread.
+ */
+public class LocalCatalog implements AutoCloseable {
+    private static final Logger LOG = System.getLogger(LocalCatalog.class.getName());
+
+    private static final String QUEUE_FILE = "pending.jsonl";
+
+    private final BookService bookService;
+    private final LocalBookStore store;
+    private final OfflineQueue queue;
+    private final ScheduledExecutorService replayer;
+    private long nextLocalId;
+    private volatile boolean offline;
+    private volatile int pendingCount;
+    private volatile Runnable statusListener = () -> { };
+    private volatile Runnable replayListener = () -> { };
+
+    private LocalCatalog(BookService bookService, LocalBookStore store, OfflineQueue queue, long replayIntervalMillis) {
+        this.bookService = bookService;
+        this.store = store;
+        this.queue = queue;
+        this.pendingCount = queue.size();
+        this.nextLocalId = -1;
+        for (PendingOperation operation : queue.getOperations()) {
+            if (operation.getBookId() != null && operation.getBookId() <= nextLocalId) {
+                nextLocalId = operation.getBookId() - 1;
+            }
+        }
+        this.replayer = Executors.newSingleThreadScheduledExecutor(ServiceExecutors.daemonThreadFactory("book-replay"));
+        this.replayer.scheduleWithFixedDelay(this::replayInBackground, 0, replayIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static LocalCatalog open(BookService bookService, ClientConfig config) throws IOException {
+        LocalBookStore store = LocalBookStore.open(config.getLocalStoreDirectory(), bookService.getObjectMapper());
+        try {
+            OfflineQueue queue = OfflineQueue.open(config.getLocalStoreDirectory().resolve(QUEUE_FILE),
+                bookService.getObjectMapper());
+            return new LocalCatalog(bookService, store, queue, Math.max(1000, config.getOfflineReplayIntervalMillis()));
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a book only exists locally so far, having been created while offline.
+     */
+    public static boolean isLocalId(Long id) {
+        return id != null && id < 0;
+    }
+
+    /**
+     * Called, on a background thread, when the offline state or the number of pending changes
+     * changes.
+     */
+    public void setStatusListener(Runnable listener) {
+        this.statusListener = listener;
+    }
+
+    /**
+     * Called, on a background thread, after queued changes have been sent, since books created
+     * offline now have their real ids.
+     */
+    public void setReplayListener(Runnable listener) {
+        this.replayListener = listener;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * The number of changes waiting to be sent. Doesn't block, so it can be read on the FX thread.
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * The last known catalog, including changes that haven't reached the server yet.
+     */
+    public synchronized List<Book> getBooks() throws IOException {
+        return store.getAll();
+    }
+
+    /**
+     * Searches the local copy the same way the server does.
+     */
+    public List<Book> search(String query) throws IOException {
+        return QueryCache.filter(getBooks(), QueryCache.normalize(query));
+    }
+
+    /**
+     * Replaces the local copy with a complete catalog just loaded from the server. Books with
+     * changes still waiting to be sent keep their local version.
+     */
+    public synchronized void reconcile(Collection<Book> serverBooks) throws IOException {
+        Set<Long> pendingIds = pendingIds();
+        store.replaceAll(serverBooks, id -> isLocalId(id) || pendingIds.contains(id));
+        setOffline(false);
+        if (!queue.isEmpty()) {
+            replayer.execute(this::replayInBackground);
+        }
+    }
+
+    /**
+     * Applies the changes found by a {@link DeltaSync} to the local copy. As with
+     * {@link #reconcile}, books with changes still waiting to be sent keep their local version.
+     */
+    public synchronized void applyChanges(Collection<Book> changed, Collection<Long> deleted) throws IOException {
+        Set<Long> pendingIds = pendingIds();
+        List<Book> accepted = new ArrayList<>(changed.size());
+        for (Book book : changed) {
+            if (!pendingIds.contains(book.getId())) {
+                accepted.add(book);
+            }
+        }
+        store.putAll(accepted);
+        for (Long id : deleted) {
+            if (!pendingIds.contains(id)) {
+                store.delete(id);
+            }
+        }
+        setOffline(false);
+    }
+
+    private Set<Long> pendingIds() {
+        Set<Long> pendingIds = new HashSet<>();
+        for (PendingOperation operation : queue.getOperations()) {
+            pendingIds.add(operation.getBookId());
+        }
+        return pendingIds;
+    }
+
+    /**
+     * Records that a call to the server failed.
+     *
+     * @return whether the failure means the server can't be reached
+     */
+    public boolean reportFailure(Throwable error) {
+        boolean unreachable = RetryPolicy.NO_RESPONSE.test(error);
+        if (unreachable) {
+            setOffline(true);
+        }
+        return unreachable;
+    }
+
+    /**
+     * Creates a book on the server, or queues it if the server can't be reached.
+     *
+     * @return the created book; a queued book has a temporary negative id. A failure if the
+     *         server rejected the book.
+     */
+    public synchronized ServiceResult<Book> createBook(Book book) throws IOException {
+        PendingOperation create = new PendingOperation(PendingOperation.Type.CREATE, null, null);
+        create.setIdempotencyKey(UUID.randomUUID().toString());
+        if (canSendDirectly()) {
+            try {
+                Book created = bookService.sendCreateBook(book, create.getIdempotencyKey());
+                setOffline(false);
+                if (created != null) {
+                    store.put(created);
+                }
+                return ServiceResult.success(created);
+            } catch (Exception e) {
+                if (!reportFailure(e)) {
+                    LOG.log(Level.WARNING, "Error creating book: " + e.getMessage());
+                    return ServiceResult.failure(e);
+                }
+                // Only a connection that was never made is sure not to have delivered it
+                create.setPossiblySent(!RetryPolicy.NOT_PROCESSED.test(e));
+            }
+        }
+
+        Book local = copyOf(book, nextLocalId--);
+        create.setBookId(local.getId());
+        create.setBook(local);
+        queue.add(create);
+        store.put(local);
+        queueChanged();
+        return ServiceResult.success(local);
+    }
+
+    /**
+     * Updates a book on the server, or queues the update if the server can't be reached.
+     *
+     * @return the book as sent; a failure if the server rejected the update
+     */
+    public synchronized ServiceResult<Book> updateBook(Book book) throws IOException {
+        if (isLocalId(book.getId())) {
+            // Not on the server yet: change what will be created instead
+            for (PendingOperation operation : queue.getOperations()) {
+                if (operation.getType() == PendingOperation.Type.CREATE && book.getId().equals(operation.getBookId())) {
+                    operation.setBook(copyOf(book, book.getId()));
+                    queue.save();
+                    store.put(book);
+                    return ServiceResult.success(book);
+                }
+            }
+            return ServiceResult.failure(new BookServiceException("Book " + book.getId() + " is no longer queued"));
+        }
+
+        if (canSendDirectly()) {
+            try {
+                bookService.sendUpdateBook(book);
+                setOffline(false);
+                store.put(book);
+                return ServiceResult.success(book);
+            } catch (Exception e) {
+                if (!reportFailure(e)) {
+                    LOG.log(Level.WARNING, "Error updating book: " + e.getMessage());
+                    return ServiceResult.failure(e);
+                }
+            }
+        }
+
+        // Only the latest queued update of a book matters
+        queue.removeIf(operation -> operation.getType() == PendingOperation.Type.UPDATE
+            && book.getId().equals(operation.getBookId()));
+        queue.add(new PendingOperation(PendingOperation.Type.UPDATE, book.getId(), copyOf(book, book.getId())));
+        store.put(book);
+        queueChanged();
+        return ServiceResult.success(book);
+    }
+
+    /**
+     * Deletes a book on the server, or queues the delete if the server can't be reached.
+     *
+     * @return the id of the deleted book; a failure if the server rejected the delete
+     */
+    public synchronized ServiceResult<Long> deleteBook(Long id) throws IOException {
+        if (isLocalId(id)) {
+            queue.removeIf(operation -> id.equals(operation.getBookId()));
+            store.delete(id);
+            queueChanged();
+            return ServiceResult.success(id);
+        }
+
+        if (canSendDirectly()) {
+            try {
+                bookService.sendDeleteBook(id);
+                setOffline(false);
+                store.delete(id);
+                return ServiceResult.success(id);
+            } catch (Exception e) {
+                if (!reportFailure(e)) {
+                    LOG.log(Level.WARNING, "Error deleting book: " + e.getMessage());
+                    return ServiceResult.failure(e);
+                }
+            }
+        }
+
+        queue.removeIf(operation -> operation.getType() == PendingOperation.Type.UPDATE && id.equals(operation.getBookId()));
+        queue.add(new PendingOperation(PendingOperation.Type.DELETE, id, null));
+        store.delete(id);
+        queueChanged();
+        return ServiceResult.success(id);
+    }
+
+    /**
+     * Updates many books: in one batch for those that can go to the server now, and through
+     * {@link #updateBook} for books created offline, for every book while the server can't be
+     * reached, and for books the batch failed to update.
+     *
+     * @return the books as sent, in input order
+     */
+    public synchronized BatchResult<Book> updateBooks(List<Book> books) throws IOException {
+        return runBatch(books, Book::getId, bookService::updateBooks, this::updateBook, store::put);
+    }
+
+    /**
+     * Deletes many books, like {@link #updateBooks}: in one batch for those that can go to the
+     * server now, and through {@link #deleteBook} for the rest.
+     *
+     * @return the ids of the deleted books, in input order
+     */
+    public synchronized BatchResult<Long> deleteBooks(List<Long> ids) throws IOException {
+        return runBatch(ids, id -> id, bookService::deleteBooks, this::deleteBook, store::delete);
+    }
+
+    /**
+     * Sends queued changes in order until the queue is empty or the server can't be reached.
+     *
+     * @return the number of changes taken off the queue
+     */
+    public synchronized int replayPending() throws IOException {
+        int replayed = 0;
+        PendingOperation operation;
+        while ((operation = queue.peek()) != null) {
+            try {
+                send(operation);
+                setOffline(false);
+            } catch (Exception e) {
+                if (reportFailure(e)) {
+                    break;
+                }
+                LOG.log(Level.WARNING, "Dropping queued " + operation + " rejected by the server: " + e.getMessage());
+                dropRejected(operation, e);
+            }
+            queue.removeFirst();
+            replayed++;
+        }
+        if (replayed > 0) {
+            queueChanged();
+        }
+        return replayed;
+    }
+
+    private void send(PendingOperation operation) throws IOException {
+        switch (operation.getType()) {
+            case CREATE: {
+                Book created = operation.isPossiblySent() ? bookService.findCreated(operation.getBook()) : null;
+                if (created == null) {
+                    created = sendCreate(operation);
+                }
+                store.delete(operation.getBookId());
+                if (created != null) {
+                    store.put(created);
+                }
+                break;
+            }
+            case UPDATE:
+                bookService.sendUpdateBook(operation.getBook());
+                store.put(operation.getBook());
+                break;
+            case DELETE:
+                try {
+                    bookService.sendDeleteBook(operation.getBookId());
+                } catch (BookServiceException e) {
+                    // Already gone is what we wanted
+                    if (e.getStatusCode() != 404) {
+                        throw e;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation.getType());
+        }
+    }
+
+    private Book sendCreate(PendingOperation operation) throws IOException {
+        if (operation.getIdempotencyKey() == null) {
+            // Queued before creates carried a key
+            operation.setIdempotencyKey(UUID.randomUUID().toString());
+        }
+        try {
+            return bookService.sendCreateBook(copyOf(operation.getBook(), null), operation.getIdempotencyKey());
+        } catch (IOException | RuntimeException e) {
+            if (!operation.isPossiblySent() && !RetryPolicy.NOT_PROCESSED.test(e)) {
+                // Look for it before sending it again, in case the server ignores the key
+                operation.setPossiblySent(true);
+                queue.save();
+            }
+            throw e;
+        }
+    }
+
+    private void dropRejected(PendingOperation operation, Exception error) throws IOException {
+        boolean missing = error instanceof BookServiceException && ((BookServiceException) error).getStatusCode() == 404;
+        if (operation.getType() == PendingOperation.Type.CREATE
+                || (operation.getType() == PendingOperation.Type.UPDATE && missing)) {
+            store.delete(operation.getBookId());
+        }
+    }
+
+    private interface LocalCall<I, R> {
+        ServiceResult<R> send(I item) throws IOException;
+    }
+
+    private interface BookAction<R> {
+        void apply(R value) throws IOException;
+    }
+
+    /**
+     * Sends the items the server can take now as one batch, and the rest one at a time through
+     * {@code single}, which queues them if the server can't be reached. Items the batch failed
+     * on are given to {@code single} too, so those that failed because the server went away are
+     * queued rather than lost; all batch writes are idempotent, so a rejected item sent twice is
+     * rejected twice.
+     */
+    private <I, R> BatchResult<R> runBatch(List<I> inputs, Function<I, Long> idOf,
+                                           Function<List<I>, BatchResult<R>> batch, LocalCall<I, R> single,
+                                           BookAction<R> sent) throws IOException {
+        BatchResult<R> result = new BatchResult<>(inputs.size());
+        List<Integer> direct = new ArrayList<>();
+        List<Integer> oneByOne = new ArrayList<>();
+        boolean online = canSendDirectly();
+        for (int i = 0; i < inputs.size(); i++) {
+            (online && !isLocalId(idOf.apply(inputs.get(i))) ? direct : oneByOne).add(i);
+        }
+
+        if (!direct.isEmpty()) {
+            List<I> chunk = new ArrayList<>(direct.size());
+            for (int index : direct) {
+                chunk.add(inputs.get(index));
+            }
+            List<BatchResult.Item<R>> items = batch.apply(chunk).getItems();
+            for (int i = 0; i < direct.size(); i++) {
+                BatchResult.Item<R> item = items.get(i);
+                if (item != null && item.isSuccess()) {
+                    sent.apply(item.getValue());
+                    result.succeeded(direct.get(i), item.getValue());
+                    setOffline(false);
+                } else {
+                    oneByOne.add(direct.get(i));
+                }
+            }
+        }
+
+        for (int index : oneByOne) {
+            ServiceResult<R> outcome = single.send(inputs.get(index));
+            if (outcome.isSuccess()) {
+                result.succeeded(index, outcome.getValue());
+            } else {
+                result.failed(index, outcome.getError());
+            }
+        }
+        return result;
+    }
+
+    private boolean canSendDirectly() throws IOException {
+        // Anything queued has to reach the server first, or it would overwrite newer changes
+        return queue.isEmpty() || (replayPending() >= 0 && queue.isEmpty());
+    }
+
+    private void replayInBackground() {
+        try {
+            if (getPendingCount() > 0 && replayPending() > 0) {
+                replayListener.run();
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Error sending queued changes: " + e.getMessage(), e);
+        }
+    }
+
+    private void queueChanged() {
+        pendingCount = queue.size();
+        statusListener.run();
+    }
+
+    private void setOffline(boolean offline) {
+        if (this.offline != offline) {
+            this.offline = offline;
+            statusListener.run();
+        }
+    }
+
+    private static Book copyOf(Book book, Long id) {
+        Book copy = new Book(book.getTitle(), book.getAuthor(), book.getIsbn(), book.getPublishedDate());
+        copy.setId(id);
+        return copy;
+    }
+
+    @Override
+    public void close() {
+        replayer.shutdownNow();
+        synchronized (this) {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ekene.dian.librarydemofx.service;
+
+import java.util.Locale;
+
+/**
+ * Publishes {@link ClientMetrics} to a monitoring system. Implementations read the metrics
+ * when asked for them rather than copying every recording, so binding one costs nothing on the
+ * request path.
+ */
+public interface MetricsBinder {
+
+    void bind(ClientMetrics metrics);
+
+    /**
+     * Stops publishing.
+     */
+    default void close() {
+    }
+
+    /**
+     * {@code jmx}, {@code micrometer} or the name of a class implementing this interface with a
+     * public no-argument constructor.
+     */
+    static MetricsBinder create(String name) throws ReflectiveOperationException {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "jmx":
+                return new JmxMetricsBinder();
+            case "micrometer":
+                // Fails with a LinkageError when Micrometer isn't on the module path
+                return new MicrometerMetricsBinder();
+            default:
+                return Class.forName(name).asSubclass(MetricsBinder.class).getDeclaredConstructor().newInstance();
+        }
+    }
+}
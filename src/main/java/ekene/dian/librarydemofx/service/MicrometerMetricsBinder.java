@@ -0,0 +1,134 @@
+package ekene.dian.librarydemofx.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link ClientMetrics} as Micrometer meters, by default to
+ * {@link Metrics#globalRegistry}, to which the application adds the registries it exports to.
+ *
+ * Counters become {@code FunctionCounter}s and percentiles {@code TimeGauge}s tagged with a
+ * {@code quantile}, all read from the client's own histograms when the registry is scraped.
+ * Micrometer is optional: the module only reads {@code micrometer.core} if it was added to the
+ * module graph, e.g. with {@code --add-modules micrometer.core}.
+ */
+public class MicrometerMetricsBinder implements MetricsBinder {
+    private static final String PREFIX = "library.client.";
+
+    private final MeterRegistry registry;
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    public MicrometerMetricsBinder() {
+        this(Metrics.globalRegistry);
+    }
+
+    public MicrometerMetricsBinder(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void bind(ClientMetrics metrics) {
+        meters.add(FunctionCounter.builder(PREFIX + "retries", metrics, ClientMetrics::getRetries)
+            .description("Requests repeated after a retryable failure")
+            .register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "hedges", metrics, ClientMetrics::getHedges)
+            .description("Second requests sent because the first was slow")
+            .register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "circuit.rejections", metrics, ClientMetrics::getCircuitRejections)
+            .description("Requests refused without being sent while the circuit breaker was open")
+            .register(registry));
+        quantiles("decoding", metrics.getDecoding(), "Time spent decoding response bodies");
+        quantiles("fx.stall", metrics.getFxStalls(), "Time tasks waited for the JavaFX Application Thread");
+        quantiles("fx.pulse", metrics.getPulses(), "CSS and layout time of a JavaFX pulse");
+        meters.add(FunctionCounter.builder(PREFIX + "fx.blocks", metrics, ClientMetrics::getFxBlocks)
+            .description("Times the JavaFX Application Thread stayed busy past the watchdog threshold")
+            .register(registry));
+        for (ClientMetrics.CacheCounters cache : metrics.getCaches()) {
+            meters.add(Gauge.builder(PREFIX + "cache.hit.rate", cache, ClientMetrics.CacheCounters::getHitRate)
+                .tag("cache", cache.getName())
+                .register(registry));
+        }
+        for (ClientMetrics.Backend backend : metrics.getBackends()) {
+            bindBackend(backend);
+        }
+        metrics.onEndpoint(this::bindEndpoint);
+    }
+
+    private void bindBackend(ClientMetrics.Backend backend) {
+        String url = backend.getUrl();
+        meters.add(Gauge.builder(PREFIX + "backend.outstanding", backend, ClientMetrics.Backend::getOutstanding)
+            .tag("backend", url)
+            .description("Requests sent to the node whose response hasn't been read yet")
+            .register(registry));
+        meters.add(Gauge.builder(PREFIX + "backend.healthy", backend, b -> b.isHealthy() ? 1 : 0)
+            .tag("backend", url)
+            .register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "backend.failures", backend, ClientMetrics.Backend::getFailures)
+            .tag("backend", url)
+            .register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "backend.ejections", backend, ClientMetrics.Backend::getEjections)
+            .tag("backend", url)
+            .description("Times the node was taken out of rotation after failing")
+            .register(registry));
+        for (double quantile : new double[] {0.5, 0.99}) {
+            meters.add(TimeGauge.builder(PREFIX + "backend.latency", backend, TimeUnit.MILLISECONDS,
+                    b -> b.getLatency().percentileMillis(quantile * 100))
+                .tag("backend", url)
+                .tag("quantile", String.valueOf(quantile))
+                .register(registry));
+        }
+    }
+
+    private void bindEndpoint(ClientMetrics.Endpoint endpoint) {
+        if (closed) {
+            return;
+        }
+        String name = endpoint.getName();
+        meters.add(FunctionCounter.builder(PREFIX + "requests", endpoint, e -> e.getLatency().getCount())
+            .tag("endpoint", name)
+            .register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "errors", endpoint, ClientMetrics.Endpoint::getErrors)
+            .tag("endpoint", name)
+            .register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "bytes.received", endpoint, ClientMetrics.Endpoint::getBytesReceived)
+            .tag("endpoint", name)
+            .baseUnit(BaseUnits.BYTES)
+            .register(registry));
+        for (double quantile : new double[] {0.5, 0.99}) {
+            meters.add(TimeGauge.builder(PREFIX + "request.latency", endpoint, TimeUnit.MILLISECONDS,
+                    e -> e.getLatency().percentileMillis(quantile * 100))
+                .tag("endpoint", name)
+                .tag("quantile", String.valueOf(quantile))
+                .register(registry));
+        }
+    }
+
+    private void quantiles(String name, LatencyHistogram histogram, String description) {
+        for (double quantile : new double[] {0.5, 0.99}) {
+            meters.add(TimeGauge.builder(PREFIX + name, histogram, TimeUnit.MILLISECONDS,
+                    h -> h.percentileMillis(quantile * 100))
+                .tag("quantile", String.valueOf(quantile))
+                .description(description)
+                .register(registry));
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Meter meter : meters) {
+            registry.remove(meter);
+        }
+        meters.clear();
+    }
+}
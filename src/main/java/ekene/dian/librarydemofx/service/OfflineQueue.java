@@ -0,0 +1,109 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import ekene.dian.librarydemofx.model.PendingOperation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Changes waiting to be sent to the server, oldest first, saved as JSON Lines.
+ *
+ * The queue is short, so it is simply rewritten after every change. The new file is forced to
+ * disk and then moved over the old one, so a crash leaves either the old or the new queue and
+ * never loses a change the user was told had been saved.
+ */
+class OfflineQueue {
+    private final Path file;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final List<PendingOperation> operations = new ArrayList<>();
+
+    private OfflineQueue(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.reader = objectMapper.readerFor(PendingOperation.class);
+        this.writer = objectMapper.writerFor(PendingOperation.class).withRootValueSeparator("\n");
+    }
+
+    static OfflineQueue open(Path file, ObjectMapper objectMapper) throws IOException {
+        OfflineQueue queue = new OfflineQueue(file, objectMapper);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file);
+                 MappingIterator<PendingOperation> saved = queue.reader.readValues(in)) {
+                while (saved.hasNextValue()) {
+                    queue.operations.add(saved.nextValue());
+                }
+            }
+        }
+        return queue;
+    }
+
+    List<PendingOperation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    int size() {
+        return operations.size();
+    }
+
+    PendingOperation peek() {
+        return operations.isEmpty() ? null : operations.get(0);
+    }
+
+    void add(PendingOperation operation) throws IOException {
+        operations.add(operation);
+        save();
+    }
+
+    void removeFirst() throws IOException {
+        operations.remove(0);
+        save();
+    }
+
+    void removeIf(Predicate<PendingOperation> filter) throws IOException {
+        if (operations.removeIf(filter)) {
+            save();
+        }
+    }
+
+    /**
+     * Saves the queue after an operation in it was changed in place.
+     */
+    void save() throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            try (SequenceWriter sequence = writer.writeValues(out)) {
+                sequence.writeAll(operations);
+                sequence.flush();
+                channel.force(true);
+            }
+        }
+        try {
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
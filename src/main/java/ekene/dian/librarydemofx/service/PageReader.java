@@ -0,0 +1,126 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodes {@code PageResponse<Book>} JSON straight from a response stream.
+ *
+ * The page object is walked with the streaming token API and each element of {@code content} is
+ * bound to a {@link Book} as soon as it has been read, so the body is never held as a
+ * {@code String} and no intermediate tree is built. The {@link ObjectReader} is created once and
+ * shared; it is immutable and thread-safe.
+ */
+public class PageReader {
+    private final JsonFactory jsonFactory;
+    private final ObjectReader bookReader;
+
+    public PageReader(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.bookReader = objectMapper.readerFor(Book.class);
+    }
+
+    /**
+     * Reads a whole page, collecting its books into {@link PageResponse#getContent()}. An empty
+     * body is read as an empty last page.
+     */
+    public PageResponse<Book> read(InputStream in) throws IOException {
+        List<Book> content = new ArrayList<>();
+        PageResponse<Book> page = read(in, content::add);
+        page.setContent(content);
+        return page;
+    }
+
+    /**
+     * Reads a page, handing each book to {@code onBook} as it is decoded. The returned page has
+     * the paging fields filled in and an empty {@code content}.
+     */
+    public PageResponse<Book> read(InputStream in, Consumer<Book> onBook) throws IOException {
+        PageResponse<Book> page = new PageResponse<>();
+        page.setContent(new ArrayList<>());
+
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                page.setLast(true);
+                return page;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a page object but found " + token);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "content":
+                        readContent(parser, value, onBook);
+                        break;
+                    case "totalPages":
+                        page.setTotalPages(parser.getValueAsInt());
+                        break;
+                    case "totalElements":
+                        page.setTotalElements(parser.getValueAsLong());
+                        break;
+                    case "last":
+                        page.setLast(parser.getValueAsBoolean());
+                        break;
+                    case "size":
+                        page.setSize(parser.getValueAsInt());
+                        break;
+                    case "number":
+                        page.setNumber(parser.getValueAsInt());
+                        break;
+                    case "numberOfElements":
+                        page.setNumberOfElements(parser.getValueAsInt());
+                        break;
+                    case "first":
+                        page.setFirst(parser.getValueAsBoolean());
+                        break;
+                    case "empty":
+                        page.setEmpty(parser.getValueAsBoolean());
+                        break;
+                    default:
+                        // "pageable", "sort" and anything else we don't use
+                        parser.skipChildren();
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Reads a single book, or returns {@code null} for an empty body.
+     */
+    public Book readBook(InputStream in) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return bookReader.readValue(parser);
+        }
+    }
+
+    private void readContent(JsonParser parser, JsonToken value, Consumer<Book> onBook) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (value != JsonToken.START_ARRAY) {
+            throw new IOException("Expected content to be an array but found " + value);
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            onBook.accept(bookReader.readValue(parser));
+        }
+    }
+}
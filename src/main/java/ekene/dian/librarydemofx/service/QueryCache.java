@@ -0,0 +1,269 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side cache of list and search results, keyed by normalized query ({@code ""} is the
+ * whole catalog).
+ *
+ * Entries are bounded by count and by an estimate of their size in bytes, evicted least recently
+ * used first, and expire after a fixed time to live. Only complete result sets are stored, which
+ * also lets a refinement such as "tolk" → "tolkien" be answered from the cached "tolk" results
+ * without asking the server: the backend matches the query as a case-insensitive substring of
+ * the title or author, so every match for the longer query is also a match for its prefix.
+ *
+ * Any local write should call {@link #invalidateAll()}.
+ */
+public class QueryCache {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final boolean localRefinement;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // Bumped by invalidateAll() so that loads started before a write don't store stale results
+    private long version;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong refinementHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public QueryCache(int maxEntries, long maxBytes, long ttlMillis, boolean localRefinement) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.localRefinement = localRefinement;
+    }
+
+    public static QueryCache fromConfig(ClientConfig config) {
+        return new QueryCache(
+            config.getCacheMaxEntries(),
+            config.getCacheMaxBytes(),
+            config.getCacheTtlSeconds() * 1000L,
+            config.isCacheLocalRefinement()
+        );
+    }
+
+    public static String normalize(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the cached results for {@code query}, or {@code null} on a miss. The returned list
+     * is unmodifiable.
+     */
+    public synchronized List<Book> get(String query) {
+        String key = normalize(query);
+        purgeExpired(System.currentTimeMillis());
+
+        Entry exact = entries.get(key);
+        if (exact != null) {
+            hits.incrementAndGet();
+            return exact.books;
+        }
+
+        if (localRefinement) {
+            // Use the longest cached prefix of the query, since it holds the fewest rows to filter
+            Entry best = null;
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                String cachedKey = candidate.getKey();
+                if (key.startsWith(cachedKey)
+                        && (best == null || cachedKey.length() > best.key.length())) {
+                    best = candidate.getValue();
+                }
+            }
+            if (best != null) {
+                entries.get(best.key); // mark as recently used
+                List<Book> refined = Collections.unmodifiableList(filter(best.books, key));
+                refinementHits.incrementAndGet();
+                // Derived from the prefix entry, so it must not outlive it
+                put(key, refined, version, best.createdAt);
+                return refined;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Starts collecting the results of a load for {@code query}. The results are stored when
+     * {@link Collector#complete()} is called, unless they outgrew the cache or a write
+     * invalidated the cache in the meantime.
+     */
+    public synchronized Collector collector(String query) {
+        return new Collector(normalize(query), version);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalBytes = 0;
+        version++;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getRefinementHits() {
+        return refinementHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private synchronized void put(String key, List<Book> books, long loadVersion, long createdAt) {
+        if (loadVersion != version) {
+            return;
+        }
+        long bytes = estimateBytes(books);
+        if (bytes > maxBytes) {
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        entries.put(key, new Entry(key, books, bytes, createdAt));
+        totalBytes += bytes;
+
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && leastRecentlyUsed.hasNext()) {
+            Entry evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            totalBytes -= evicted.bytes;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.createdAt > ttlMillis) {
+                iterator.remove();
+                totalBytes -= entry.bytes;
+            }
+        }
+    }
+
+    /**
+     * The books matching a normalized query the way the server's search does.
+     */
+    static List<Book> filter(List<Book> books, String normalizedQuery) {
+        List<Book> matches = new ArrayList<>();
+        for (Book book : books) {
+            if (matches(book, normalizedQuery)) {
+                matches.add(book);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Whether a book matches a normalized query the way the server's search does.
+     */
+    public static boolean matches(Book book, String normalizedQuery) {
+        return contains(book.getTitle(), normalizedQuery) || contains(book.getAuthor(), normalizedQuery);
+    }
+
+    private static boolean contains(String value, String normalizedQuery) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(normalizedQuery);
+    }
+
+    static long estimateBytes(Book book) {
+        // Object headers and fields, plus two bytes per character for each string
+        long bytes = 96;
+        bytes += stringBytes(book.getTitle());
+        bytes += stringBytes(book.getAuthor());
+        bytes += stringBytes(book.getIsbn());
+        return bytes;
+    }
+
+    private static long estimateBytes(List<Book> books) {
+        long bytes = 64;
+        for (Book book : books) {
+            bytes += estimateBytes(book) + 8;
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    private static final class Entry {
+        final String key;
+        final List<Book> books;
+        final long bytes;
+        final long createdAt;
+
+        Entry(String key, List<Book> books, long bytes, long createdAt) {
+            this.key = key;
+            this.books = books;
+            this.bytes = bytes;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Accumulates the pages of one load. Not thread-safe; feed it from the loading thread.
+     */
+    public final class Collector {
+        private final String key;
+        private final long loadVersion;
+        private List<Book> books = new ArrayList<>();
+        private long bytes;
+
+        private Collector(String key, long loadVersion) {
+            this.key = key;
+            this.loadVersion = loadVersion;
+        }
+
+        public void add(List<Book> page) {
+            if (books == null) {
+                return;
+            }
+            for (Book book : page) {
+                bytes += estimateBytes(book) + 8;
+            }
+            if (bytes > maxBytes) {
+                // Too big to cache; stop holding on to it
+                books = null;
+                return;
+            }
+            books.addAll(page);
+        }
+
+        public void complete() {
+            if (books != null) {
+                put(key, Collections.unmodifiableList(books), loadVersion, System.currentTimeMillis());
+                books = null;
+            }
+        }
+    }
+}
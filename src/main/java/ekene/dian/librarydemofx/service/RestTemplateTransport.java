@@ -0,0 +1,73 @@
+package ekene.dian.librarydemofx.service;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Transport built on Spring's {@code RestTemplate} stack ({@code HttpURLConnection} underneath).
+ *
+ * Requests go straight through the template's request factory so that the body can be streamed
+ * instead of converted. {@code HttpURLConnection} keeps idle connections alive in the JDK's
+ * shared cache, sized by the {@code http.maxConnections} system property. The connect timeout
+ * bounds connection setup and the read timeout bounds every wait for data.
+ */
+public class RestTemplateTransport implements HttpTransport {
+    private final RestTemplate restTemplate;
+    private final boolean compression;
+
+    public RestTemplateTransport(ClientConfig config) {
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(config.getMaxConnections()));
+        }
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout((int) config.getConnectTimeoutMillis());
+        factory.setReadTimeout((int) config.getReadTimeoutMillis());
+        // Don't buffer request bodies in memory a second time
+        factory.setBufferRequestBody(false);
+        this.restTemplate = new RestTemplate(factory);
+        this.compression = config.isCompressionEnabled();
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    @Override
+    public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        HttpMethod httpMethod = HttpMethod.resolve(method);
+        if (httpMethod == null) {
+            throw new IOException("Unsupported HTTP method " + method);
+        }
+        ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(URI.create(url), httpMethod);
+        headers.forEach(request.getHeaders()::set);
+        if (compression) {
+            request.getHeaders().set("Accept-Encoding", "gzip, deflate");
+        }
+        if (body != null) {
+            request.getHeaders().setContentLength(body.length);
+            request.getBody().write(body);
+        }
+
+        ClientHttpResponse response = request.execute();
+        InputStream raw = response.getBody();
+        return new TransportResponse(
+            response.getRawStatusCode(),
+            response.getHeaders(),
+            TransportResponse.decode(response.getHeaders().getFirst("Content-Encoding"), raw),
+            response::close
+        );
+    }
+
+    @Override
+    public void close() {
+        // HttpURLConnection's keep-alive cache is JVM-wide and cleans itself up
+    }
+}
@@ -0,0 +1,139 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Retries a call with jittered exponential backoff.
+ *
+ * The delay before retry {@code n} is drawn uniformly from the upper half of
+ * {@code min(maxDelay, initialDelay * multiplier^(n-1))}, so clients that failed together don't
+ * retry together.
+ */
+public class RetryPolicy {
+
+    /**
+     * Failures worth retrying for idempotent requests (GET, PUT, DELETE): I/O errors, server
+     * errors and throttling. Requests refused by an open circuit breaker are not retried.
+     */
+    public static final Predicate<Throwable> IDEMPOTENT = error -> {
+        if (hasCause(error, CircuitOpenException.class)) {
+            return false;
+        }
+        int status = statusOf(error);
+        if (status > 0) {
+            return status >= 500 || status == 429;
+        }
+        return hasCause(error, IOException.class);
+    };
+
+    /**
+     * Failures where the server certainly did not act on the request, so that even a POST can be
+     * repeated safely: the connection was never made, or the server refused with 503 or 429.
+     */
+    public static final Predicate<Throwable> NOT_PROCESSED = error -> {
+        if (hasCause(error, CircuitOpenException.class)) {
+            return false;
+        }
+        int status = statusOf(error);
+        if (status > 0) {
+            return status == 503 || status == 429;
+        }
+        return hasCause(error, ConnectException.class) || hasCause(error, HttpConnectTimeoutException.class);
+    };
+
+    /**
+     * Failures where no HTTP response came back at all, e.g. because the server is down, the
+     * network is unreachable or the circuit breaker is open.
+     */
+    public static final Predicate<Throwable> NO_RESPONSE = error ->
+        statusOf(error) < 0 && hasCause(error, IOException.class);
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final Runnable onRetry;
+
+    public RetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis, double multiplier) {
+        this(maxAttempts, initialDelayMillis, maxDelayMillis, multiplier, () -> { });
+    }
+
+    private RetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis, double multiplier,
+                        Runnable onRetry) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.onRetry = onRetry;
+    }
+
+    public static RetryPolicy fromConfig(ClientConfig config) {
+        return new RetryPolicy(
+            config.getRetryMaxAttempts(),
+            config.getRetryInitialDelayMillis(),
+            config.getRetryMaxDelayMillis(),
+            config.getRetryMultiplier()
+        );
+    }
+
+    /**
+     * The same policy, calling {@code onRetry} each time a failed call is about to be repeated.
+     */
+    public RetryPolicy withOnRetry(Runnable onRetry) {
+        return new RetryPolicy(maxAttempts, initialDelayMillis, maxDelayMillis, multiplier, onRetry);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Calls {@code action} until it succeeds, fails with an error {@code retryable} rejects, or
+     * runs out of attempts; the last error is rethrown.
+     */
+    public <T> T call(Callable<T> action, Predicate<Throwable> retryable) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.call();
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !retryable.test(e)) {
+                    throw e;
+                }
+                onRetry.run();
+                Thread.sleep(delayMillis(attempt));
+            }
+        }
+    }
+
+    long delayMillis(int attempt) {
+        double exponential = initialDelayMillis * Math.pow(multiplier, attempt - 1);
+        long capped = (long) Math.min(maxDelayMillis, exponential);
+        if (capped <= 1) {
+            return Math.max(0, capped);
+        }
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private static int statusOf(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BookServiceException && ((BookServiceException) cause).getStatusCode() > 0) {
+                return ((BookServiceException) cause).getStatusCode();
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
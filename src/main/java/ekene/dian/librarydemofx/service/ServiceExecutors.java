@@ -0,0 +1,74 @@
+package ekene.dian.librarydemofx.service;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors used to run blocking backend calls off the JavaFX Application Thread.
+ */
+public final class ServiceExecutors {
+    private static final Logger LOG = System.getLogger(ServiceExecutors.class.getName());
+
+    private ServiceExecutors() {
+    }
+
+    public static ExecutorService create(ClientConfig config) {
+        String type = config.getExecutorType();
+
+        if (!"bounded".equalsIgnoreCase(type)) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            if ("virtual".equalsIgnoreCase(type)) {
+                LOG.log(Level.INFO, "Virtual threads are not available on this JDK, using a bounded pool");
+            }
+        }
+
+        return newBoundedExecutor("book-service", config.getExecutorThreads(), config.getExecutorQueueCapacity());
+    }
+
+    /**
+     * A fixed-size pool of daemon threads with a bounded queue. When the queue is full new tasks
+     * are rejected rather than run on the caller, since the caller is usually the FX thread.
+     */
+    public static ExecutorService newBoundedExecutor(String name, int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            daemonThreadFactory(name),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists on JDK 21+, so look it up reflectively
+    // to keep compiling for 17.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ekene.dian.librarydemofx.service;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * The outcome of a {@link BookService} call: either a value, which may legitimately be empty,
+ * or the error that prevented getting one. An empty catalog and an unreachable server are no
+ * longer both an empty list.
+ *
+ * @param <T> the value of a successful call
+ */
+public final class ServiceResult<T> {
+    private final T value;
+    private final Throwable error;
+
+    private ServiceResult(T value, Throwable error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    public static <T> ServiceResult<T> success(T value) {
+        return new ServiceResult<>(value, null);
+    }
+
+    public static <T> ServiceResult<T> failure(Throwable error) {
+        return new ServiceResult<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * The value of a successful call; {@code null} if it failed, or if the call documents
+     * {@code null} as a successful answer, e.g. a book that doesn't exist.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Why the call failed, or {@code null} if it succeeded.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Whether the call failed because the server couldn't be reached at all, as opposed to the
+     * server rejecting it.
+     */
+    public boolean isUnreachable() {
+        return error != null && RetryPolicy.NO_RESPONSE.test(error);
+    }
+
+    /**
+     * A message for the user: the innermost cause's message of a failure.
+     */
+    public String getErrorMessage() {
+        if (error == null) {
+            return null;
+        }
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof BookServiceException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    /**
+     * The value, or the error rethrown as a {@link BookServiceException}.
+     */
+    public T orElseThrow() {
+        if (error == null) {
+            return value;
+        }
+        if (error instanceof BookServiceException) {
+            throw (BookServiceException) error;
+        }
+        throw new BookServiceException(getErrorMessage(), error);
+    }
+}
@@ -0,0 +1,16 @@
+package ekene.dian.librarydemofx.service;
+
+/**
+ * Receives progress from an import or export. Called on the thread doing the work, possibly
+ * very often; listeners that update the UI should coalesce the updates.
+ */
+@FunctionalInterface
+public interface TransferListener {
+    TransferListener NONE = (fraction, message) -> { };
+
+    /**
+     * @param fraction how much of the work is done, from 0 to 1, or -1 if unknown
+     * @param message a short description of the progress so far
+     */
+    void progress(double fraction, String message);
+}
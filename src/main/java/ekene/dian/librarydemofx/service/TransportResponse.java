@@ -0,0 +1,99 @@
+package ekene.dian.librarydemofx.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An HTTP response whose body has not been read yet. Closing it releases the connection back to
+ * the transport's pool.
+ */
+public class TransportResponse implements Closeable {
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+    private final Closeable onClose;
+
+    public TransportResponse(int status, Map<String, List<String>> headers, InputStream body, Closeable onClose) {
+        this.status = status;
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach((name, values) -> {
+            // HttpURLConnection reports the status line under a null key
+            if (name != null) {
+                this.headers.put(name, values);
+            }
+        });
+        this.body = body;
+        this.onClose = onClose;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * The response body, already decompressed according to {@code Content-Encoding}.
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    public String readBodyAsString() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        body.transferTo(buffer);
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            body.close();
+        } finally {
+            onClose.close();
+        }
+    }
+
+    /**
+     * Wraps {@code raw} in a decompressing stream matching the {@code Content-Encoding} header.
+     */
+    static InputStream decode(String contentEncoding, InputStream raw) throws IOException {
+        if (contentEncoding == null) {
+            return raw;
+        }
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (!encoding.equals("gzip") && !encoding.equals("x-gzip") && !encoding.equals("deflate")) {
+            return raw;
+        }
+        // Bodiless responses (304, 204) may still carry the header; there is nothing to inflate
+        PushbackInputStream in = new PushbackInputStream(raw, 1);
+        int first = in.read();
+        if (first == -1) {
+            return in;
+        }
+        in.unread(first);
+        return encoding.equals("deflate") ? new InflaterInputStream(in) : new GZIPInputStream(in, 8192);
+    }
+}
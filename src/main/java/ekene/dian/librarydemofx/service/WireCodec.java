@@ -0,0 +1,61 @@
+package ekene.dian.librarydemofx.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * An encoding of the book resources that the client can ask for instead of JSON.
+ *
+ * Codecs are Jackson data formats: the client reads them with the same streaming code and data
+ * binding as JSON, only through the codec's {@link JsonFactory}. The client offers the codec's
+ * media type ahead of {@code application/json} in {@code Accept} and decodes each response by its
+ * {@code Content-Type}, so a server that only speaks JSON keeps working unchanged.
+ */
+public interface WireCodec {
+
+    /**
+     * The media type requested in {@code Accept} and recognised in {@code Content-Type}.
+     */
+    String getMediaType();
+
+    /**
+     * A new factory for this format; each client builds its own object mapper on it.
+     */
+    JsonFactory createFactory();
+
+    /**
+     * {@code smile} (Jackson's binary JSON), {@code cbor} (RFC 8949) or the name of a class
+     * implementing this interface with a public no-argument constructor. {@code json} has no
+     * codec and returns {@code null}.
+     */
+    static WireCodec create(String name) throws ReflectiveOperationException {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "json":
+                return null;
+            case "smile":
+                return of("application/x-jackson-smile", SmileFactory::new);
+            case "cbor":
+                return of("application/cbor", CBORFactory::new);
+            default:
+                return Class.forName(name).asSubclass(WireCodec.class).getDeclaredConstructor().newInstance();
+        }
+    }
+
+    static WireCodec of(String mediaType, Supplier<JsonFactory> factory) {
+        return new WireCodec() {
+            @Override
+            public String getMediaType() {
+                return mediaType;
+            }
+
+            @Override
+            public JsonFactory createFactory() {
+                return factory.get();
+            }
+        };
+    }
+}
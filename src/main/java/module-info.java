@@ -5,11 +5,17 @@ module ekene.dian.librarydemofx {
     requires org.controlsfx.controls;
     requires com.dlsc.formsfx;
     requires org.kordamp.bootstrapfx.core;
+    requires java.net.http;
+    requires java.management;
+    requires static micrometer.core;
     
     // Spring and Jackson dependencies
-    requires spring.web;
+    requires static spring.web;
     requires com.fasterxml.jackson.databind;
     requires com.fasterxml.jackson.datatype.jsr310;
+    requires com.fasterxml.jackson.dataformat.csv;
+    requires com.fasterxml.jackson.dataformat.smile;
+    requires com.fasterxml.jackson.dataformat.cbor;
 
     opens ekene.dian.librarydemofx to javafx.fxml;
     opens ekene.dian.librarydemofx.model to com.fasterxml.jackson.databind, javafx.base;
@@ -0,0 +1,282 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.bench.BookData;
+import ekene.dian.librarydemofx.bench.BookServerStub;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.service.AsyncBookService;
+import ekene.dian.librarydemofx.service.BookService;
+import ekene.dian.librarydemofx.service.ClientConfig;
+import ekene.dian.librarydemofx.service.ServiceExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The table model against a {@link BookServerStub}, with a single thread standing in for the FX
+ * thread and frames run by hand.
+ */
+class BookTableModelTest {
+    private final ExecutorService fx = Executors.newSingleThreadExecutor(ServiceExecutors.daemonThreadFactory("fx"));
+    private final Set<Long> removed = new HashSet<>();
+    private final List<Book> changed = new ArrayList<>();
+    // The title each changed book's row had when the view was told
+    private final Map<Long, String> rowTitlesWhenChanged = new HashMap<>();
+    private BookServerStub stub;
+    // Someone else editing the catalog
+    private BookService other;
+    private AsyncBookService service;
+    private BookTableModel model;
+    private Runnable frame;
+    private volatile boolean pulsing;
+
+    @BeforeEach
+    void start() throws IOException {
+        stub = new BookServerStub(0, BookData.books(200)).start();
+        Properties properties = new Properties();
+        properties.setProperty("library.server.url", stub.getUrl());
+        properties.setProperty("library.metrics.exporters", "");
+        ClientConfig config = new ClientConfig(properties);
+        other = new BookService(config);
+        service = new AsyncBookService(new BookService(config), ServiceExecutors.create(config), fx);
+        model = new BookTableModel(config, fx, frame -> {
+            this.frame = frame;
+            return new FrameBatcher.Pulse() {
+                @Override
+                public void start() {
+                    pulsing = true;
+                }
+
+                @Override
+                public void stop() {
+                    pulsing = false;
+                }
+            };
+        });
+        call(() -> {
+            model.setView(new BookTableModel.View() {
+                @Override
+                public void rowsRemoved(Set<Long> ids) {
+                    removed.addAll(ids);
+                }
+
+                @Override
+                public void booksChanged(List<Book> books) {
+                    changed.addAll(books);
+                    for (Book book : books) {
+                        Book row = find(book.getId());
+                        rowTitlesWhenChanged.put(book.getId(), row == null ? null : row.getTitle());
+                    }
+                }
+            });
+            model.start(service, null);
+            return null;
+        });
+        await(() -> model.load("", () -> true));
+    }
+
+    @AfterEach
+    void stop() {
+        call(() -> {
+            model.close();
+            return null;
+        });
+        service.close();
+        other.close();
+        stub.close();
+        fx.shutdownNow();
+    }
+
+    @Test
+    void ownWritesChangeTheRowsAndTheIndex() {
+        assertEquals(200, call(() -> model.getBooks().size()));
+
+        Book created = await(() -> model.create(new Book("Zazie dans le metro", "Queneau", "9782070368037",
+            LocalDate.of(1959, 1, 1)))).getValue();
+        assertEquals(201, call(() -> model.getBooks().size()));
+        assertEquals(List.of(created.getId()), indexed("zazie"));
+
+        Book shown = row(created.getId());
+        Book edit = new Book("Exercises in Style", "Queneau", "9782070368037", LocalDate.of(1947, 1, 1));
+        edit.setId(created.getId());
+        await(() -> model.update(edit));
+        assertSame(shown, row(created.getId()));
+        assertEquals("Exercises in Style", shown.getTitle());
+        assertEquals(List.of(), indexed("zazie"));
+
+        await(() -> model.delete(created.getId()));
+        assertNull(row(created.getId()));
+        assertEquals(List.of(), indexed("exercises"));
+        // Not reported as removed by the server
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    void syncUpdatesChangedRowsInPlaceAndRemovesDeletedOnes() throws IOException {
+        assertTrue(call(model::canSyncInPlace));
+        Book edited = row(5L);
+        String title = edited.getTitle();
+        Book edit = new Book("A New Title", edited.getAuthor(), edited.getIsbn(), edited.getPublishedDate());
+        edit.setId(5L);
+        other.updateBook(edit);
+        other.deleteBook(6L);
+
+        await(model::sync);
+
+        assertSame(edited, row(5L));
+        assertEquals("A New Title", edited.getTitle());
+        assertEquals(title, rowTitlesWhenChanged.get(5L));
+        assertNull(row(6L));
+        assertEquals(199, call(() -> model.getBooks().size()));
+        assertEquals(Set.of(6L), removed);
+    }
+
+    @Test
+    void liveUpdatesAreAppliedOnTheNextFrame() throws Exception {
+        call(() -> {
+            model.startLiveUpdates();
+            return null;
+        });
+        awaitEventStream();
+
+        Book created = await(() -> model.create(new Book("Zazie dans le metro", "Queneau", "9782070368037",
+            LocalDate.of(1959, 1, 1)))).getValue();
+        Book edited = row(5L);
+        Book edit = new Book("A New Title", edited.getAuthor(), edited.getIsbn(), edited.getPublishedDate());
+        edit.setId(5L);
+        other.updateBook(edit);
+        other.deleteBook(6L);
+
+        // Nothing changes until a frame runs
+        awaitPulse();
+        assertFalse("A New Title".equals(edited.getTitle()));
+        runFramesUntil(() -> row(6L) == null && "A New Title".equals(edited.getTitle()));
+
+        assertSame(edited, row(5L));
+        assertEquals("A New Title", edited.getTitle());
+        assertNull(row(6L));
+        // The event for our own create updated its row rather than adding a second one
+        assertEquals(200, call(() -> model.getBooks().size()));
+        assertEquals(1, call(() -> model.getBooks().stream().filter(book -> book.getId().equals(created.getId())).count()));
+        assertEquals(Set.of(6L), removed);
+        assertTrue(changed.stream().anyMatch(book -> book.getId() == 5L));
+        // A frame that finds nothing stops the pulse
+        call(() -> {
+            frame.run();
+            return null;
+        });
+        assertFalse(pulsing);
+    }
+
+    @Test
+    void theViewSeesARemoteEditBeforeTheRowTakesIt() throws Exception {
+        call(() -> {
+            model.startLiveUpdates();
+            return null;
+        });
+        awaitEventStream();
+        Book selected = row(5L);
+        String title = selected.getTitle();
+        Book cached = service.getCachedBook(5L);
+        // The row is the model's own book, not the one the listing cached
+        assertNotSame(cached, selected);
+
+        Book edit = new Book("A New Title", selected.getAuthor(), selected.getIsbn(), selected.getPublishedDate());
+        edit.setId(5L);
+        other.updateBook(edit);
+        awaitPulse();
+        runFramesUntil(() -> "A New Title".equals(selected.getTitle()));
+
+        assertEquals("A New Title", selected.getTitle());
+        // Told while the row still showed the old title, so the view can tell its form is stale
+        assertEquals(title, rowTitlesWhenChanged.get(5L));
+        assertTrue(changed.stream().anyMatch(book -> book.getId() == 5L && book.getTitle().equals("A New Title")));
+        // Read on other threads, so left alone
+        assertEquals(title, cached.getTitle());
+    }
+
+    private Book row(Long id) {
+        return call(() -> find(id));
+    }
+
+    // On the FX thread
+    private Book find(Long id) {
+        return model.getBooks().stream().filter(book -> book.getId().equals(id)).findFirst().orElse(null);
+    }
+
+    private void runFramesUntil(BooleanSupplier done) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!done.getAsBoolean() && System.nanoTime() < deadline) {
+            call(() -> {
+                frame.run();
+                return null;
+            });
+            Thread.sleep(10);
+        }
+    }
+
+    private List<Long> indexed(String text) {
+        return call(() -> {
+            List<Long> ids = new ArrayList<>();
+            for (Book book : model.getBooks()) {
+                if (model.getIndex().search(text).test(book)) {
+                    ids.add(book.getId());
+                }
+            }
+            return ids;
+        });
+    }
+
+    private void awaitEventStream() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stub.getEventResumeIds().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(stub.getEventResumeIds().isEmpty());
+        // The stub registers the stream just after recording the request
+        Thread.sleep(100);
+    }
+
+    private void awaitPulse() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!pulsing && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(pulsing);
+    }
+
+    private <T> T call(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, fx).join();
+    }
+
+    /**
+     * Starts {@code request} on the FX thread, waits for it and for what its completion queued.
+     */
+    private <T> T await(Supplier<CompletableFuture<T>> request) {
+        T result = call(request).join();
+        call(() -> null);
+        return result;
+    }
+}
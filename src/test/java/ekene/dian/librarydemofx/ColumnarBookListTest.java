@@ -0,0 +1,136 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.model.Book;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarBookListTest {
+    private final ColumnarBookList list = new ColumnarBookList();
+    // Each part of each change as "from-to", with its removed books, which are read later
+    private final List<String> changes = new ArrayList<>();
+    private final List<List<? extends Book>> removed = new ArrayList<>();
+
+    ColumnarBookListTest() {
+        list.addListener((ListChangeListener<Book>) change -> {
+            while (change.next()) {
+                changes.add(change.getFrom() + "-" + change.getTo());
+                removed.add(change.getRemoved());
+            }
+        });
+    }
+
+    @Test
+    void removeIdsReportsEachRunAtItsPositionAfterTheEarlierOnes() {
+        list.addAll(books(1, 10));
+        changes.clear();
+        removed.clear();
+
+        assertTrue(list.removeIds(Set.of(2L, 3L, 6L, 10L)));
+
+        assertEquals(List.of(1L, 4L, 5L, 7L, 8L, 9L), ids(list));
+        assertEquals(List.of("1-1", "3-3", "6-6"), changes);
+        assertEquals(List.of(List.of(2L, 3L), List.of(6L), List.of(10L)),
+            removed.stream().map(ColumnarBookListTest::ids).collect(Collectors.toList()));
+        assertFalse(list.removeIds(Set.of(42L)));
+    }
+
+    @Test
+    void removedRowsStayReadableAfterTheListChanges() {
+        list.addAll(books(1, 3));
+        list.removeIds(Set.of(2L));
+        // Overwrites the freed slot and every column the removed row was read from
+        list.setAll(books(100, 102));
+        list.clear();
+
+        Book gone = removed.get(removed.size() - 3).get(0);
+        assertEquals(2L, gone.getId());
+        assertEquals("Title 2", gone.getTitle());
+        assertEquals("Author 2", gone.getAuthor());
+        assertEquals(LocalDate.ofEpochDay(2), gone.getPublishedDate());
+        assertEquals(List.of(1L, 3L), ids(removed.get(removed.size() - 2)));
+        assertEquals(List.of(100L, 101L, 102L), ids(removed.get(removed.size() - 1)));
+    }
+
+    @Test
+    void setAllIsOneReplacement() {
+        list.addAll(books(1, 5));
+        changes.clear();
+        removed.clear();
+
+        list.setAll(books(6, 7));
+
+        assertEquals(List.of("0-2"), changes);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(removed.get(0)));
+        assertEquals(List.of(6L, 7L), ids(list));
+    }
+
+    @Test
+    void removeIfTestsEveryRow() {
+        list.addAll(books(1, 6));
+        list.sortBy(List.of(new ColumnarBookList.SortKey(ColumnarBookList.Column.ID, false)));
+        changes.clear();
+
+        assertTrue(list.removeIf(book -> book.getId() % 2 == 0 && book.getTitle().startsWith("Title")));
+
+        assertEquals(List.of(5L, 3L, 1L), ids(list));
+        assertEquals(List.of("0-0", "1-1", "2-2"), changes);
+    }
+
+    @Test
+    void unusedAuthorsAreDroppedFromThePool() {
+        list.addAll(books(1, 3000));
+        assertEquals(3000, list.pooledAuthors());
+
+        list.removeIds(LongStream.rangeClosed(101, 3000).boxed().collect(Collectors.toSet()));
+
+        assertEquals(100, list.pooledAuthors());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals("Author " + (i + 1), list.get(i).getAuthor());
+        }
+        // Rows added later get their own codes, and removed ones keep their names
+        list.add(book(5000));
+        assertEquals("Author 5000", list.get(100).getAuthor());
+        assertEquals("Author 3000", removed.get(removed.size() - 2).get(2899).getAuthor());
+    }
+
+    @Test
+    void sharedAuthorsStayPooledWhileAnyRowUsesThem() {
+        List<Book> books = books(1, 3000);
+        books.forEach(book -> book.setAuthor(book.getId() % 2 == 0 ? "Author 0" : book.getAuthor()));
+        list.addAll(books);
+
+        list.removeIds(LongStream.rangeClosed(1, 2999).boxed().collect(Collectors.toSet()));
+
+        assertEquals(1, list.pooledAuthors());
+        assertEquals("Author 0", list.get(0).getAuthor());
+    }
+
+    private static List<Book> books(long first, long last) {
+        List<Book> books = new ArrayList<>();
+        for (long id = first; id <= last; id++) {
+            books.add(book(id));
+        }
+        return books;
+    }
+
+    private static Book book(long id) {
+        Book book = new Book("Title " + id, "Author " + id, "isbn-" + id, LocalDate.ofEpochDay(id));
+        book.setId(id);
+        return book;
+    }
+
+    private static List<Long> ids(List<? extends Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,122 @@
+package ekene.dian.librarydemofx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameBatcherTest {
+    // Stands in for the FX event queue
+    private final Queue<Runnable> posted = new ConcurrentLinkedQueue<>();
+    private final List<List<String>> batches = new ArrayList<>();
+    private final FakePulse pulse = new FakePulse();
+    private final FrameBatcher<String> batcher = new FrameBatcher<>(batches::add, posted::add, frame -> {
+        pulse.frame = frame;
+        return pulse;
+    });
+
+    @Test
+    void deliversEverythingQueuedSinceTheLastFrameAsOneBatch() {
+        batcher.add("a");
+        batcher.add("b");
+        batcher.add("c");
+        assertEquals(1, posted.size());
+        runPosted();
+        assertTrue(pulse.running);
+        assertTrue(batches.isEmpty());
+
+        pulse.frame.run();
+        assertEquals(List.of(List.of("a", "b", "c")), batches);
+
+        batcher.add("d");
+        batcher.add("e");
+        // The pulse is still running, so nothing more goes through the event queue
+        assertTrue(posted.isEmpty());
+        pulse.frame.run();
+        assertEquals(List.of("d", "e"), batches.get(1));
+    }
+
+    @Test
+    void stopsOnAnEmptyFrameAndRestartsForTheNextBurst() {
+        batcher.add("a");
+        runPosted();
+        pulse.frame.run();
+        pulse.frame.run();
+        assertFalse(pulse.running);
+        assertEquals(1, batches.size());
+
+        batcher.add("b");
+        assertEquals(1, posted.size());
+        runPosted();
+        assertTrue(pulse.running);
+        pulse.frame.run();
+        assertEquals(List.of("b"), batches.get(1));
+    }
+
+    @Test
+    void keepsEveryItemFromConcurrentProducersInOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            String prefix = p + ":";
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    batcher.add(prefix + i);
+                }
+                done.countDown();
+            }).start();
+        }
+
+        // Frames run while the producers are still adding
+        int frames = 0;
+        while (done.getCount() > 0 || !posted.isEmpty() || pulse.running) {
+            runPosted();
+            if (pulse.running) {
+                pulse.frame.run();
+                frames++;
+            }
+        }
+
+        int[] next = new int[producers];
+        int delivered = 0;
+        for (List<String> batch : batches) {
+            for (String item : batch) {
+                int producer = Integer.parseInt(item.substring(0, item.indexOf(':')));
+                assertEquals(next[producer]++, Integer.parseInt(item.substring(item.indexOf(':') + 1)));
+                delivered++;
+            }
+        }
+        assertEquals(producers * perProducer, delivered);
+        assertTrue(batches.size() <= frames);
+    }
+
+    private void runPosted() {
+        Runnable task;
+        while ((task = posted.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static final class FakePulse implements FrameBatcher.Pulse {
+        volatile Runnable frame;
+        volatile boolean running;
+
+        @Override
+        public void start() {
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+    }
+}
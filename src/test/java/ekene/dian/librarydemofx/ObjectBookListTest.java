@@ -0,0 +1,147 @@
+package ekene.dian.librarydemofx;
+
+import ekene.dian.librarydemofx.model.Book;
+import javafx.beans.property.StringProperty;
+import javafx.collections.ListChangeListener;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectBookListTest {
+    private final ObjectBookList list = new ObjectBookList();
+
+    @Test
+    void updatesTheBooksItHoldsAndReportsThemAsUpdated() {
+        list.addAll(books("Dune", "Emma", "Ulysses"));
+        Book emma = list.get(1);
+        StringProperty title = emma.titleProperty();
+        List<String> changes = new ArrayList<>();
+        list.addListener((ListChangeListener<Book>) change -> {
+            while (change.next()) {
+                changes.add((change.wasUpdated() ? "updated " : "other ") + change.getFrom() + "-" + change.getTo());
+            }
+        });
+
+        List<Book> missing = list.updateById(List.of(book(2, "Persuasion"), book(3, "Ulysses"), book(9, "Beloved")));
+
+        assertSame(emma, list.get(1));
+        assertEquals("Persuasion", title.get());
+        // Ulysses didn't change
+        assertEquals(List.of("updated 1-2"), changes);
+        assertEquals(List.of(9L), missing.stream().map(Book::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void sortedAndFilteredViewsPlaceUpdatedBooksAgain() {
+        list.addAll(books("Dune", "Emma", "Ulysses"));
+        FilteredList<Book> filtered = new FilteredList<>(list, book -> !book.getTitle().startsWith("X"));
+        SortedList<Book> sorted = new SortedList<>(filtered, Comparator.comparing(Book::getTitle));
+
+        list.updateById(List.of(book(1, "Zazie")));
+        assertEquals(List.of("Emma", "Ulysses", "Zazie"), titles(sorted));
+
+        list.updateById(List.of(book(2, "Xala")));
+        assertEquals(List.of("Ulysses", "Zazie"), titles(sorted));
+    }
+
+    @Test
+    void sortedBookListMovesAnUpdatedRowWithoutAPass() throws InterruptedException {
+        list.addAll(books("Dune", "Emma", "Ulysses"));
+        BlockingQueue<Runnable> published = new LinkedBlockingQueue<>();
+        SortedBookList sorted = new SortedBookList(list, published::add);
+        try {
+            sorted.sortBy(List.of(new ColumnarBookList.SortKey(ColumnarBookList.Column.TITLE, true)));
+            while (sorted.sortingProperty().get()) {
+                published.take().run();
+            }
+
+            list.updateById(List.of(book(1, "Zazie")));
+
+            assertFalse(sorted.sortingProperty().get());
+            assertEquals(List.of("Emma", "Ulysses", "Zazie"), titles(sorted));
+        } finally {
+            sorted.close();
+        }
+    }
+
+    @Test
+    void sortedBookListFiltersUpdatedRowsAgain() throws InterruptedException {
+        list.addAll(books("Dune", "Emma", "Ulysses", "Beloved"));
+        list.get(3).setPublishedDate(LocalDate.ofEpochDay(150));
+        BlockingQueue<Runnable> published = new LinkedBlockingQueue<>();
+        SortedBookList sorted = new SortedBookList(list, published::add);
+        try {
+            sorted.sortBy(List.of(new ColumnarBookList.SortKey(ColumnarBookList.Column.TITLE, true)));
+            sorted.setFilter(new BookFilter("", null, LocalDate.ofEpochDay(100)));
+            while (sorted.sortingProperty().get()) {
+                published.take().run();
+            }
+            assertEquals(List.of("Dune", "Emma", "Ulysses"), titles(sorted));
+
+            // One shown book drops out, one moves and a hidden one comes in
+            Book emma = book(2, "Emma");
+            emma.setPublishedDate(LocalDate.ofEpochDay(200));
+            Book beloved = book(4, "Beloved");
+            list.updateById(List.of(emma, book(3, "Aeneid"), beloved));
+            assertEquals(List.of("Aeneid", "Beloved", "Dune"), titles(sorted));
+
+            beloved.setPublishedDate(LocalDate.ofEpochDay(300));
+            list.updateById(List.of(beloved));
+            assertEquals(List.of("Aeneid", "Dune"), titles(sorted));
+            assertFalse(sorted.sortingProperty().get());
+        } finally {
+            sorted.close();
+        }
+    }
+
+    @Test
+    void removeIfAndClearReportEveryRemovedBook() {
+        list.addAll(books("Dune", "Emma", "Ulysses", "Beloved"));
+        List<String> removed = new ArrayList<>();
+        list.addListener((ListChangeListener<Book>) change -> {
+            while (change.next()) {
+                change.getRemoved().forEach(book -> removed.add(change.getFrom() + " " + book.getTitle()));
+            }
+        });
+
+        assertTrue(list.removeIf(book -> book.getId() % 2 == 0));
+        assertEquals(List.of("Dune", "Ulysses"), titles(list));
+        assertEquals(List.of("1 Emma", "2 Beloved"), removed);
+
+        removed.clear();
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertEquals(List.of("0 Dune", "0 Ulysses"), removed);
+    }
+
+    private static List<Book> books(String... titles) {
+        List<Book> books = new ArrayList<>();
+        for (String title : titles) {
+            books.add(book(books.size() + 1, title));
+        }
+        return books;
+    }
+
+    private static Book book(long id, String title) {
+        Book book = new Book(title, "Author " + id, "isbn-" + id, LocalDate.ofEpochDay(id));
+        book.setId(id);
+        return book;
+    }
+
+    private static List<String> titles(List<Book> books) {
+        return books.stream().map(Book::getTitle).collect(Collectors.toList());
+    }
+}
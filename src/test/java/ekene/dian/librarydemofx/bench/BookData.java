@@ -0,0 +1,97 @@
+package ekene.dian.librarydemofx.bench;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic books and pages for the benchmarks and the server stub. The same seed always gives
+ * the same catalog.
+ */
+public final class BookData {
+    private static final String[] WORDS = {
+        "river", "night", "garden", "empire", "silent", "winter", "glass", "north", "letters",
+        "house", "shadow", "salt", "crown", "island", "memory", "fire", "orchard", "stone",
+        "daughter", "machine", "Brontë", "Zoë", "café", "harbour", "atlas", "ember", "citadel"
+    };
+
+    private BookData() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        return objectMapper(new JsonFactory());
+    }
+
+    /**
+     * A mapper set up like {@link #objectMapper()} for another data format, e.g. Smile or CBOR.
+     */
+    public static ObjectMapper objectMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return mapper;
+    }
+
+    /**
+     * {@code count} books with ids 1 to {@code count}, drawn from a few thousand authors.
+     */
+    public static List<Book> books(int count) {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String title = capitalize(word(random)) + " of the " + word(random) + " " + word(random);
+            String author = capitalize(word(random)) + " " + capitalize(word(random)) + " " + random.nextInt(5000);
+            String isbn = String.format("978-%d-%05d-%03d-%d", random.nextInt(10), random.nextInt(100_000),
+                random.nextInt(1000), random.nextInt(10));
+            Book book = new Book(title, author, isbn, LocalDate.ofEpochDay(-20_000 + random.nextInt(40_000)));
+            book.setId((long) i);
+            books.add(book);
+        }
+        return books;
+    }
+
+    /**
+     * One page of {@code books} as the backend serves it.
+     */
+    public static PageResponse<Book> page(List<Book> books, int page, int size) {
+        int from = Math.min(books.size(), page * size);
+        int to = Math.min(books.size(), from + size);
+        int totalPages = size == 0 ? 0 : (books.size() + size - 1) / size;
+        PageResponse<Book> response = new PageResponse<>();
+        response.setContent(new ArrayList<>(books.subList(from, to)));
+        response.setNumber(page);
+        response.setSize(size);
+        response.setNumberOfElements(to - from);
+        response.setTotalElements(books.size());
+        response.setTotalPages(totalPages);
+        response.setFirst(page == 0);
+        response.setLast(page >= totalPages - 1);
+        response.setEmpty(to == from);
+        return response;
+    }
+
+    public static byte[] pageJson(ObjectMapper mapper, List<Book> books, int page, int size) {
+        try {
+            return mapper.writeValueAsBytes(page(books, page, size));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
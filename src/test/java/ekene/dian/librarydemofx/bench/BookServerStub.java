@@ -0,0 +1,626 @@
+package ekene.dian.librarydemofx.bench;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.BookEvent;
+import ekene.dian.librarydemofx.service.HttpTransport;
+import ekene.dian.librarydemofx.service.QueryCache;
+import ekene.dian.librarydemofx.service.ServiceExecutors;
+import ekene.dian.librarydemofx.service.WireCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory stand-in for the backend's {@code /api/books} resource, serving a synthetic
+ * catalog over HTTP so the client can be benchmarked, or just run, without the real server.
+ *
+ * It answers paged listing and search (with {@code sort} parameters), and single book reads,
+ * creates, updates and deletes. A create repeating an earlier one's {@code Idempotency-Key}
+ * returns the book created then. Every write is also pushed as a {@link BookEvent} to the
+ * clients listening on {@code /events}, as server-sent events with increasing ids; a client
+ * reconnecting with {@code Last-Event-ID} gets the events it missed, or a {@code reset} event if
+ * they are no longer kept. Everything else, e.g. {@code /changes} and the bulk endpoints, is a
+ * 404, which the client treats as a server without that feature.
+ *
+ * Pages are encoded as Smile or CBOR when the client lists their media type in {@code Accept}
+ * ahead of JSON, unless the stub is made {@link #jsonOnly() JSON only}; single books are always
+ * JSON, as on the backend.
+ *
+ * Faults can be injected to exercise the client's retries, circuit breaker and hedging: a fixed
+ * latency, a share of slow requests, a share of error responses and a share of connections
+ * closed without any response. They can be changed while the stub is running. Event streams can
+ * be dropped, to exercise the client's reconnects.
+ */
+public class BookServerStub implements AutoCloseable {
+    private static final String BASE_PATH = "/api/books";
+    private static final byte[] KEEP_ALIVE = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // Without it small responses wait ~40 ms for a delayed ACK, which would swamp the results
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Writes events to the open event streams, in order, and keeps them alive
+    private final ScheduledExecutorService broadcaster =
+        Executors.newSingleThreadScheduledExecutor(ServiceExecutors.daemonThreadFactory("stub-events"));
+    private final ObjectMapper objectMapper = BookData.objectMapper()
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    // Page mappers by media type, for content negotiation
+    private final Map<String, ObjectMapper> pageMappers = new LinkedHashMap<>();
+    private final TreeMap<Long, Book> books = new TreeMap<>();
+    // Sorted listings by sort parameters, dropped by every write
+    private final Map<List<String>, List<Book>> sorted = new HashMap<>();
+    // Ids of the books created by each Idempotency-Key
+    private final Map<String, Long> createdByKey = new HashMap<>();
+    private long nextId;
+    // The latest events, as written to the stream, for clients resuming with Last-Event-ID
+    private final ArrayDeque<byte[]> eventHistory = new ArrayDeque<>();
+    private long lastEventId;
+    private int eventHistorySize = 1000;
+    // Only touched on the broadcaster thread
+    private final List<HttpExchange> eventStreams = new ArrayList<>();
+    private final List<String> resumedFrom = new CopyOnWriteArrayList<>();
+    private volatile long eventRetryMillis = -1;
+
+    private volatile long latencyMillis;
+    private volatile double slowRate;
+    private volatile long slowMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private volatile double dropRate;
+    private volatile boolean jsonOnly;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong faults = new AtomicLong();
+
+    public BookServerStub(int port, List<Book> catalog) throws IOException {
+        for (Book book : catalog) {
+            books.put(book.getId(), book);
+        }
+        nextId = books.isEmpty() ? 1 : books.lastKey() + 1;
+        for (String format : List.of("smile", "cbor")) {
+            WireCodec codec = codec(format);
+            pageMappers.put(codec.getMediaType(), BookData.objectMapper(codec.createFactory()));
+        }
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext(BASE_PATH, this::handle);
+        executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        server.setExecutor(executor);
+        broadcaster.scheduleWithFixedDelay(() -> broadcast(KEEP_ALIVE), 15, 15, TimeUnit.SECONDS);
+    }
+
+    public BookServerStub start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * Delays every response by {@code millis}.
+     */
+    public BookServerStub withLatency(long millis) {
+        latencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * Delays a random {@code rate} of the responses by a further {@code millis}.
+     */
+    public BookServerStub withSlowRequests(double rate, long millis) {
+        slowRate = rate;
+        slowMillis = millis;
+        return this;
+    }
+
+    /**
+     * Answers a random {@code rate} of the requests with {@code status} and no body.
+     */
+    public BookServerStub withErrors(double rate, int status) {
+        errorRate = rate;
+        errorStatus = status;
+        return this;
+    }
+
+    /**
+     * Closes the connection without a response for a random {@code rate} of the requests.
+     */
+    public BookServerStub withDroppedConnections(double rate) {
+        dropRate = rate;
+        return this;
+    }
+
+    /**
+     * How many of the latest events are kept for clients resuming with {@code Last-Event-ID}
+     * (1000); one resuming from further back is sent a {@code reset} event.
+     */
+    public synchronized BookServerStub withEventHistory(int events) {
+        eventHistorySize = events;
+        while (eventHistory.size() > events) {
+            eventHistory.removeFirst();
+        }
+        return this;
+    }
+
+    /**
+     * Sends {@code retry: millis} at the start of every event stream, telling clients how long
+     * to wait before reconnecting.
+     */
+    public BookServerStub withEventRetry(long millis) {
+        eventRetryMillis = millis;
+        return this;
+    }
+
+    /**
+     * Closes every open event stream, as a restarting server or a broken network would.
+     */
+    public void dropEventStreams() {
+        try {
+            broadcaster.submit(() -> {
+                eventStreams.forEach(HttpExchange::close);
+                eventStreams.clear();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The {@code Last-Event-ID} of every request for {@code /events} so far, in order; an empty
+     * string for a request without one.
+     */
+    public List<String> getEventResumeIds() {
+        return List.copyOf(resumedFrom);
+    }
+
+    /**
+     * Removes all injected faults.
+     */
+    public BookServerStub healthy() {
+        latencyMillis = 0;
+        slowRate = 0;
+        errorRate = 0;
+        dropRate = 0;
+        return this;
+    }
+
+    /**
+     * Serves pages as JSON whatever the client accepts, like a backend without the binary
+     * formats.
+     */
+    public BookServerStub jsonOnly() {
+        jsonOnly = true;
+        return this;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Requests answered with an error or dropped; slow ones are not counted.
+     */
+    public long getFaultCount() {
+        return faults.get();
+    }
+
+    /**
+     * The value for {@code library.server.url}.
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + BASE_PATH;
+    }
+
+    @Override
+    public void close() {
+        dropEventStreams();
+        broadcaster.shutdownNow();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Serves a synthetic catalog until stopped. Arguments: port (8080) and number of books
+     * (10000). Faults are set with the system properties {@code stub.latency-ms},
+     * {@code stub.slow-rate} and {@code stub.slow-ms}, {@code stub.error-rate} and
+     * {@code stub.error-status}, and {@code stub.drop-rate}; {@code stub.json-only=true} turns
+     * off the binary formats.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        BookServerStub stub = new BookServerStub(port, BookData.books(count))
+            .withLatency(Long.getLong("stub.latency-ms", 0))
+            .withSlowRequests(Double.parseDouble(System.getProperty("stub.slow-rate", "0")), Long.getLong("stub.slow-ms", 0))
+            .withErrors(Double.parseDouble(System.getProperty("stub.error-rate", "0")), Integer.getInteger("stub.error-status", 503))
+            .withDroppedConnections(Double.parseDouble(System.getProperty("stub.drop-rate", "0")));
+        if (Boolean.getBoolean("stub.json-only")) {
+            stub.jsonOnly();
+        }
+        stub.start();
+        System.out.println("Serving " + count + " books at " + stub.getUrl());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean streaming = false;
+        try {
+            requests.incrementAndGet();
+            if (injectFault(exchange)) {
+                return;
+            }
+            String path = exchange.getRequestURI().getPath().substring(BASE_PATH.length());
+            Map<String, List<String>> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (path.isEmpty() || path.equals("/")) {
+                if (method.equals("GET")) {
+                    sendPage(exchange, listing(query.get("sort"), null), query);
+                } else if (method.equals("POST")) {
+                    Book book = read(exchange.getRequestBody());
+                    String key = exchange.getRequestHeaders().getFirst(HttpTransport.IDEMPOTENCY_KEY);
+                    synchronized (this) {
+                        Long created = key == null ? null : createdByKey.get(key);
+                        if (created != null && books.containsKey(created)) {
+                            // A create sent again: answer as the first time
+                            book = books.get(created);
+                        } else {
+                            book.setId(nextId++);
+                            store(book);
+                            if (key != null) {
+                                createdByKey.put(key, book.getId());
+                            }
+                            publish(new BookEvent(BookEvent.Type.CREATED, book.getId(), book));
+                        }
+                    }
+                    send(exchange, 201, objectMapper.writeValueAsBytes(book));
+                } else {
+                    send(exchange, 405, null);
+                }
+            } else if (path.equals("/events") && method.equals("GET")) {
+                // Left open for the broadcaster
+                streaming = openEventStream(exchange);
+            } else if (path.equals("/search") && method.equals("GET")) {
+                String text = first(query, "query", "");
+                sendPage(exchange, listing(query.get("sort"), QueryCache.normalize(text)), query);
+            } else if (path.matches("/\\d+")) {
+                handleBook(exchange, Long.parseLong(path.substring(1)), method);
+            } else {
+                send(exchange, 404, null);
+            }
+        } catch (RuntimeException e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            if (!streaming) {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * @return whether the request was answered, or dropped, by a fault
+     */
+    private boolean injectFault(HttpExchange exchange) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (random.nextDouble() < slowRate ? slowMillis : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        }
+        if (random.nextDouble() < dropRate) {
+            faults.incrementAndGet();
+            // Closing the exchange before sending headers closes the connection
+            return true;
+        }
+        if (random.nextDouble() < errorRate) {
+            faults.incrementAndGet();
+            send(exchange, errorStatus, null);
+            return true;
+        }
+        return false;
+    }
+
+    private void handleBook(HttpExchange exchange, long id, String method) throws IOException {
+        switch (method) {
+            case "GET": {
+                Book book;
+                synchronized (this) {
+                    book = books.get(id);
+                }
+                send(exchange, book == null ? 404 : 200, book == null ? null : objectMapper.writeValueAsBytes(book));
+                break;
+            }
+            case "PUT": {
+                Book book = read(exchange.getRequestBody());
+                book.setId(id);
+                boolean known;
+                synchronized (this) {
+                    known = books.containsKey(id);
+                    if (known) {
+                        store(book);
+                        publish(new BookEvent(BookEvent.Type.UPDATED, id, book));
+                    }
+                }
+                send(exchange, known ? 200 : 404, known ? objectMapper.writeValueAsBytes(book) : null);
+                break;
+            }
+            case "DELETE": {
+                boolean known;
+                synchronized (this) {
+                    known = books.remove(id) != null;
+                    sorted.clear();
+                    if (known) {
+                        publish(new BookEvent(BookEvent.Type.DELETED, id, null));
+                    }
+                }
+                send(exchange, known ? 204 : 404, null);
+                break;
+            }
+            default:
+                send(exchange, 405, null);
+        }
+    }
+
+    private void store(Book book) {
+        books.put(book.getId(), book);
+        sorted.clear();
+    }
+
+    /**
+     * Numbers an event and hands it to the broadcaster. Called with the lock held, so events go
+     * out in the order the writes were made.
+     */
+    private void publish(BookEvent event) {
+        byte[] frame;
+        try {
+            frame = ("id: " + ++lastEventId + "\nevent: book\ndata: " + objectMapper.writeValueAsString(event) + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        eventHistory.addLast(frame);
+        if (eventHistory.size() > eventHistorySize) {
+            eventHistory.removeFirst();
+        }
+        broadcaster.execute(() -> broadcast(frame));
+    }
+
+    /**
+     * Starts an event stream, first sending what the client missed since its
+     * {@code Last-Event-ID}, if anything.
+     *
+     * @return whether the stream was opened and is left open
+     */
+    private boolean openEventStream(HttpExchange exchange) throws IOException {
+        String resumeFrom = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        resumedFrom.add(resumeFrom == null ? "" : resumeFrom);
+        exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        StringBuilder start = new StringBuilder();
+        if (eventRetryMillis >= 0) {
+            start.append("retry: ").append(eventRetryMillis).append("\n\n");
+        }
+        List<byte[]> missed = new ArrayList<>();
+        synchronized (this) {
+            if (resumeFrom != null) {
+                long from = parseEventId(resumeFrom);
+                long oldest = lastEventId - eventHistory.size();
+                if (from < oldest || from > lastEventId) {
+                    start.append("event: reset\ndata: \n\n");
+                } else {
+                    List<byte[]> history = new ArrayList<>(eventHistory);
+                    missed = history.subList((int) (from - oldest), history.size());
+                }
+            }
+            byte[] greeting = start.toString().getBytes(StandardCharsets.UTF_8);
+            List<byte[]> backlog = missed;
+            // Queued with the lock held, so no event is both missed and broadcast, or neither
+            broadcaster.execute(() -> {
+                try {
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(greeting);
+                    for (byte[] frame : backlog) {
+                        out.write(frame);
+                    }
+                    out.flush();
+                    eventStreams.add(exchange);
+                } catch (IOException e) {
+                    exchange.close();
+                }
+            });
+        }
+        return true;
+    }
+
+    private static long parseEventId(String id) {
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void broadcast(byte[] frame) {
+        for (Iterator<HttpExchange> streams = eventStreams.iterator(); streams.hasNext(); ) {
+            HttpExchange stream = streams.next();
+            try {
+                OutputStream out = stream.getResponseBody();
+                out.write(frame);
+                out.flush();
+            } catch (IOException e) {
+                // The client went away
+                streams.remove();
+                stream.close();
+            }
+        }
+    }
+
+    private synchronized List<Book> listing(List<String> sort, String normalizedQuery) {
+        List<String> key = sort == null ? List.of() : sort;
+        List<Book> all = sorted.get(key);
+        if (all == null) {
+            all = new ArrayList<>(books.values());
+            Comparator<Book> comparator = comparator(key);
+            if (comparator != null) {
+                all.sort(comparator);
+            }
+            sorted.put(key, all);
+        }
+        if (normalizedQuery == null || normalizedQuery.isEmpty()) {
+            return all;
+        }
+        List<Book> matches = new ArrayList<>();
+        for (Book book : all) {
+            if (QueryCache.matches(book, normalizedQuery)) {
+                matches.add(book);
+            }
+        }
+        return matches;
+    }
+
+    private void sendPage(HttpExchange exchange, List<Book> listing, Map<String, List<String>> query)
+            throws IOException {
+        int page = Integer.parseInt(first(query, "page", "0"));
+        int size = Integer.parseInt(first(query, "size", "20"));
+        String mediaType = pageMediaType(exchange.getRequestHeaders().getFirst("Accept"));
+        ObjectMapper mapper = pageMappers.getOrDefault(mediaType, objectMapper);
+        send(exchange, 200, mediaType, BookData.pageJson(mapper, listing, page, size));
+    }
+
+    /**
+     * The first of the accepted media types the stub can encode pages in, ignoring quality
+     * values; JSON if none is.
+     */
+    private String pageMediaType(String accept) {
+        if (accept != null && !jsonOnly) {
+            for (String range : accept.split(",")) {
+                int parameters = range.indexOf(';');
+                String mediaType = (parameters < 0 ? range : range.substring(0, parameters))
+                    .trim().toLowerCase(Locale.ROOT);
+                if (mediaType.equals("application/json")) {
+                    break;
+                }
+                if (pageMappers.containsKey(mediaType)) {
+                    return mediaType;
+                }
+            }
+        }
+        return "application/json";
+    }
+
+    private static WireCodec codec(String format) {
+        try {
+            return WireCodec.create(format);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Comparator<Book> comparator(List<String> sort) {
+        Comparator<Book> comparator = null;
+        for (String order : sort) {
+            String[] parts = order.split(",");
+            Comparator<Book> next;
+            switch (parts[0]) {
+                case "title":
+                    next = Comparator.comparing(Book::getTitle, Comparator.nullsFirst(Comparator.naturalOrder()));
+                    break;
+                case "author":
+                    next = Comparator.comparing(Book::getAuthor, Comparator.nullsFirst(Comparator.naturalOrder()));
+                    break;
+                case "isbn":
+                    next = Comparator.comparing(Book::getIsbn, Comparator.nullsFirst(Comparator.naturalOrder()));
+                    break;
+                case "publishedDate":
+                    next = Comparator.comparing(Book::getPublishedDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+                    break;
+                default:
+                    next = Comparator.comparing(Book::getId);
+            }
+            if (parts.length > 1 && parts[1].equalsIgnoreCase("desc")) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    private Book read(InputStream body) throws IOException {
+        // Read to the end and left open, for send() to find it drained
+        return objectMapper.readValue(body.readAllBytes(), Book.class);
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        send(exchange, status, "application/json", body);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        // The server closes the connection if the request body hasn't been read to its end by the
+        // time the response is complete, which is soon after the headers when there is no body
+        exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String first(Map<String, List<String>> query, String name, String defaultValue) {
+        List<String> values = query.get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+        return query;
+    }
+}
@@ -0,0 +1,63 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.PageResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookPagerTest {
+    private static final int BOOKS = 95;
+
+    private final BookPager pager = new BookPager(BookPagerTest::page, 10);
+
+    @Test
+    void prefetchFetchesOnTheCallerWhenThePoolIsFull() throws InterruptedException {
+        // One thread and one queue slot, both taken by other loads
+        ExecutorService pool = ServiceExecutors.newBoundedExecutor("pages", 1, 1);
+        pool.execute(BookPagerTest::sleep);
+        pool.execute(BookPagerTest::sleep);
+        try {
+            List<Long> ids = new ArrayList<>();
+            long delivered = pager.prefetch(pool, 4, page -> page.forEach(book -> ids.add(book.getId())));
+
+            assertEquals(BOOKS, delivered);
+            assertEquals(LongStream.range(0, BOOKS).boxed().collect(Collectors.toList()), ids);
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static PageResponse<Book> page(int number, int size) {
+        List<Book> content = new ArrayList<>();
+        for (long id = (long) number * size; id < Math.min(BOOKS, (long) (number + 1) * size); id++) {
+            Book book = new Book("Title " + id, "Author", "isbn-" + id, null);
+            book.setId(id);
+            content.add(book);
+        }
+        PageResponse<Book> page = new PageResponse<>();
+        page.setContent(content);
+        page.setNumber(number);
+        page.setSize(size);
+        page.setTotalElements(BOOKS);
+        page.setTotalPages((BOOKS + size - 1) / size);
+        page.setLast((number + 1) * size >= BOOKS);
+        return page;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.bench.BookData;
+import ekene.dian.librarydemofx.bench.BookServerStub;
+import ekene.dian.librarydemofx.model.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retries, the circuit breaker and hedging, end to end against a {@link BookServerStub}
+ * injecting faults.
+ */
+class BookServiceResilienceTest {
+    private BookServerStub stub;
+    private BookService bookService;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new BookServerStub(0, BookData.books(100)).start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (bookService != null) {
+            bookService.close();
+        }
+        stub.close();
+    }
+
+    @Test
+    void retriesFailedReadsUpToMaxAttempts() {
+        bookService = new BookService(config(Map.of("library.retry.max-attempts", "4")));
+        stub.withErrors(1.0, 503);
+
+        ServiceResult<Book> result = bookService.getBookById(1L);
+
+        assertFalse(result.isSuccess());
+        assertEquals(4, stub.getRequestCount());
+        assertEquals(3, bookService.getMetrics().getRetries());
+    }
+
+    @Test
+    void retriesUntilAReadSucceeds() {
+        bookService = new BookService(config(Map.of("library.retry.max-attempts", "10")));
+        stub.withDroppedConnections(0.5);
+
+        for (long id = 1; id <= 20; id++) {
+            ServiceResult<Book> result = bookService.getBookById(id);
+            assertTrue(result.isSuccess(), () -> result.getErrorMessage());
+            assertEquals(id, result.getValue().getId());
+        }
+        // Every dropped request was sent again, by the retry policy or the transport itself
+        assertTrue(stub.getFaultCount() > 0);
+        assertEquals(20 + stub.getFaultCount(), stub.getRequestCount());
+        assertTrue(bookService.getMetrics().getRetries() <= stub.getFaultCount());
+    }
+
+    @Test
+    void doesNotRetryClientErrorsOrSingleWrites() {
+        bookService = new BookService(config(Map.of("library.retry.max-attempts", "4")));
+
+        ServiceResult<Book> missing = bookService.getBookById(100_000L);
+        assertTrue(missing.isSuccess());
+        assertNull(missing.getValue());
+        assertEquals(1, stub.getRequestCount());
+
+        stub.withErrors(1.0, 503);
+        Book book = BookData.books(1).get(0);
+        assertFalse(bookService.updateBook(book).isSuccess());
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(0, bookService.getMetrics().getRetries());
+    }
+
+    @Test
+    void neverRetriesWhenTheCircuitIsOpen() {
+        bookService = new BookService(config(Map.of(
+            "library.retry.max-attempts", "5",
+            "library.circuit.failure-threshold", "2",
+            "library.circuit.open-ms", "60000")));
+        stub.withErrors(1.0, 503);
+
+        // Two attempts reach the server and open the circuit; the third is refused and not retried
+        ServiceResult<Book> result = bookService.getBookById(1L);
+        assertFalse(result.isSuccess());
+        assertInstanceOf(CircuitOpenException.class, result.getError());
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(2, bookService.getMetrics().getRetries());
+
+        result = bookService.getBookById(2L);
+        assertInstanceOf(CircuitOpenException.class, result.getError());
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(2, bookService.getMetrics().getRetries());
+        assertEquals(2, bookService.getMetrics().getCircuitRejections());
+    }
+
+    @Test
+    void hedgesASlowReadAndCancelsTheLoser() throws Exception {
+        // The first request hangs until interrupted; the hedge goes straight to the stub
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        HttpTransport real = new HttpClientTransport(new ClientConfig(properties(Map.of())));
+        HttpTransport slowFirst = new HttpTransport() {
+            @Override
+            public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body)
+                    throws IOException {
+                if (requests.incrementAndGet() == 1) {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw new IOException("Interrupted", e);
+                    }
+                }
+                return real.execute(method, url, headers, body);
+            }
+
+            @Override
+            public void close() {
+                real.close();
+            }
+        };
+        bookService = new BookService(config(Map.of(
+            "library.hedge.enabled", "true",
+            "library.hedge.delay-ms", "100")), slowFirst);
+
+        long start = System.nanoTime();
+        ServiceResult<Book> result = bookService.getBookById(7L);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(result.isSuccess(), () -> result.getErrorMessage());
+        assertNotNull(result.getValue());
+        assertEquals(7L, result.getValue().getId());
+        assertTrue(elapsedMillis >= 100 && elapsedMillis < 5_000, "took " + elapsedMillis + " ms");
+        assertEquals(2, requests.get());
+        assertEquals(1, bookService.getMetrics().getHedges());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "the slow request wasn't cancelled");
+    }
+
+    @Test
+    void doesNotHedgeAFastRead() {
+        bookService = new BookService(config(Map.of(
+            "library.hedge.enabled", "true",
+            "library.hedge.delay-ms", "2000")));
+
+        assertTrue(bookService.getBookById(7L).isSuccess());
+        assertEquals(1, stub.getRequestCount());
+        assertEquals(0, bookService.getMetrics().getHedges());
+    }
+
+    private ClientConfig config(Map<String, String> overrides) {
+        return new ClientConfig(properties(overrides));
+    }
+
+    private Properties properties(Map<String, String> overrides) {
+        Properties properties = new Properties();
+        properties.setProperty("library.server.url", stub.getUrl());
+        properties.setProperty("library.metrics.exporters", "");
+        properties.setProperty("library.retry.initial-delay-ms", "1");
+        properties.setProperty("library.retry.max-delay-ms", "5");
+        properties.setProperty("library.circuit.failure-threshold", "100");
+        properties.putAll(overrides);
+        return properties;
+    }
+}
@@ -0,0 +1,185 @@
+package ekene.dian.librarydemofx.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTransportTest {
+    private static final String URL = "http://localhost/api/books/1";
+
+    private final FakeTransport delegate = new FakeTransport();
+    private final ClientMetrics metrics = new ClientMetrics();
+    private final CircuitBreakerTransport breaker = new CircuitBreakerTransport(delegate, 3, 200, metrics);
+
+    @Test
+    void opensAfterTheThresholdOfFailuresInARow() throws Exception {
+        delegate.status = 503;
+        call();
+        call();
+        // A success in between starts the count again
+        delegate.status = 200;
+        call();
+        delegate.status = 500;
+        call();
+        call();
+        assertEquals(CircuitBreakerTransport.State.CLOSED, breaker.getState());
+        delegate.failure = new IOException("Connection reset");
+        assertThrows(IOException.class, this::call);
+        assertEquals(CircuitBreakerTransport.State.OPEN, breaker.getState());
+
+        int calls = delegate.calls.get();
+        CircuitOpenException rejected = assertThrows(CircuitOpenException.class, this::call);
+        assertTrue(rejected.getRetryAfterMillis() <= 200);
+        assertEquals(calls, delegate.calls.get());
+        assertEquals(1, metrics.getCircuitRejections());
+    }
+
+    @Test
+    void clientErrorsDontCount() throws Exception {
+        delegate.status = 404;
+        for (int i = 0; i < 5; i++) {
+            call();
+        }
+        assertEquals(CircuitBreakerTransport.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void cancelledRequestsDontCount() throws Exception {
+        delegate.failure = new InterruptedIOException("Request was interrupted");
+        for (int i = 0; i < 5; i++) {
+            assertThrows(InterruptedIOException.class, this::call);
+        }
+        assertEquals(CircuitBreakerTransport.State.CLOSED, breaker.getState());
+
+        // Nor does anything that fails while the caller's thread is interrupted
+        delegate.failure = new IOException("Connection reset");
+        Thread.currentThread().interrupt();
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertThrows(IOException.class, this::call);
+            }
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(CircuitBreakerTransport.State.CLOSED, breaker.getState());
+
+        // A read timeout is an InterruptedIOException too, but the server's fault
+        delegate.failure = new SocketTimeoutException("No data received");
+        for (int i = 0; i < 3; i++) {
+            assertThrows(SocketTimeoutException.class, this::call);
+        }
+        assertEquals(CircuitBreakerTransport.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void aCancelledTrialLetsTheNextRequestTry() throws Exception {
+        open();
+        Thread.sleep(250);
+        delegate.status = 200;
+        delegate.failure = new InterruptedIOException("Request was interrupted");
+        assertThrows(InterruptedIOException.class, this::call);
+        assertEquals(CircuitBreakerTransport.State.OPEN, breaker.getState());
+
+        delegate.failure = null;
+        call();
+        assertEquals(CircuitBreakerTransport.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void letsOneTrialThroughOnceOpenLongEnoughAndClosesWhenItSucceeds() throws Exception {
+        open();
+        Thread.sleep(250);
+
+        // The trial hangs until released; meanwhile the circuit is half open and rejects the rest
+        CountDownLatch release = new CountDownLatch(1);
+        delegate.failure = null;
+        delegate.status = 200;
+        delegate.gate = release;
+        CompletableFuture<Void> trial = CompletableFuture.runAsync(() -> {
+            try {
+                call();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        delegate.awaitCalls(4);
+        assertEquals(CircuitBreakerTransport.State.HALF_OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, this::call);
+
+        release.countDown();
+        trial.get(5, TimeUnit.SECONDS);
+        assertEquals(CircuitBreakerTransport.State.CLOSED, breaker.getState());
+        call();
+        assertEquals(5, delegate.calls.get());
+    }
+
+    @Test
+    void opensAgainWhenTheTrialFails() throws Exception {
+        open();
+        Thread.sleep(250);
+        call();
+        assertEquals(CircuitBreakerTransport.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, this::call);
+        assertEquals(4, delegate.calls.get());
+    }
+
+    private void open() throws IOException {
+        delegate.status = 503;
+        for (int i = 0; i < 3; i++) {
+            call();
+        }
+        assertEquals(CircuitBreakerTransport.State.OPEN, breaker.getState());
+    }
+
+    private void call() throws IOException {
+        breaker.execute("GET", URL, Map.of(), null).close();
+    }
+
+    private static final class FakeTransport implements HttpTransport {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile int status = 200;
+        volatile IOException failure;
+        volatile CountDownLatch gate;
+
+        @Override
+        public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body)
+                throws IOException {
+            calls.incrementAndGet();
+            CountDownLatch waitFor = gate;
+            if (waitFor != null) {
+                try {
+                    waitFor.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new TransportResponse(status, Map.of(), new ByteArrayInputStream(new byte[0]), () -> { });
+        }
+
+        void awaitCalls(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (calls.get() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.bench.BookData;
+import ekene.dian.librarydemofx.bench.BookServerStub;
+import ekene.dian.librarydemofx.model.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The page walk, against a {@link BookServerStub}, which has no {@code /changes} endpoint. The
+ * stub sends no {@code ETag}s either, so the transport adds them and answers
+ * {@code If-None-Match} as a server supporting them would.
+ */
+class DeltaSyncTest {
+    private static final int BOOKS = 95;
+    private static final int PAGE_SIZE = 20;
+
+    private BookServerStub stub;
+    private EtagTransport transport;
+    private BookService bookService;
+    // Someone else editing the catalog
+    private BookService other;
+    private DeltaSync deltaSync;
+
+    @BeforeEach
+    void start() throws IOException {
+        stub = new BookServerStub(0, BookData.books(BOOKS)).start();
+        Properties properties = new Properties();
+        properties.setProperty("library.server.url", stub.getUrl());
+        properties.setProperty("library.metrics.exporters", "");
+        properties.setProperty("library.page.size", String.valueOf(PAGE_SIZE));
+        ClientConfig config = new ClientConfig(properties);
+        transport = new EtagTransport(new HttpClientTransport(config));
+        bookService = new BookService(config, transport);
+        other = new BookService(config);
+        deltaSync = new DeltaSync(bookService);
+    }
+
+    @AfterEach
+    void stop() {
+        bookService.close();
+        other.close();
+        stub.close();
+    }
+
+    @Test
+    void walksThePagesWhenThereIsNoChangesEndpoint() {
+        DeltaSync.Result first = deltaSync.sync();
+        assertTrue(first.isBaseline());
+        assertEquals(BOOKS, first.getChanged().size());
+
+        // Every page is answered with 304
+        DeltaSync.Result unchanged = deltaSync.sync();
+        assertTrue(unchanged.isEmpty());
+        assertEquals(5, transport.notModified.get());
+
+        other.updateBook(edit(30L, "A New Title"));
+        Book created = other.createBook(new Book("Zazie dans le metro", "Queneau", "9782070368037",
+            LocalDate.of(1959, 1, 1))).getValue();
+        other.deleteBook(50L);
+
+        DeltaSync.Result changes = deltaSync.sync();
+        assertFalse(changes.isBaseline());
+        // The rows after the deleted one moved to other pages, but only what changed is reported
+        assertEquals(Set.of(30L, created.getId()), ids(changes.getChanged()));
+        assertEquals("A New Title", changes.getChanged().stream()
+            .filter(book -> book.getId() == 30L).findFirst().orElseThrow().getTitle());
+        assertEquals(Set.of(50L), changes.getDeleted());
+        // Only the first page was left alone
+        assertEquals(6, transport.notModified.get());
+
+        assertTrue(deltaSync.sync().isEmpty());
+    }
+
+    @Test
+    void comparesTheFirstWalkWithASeededListing() {
+        deltaSync.seed(BookData.books(BOOKS));
+        other.updateBook(edit(7L, "A New Title"));
+        other.deleteBook(90L);
+
+        DeltaSync.Result changes = deltaSync.sync();
+
+        assertFalse(changes.isBaseline());
+        assertEquals(Set.of(7L), ids(changes.getChanged()));
+        assertEquals(Set.of(90L), changes.getDeleted());
+        assertEquals(0, transport.notModified.get());
+    }
+
+    private Book edit(Long id, String title) {
+        Book current = other.getBookById(id).getValue();
+        Book edit = new Book(title, current.getAuthor(), current.getIsbn(), current.getPublishedDate());
+        edit.setId(id);
+        return edit;
+    }
+
+    private static Set<Long> ids(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toSet());
+    }
+
+    /**
+     * Tags listing pages with a hash of their body and answers a matching
+     * {@code If-None-Match} with a 304.
+     */
+    private static final class EtagTransport implements HttpTransport {
+        private final HttpTransport delegate;
+        final AtomicInteger notModified = new AtomicInteger();
+
+        EtagTransport(HttpTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body)
+                throws IOException {
+            TransportResponse response = delegate.execute(method, url, headers, body);
+            if (!method.equals("GET") || !url.contains("/api/books?") || response.getStatus() != 200) {
+                return response;
+            }
+            byte[] content;
+            try (response) {
+                content = response.getBody().readAllBytes();
+            }
+            String etag = "\"" + Arrays.hashCode(content) + "\"";
+            if (etag.equals(headers.get("If-None-Match"))) {
+                notModified.incrementAndGet();
+                return new TransportResponse(304, Map.of("ETag", List.of(etag)),
+                    new ByteArrayInputStream(new byte[0]), () -> { });
+            }
+            Map<String, List<String>> tagged = new HashMap<>(response.getHeaders());
+            tagged.put("ETag", List.of(etag));
+            return new TransportResponse(200, tagged, new ByteArrayInputStream(content), () -> { });
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.bench.BookData;
+import ekene.dian.librarydemofx.bench.BookServerStub;
+import ekene.dian.librarydemofx.model.Book;
+import ekene.dian.librarydemofx.model.BookEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiveUpdatesTest {
+    private final BlockingQueue<BookEvent> events = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Boolean> connections = new LinkedBlockingQueue<>();
+    private final AtomicInteger resyncs = new AtomicInteger();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    private final LiveUpdates.Listener listener = new LiveUpdates.Listener() {
+        @Override
+        public void onEvent(BookEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onResync() {
+            resyncs.incrementAndGet();
+        }
+
+        @Override
+        public void onConnectionChanged(boolean connected) {
+            connections.add(connected);
+        }
+    };
+
+    @AfterEach
+    void closeResources() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+    }
+
+    @Test
+    void parsesEventsSkippingCommentsAndOtherTypes() throws Exception {
+        String stream = ": keep-alive\r\n"
+            + "retry: 100\r\n\r\n"
+            + "id: 7\r\nevent: book\r\n"
+            + "data:{\"type\":\"CREATED\",\"id\":1,\"book\":{\"id\":1,\"title\":\"T\",\"author\":\"A\",\"isbn\":\"1\",\"publishedDate\":\"2020-01-01\"}}\r\n\r\n"
+            + "event: other\ndata: {\"type\":\"DELETED\",\"id\":2}\n\n"
+            + "data: not json\n\n"
+            + "data: {\"type\":\"UPDATED\"}\n\n"
+            + "id: 9\ndata: {\"type\":\"DELETED\",\n"
+            + "data: \"id\":3}\n\n";
+        ScriptedTransport transport = new ScriptedTransport(stream);
+        start(new BookService(config("http://localhost:1/api/books"), transport));
+
+        BookEvent created = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(created);
+        assertEquals(BookEvent.Type.CREATED, created.getType());
+        assertEquals("T", created.getBook().getTitle());
+        BookEvent deleted = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(deleted);
+        assertEquals(BookEvent.Type.DELETED, deleted.getType());
+        assertEquals(3L, deleted.getId());
+
+        // The stream ended, so it is reopened from the last id after the server's retry delay
+        transport.awaitCalls(2);
+        assertNull(transport.headers.get(0).get("Last-Event-ID"));
+        assertEquals("9", transport.headers.get(1).get("Last-Event-ID"));
+        long gap = transport.times.get(1) - transport.times.get(0);
+        assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(90), "reconnected after " + gap + " ns");
+        assertTrue(events.isEmpty());
+        assertEquals(0, resyncs.get());
+    }
+
+    @Test
+    void backsOffBetweenFailedConnects() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        Properties properties = properties("http://localhost:1/api/books");
+        properties.setProperty("library.circuit.enabled", "false");
+        properties.setProperty("library.live.reconnect-delay-ms", "100");
+        properties.setProperty("library.live.reconnect-max-delay-ms", "800");
+        start(new BookService(new ClientConfig(properties), transport));
+
+        transport.awaitCalls(5);
+        // Delay n is drawn from the upper half of min(800, 100 * 2^(n-1)) ms
+        long first = TimeUnit.NANOSECONDS.toMillis(transport.times.get(1) - transport.times.get(0));
+        long fourth = TimeUnit.NANOSECONDS.toMillis(transport.times.get(4) - transport.times.get(3));
+        assertTrue(first >= 45 && first < 300, "first delay " + first + " ms");
+        assertTrue(fourth >= 395, "fourth delay " + fourth + " ms");
+    }
+
+    @Test
+    void resumesWithLastEventIdAfterTheStreamDrops() throws Exception {
+        BookServerStub stub = stub().withEventRetry(300);
+        BookService service = service(stub);
+        start(service);
+        assertEquals(Boolean.TRUE, connections.poll(5, TimeUnit.SECONDS));
+
+        service.updateBook(renamed(service, 1));
+        assertEquals(1L, events.poll(5, TimeUnit.SECONDS).getId());
+
+        stub.dropEventStreams();
+        // Made while the client waits to reconnect
+        service.deleteBook(2L);
+        BookEvent missed = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(missed);
+        assertEquals(BookEvent.Type.DELETED, missed.getType());
+        assertEquals(2L, missed.getId());
+        assertEquals(List.of("", "1"), stub.getEventResumeIds());
+        assertEquals(0, resyncs.get());
+    }
+
+    @Test
+    void resyncsWhenTheServerCannotResume() throws Exception {
+        BookServerStub stub = stub().withEventRetry(300).withEventHistory(1);
+        BookService service = service(stub);
+        start(service);
+        assertEquals(Boolean.TRUE, connections.poll(5, TimeUnit.SECONDS));
+
+        service.updateBook(renamed(service, 1));
+        assertNotNull(events.poll(5, TimeUnit.SECONDS));
+        stub.dropEventStreams();
+        // Two events while disconnected, but the stub only keeps the last one
+        service.updateBook(renamed(service, 2));
+        service.updateBook(renamed(service, 3));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (resyncs.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, resyncs.get());
+        assertEquals(List.of("", "1"), stub.getEventResumeIds());
+        assertTrue(events.isEmpty());
+
+        // And the stream carries on
+        service.deleteBook(4L);
+        assertEquals(4L, events.poll(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void stopsOnAServerWithoutEvents() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        transport.status = 404;
+        start(new BookService(config("http://localhost:1/api/books"), transport));
+
+        transport.awaitCalls(1);
+        Thread.sleep(300);
+        assertEquals(1, transport.times.size());
+    }
+
+    private void start(BookService service) {
+        LiveUpdates live = new LiveUpdates(service, listener);
+        resources.add(service);
+        resources.add(live);
+        live.start();
+    }
+
+    private BookServerStub stub() throws IOException {
+        BookServerStub stub = new BookServerStub(0, BookData.books(10)).start();
+        resources.add(stub);
+        return stub;
+    }
+
+    private static BookService service(BookServerStub stub) {
+        return new BookService(config(stub.getUrl()));
+    }
+
+    private static Book renamed(BookService service, long id) {
+        Book book = service.getBookById(id).orElseThrow();
+        book.setTitle(book.getTitle() + " (revised)");
+        return book;
+    }
+
+    private static ClientConfig config(String url) {
+        return new ClientConfig(properties(url));
+    }
+
+    private static Properties properties(String url) {
+        Properties properties = new Properties();
+        properties.setProperty("library.server.url", url);
+        properties.setProperty("library.metrics.exporters", "");
+        return properties;
+    }
+
+    /**
+     * Answers each request with the next scripted event stream, and fails once they run out.
+     */
+    private static final class ScriptedTransport implements HttpTransport {
+        private final BlockingQueue<String> bodies = new LinkedBlockingQueue<>();
+        final List<Map<String, String>> headers = new CopyOnWriteArrayList<>();
+        final List<Long> times = new CopyOnWriteArrayList<>();
+        volatile int status = 200;
+
+        ScriptedTransport(String... bodies) {
+            this.bodies.addAll(List.of(bodies));
+        }
+
+        @Override
+        public TransportResponse execute(String method, String url, Map<String, String> headers, byte[] body)
+                throws IOException {
+            this.headers.add(Map.copyOf(headers));
+            times.add(System.nanoTime());
+            String next = bodies.poll();
+            if (status != 200) {
+                return new TransportResponse(status, Map.of(), new ByteArrayInputStream(new byte[0]), () -> { });
+            }
+            if (next == null) {
+                throw new IOException("Connection refused");
+            }
+            return new TransportResponse(200, Map.of("Content-Type", List.of("text/event-stream")),
+                new ByteArrayInputStream(next.getBytes(StandardCharsets.UTF_8)), () -> { });
+        }
+
+        void awaitCalls(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (times.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(times.size() >= count, "only " + times.size() + " requests");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
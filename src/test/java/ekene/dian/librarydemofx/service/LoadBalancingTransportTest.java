@@ -0,0 +1,268 @@
+package ekene.dian.librarydemofx.service;
+
+import ekene.dian.librarydemofx.bench.BookData;
+import ekene.dian.librarydemofx.bench.BookServerStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Node selection, ejection and fail-over against several {@link BookServerStub}s.
+ *
+ * While nodes are equally busy the one with the lower recent latency is picked, and a node that
+ * has never answered successfully has none, so the first stub is tried first whenever it is in
+ * rotation.
+ */
+class LoadBalancingTransportTest {
+    private static final byte[] NEW_BOOK =
+        "{\"title\":\"Dune\",\"author\":\"Frank Herbert\",\"isbn\":\"9780441013593\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final List<BookServerStub> stubs = new ArrayList<>();
+    private final ClientMetrics metrics = new ClientMetrics();
+    private HttpTransport transport;
+
+    @AfterEach
+    void stop() {
+        stubs.forEach(BookServerStub::close);
+    }
+
+    @Test
+    void leastOutstandingAvoidsTheBusyNode() throws IOException {
+        List<String> urls = start(3);
+        balancer(urls, LoadBalancingTransport.Strategy.LEAST_OUTSTANDING, 3, 10_000);
+
+        try (TransportResponse held = get(urls.get(0) + "/1")) {
+            int busy = busiest();
+            for (int i = 0; i < 30; i++) {
+                get(urls.get(0) + "/1").close();
+            }
+            assertEquals(1, stubs.get(busy).getRequestCount());
+            assertEquals(31, total());
+        }
+    }
+
+    @Test
+    void powerOfTwoChoicesSpreadsOverTheIdleNodes() throws IOException {
+        List<String> urls = start(3);
+        balancer(urls, LoadBalancingTransport.Strategy.P2C, 3, 10_000);
+
+        try (TransportResponse held = get(urls.get(0) + "/1")) {
+            int busy = busiest();
+            for (int i = 0; i < 60; i++) {
+                get(urls.get(0) + "/1").close();
+            }
+            // The busy node loses every pair it is drawn in; the other two share the rest
+            for (int i = 0; i < stubs.size(); i++) {
+                long count = stubs.get(i).getRequestCount();
+                if (i == busy) {
+                    assertEquals(1, count);
+                } else {
+                    assertTrue(count > 0, "stub " + i + " got no requests");
+                }
+            }
+        }
+    }
+
+    @Test
+    void ejectsAfterTheThresholdAndReadmitsAfterTheEjection() throws Exception {
+        List<String> urls = start(2);
+        balancer(urls, LoadBalancingTransport.Strategy.LEAST_OUTSTANDING, 2, 300);
+        BookServerStub failing = stubs.get(0);
+        BookServerStub healthy = stubs.get(1);
+        failing.withErrors(1.0, 503);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, status(get(urls.get(0) + "/1")));
+        }
+        // Two failures in a row took it out; the rest went straight to the other node
+        assertEquals(2, failing.getRequestCount());
+        assertEquals(5, healthy.getRequestCount());
+        assertEquals(1, metrics.getBackends().get(0).getEjections());
+        assertEquals(2, metrics.getBackends().get(0).getFailures());
+
+        // Back on trial once the time is up, and out again after one more failure
+        Thread.sleep(350);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, status(get(urls.get(0) + "/1")));
+        }
+        assertEquals(3, failing.getRequestCount());
+        assertEquals(2, metrics.getBackends().get(0).getEjections());
+
+        // A success puts it back for good
+        failing.healthy();
+        Thread.sleep(350);
+        assertEquals(200, status(get(urls.get(0) + "/1")));
+        assertEquals(4, failing.getRequestCount());
+        assertEquals(8, healthy.getRequestCount());
+        failing.withErrors(1.0, 503);
+        assertEquals(200, status(get(urls.get(0) + "/1")));
+        assertEquals(2, metrics.getBackends().get(0).getEjections());
+    }
+
+    @Test
+    void cancelledRequestsDontEjectTheNode() throws Exception {
+        List<String> urls = start(2);
+        balancer(urls, LoadBalancingTransport.Strategy.LEAST_OUTSTANDING, 1, 10_000);
+        BookServerStub slow = stubs.get(0);
+        slow.withLatency(5_000);
+
+        // A prefetch for a search that was replaced, interrupted while it waits for the slow node
+        CompletableFuture<Thread> caller = new CompletableFuture<>();
+        CompletableFuture<Void> request = CompletableFuture.runAsync(() -> {
+            caller.complete(Thread.currentThread());
+            try {
+                get(urls.get(0) + "/1").close();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (slow.getRequestCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        caller.get().interrupt();
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> request.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(InterruptedIOException.class, failure.getCause().getCause());
+
+        // Still in rotation: with a threshold of one, a counted failure would have taken it out
+        slow.healthy();
+        assertEquals(200, status(get(urls.get(0) + "/1")));
+        assertEquals(2, slow.getRequestCount());
+        assertEquals(0, stubs.get(1).getRequestCount());
+        assertEquals(0, metrics.getBackends().get(0).getFailures());
+    }
+
+    @Test
+    void postFailsOverOnlyWhenTheConnectionWasRefused() throws IOException {
+        List<String> urls = start(1);
+        String refused = "http://localhost:" + freePort() + "/api/books";
+        balancer(List.of(refused, urls.get(0)), LoadBalancingTransport.Strategy.LEAST_OUTSTANDING, 100, 10_000);
+
+        // Nothing reached the dead node, so the create can go to another
+        assertEquals(201, status(post(refused)));
+        assertEquals(1, stubs.get(0).getRequestCount());
+
+        // A dropped connection may have been processed: a second create could duplicate it
+        stop();
+        stubs.clear();
+        urls = start(2);
+        balancer(urls, LoadBalancingTransport.Strategy.LEAST_OUTSTANDING, 100, 10_000);
+        stubs.get(0).withDroppedConnections(1.0);
+        String base = urls.get(0);
+        IOException failure = assertThrows(IOException.class, () -> post(base));
+        assertTrue(!(failure instanceof ConnectException));
+        assertEquals(0, stubs.get(1).getRequestCount());
+
+        // A read is safe to send again
+        assertEquals(200, status(get(base + "/1")));
+        assertEquals(1, stubs.get(1).getRequestCount());
+    }
+
+    @Test
+    void unavailableStatusesFailOverOnlyForRepeatableMethods() throws IOException {
+        for (int unavailable : new int[]{502, 503, 504}) {
+            List<String> urls = start(2);
+            balancer(urls, LoadBalancingTransport.Strategy.LEAST_OUTSTANDING, 100, 10_000);
+            stubs.get(0).withErrors(1.0, unavailable);
+            String base = urls.get(0);
+
+            assertEquals(200, status(get(base + "/1")));
+            assertEquals(200, status(send("PUT", base + "/1", NEW_BOOK)));
+            assertEquals(204, status(send("DELETE", base + "/2", null)));
+            assertEquals(3, stubs.get(1).getRequestCount());
+
+            assertEquals(unavailable, status(post(base)));
+            assertEquals(3, stubs.get(1).getRequestCount());
+            assertEquals(4, stubs.get(0).getRequestCount());
+
+            stop();
+            stubs.clear();
+        }
+    }
+
+    @Test
+    void otherServerErrorsAreNotFailedOver() throws IOException {
+        List<String> urls = start(2);
+        balancer(urls, LoadBalancingTransport.Strategy.LEAST_OUTSTANDING, 100, 10_000);
+        stubs.get(0).withErrors(1.0, 500);
+
+        assertEquals(500, status(get(urls.get(0) + "/1")));
+        assertEquals(0, stubs.get(1).getRequestCount());
+    }
+
+    private List<String> start(int count) throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BookServerStub stub = new BookServerStub(0, BookData.books(10)).start();
+            stubs.add(stub);
+            urls.add(stub.getUrl());
+        }
+        return urls;
+    }
+
+    private void balancer(List<String> urls, LoadBalancingTransport.Strategy strategy, int failureThreshold, long ejectMillis) {
+        Properties props = new Properties();
+        props.setProperty("library.server.url", urls.get(0));
+        transport = new LoadBalancingTransport(new HttpClientTransport(new ClientConfig(props)), urls, strategy,
+            failureThreshold, ejectMillis, metrics);
+    }
+
+    private TransportResponse get(String url) throws IOException {
+        return send("GET", url, null);
+    }
+
+    private TransportResponse post(String url) throws IOException {
+        return send("POST", url, NEW_BOOK);
+    }
+
+    private TransportResponse send(String method, String url, byte[] body) throws IOException {
+        return transport.execute(method, url, body == null ? Map.of() : Map.of("Content-Type", "application/json"), body);
+    }
+
+    private static int status(TransportResponse response) throws IOException {
+        try (response) {
+            response.getBody().readAllBytes();
+            return response.getStatus();
+        }
+    }
+
+    /**
+     * Index of the stub that has had the most requests.
+     */
+    private int busiest() {
+        int busiest = 0;
+        for (int i = 1; i < stubs.size(); i++) {
+            if (stubs.get(i).getRequestCount() > stubs.get(busiest).getRequestCount()) {
+                busiest = i;
+            }
+        }
+        return busiest;
+    }
+
+    private long total() {
+        return stubs.stream().mapToLong(BookServerStub::getRequestCount).sum();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}